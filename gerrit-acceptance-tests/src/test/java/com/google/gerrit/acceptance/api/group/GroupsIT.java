@@ -139,6 +139,24 @@ public class GroupsIT extends AbstractDaemonTest {
     assertNoIncludes(p);
   }
 
+  @Test
+  public void transitiveMembershipFollowsIncludes() throws Exception {
+    String p = createGroup("parent");
+    String m = createGroup("middle");
+    String g = createGroup("newGroup");
+    gApi.groups().id(g).addMembers(user.username);
+    gApi.groups().id(p).addGroups(m);
+    assertThat(isMember(user, p)).isFalse();
+
+    gApi.groups().id(m).addGroups(g);
+    assertThat(isMember(user, m)).isTrue();
+    assertThat(isMember(user, p)).isTrue();
+
+    gApi.groups().id(p).removeGroups(m);
+    assertThat(isMember(user, m)).isTrue();
+    assertThat(isMember(user, p)).isFalse();
+  }
+
   @Test
   public void includeExistingGroup_OK() throws Exception {
     String p = createGroup("parent");
@@ -713,6 +731,13 @@ public class GroupsIT extends AbstractDaemonTest {
     assertThat(gApi.groups().id(group).includedGroups()).isEmpty();
   }
 
+  private boolean isMember(TestAccount account, String groupName) throws Exception {
+    return identifiedUserFactory
+        .create(account.getId())
+        .getEffectiveGroups()
+        .contains(getFromCache(groupName).getGroupUUID());
+  }
+
   private InternalGroup getFromCache(String name) throws Exception {
     return groupCache.get(new AccountGroup.NameKey(name)).orElse(null);
   }
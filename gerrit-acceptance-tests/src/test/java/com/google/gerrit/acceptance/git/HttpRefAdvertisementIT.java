@@ -0,0 +1,94 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.acceptance.git;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+import static com.google.gerrit.server.group.SystemGroupBackend.ANONYMOUS_USERS;
+import static java.util.stream.Collectors.toList;
+
+import com.google.gerrit.acceptance.AbstractDaemonTest;
+import com.google.gerrit.acceptance.PushOneCommit;
+import com.google.gerrit.acceptance.TestAccount;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.common.data.AccessSection;
+import com.google.gerrit.common.data.Permission;
+import com.google.gerrit.reviewdb.client.AccountGroup;
+import com.google.gerrit.server.git.ProjectConfig;
+import com.google.gerrit.server.project.Util;
+import java.util.List;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.LsRemoteCommand;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.transport.URIish;
+import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests the advertisement of refs to fetches over smart HTTP, which may be cached. */
+public class HttpRefAdvertisementIT extends AbstractDaemonTest {
+  @Before
+  public void setUp() throws Exception {
+    // Only grant READ on branches, so that the refs are filtered for each user.
+    ProjectConfig pc = projectCache.checkedGet(allProjects).getConfig();
+    for (AccessSection sec : pc.getAccessSections()) {
+      sec.removePermission(Permission.READ);
+    }
+    AccountGroup.UUID admins =
+        groupCache.get(new AccountGroup.NameKey("Administrators")).orElse(null).getGroupUUID();
+    Util.allow(pc, Permission.READ, admins, "refs/*");
+    saveProjectConfig(allProjects, pc);
+    allow("refs/heads/*", Permission.READ, ANONYMOUS_USERS);
+  }
+
+  @Test
+  public void changeMadePrivateIsHiddenFromNextFetch() throws Exception {
+    PushOneCommit.Result r = createChange();
+    String ref = r.getPatchSetId().toRefName();
+    assertWithMessage("Precondition violated").that(lsRemote(user)).contains(ref);
+
+    gApi.changes().id(r.getChangeId()).setPrivate(true, null);
+    assertThat(lsRemote(user)).doesNotContain(ref);
+  }
+
+  @Test
+  public void anonymousAndIdentifiedUsersGetTheirOwnAdvertisement() throws Exception {
+    TestRepository<?> userRepo = cloneProject(project, user);
+    PushOneCommit.Result r =
+        pushFactory.create(db, user.getIdent(), userRepo).to("refs/for/master%private");
+    r.assertOkStatus();
+    String ref = r.getPatchSetId().toRefName();
+
+    assertThat(lsRemote(user)).contains(ref);
+    assertThat(lsRemote(null)).doesNotContain(ref);
+    assertThat(lsRemote(user)).contains(ref);
+    assertThat(lsRemote(accountCreator.user2())).doesNotContain(ref);
+  }
+
+  private List<String> lsRemote(@Nullable TestAccount a) throws Exception {
+    URIish url = new URIish(admin.getHttpUrl(server)).setUser(null).setPass(null);
+    LsRemoteCommand lsRemote = Git.lsRemoteRepository();
+    if (a == null) {
+      lsRemote.setRemote(url.setPath("/" + project.get()).toString());
+    } else {
+      lsRemote
+          .setRemote(url.setPath("/a/" + project.get()).toString())
+          .setCredentialsProvider(
+              new UsernamePasswordCredentialsProvider(a.username, a.httpPassword));
+    }
+    return lsRemote.call().stream().map(Ref::getName).collect(toList());
+  }
+}
@@ -22,6 +22,7 @@ import static java.util.stream.Collectors.toList;
 
 import com.google.gerrit.acceptance.AbstractDaemonTest;
 import com.google.gerrit.acceptance.AcceptanceTestRequestScope;
+import com.google.gerrit.acceptance.GerritConfig;
 import com.google.gerrit.acceptance.NoHttpd;
 import com.google.gerrit.acceptance.PushOneCommit;
 import com.google.gerrit.acceptance.TestAccount;
@@ -39,6 +40,7 @@ import com.google.gerrit.reviewdb.client.RefNames;
 import com.google.gerrit.server.config.AllUsersName;
 import com.google.gerrit.server.config.AnonymousCowardName;
 import com.google.gerrit.server.git.ProjectConfig;
+import com.google.gerrit.server.git.SearchingChangeCacheImpl;
 import com.google.gerrit.server.git.VisibleRefFilter;
 import com.google.gerrit.server.git.receive.ReceiveCommitsAdvertiseRefsHook;
 import com.google.gerrit.server.notedb.ChangeNoteUtil;
@@ -68,6 +70,7 @@ public class RefAdvertisementIT extends AbstractDaemonTest {
   @Inject private ChangeNoteUtil noteUtil;
   @Inject @AnonymousCowardName private String anonymousCowardName;
   @Inject private AllUsersName allUsersName;
+  @Inject private SearchingChangeCacheImpl changeCache;
 
   private AccountGroup.UUID admins;
 
@@ -346,6 +349,26 @@ public class RefAdvertisementIT extends AbstractDaemonTest {
     }
   }
 
+  @Test
+  @GerritConfig(name = "cache.changes.memoryLimit", value = "1024")
+  public void searchingChangeCacheReloadsUpdatedChange() throws Exception {
+    PushOneCommit.Result r = createChange();
+    Change.Id id = r.getChange().getId();
+    assertThat(cachedPatchSet(id)).isEqualTo(1);
+
+    amendChange(r.getChangeId()).assertOkStatus();
+    assertThat(cachedPatchSet(id)).isEqualTo(2);
+  }
+
+  private int cachedPatchSet(Change.Id id) throws Exception {
+    for (ChangeData cd : changeCache.getChangeData(db, project)) {
+      if (cd.getId().equals(id)) {
+        return cd.change().currentPatchSetId().get();
+      }
+    }
+    throw new AssertionError("change " + id + " not cached");
+  }
+
   @Test
   public void uploadPackSequencesWithAccessDatabase() throws Exception {
     assume().that(notesMigration.readChangeSequence()).isTrue();
@@ -0,0 +1,116 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.acceptance.rest.change;
+
+import static com.google.common.collect.Iterables.getOnlyElement;
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.gerrit.acceptance.AbstractDaemonTest;
+import com.google.gerrit.acceptance.GerritConfig;
+import com.google.gerrit.acceptance.PushOneCommit;
+import com.google.gerrit.extensions.client.ChangeStatus;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.HttpStatus;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Test;
+
+public class SubmitWithMergeQueueIT extends AbstractDaemonTest {
+  @Test
+  @GerritConfig(name = "change.mergeQueueWindow", value = "500 ms")
+  public void concurrentSubmitsToOneBranchAreAllMerged() throws Exception {
+    RevCommit initialHead = getRemoteHead();
+    List<String> changeIds = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      testRepo.reset(initialHead);
+      PushOneCommit.Result r = createChange("Change " + i, "file" + i, "content " + i);
+      approve(r.getChangeId());
+      changeIds.add(r.getChangeId());
+    }
+
+    assertThat(submitConcurrently(changeIds))
+        .containsExactly(HttpStatus.SC_OK, HttpStatus.SC_OK, HttpStatus.SC_OK);
+    Set<String> submissionIds = new HashSet<>();
+    for (String changeId : changeIds) {
+      assertThat(gApi.changes().id(changeId).get().status).isEqualTo(ChangeStatus.MERGED);
+      submissionIds.add(
+          getOnlyElement(queryProvider.get().byKeyPrefix(changeId)).change().getSubmissionId());
+    }
+    // Each MergeOp run has its own submission ID, so the changes were integrated in a single run.
+    assertThat(submissionIds).hasSize(1);
+  }
+
+  @Test
+  @GerritConfig(name = "change.mergeQueueWindow", value = "500 ms")
+  public void conflictingChangeOnlyFailsItsOwnSubmit() throws Exception {
+    RevCommit initialHead = getRemoteHead();
+    PushOneCommit.Result a = createChange("Change a", "a.txt", "a");
+    testRepo.reset(initialHead);
+    PushOneCommit.Result conflicting = createChange("Change b", "a.txt", "b");
+    testRepo.reset(initialHead);
+    PushOneCommit.Result c = createChange("Change c", "c.txt", "c");
+    List<String> changeIds = new ArrayList<>();
+    for (PushOneCommit.Result r : new PushOneCommit.Result[] {a, conflicting, c}) {
+      approve(r.getChangeId());
+      changeIds.add(r.getChangeId());
+    }
+
+    // The batch fails on the conflict, then each change is submitted on its own. Whichever of the
+    // two conflicting changes comes second fails, the others are merged.
+    List<Integer> statusCodes = submitConcurrently(changeIds);
+    assertThat(statusCodes)
+        .containsExactly(HttpStatus.SC_OK, HttpStatus.SC_OK, HttpStatus.SC_CONFLICT);
+    assertThat(statusCodes.get(2)).isEqualTo(HttpStatus.SC_OK);
+    assertThat(gApi.changes().id(c.getChangeId()).get().status).isEqualTo(ChangeStatus.MERGED);
+    for (int i = 0; i < 2; i++) {
+      ChangeStatus expected =
+          statusCodes.get(i) == HttpStatus.SC_OK ? ChangeStatus.MERGED : ChangeStatus.NEW;
+      assertThat(gApi.changes().id(changeIds.get(i)).get().status).isEqualTo(expected);
+    }
+  }
+
+  private List<Integer> submitConcurrently(List<String> changeIds) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(changeIds.size());
+    try {
+      CyclicBarrier sync = new CyclicBarrier(changeIds.size());
+      List<Future<Integer>> futures = new ArrayList<>();
+      for (String changeId : changeIds) {
+        futures.add(
+            executor.submit(
+                () -> {
+                  sync.await();
+                  return adminRestSession
+                      .post("/changes/" + changeId + "/submit")
+                      .getStatusCode();
+                }));
+      }
+      List<Integer> statusCodes = new ArrayList<>();
+      for (Future<Integer> f : futures) {
+        statusCodes.add(f.get());
+      }
+      return statusCodes;
+    } finally {
+      executor.shutdown();
+      executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+  }
+}
@@ -33,6 +33,7 @@ import com.google.gerrit.extensions.restapi.RestApiException;
 import com.google.gerrit.extensions.restapi.TopLevelResource;
 import com.google.gerrit.reviewdb.client.AccountGroup;
 import com.google.gerrit.reviewdb.client.Project;
+import com.google.gerrit.server.ReviewerAffinity;
 import com.google.gerrit.server.group.CreateGroup;
 import com.google.gerrit.server.group.InternalGroup;
 import com.google.inject.Inject;
@@ -44,6 +45,7 @@ import org.junit.Test;
 @Sandboxed
 public class SuggestReviewersIT extends AbstractDaemonTest {
   @Inject private CreateGroup.Factory createGroupFactory;
+  @Inject private ReviewerAffinity reviewerAffinity;
 
   private InternalGroup group1;
   private InternalGroup group2;
@@ -397,6 +399,54 @@ public class SuggestReviewersIT extends AbstractDaemonTest {
         .inOrder();
   }
 
+  @Test
+  @GerritConfig(name = "addReviewer.affinityChanges", value = "2")
+  public void reviewerRankingWindowAndUpdates() throws Exception {
+    Project.NameKey otherProject = createProject("other");
+
+    String fullName = "Primum Finalis";
+    TestAccount userWhoOwns = user("customuser1", fullName);
+    TestAccount oldReviewer = user("customuser2", fullName);
+    TestAccount newReviewer = user("customuser3", fullName);
+    TestAccount otherReviewer = user("customuser4", fullName);
+
+    setApiUser(userWhoOwns);
+    String changeId1 = createChangeFromApi();
+    String changeId2 = createChangeFromApi();
+    setApiUser(oldReviewer);
+    reviewChange(changeId1);
+    reviewChange(changeId2);
+
+    setApiUser(userWhoOwns);
+    String changeId3 = createChangeFromApi();
+    setApiUser(newReviewer);
+    reviewChange(changeId3);
+
+    // Only the two most recently updated changes count, oldReviewer's votes are outside of them.
+    setApiUser(userWhoOwns);
+    String changeId4 = createChangeFromApi();
+    List<SuggestedReviewerInfo> reviewers = suggestReviewers(changeId4, "Prim", 4);
+    assertThat(reviewers.get(0).account._accountId).isEqualTo(newReviewer.id.get());
+
+    // Updates after the project was loaded are applied to it, and only to it.
+    setApiUser(oldReviewer);
+    reviewChange(changeId3);
+    reviewChange(changeId4);
+    for (int i = 0; i < 3; i++) {
+      setApiUser(userWhoOwns);
+      String changeId = createChangeFromApi(otherProject);
+      setApiUser(otherReviewer);
+      reviewChange(changeId);
+    }
+    reviewerAffinity.applyPendingUpdates();
+
+    setApiUser(userWhoOwns);
+    reviewers = suggestReviewers(changeId4, "Prim", 4);
+    assertThat(reviewers.stream().map(r -> r.account._accountId).collect(toList()))
+        .containsExactly(oldReviewer.id.get(), newReviewer.id.get(), otherReviewer.id.get())
+        .inOrder();
+  }
+
   @Test
   public void suggestNoInactiveAccounts() throws Exception {
     String name = name("foo");
@@ -0,0 +1,123 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.acceptance.server.project;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.server.group.SystemGroupBackend.REGISTERED_USERS;
+import static com.google.gerrit.server.project.Util.category;
+import static com.google.gerrit.server.project.Util.value;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.acceptance.AbstractDaemonTest;
+import com.google.gerrit.acceptance.NoHttpd;
+import com.google.gerrit.acceptance.PushOneCommit;
+import com.google.gerrit.common.data.LabelType;
+import com.google.gerrit.common.data.Permission;
+import com.google.gerrit.common.data.SubmitRecord;
+import com.google.gerrit.extensions.api.changes.ReviewInput;
+import com.google.gerrit.reviewdb.client.AccountGroup;
+import com.google.gerrit.server.git.ProjectConfig;
+import com.google.gerrit.server.project.SubmitRuleEvaluator;
+import com.google.gerrit.server.project.Util;
+import com.google.gerrit.server.query.change.ChangeData;
+import com.google.inject.Inject;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+@NoHttpd
+public class DefaultSubmitRuleIT extends AbstractDaemonTest {
+  private static final String DEFAULT_RULE = "submit_rule(S) :- gerrit:default_submit(S).";
+  private static final String REFS = "refs/heads/*";
+
+  @Inject private SubmitRuleEvaluator.Factory evaluatorFactory;
+
+  private final LabelType label =
+      category("Custom", value(1, "Positive"), value(0, "No score"), value(-1, "Negative"));
+
+  private AccountGroup.UUID registered;
+
+  @Before
+  public void setUp() throws Exception {
+    registered = systemGroupBackend.getGroup(REGISTERED_USERS).getUUID();
+    ProjectConfig cfg = projectCache.checkedGet(project).getConfig();
+    Util.allow(cfg, Permission.forLabel(label.getName()), -1, 1, registered, REFS);
+    saveProjectConfig(project, cfg);
+  }
+
+  @Test
+  public void sameRecordsAsPrologForAllLabelFunctions() throws Exception {
+    for (String fn :
+        ImmutableList.of(
+            "MaxWithBlock", "AnyWithBlock", "MaxNoBlock", "NoBlock", "NoOp", "PatchSetLock")) {
+      setFunction(fn);
+      PushOneCommit.Result r = createChange();
+      assertSameAsProlog(r);
+
+      approve(r.getChangeId());
+      revision(r).review(new ReviewInput().label(label.getName(), 1));
+      assertSameAsProlog(r);
+
+      setApiUser(user);
+      revision(r).review(new ReviewInput().label(label.getName(), -1));
+      setApiUser(admin);
+      assertSameAsProlog(r);
+    }
+  }
+
+  @Test
+  public void sameRecordsAsPrologForVoteWithoutPermission() throws Exception {
+    setFunction("MaxWithBlock");
+    PushOneCommit.Result r = createChange();
+    setApiUser(user);
+    revision(r).review(new ReviewInput().label(label.getName(), 1));
+    setApiUser(admin);
+
+    ProjectConfig cfg = projectCache.checkedGet(project).getConfig();
+    Util.block(cfg, Permission.forLabel(label.getName()), -1, 1, registered, REFS);
+    saveProjectConfig(project, cfg);
+
+    List<SubmitRecord> records = assertSameAsProlog(r);
+    assertThat(records.get(0).labels)
+        .contains(label(label.getName(), SubmitRecord.Label.Status.NEED));
+  }
+
+  private static SubmitRecord.Label label(String name, SubmitRecord.Label.Status status) {
+    SubmitRecord.Label lbl = new SubmitRecord.Label();
+    lbl.label = name;
+    lbl.status = status;
+    return lbl;
+  }
+
+  private void setFunction(String fn) throws Exception {
+    label.setFunctionName(fn);
+    ProjectConfig cfg = projectCache.checkedGet(project).getConfig();
+    cfg.getLabelSections().put(label.getName(), label);
+    saveProjectConfig(project, cfg);
+  }
+
+  private List<SubmitRecord> assertSameAsProlog(PushOneCommit.Result r) throws Exception {
+    ChangeData cd = changeDataFactory.create(db, project, r.getChange().getId());
+    List<SubmitRecord> records = evaluator(cd).evaluate();
+    assertThat(records).hasSize(1);
+    assertThat(records.get(0).status).isNotEqualTo(SubmitRecord.Status.RULE_ERROR);
+    assertThat(records).isEqualTo(evaluator(cd).setRule(DEFAULT_RULE).evaluate());
+    return records;
+  }
+
+  private SubmitRuleEvaluator evaluator(ChangeData cd) {
+    return evaluatorFactory.create(identifiedUserFactory.create(admin.id), cd).setLogErrors(false);
+  }
+}
@@ -0,0 +1,82 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.benchmark;
+
+import com.google.gerrit.index.query.QueryResult;
+import com.google.gerrit.reviewdb.client.Project;
+import com.google.gerrit.server.query.change.ChangeData;
+import com.google.gerrit.server.query.change.ChangeQueryBuilder;
+import com.google.gerrit.server.query.change.ChangeQueryProcessor;
+import com.google.inject.Provider;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Runs change queries against the in-memory Lucene index, including visibility checks. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ChangeQueryBenchmark {
+  @Param({"100", "1000"})
+  public int changes;
+
+  @Param({"2"})
+  public int patchSets;
+
+  @Param({"status:open", "project:query-bench file:file2", "is:open owner:self -is:wip"})
+  public String query;
+
+  private SyntheticSite site;
+  private ChangeQueryBuilder queryBuilder;
+  private Provider<ChangeQueryProcessor> queryProcessorProvider;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    site = SyntheticSite.start();
+    Project.NameKey project = site.createProject("query-bench");
+    site.createChanges(project, changes, patchSets);
+    queryBuilder = site.getInstance(ChangeQueryBuilder.class);
+    queryProcessorProvider = site.getProvider(ChangeQueryProcessor.class);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    if (site != null) {
+      site.close();
+    }
+  }
+
+  @Benchmark
+  public List<ChangeData> query() throws Exception {
+    QueryResult<ChangeData> result =
+        queryProcessorProvider.get().setUserProvidedLimit(500).query(queryBuilder.parse(query));
+    return result.entities();
+  }
+}
@@ -0,0 +1,284 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.benchmark;
+
+import com.google.gerrit.common.TimeUtil;
+import com.google.gerrit.common.data.Permission;
+import com.google.gerrit.extensions.api.GerritApi;
+import com.google.gerrit.extensions.api.changes.NotifyHandling;
+import com.google.gerrit.extensions.api.changes.ReviewInput;
+import com.google.gerrit.lifecycle.LifecycleManager;
+import com.google.gerrit.reviewdb.client.Account;
+import com.google.gerrit.reviewdb.client.Change;
+import com.google.gerrit.reviewdb.client.PatchSet;
+import com.google.gerrit.reviewdb.client.Project;
+import com.google.gerrit.reviewdb.server.ReviewDb;
+import com.google.gerrit.server.CurrentUser;
+import com.google.gerrit.server.IdentifiedUser;
+import com.google.gerrit.server.Sequences;
+import com.google.gerrit.server.account.AccountManager;
+import com.google.gerrit.server.account.AuthRequest;
+import com.google.gerrit.server.change.ChangeInserter;
+import com.google.gerrit.server.change.PatchSetInserter;
+import com.google.gerrit.server.git.MetaDataUpdate;
+import com.google.gerrit.server.git.ProjectConfig;
+import com.google.gerrit.server.group.SystemGroupBackend;
+import com.google.gerrit.server.notedb.ChangeNotes;
+import com.google.gerrit.server.notedb.MutableNotesMigration;
+import com.google.gerrit.server.notedb.NotesMigrationState;
+import com.google.gerrit.server.project.ProjectCache;
+import com.google.gerrit.server.project.Util;
+import com.google.gerrit.server.schema.SchemaCreator;
+import com.google.gerrit.server.update.BatchUpdate;
+import com.google.gerrit.server.util.RequestContext;
+import com.google.gerrit.server.util.ThreadLocalRequestContext;
+import com.google.gerrit.testutil.InMemoryDatabase;
+import com.google.gerrit.testutil.InMemoryModule;
+import com.google.gerrit.testutil.InMemoryRepositoryManager;
+import com.google.gerrit.testutil.InMemoryRepositoryManager.Repo;
+import com.google.gwtorm.server.SchemaFactory;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Provider;
+import com.google.inject.util.Providers;
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.BatchRefUpdate;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.ReceiveCommand;
+
+/**
+ * In-memory Gerrit server populated with synthetic data for benchmarks.
+ *
+ * <p>Uses the same {@link InMemoryModule} as the server tests, with changes stored in NoteDb and
+ * indexed in an in-memory Lucene index, so that benchmarks exercise the production code paths
+ * without touching the disk. The first account created becomes an administrator.
+ */
+public class SyntheticSite implements AutoCloseable {
+  public static SyntheticSite start() throws Exception {
+    Config cfg = InMemoryModule.newDefaultConfig();
+    MutableNotesMigration notesMigration =
+        MutableNotesMigration.newDisabled().setFrom(NotesMigrationState.NOTE_DB);
+    Injector injector = Guice.createInjector(new InMemoryModule(cfg, notesMigration));
+    return new SyntheticSite(injector);
+  }
+
+  private final Injector injector;
+  private final LifecycleManager lifecycle;
+  private final InMemoryDatabase inMemoryDatabase;
+  private final ReviewDb db;
+  private final GerritApi gApi;
+  private final AccountManager accountManager;
+  private final IdentifiedUser.GenericFactory userFactory;
+  private final ThreadLocalRequestContext requestContext;
+  private final InMemoryRepositoryManager repoManager;
+  private final Account.Id admin;
+
+  private SyntheticSite(Injector injector) throws Exception {
+    this.injector = injector;
+    lifecycle = new LifecycleManager();
+    lifecycle.add(injector);
+    lifecycle.start();
+
+    inMemoryDatabase = getInstance(InMemoryDatabase.class);
+    try (ReviewDb underlyingDb = inMemoryDatabase.getDatabase().open()) {
+      getInstance(SchemaCreator.class).create(underlyingDb);
+    }
+    @SuppressWarnings("unchecked")
+    SchemaFactory<ReviewDb> schemaFactory = getInstance(SchemaFactory.class);
+    db = schemaFactory.open();
+
+    gApi = getInstance(GerritApi.class);
+    accountManager = getInstance(AccountManager.class);
+    userFactory = getInstance(IdentifiedUser.GenericFactory.class);
+    requestContext = getInstance(ThreadLocalRequestContext.class);
+    repoManager = getInstance(InMemoryRepositoryManager.class);
+
+    admin = createUser("admin");
+    setCurrentUser(admin);
+  }
+
+  public <T> T getInstance(Class<T> type) {
+    return injector.getInstance(type);
+  }
+
+  public <T> Provider<T> getProvider(Class<T> type) {
+    return injector.getProvider(type);
+  }
+
+  public ReviewDb getDb() {
+    return db;
+  }
+
+  public GerritApi getApi() {
+    return gApi;
+  }
+
+  public InMemoryRepositoryManager getRepoManager() {
+    return repoManager;
+  }
+
+  public Account.Id getAdmin() {
+    return admin;
+  }
+
+  public Account.Id createUser(String username) throws Exception {
+    return accountManager.authenticate(AuthRequest.forUser(username)).getAccountId();
+  }
+
+  /**
+   * Set the user of the calling thread.
+   *
+   * <p>The request context is thread-local, so this must be called from the thread running the
+   * benchmark, e.g. from a {@code Scope.Thread} setup method.
+   */
+  public void setCurrentUser(Account.Id accountId) {
+    CurrentUser user = userFactory.create(accountId);
+    requestContext.setContext(
+        new RequestContext() {
+          @Override
+          public CurrentUser getUser() {
+            return user;
+          }
+
+          @Override
+          public Provider<ReviewDb> getReviewDbProvider() {
+            return Providers.of(db);
+          }
+        });
+  }
+
+  public Project.NameKey createProject(String name) throws Exception {
+    gApi.projects().create(name).get();
+    return new Project.NameKey(name);
+  }
+
+  /**
+   * Create changes on {@code refs/heads/master} of a project.
+   *
+   * <p>Every patch set touches its own file, so that subsequent patch sets are not trivial
+   * rebases, and is voted on with Code-Review+1 by the current user. This gives each change's
+   * NoteDb meta ref a history of roughly two commits per patch set.
+   */
+  public List<Change.Id> createChanges(Project.NameKey project, int changes, int patchSets)
+      throws Exception {
+    List<Change.Id> ids = new ArrayList<>(changes);
+    try (Repo repo = repoManager.openRepository(project);
+        TestRepository<Repo> tr = new TestRepository<>(repo)) {
+      for (int i = 0; i < changes; i++) {
+        Change c = insertChange(tr, project, i);
+        review(project, c.getId(), 1);
+        for (int n = 2; n <= patchSets; n++) {
+          c = insertPatchSet(tr, c, n);
+          review(project, c.getId(), n);
+        }
+        ids.add(c.getId());
+      }
+    }
+    return ids;
+  }
+
+  /** Create {@code count} branches {@code prefix + i}, all pointing to the same commit. */
+  public void createBranches(Project.NameKey project, String prefix, int count) throws Exception {
+    try (Repo repo = repoManager.openRepository(project);
+        TestRepository<Repo> tr = new TestRepository<>(repo)) {
+      ObjectId id = tr.commit().message("branch").create();
+      BatchRefUpdate bru = repo.getRefDatabase().newBatchUpdate();
+      for (int i = 0; i < count; i++) {
+        bru.addCommand(new ReceiveCommand(ObjectId.zeroId(), id, prefix + i));
+      }
+      try (RevWalk rw = new RevWalk(repo)) {
+        bru.execute(rw, null);
+      }
+      for (ReceiveCommand cmd : bru.getCommands()) {
+        if (cmd.getResult() != ReceiveCommand.Result.OK) {
+          throw new IllegalStateException("cannot create " + cmd.getRefName() + ": " + cmd);
+        }
+      }
+    }
+  }
+
+  /** Make refs matching {@code refPattern} readable by project owners only. */
+  public void restrictRead(Project.NameKey project, String refPattern) throws Exception {
+    try (MetaDataUpdate md = getInstance(MetaDataUpdate.Server.class).create(project)) {
+      ProjectConfig cfg = ProjectConfig.read(md);
+      Util.allow(cfg, Permission.READ, SystemGroupBackend.PROJECT_OWNERS, refPattern, true);
+      cfg.commit(md);
+      getInstance(ProjectCache.class).evict(cfg.getProject());
+    }
+  }
+
+  private Change insertChange(TestRepository<Repo> tr, Project.NameKey project, int i)
+      throws Exception {
+    RevCommit commit =
+        tr.parseBody(tr.commit().message("change " + i).add("file1", "contents 1").create());
+    Change.Id id = new Change.Id(getInstance(Sequences.class).nextChangeId());
+    ChangeInserter ins =
+        getInstance(ChangeInserter.Factory.class)
+            .create(id, commit, "refs/heads/master")
+            .setValidate(false);
+    try (BatchUpdate bu = newBatchUpdate(project)) {
+      bu.insertChange(ins);
+      bu.execute();
+    }
+    return ins.getChange();
+  }
+
+  private Change insertPatchSet(TestRepository<Repo> tr, Change c, int n) throws Exception {
+    RevCommit commit =
+        tr.parseBody(tr.commit().message("message").add("file" + n, "contents " + n).create());
+    ChangeNotes notes = getInstance(ChangeNotes.Factory.class).createChecked(db, c);
+    PatchSetInserter inserter =
+        getInstance(PatchSetInserter.Factory.class)
+            .create(notes, new PatchSet.Id(c.getId(), n), commit)
+            .setNotify(NotifyHandling.NONE)
+            .setFireRevisionCreated(false)
+            .setValidate(false);
+    try (BatchUpdate bu = newBatchUpdate(c.getProject());
+        ObjectInserter oi = tr.getRepository().newObjectInserter();
+        ObjectReader reader = oi.newReader();
+        RevWalk rw = new RevWalk(reader)) {
+      bu.setRepository(tr.getRepository(), rw, oi);
+      bu.addOp(c.getId(), inserter);
+      bu.execute();
+    }
+    return inserter.getChange();
+  }
+
+  private void review(Project.NameKey project, Change.Id id, int patchSet) throws Exception {
+    ReviewInput in = ReviewInput.recommend();
+    in.message = "Looks good, patch set " + patchSet;
+    gApi.changes().id(project.get(), id.get()).revision(patchSet).review(in);
+  }
+
+  private BatchUpdate newBatchUpdate(Project.NameKey project) {
+    return getInstance(BatchUpdate.Factory.class)
+        .create(db, project, userFactory.create(admin), TimeUtil.nowTs());
+  }
+
+  @Override
+  public void close() {
+    lifecycle.stop();
+    requestContext.setContext(null);
+    db.close();
+    InMemoryDatabase.drop(inMemoryDatabase);
+  }
+}
@@ -0,0 +1,95 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.benchmark;
+
+import com.google.gerrit.reviewdb.client.Project;
+import com.google.gerrit.server.git.VisibleRefFilter;
+import com.google.gerrit.server.project.ProjectCache;
+import com.google.gerrit.server.project.ProjectState;
+import com.google.gerrit.testutil.InMemoryRepositoryManager.Repo;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefDatabase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Filters the advertised refs of a project for a user who is not allowed to read all of them.
+ *
+ * <p>Half of the branches are readable by project owners only, so that the filter cannot take the
+ * shortcut for users with project-wide read access and has to check every ref and change.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class VisibleRefFilterBenchmark {
+  @Param({"1000", "10000"})
+  public int refs;
+
+  @Param({"100"})
+  public int changes;
+
+  private SyntheticSite site;
+  private Repo repo;
+  private ProjectState projectState;
+  private VisibleRefFilter.Factory refFilterFactory;
+  private Map<String, Ref> allRefs;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    site = SyntheticSite.start();
+    Project.NameKey project = site.createProject("ref-filter");
+    site.createChanges(project, changes, 1);
+    site.createBranches(project, "refs/heads/public/", refs / 2);
+    site.createBranches(project, "refs/heads/secret/", refs - refs / 2);
+    site.restrictRead(project, "refs/heads/secret/*");
+
+    site.setCurrentUser(site.createUser("user"));
+    repo = site.getRepoManager().openRepository(project);
+    allRefs = repo.getRefDatabase().getRefs(RefDatabase.ALL);
+    projectState = site.getInstance(ProjectCache.class).checkedGet(project);
+    refFilterFactory = site.getInstance(VisibleRefFilter.Factory.class);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    if (repo != null) {
+      repo.close();
+    }
+    if (site != null) {
+      site.close();
+    }
+  }
+
+  @Benchmark
+  public Map<String, Ref> filter() {
+    return refFilterFactory.create(projectState, repo).filter(allRefs, false);
+  }
+}
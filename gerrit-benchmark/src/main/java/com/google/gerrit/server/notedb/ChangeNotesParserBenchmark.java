@@ -0,0 +1,87 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.notedb;
+
+import com.google.gerrit.benchmark.SyntheticSite;
+import com.google.gerrit.reviewdb.client.Change;
+import com.google.gerrit.reviewdb.client.Project;
+import com.google.gerrit.reviewdb.client.RefNames;
+import com.google.gerrit.testutil.InMemoryRepositoryManager.Repo;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.lib.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parses the NoteDb meta ref of a single change, bypassing the change notes cache.
+ *
+ * <p>Lives in the {@code notedb} package since {@link ChangeNotesParser} is package-private.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ChangeNotesParserBenchmark {
+  @Param({"1", "10", "50"})
+  public int patchSets;
+
+  private SyntheticSite site;
+  private Repo repo;
+  private Change.Id changeId;
+  private ObjectId metaId;
+  private ChangeNoteUtil noteUtil;
+  private NoteDbMetrics metrics;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    site = SyntheticSite.start();
+    Project.NameKey project = site.createProject("notedb-parse");
+    changeId = site.createChanges(project, 1, patchSets).get(0);
+    repo = site.getRepoManager().openRepository(project);
+    metaId = repo.exactRef(RefNames.changeMetaRef(changeId)).getObjectId();
+    noteUtil = site.getInstance(ChangeNoteUtil.class);
+    metrics = site.getInstance(NoteDbMetrics.class);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    if (repo != null) {
+      repo.close();
+    }
+    if (site != null) {
+      site.close();
+    }
+  }
+
+  @Benchmark
+  public ChangeNotesState parseAll() throws Exception {
+    try (ChangeNotesRevWalk walk = ChangeNotesCommit.newRevWalk(repo)) {
+      return new ChangeNotesParser(changeId, metaId, walk, noteUtil, metrics).parseAll();
+    }
+  }
+}
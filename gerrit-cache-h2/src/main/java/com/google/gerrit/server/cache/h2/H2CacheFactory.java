@@ -30,10 +30,10 @@ import com.google.gerrit.server.plugins.Plugin;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.Singleton;
-import com.google.inject.TypeLiteral;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -54,6 +54,7 @@ class H2CacheFactory implements PersistentCacheFactory, LifecycleListener {
   private final Config config;
   private final Path cacheDir;
   private final List<H2CacheImpl<?, ?>> caches;
+  private final Map<H2CacheImpl<?, ?>, Integer> warmLimits;
   private final DynamicMap<Cache<?, ?>> cacheMap;
   private final ExecutorService executor;
   private final ScheduledExecutorService cleanup;
@@ -72,6 +73,7 @@ class H2CacheFactory implements PersistentCacheFactory, LifecycleListener {
     h2CacheSize = cfg.getLong("cache", null, "h2CacheSize", -1);
     h2AutoServer = cfg.getBoolean("cache", null, "h2AutoServer", false);
     caches = new LinkedList<>();
+    warmLimits = new IdentityHashMap<>();
     this.cacheMap = cacheMap;
 
     if (cacheDir != null) {
@@ -116,7 +118,12 @@ class H2CacheFactory implements PersistentCacheFactory, LifecycleListener {
   public void start() {
     if (executor != null) {
       for (H2CacheImpl<?, ?> cache : caches) {
-        executor.execute(cache::start);
+        int warmLimit = warmLimits.getOrDefault(cache, 0);
+        executor.execute(
+            () -> {
+              cache.start();
+              cache.warm(warmLimit);
+            });
         @SuppressWarnings("unused")
         Future<?> possiblyIgnoredError =
             cleanup.schedule(() -> cache.prune(cleanup), 30, TimeUnit.SECONDS);
@@ -161,8 +168,7 @@ class H2CacheFactory implements PersistentCacheFactory, LifecycleListener {
       return defaultFactory.build(def);
     }
 
-    SqlStore<K, V> store =
-        newSqlStore(def.name(), def.keyType(), limit, def.expireAfterWrite(TimeUnit.SECONDS));
+    SqlStore<K, V> store = newSqlStore(def, limit);
     H2CacheImpl<K, V> cache =
         new H2CacheImpl<>(
             executor,
@@ -171,6 +177,7 @@ class H2CacheFactory implements PersistentCacheFactory, LifecycleListener {
             (Cache<K, ValueHolder<V>>) defaultFactory.create(def, true).build());
     synchronized (caches) {
       caches.add(cache);
+      warmLimits.put(cache, warmLimit(def));
     }
     return cache;
   }
@@ -184,24 +191,31 @@ class H2CacheFactory implements PersistentCacheFactory, LifecycleListener {
       return defaultFactory.build(def, loader);
     }
 
-    SqlStore<K, V> store =
-        newSqlStore(def.name(), def.keyType(), limit, def.expireAfterWrite(TimeUnit.SECONDS));
+    SqlStore<K, V> store = newSqlStore(def, limit);
     Cache<K, ValueHolder<V>> mem =
         (Cache<K, ValueHolder<V>>)
             defaultFactory
                 .create(def, true)
                 .build((CacheLoader<K, V>) new H2CacheImpl.Loader<>(executor, store, loader));
     H2CacheImpl<K, V> cache = new H2CacheImpl<>(executor, store, def.keyType(), mem);
-    caches.add(cache);
+    synchronized (caches) {
+      caches.add(cache);
+      warmLimits.put(cache, warmLimit(def));
+    }
     return cache;
   }
 
+  private int warmLimit(CacheBinding<?, ?> def) {
+    return config.getInt("cache", def.name(), "warmLimit", 0);
+  }
+
   @Override
   public void onStop(Plugin plugin) {
     synchronized (caches) {
       for (Map.Entry<String, Provider<Cache<?, ?>>> entry :
           cacheMap.byPlugin(plugin.getName()).entrySet()) {
         Cache<?, ?> cache = entry.getValue().get();
+        warmLimits.remove(cache);
         if (caches.remove(cache)) {
           ((H2CacheImpl<?, ?>) cache).stop();
         }
@@ -209,10 +223,9 @@ class H2CacheFactory implements PersistentCacheFactory, LifecycleListener {
     }
   }
 
-  private <V, K> SqlStore<K, V> newSqlStore(
-      String name, TypeLiteral<K> keyType, long maxSize, Long expireAfterWrite) {
+  private <V, K> SqlStore<K, V> newSqlStore(CacheBinding<K, V> def, long maxSize) {
     StringBuilder url = new StringBuilder();
-    url.append("jdbc:h2:").append(cacheDir.resolve(name).toUri());
+    url.append("jdbc:h2:").append(cacheDir.resolve(def.name()).toUri());
     if (h2CacheSize >= 0) {
       url.append(";CACHE_SIZE=");
       // H2 CACHE_SIZE is always given in KB
@@ -221,9 +234,13 @@ class H2CacheFactory implements PersistentCacheFactory, LifecycleListener {
     if (h2AutoServer) {
       url.append(";AUTO_SERVER=TRUE");
     }
+    Long expireAfterWrite = def.expireAfterWrite(TimeUnit.SECONDS);
     return new SqlStore<>(
         url.toString(),
-        keyType,
+        def.keyType(),
+        def.keySerializer(),
+        def.valueSerializer(),
+        def.version(),
         maxSize,
         expireAfterWrite == null ? 0 : expireAfterWrite.longValue());
   }
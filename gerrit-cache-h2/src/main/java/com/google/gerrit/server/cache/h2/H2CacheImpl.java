@@ -26,19 +26,16 @@ import com.google.common.hash.Funnel;
 import com.google.common.hash.Funnels;
 import com.google.common.hash.PrimitiveSink;
 import com.google.gerrit.common.TimeUtil;
+import com.google.gerrit.server.cache.CacheSerializer;
 import com.google.gerrit.server.cache.PersistentCache;
+import com.google.gerrit.server.cache.StringCacheSerializer;
 import com.google.inject.TypeLiteral;
-import java.io.IOException;
-import java.io.InvalidClassException;
-import java.io.ObjectOutputStream;
-import java.io.OutputStream;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
-import java.sql.Types;
 import java.util.Calendar;
 import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
@@ -50,7 +47,6 @@ import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
-import org.h2.jdbc.JdbcSQLException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -66,6 +62,11 @@ import org.slf4j.LoggerFactory;
  * <p>Cache stores and invalidations are performed on a background thread, hiding the latency
  * associated with serializing the key and value pairs and writing them to the database log.
  *
+ * <p>Keys and values are converted to bytes by the {@link CacheSerializer} instances of the cache
+ * binding, and each row is tagged with the binding's version. Rows written with any other version
+ * are treated as absent and are deleted when the store is opened, so changing the on-disk format
+ * only requires bumping the version of the cache.
+ *
  * <p>A BloomFilter is used around the database to reduce the number of SELECTs issued against the
  * database for new cache items that have not been seen before, a common operation for the
  * PatchListCache. The BloomFilter is sized when the cache starts to be 64,000 entries or double the
@@ -191,6 +192,13 @@ public class H2CacheImpl<K, V> extends AbstractLoadingCache<K, V> implements Per
     store.open();
   }
 
+  /** Load up to {@code limit} of the most recently accessed disk entries into memory. */
+  void warm(int limit) {
+    if (limit > 0) {
+      store.warm(mem, limit);
+    }
+  }
+
   void stop() {
     for (Map.Entry<K, ValueHolder<V>> e : mem.asMap().entrySet()) {
       ValueHolder<V> h = e.getValue();
@@ -255,17 +263,22 @@ public class H2CacheImpl<K, V> extends AbstractLoadingCache<K, V> implements Per
   }
 
   private static class KeyType<K> {
+    private final CacheSerializer<K> serializer;
+
+    KeyType(CacheSerializer<K> serializer) {
+      this.serializer = serializer;
+    }
+
     String columnType() {
       return "OTHER";
     }
 
-    @SuppressWarnings("unchecked")
     K get(ResultSet rs, int col) throws SQLException {
-      return (K) rs.getObject(col);
+      return serializer.deserialize(rs.getBytes(col));
     }
 
     void set(PreparedStatement ps, int col, K value) throws SQLException {
-      ps.setObject(col, value, Types.JAVA_OBJECT);
+      ps.setBytes(col, serializer.serialize(value));
     }
 
     Funnel<K> funnel() {
@@ -274,27 +287,21 @@ public class H2CacheImpl<K, V> extends AbstractLoadingCache<K, V> implements Per
 
         @Override
         public void funnel(K from, PrimitiveSink into) {
-          try (ObjectOutputStream ser = new ObjectOutputStream(new SinkOutputStream(into))) {
-            ser.writeObject(from);
-            ser.flush();
-          } catch (IOException err) {
-            throw new RuntimeException("Cannot hash as Serializable", err);
-          }
+          into.putBytes(serializer.serialize(from));
         }
       };
     }
 
     @SuppressWarnings("unchecked")
-    static <K> KeyType<K> create(TypeLiteral<K> type) {
+    static <K> KeyType<K> create(TypeLiteral<K> type, CacheSerializer<K> serializer) {
       if (type.getRawType() == String.class) {
         return (KeyType<K>) STRING;
       }
-      return (KeyType<K>) OTHER;
+      return new KeyType<>(serializer);
     }
 
-    static final KeyType<?> OTHER = new KeyType<>();
     static final KeyType<String> STRING =
-        new KeyType<String>() {
+        new KeyType<String>(StringCacheSerializer.INSTANCE) {
           @Override
           String columnType() {
             return "VARCHAR(4096)";
@@ -322,6 +329,8 @@ public class H2CacheImpl<K, V> extends AbstractLoadingCache<K, V> implements Per
   static class SqlStore<K, V> {
     private final String url;
     private final KeyType<K> keyType;
+    private final CacheSerializer<V> valueSerializer;
+    private final int version;
     private final long maxSize;
     private final long expireAfterWrite;
     private final BlockingQueue<SqlHandle> handles;
@@ -330,9 +339,18 @@ public class H2CacheImpl<K, V> extends AbstractLoadingCache<K, V> implements Per
     private volatile BloomFilter<K> bloomFilter;
     private int estimatedSize;
 
-    SqlStore(String jdbcUrl, TypeLiteral<K> keyType, long maxSize, long expireAfterWrite) {
+    SqlStore(
+        String jdbcUrl,
+        TypeLiteral<K> keyType,
+        CacheSerializer<K> keySerializer,
+        CacheSerializer<V> valueSerializer,
+        int version,
+        long maxSize,
+        long expireAfterWrite) {
       this.url = jdbcUrl;
-      this.keyType = KeyType.create(keyType);
+      this.keyType = KeyType.create(keyType, keySerializer);
+      this.valueSerializer = valueSerializer;
+      this.version = version;
       this.maxSize = maxSize;
       this.expireAfterWrite = expireAfterWrite;
 
@@ -372,6 +390,7 @@ public class H2CacheImpl<K, V> extends AbstractLoadingCache<K, V> implements Per
       SqlHandle c = null;
       try {
         c = acquire();
+        deleteOtherVersions(c);
         try (Statement s = c.conn.createStatement()) {
           if (estimatedSize <= 0) {
             try (ResultSet r = s.executeQuery("SELECT COUNT(*) FROM data")) {
@@ -384,17 +403,14 @@ public class H2CacheImpl<K, V> extends AbstractLoadingCache<K, V> implements Per
             while (r.next()) {
               b.put(keyType.get(r, 1));
             }
-          } catch (JdbcSQLException e) {
-            if (e.getCause() instanceof InvalidClassException) {
-              log.warn(
-                  "Entries cached for "
-                      + url
-                      + " have an incompatible class and can't be deserialized. "
-                      + "Cache is flushed.");
-              invalidateAll();
-            } else {
-              throw e;
-            }
+          } catch (IllegalStateException e) {
+            log.warn(
+                "Entries cached for "
+                    + url
+                    + " have an incompatible format and can't be deserialized. "
+                    + "Cache is flushed.",
+                e);
+            invalidateAll();
           }
           return b;
         }
@@ -412,9 +428,10 @@ public class H2CacheImpl<K, V> extends AbstractLoadingCache<K, V> implements Per
       try {
         c = acquire();
         if (c.get == null) {
-          c.get = c.conn.prepareStatement("SELECT v, created FROM data WHERE k=?");
+          c.get = c.conn.prepareStatement("SELECT v, created FROM data WHERE k=? AND version=?");
         }
         keyType.set(c.get, 1, key);
+        c.get.setInt(2, version);
         try (ResultSet r = c.get.executeQuery()) {
           if (!r.next()) {
             missCount.incrementAndGet();
@@ -428,8 +445,17 @@ public class H2CacheImpl<K, V> extends AbstractLoadingCache<K, V> implements Per
             return null;
           }
 
-          @SuppressWarnings("unchecked")
-          V val = (V) r.getObject(1);
+          V val;
+          try {
+            val = valueSerializer.deserialize(r.getBytes(1));
+          } catch (IllegalStateException e) {
+            if (!isOldClassNameError(e)) {
+              log.warn("Cannot deserialize cache " + url + " entry for " + key, e);
+            }
+            invalidate(c, key);
+            missCount.incrementAndGet();
+            return null;
+          }
           ValueHolder<V> h = new ValueHolder<>(val);
           h.clean = true;
           hitCount.incrementAndGet();
@@ -495,13 +521,15 @@ public class H2CacheImpl<K, V> extends AbstractLoadingCache<K, V> implements Per
         c = acquire();
         if (c.put == null) {
           c.put =
-              c.conn.prepareStatement("MERGE INTO data (k, v, created, accessed) VALUES(?,?,?,?)");
+              c.conn.prepareStatement(
+                  "MERGE INTO data (k, v, version, created, accessed) VALUES(?,?,?,?,?)");
         }
         try {
           keyType.set(c.put, 1, key);
-          c.put.setObject(2, holder.value, Types.JAVA_OBJECT);
-          c.put.setTimestamp(3, new Timestamp(holder.created));
-          c.put.setTimestamp(4, TimeUtil.nowTs());
+          c.put.setBytes(2, valueSerializer.serialize(holder.value));
+          c.put.setInt(3, version);
+          c.put.setTimestamp(4, new Timestamp(holder.created));
+          c.put.setTimestamp(5, TimeUtil.nowTs());
           c.put.executeUpdate();
           holder.clean = true;
         } finally {
@@ -510,6 +538,8 @@ public class H2CacheImpl<K, V> extends AbstractLoadingCache<K, V> implements Per
       } catch (SQLException e) {
         log.warn("Cannot put into cache " + url, e);
         c = close(c);
+      } catch (IllegalStateException e) {
+        log.warn("Cannot serialize value for cache " + url, e);
       } finally {
         release(c);
       }
@@ -540,6 +570,16 @@ public class H2CacheImpl<K, V> extends AbstractLoadingCache<K, V> implements Per
       }
     }
 
+    private void deleteOtherVersions(SqlHandle c) throws SQLException {
+      try (PreparedStatement ps = c.conn.prepareStatement("DELETE FROM data WHERE version!=?")) {
+        ps.setInt(1, version);
+        int cnt = ps.executeUpdate();
+        if (cnt > 0) {
+          log.info(String.format("Pruned %d entries not of version %d from %s", cnt, version, url));
+        }
+      }
+    }
+
     void invalidateAll() {
       SqlHandle c = null;
       try {
@@ -560,6 +600,7 @@ public class H2CacheImpl<K, V> extends AbstractLoadingCache<K, V> implements Per
       SqlHandle c = null;
       try {
         c = acquire();
+        deleteOtherVersions(c);
         try (Statement s = c.conn.createStatement()) {
           long used = 0;
           try (ResultSet r = s.executeQuery("SELECT SUM(space) FROM data")) {
@@ -592,6 +633,42 @@ public class H2CacheImpl<K, V> extends AbstractLoadingCache<K, V> implements Per
       }
     }
 
+    void warm(Cache<K, ValueHolder<V>> mem, int limit) {
+      SqlHandle c = null;
+      try {
+        c = acquire();
+        try (PreparedStatement ps =
+            c.conn.prepareStatement(
+                "SELECT k, v, created FROM data WHERE version=? ORDER BY accessed DESC LIMIT ?")) {
+          ps.setInt(1, version);
+          ps.setInt(2, limit);
+          int cnt = 0;
+          try (ResultSet r = ps.executeQuery()) {
+            while (r.next()) {
+              Timestamp created = r.getTimestamp(3);
+              if (expired(created)) {
+                continue;
+              }
+              ValueHolder<V> h = new ValueHolder<>(valueSerializer.deserialize(r.getBytes(2)));
+              h.created = created.getTime();
+              h.clean = true;
+              if (mem.asMap().putIfAbsent(keyType.get(r, 1), h) == null) {
+                cnt++;
+              }
+            }
+          }
+          log.info(String.format("Loaded %d entries from %s into memory", cnt, url));
+        }
+      } catch (SQLException e) {
+        log.warn("Cannot warm cache " + url, e);
+        c = close(c);
+      } catch (IllegalStateException e) {
+        log.warn("Cannot deserialize entries to warm cache " + url, e);
+      } finally {
+        release(c);
+      }
+    }
+
     DiskStats diskStats() {
       long size = 0;
       long space = 0;
@@ -662,6 +739,7 @@ public class H2CacheImpl<K, V> extends AbstractLoadingCache<K, V> implements Per
         stmt.addBatch(
             "ALTER TABLE data ADD COLUMN IF NOT EXISTS "
                 + "space BIGINT AS OCTET_LENGTH(k) + OCTET_LENGTH(v)");
+        stmt.addBatch("ALTER TABLE data ADD COLUMN IF NOT EXISTS version INT DEFAULT 0 NOT NULL");
         stmt.executeBatch();
       }
     }
@@ -694,22 +772,4 @@ public class H2CacheImpl<K, V> extends AbstractLoadingCache<K, V> implements Per
       return null;
     }
   }
-
-  private static class SinkOutputStream extends OutputStream {
-    private final PrimitiveSink sink;
-
-    SinkOutputStream(PrimitiveSink sink) {
-      this.sink = sink;
-    }
-
-    @Override
-    public void write(int b) {
-      sink.putByte((byte) b);
-    }
-
-    @Override
-    public void write(byte[] b, int p, int n) {
-      sink.putBytes(b, p, n);
-    }
-  }
 }
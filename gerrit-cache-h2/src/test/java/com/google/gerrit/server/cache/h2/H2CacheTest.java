@@ -21,6 +21,8 @@ import static org.junit.Assert.assertTrue;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.gerrit.server.cache.BooleanCacheSerializer;
+import com.google.gerrit.server.cache.StringCacheSerializer;
 import com.google.gerrit.server.cache.h2.H2CacheImpl.SqlStore;
 import com.google.gerrit.server.cache.h2.H2CacheImpl.ValueHolder;
 import com.google.inject.TypeLiteral;
@@ -34,15 +36,27 @@ public class H2CacheTest {
 
   private Cache<String, ValueHolder<Boolean>> mem;
   private H2CacheImpl<String, Boolean> impl;
+  private String url;
 
   @Before
   public void setUp() {
+    url = "jdbc:h2:mem:Test_" + (++dbCnt) + ";DB_CLOSE_DELAY=-1";
     mem = CacheBuilder.newBuilder().build();
+    impl = newCache(1);
+  }
 
+  private H2CacheImpl<String, Boolean> newCache(int version) {
     TypeLiteral<String> keyType = new TypeLiteral<String>() {};
     SqlStore<String, Boolean> store =
-        new SqlStore<>("jdbc:h2:mem:Test_" + (++dbCnt), keyType, 1 << 20, 0);
-    impl = new H2CacheImpl<>(MoreExecutors.directExecutor(), store, keyType, mem);
+        new SqlStore<>(
+            url,
+            keyType,
+            StringCacheSerializer.INSTANCE,
+            BooleanCacheSerializer.INSTANCE,
+            version,
+            1 << 20,
+            0);
+    return new H2CacheImpl<>(MoreExecutors.directExecutor(), store, keyType, mem);
   }
 
   @Test
@@ -72,4 +86,19 @@ public class H2CacheTest {
             }));
     assertFalse("did not invoke Callable", called.get());
   }
+
+  @Test
+  public void entriesOfOtherVersionAreIgnored() {
+    impl.put("foo", true);
+    mem.invalidate("foo");
+    assertTrue("exists on disk", impl.getIfPresent("foo"));
+
+    mem.invalidate("foo");
+    H2CacheImpl<String, Boolean> other = newCache(2);
+    other.start();
+    assertNull("ignored other version", other.getIfPresent("foo"));
+
+    mem.invalidate("foo");
+    assertNull("pruned from disk", impl.getIfPresent("foo"));
+  }
 }
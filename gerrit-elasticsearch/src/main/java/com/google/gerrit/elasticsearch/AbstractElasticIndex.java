@@ -34,6 +34,7 @@ import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gwtorm.protobuf.ProtobufCodec;
+import io.searchbox.action.BulkableAction;
 import io.searchbox.client.JestResult;
 import io.searchbox.client.http.JestHttpClient;
 import io.searchbox.core.Bulk;
@@ -45,8 +46,12 @@ import java.io.IOException;
 import java.util.List;
 import org.eclipse.jgit.lib.Config;
 import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 abstract class AbstractElasticIndex<K, V> implements Index<K, V> {
+  private static final Logger log = LoggerFactory.getLogger(AbstractElasticIndex.class);
+
   protected static <T> List<T> decodeProtos(
       JsonObject doc, String fieldName, ProtobufCodec<T> codec) {
     JsonArray field = doc.getAsJsonArray(fieldName);
@@ -60,6 +65,7 @@ abstract class AbstractElasticIndex<K, V> implements Index<K, V> {
 
   private final Schema<V> schema;
   private final SitePaths sitePaths;
+  private final ElasticBulkWriter bulkWriter;
 
   protected final String indexName;
   protected final JestHttpClient client;
@@ -71,6 +77,7 @@ abstract class AbstractElasticIndex<K, V> implements Index<K, V> {
       SitePaths sitePaths,
       Schema<V> schema,
       JestClientBuilder clientBuilder,
+      ElasticBulkWriter.Factory bulkWriterFactory,
       String indexName) {
     this.sitePaths = sitePaths;
     this.schema = schema;
@@ -83,6 +90,7 @@ abstract class AbstractElasticIndex<K, V> implements Index<K, V> {
             indexName,
             schema.getVersion());
     this.client = clientBuilder.build();
+    this.bulkWriter = bulkWriterFactory.create(client, this.indexName);
   }
 
   @Override
@@ -92,23 +100,56 @@ abstract class AbstractElasticIndex<K, V> implements Index<K, V> {
 
   @Override
   public void close() {
+    try {
+      bulkWriter.stop();
+    } catch (IOException e) {
+      log.warn("Error finishing bulk writes to index {}", indexName, e);
+    }
     client.shutdownClient();
   }
 
+  @Override
+  public void startBulkWrite() throws IOException {
+    bulkWriter.start();
+  }
+
+  @Override
+  public void finishBulkWrite() throws IOException {
+    bulkWriter.stop();
+  }
+
   @Override
   public void markReady(boolean ready) throws IOException {
+    if (ready) {
+      bulkWriter.stop();
+    }
     IndexUtils.setReady(sitePaths, indexName, schema.getVersion(), ready);
   }
 
   @Override
   public void delete(K c) throws IOException {
-    Bulk bulk = addActions(new Bulk.Builder(), c).refresh(true).build();
+    write("delete " + c, deleteActions(c));
+  }
+
+  /**
+   * Write the actions updating a single document.
+   *
+   * <p>During a bulk write, actions are queued and sent together with those of other documents;
+   * otherwise they are sent immediately, refreshing the index.
+   *
+   * @param desc description of the update, used in error messages.
+   * @param actions actions to write together.
+   * @throws IOException an error occurred sending the request.
+   */
+  protected void write(String desc, List<BulkableAction<?>> actions) throws IOException {
+    if (bulkWriter.add(actions)) {
+      return;
+    }
+    Bulk bulk = new Bulk.Builder().defaultIndex(indexName).addAction(actions).refresh(true).build();
     JestResult result = client.execute(bulk);
     if (!result.isSucceeded()) {
       throw new IOException(
-          String.format(
-              "Failed to delete change %s in index %s: %s",
-              c, indexName, result.getErrorMessage()));
+          String.format("Failed to %s in index %s: %s", desc, indexName, result.getErrorMessage()));
     }
   }
 
@@ -133,7 +174,7 @@ abstract class AbstractElasticIndex<K, V> implements Index<K, V> {
     }
   }
 
-  protected abstract Bulk.Builder addActions(Bulk.Builder builder, K c);
+  protected abstract List<BulkableAction<?>> deleteActions(K c);
 
   protected abstract String getMappings();
 
@@ -0,0 +1,252 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.elasticsearch;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gerrit.metrics.Timer1;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import io.searchbox.action.BulkableAction;
+import io.searchbox.client.JestResult;
+import io.searchbox.client.http.JestHttpClient;
+import io.searchbox.core.Bulk;
+import io.searchbox.core.BulkResult;
+import io.searchbox.core.BulkResult.BulkResultItem;
+import io.searchbox.indices.Refresh;
+import io.searchbox.indices.settings.UpdateSettings;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Batches writes to an index while a large number of documents is written, e.g. during reindexing.
+ *
+ * <p>While active, actions are queued and sent in bulk requests of at most {@code
+ * elasticsearch.bulkMaxActions} actions, or at the latest after {@code
+ * elasticsearch.bulkFlushInterval}. These requests don't refresh the index, and periodic refreshes
+ * are disabled; both are restored when the writer is stopped.
+ *
+ * <p>Bulk requests are sent one at a time, in the order their actions were queued.
+ */
+class ElasticBulkWriter {
+  private static final Logger log = LoggerFactory.getLogger(ElasticBulkWriter.class);
+
+  /** Default value of the {@code index.refresh_interval} setting in Elasticsearch. */
+  private static final String DEFAULT_REFRESH_INTERVAL = "1s";
+
+  @Singleton
+  static class Factory {
+    private final ElasticConfiguration cfg;
+    private final ElasticMetrics metrics;
+
+    @Inject
+    Factory(ElasticConfiguration cfg, ElasticMetrics metrics) {
+      this.cfg = cfg;
+      this.metrics = metrics;
+    }
+
+    ElasticBulkWriter create(JestHttpClient client, String indexName) {
+      return new ElasticBulkWriter(
+          client, indexName, cfg.bulkMaxActions, cfg.bulkFlushInterval, metrics);
+    }
+  }
+
+  private final JestHttpClient client;
+  private final String indexName;
+  private final int maxActions;
+  private final long flushIntervalMs;
+  private final ElasticMetrics metrics;
+  private final AtomicInteger failed = new AtomicInteger();
+
+  /** Held while draining the queue and sending the drained actions, to keep requests in order. */
+  private final Object sendLock = new Object();
+
+  private List<BulkableAction<?>> queue = new ArrayList<>();
+  private ScheduledExecutorService flusher;
+
+  private ElasticBulkWriter(
+      JestHttpClient client,
+      String indexName,
+      int maxActions,
+      long flushIntervalMs,
+      ElasticMetrics metrics) {
+    this.client = client;
+    this.indexName = indexName;
+    this.maxActions = Math.max(maxActions, 1);
+    this.flushIntervalMs = Math.max(flushIntervalMs, 1);
+    this.metrics = metrics;
+  }
+
+  String getIndexName() {
+    return indexName;
+  }
+
+  synchronized int getQueueDepth() {
+    return queue.size();
+  }
+
+  /**
+   * Start batching writes, if not already started.
+   *
+   * @throws IOException the refresh interval of the index could not be updated.
+   */
+  void start() throws IOException {
+    synchronized (this) {
+      if (flusher != null) {
+        return;
+      }
+      setRefreshInterval("-1");
+      failed.set(0);
+      flusher =
+          Executors.newSingleThreadScheduledExecutor(
+              new ThreadFactoryBuilder()
+                  .setNameFormat("ElasticBulkWriter-" + indexName)
+                  .setDaemon(true)
+                  .build());
+      flusher.scheduleWithFixedDelay(
+          this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+    metrics.register(this);
+    log.info("Started bulk writes to index {}", indexName);
+  }
+
+  /**
+   * Queue actions for writing in a bulk request.
+   *
+   * <p>If the queue is full, the caller sends the bulk request and waits for its result, which
+   * bounds the amount of memory used by queued documents.
+   *
+   * @param actions actions to write together.
+   * @return true if the actions were queued; false if the writer is not active and the caller must
+   *     write them itself.
+   * @throws IOException a bulk request sent by this call failed.
+   */
+  boolean add(List<BulkableAction<?>> actions) throws IOException {
+    synchronized (this) {
+      if (flusher == null) {
+        return false;
+      }
+      queue.addAll(actions);
+      if (queue.size() < maxActions) {
+        return true;
+      }
+    }
+    flush();
+    return true;
+  }
+
+  /**
+   * Stop batching writes, sending all queued actions and making them visible to searches.
+   *
+   * @throws IOException queued actions could not be written, or some documents written while the
+   *     writer was active were rejected.
+   */
+  void stop() throws IOException {
+    ScheduledExecutorService f;
+    synchronized (this) {
+      f = flusher;
+      flusher = null;
+    }
+    if (f == null) {
+      return;
+    }
+    metrics.unregister(this);
+    f.shutdown();
+    try {
+      f.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while stopping bulk writes to index " + indexName, e);
+    }
+    flush();
+    setRefreshInterval(DEFAULT_REFRESH_INTERVAL);
+    check(client.execute(new Refresh.Builder().addIndex(indexName).build()), "refresh");
+    log.info("Stopped bulk writes to index {}", indexName);
+
+    int n = failed.getAndSet(0);
+    if (n > 0) {
+      throw new IOException(
+          String.format("Failed to write %d documents to index %s in bulk", n, indexName));
+    }
+  }
+
+  private void flush() throws IOException {
+    synchronized (sendLock) {
+      List<BulkableAction<?>> toSend;
+      synchronized (this) {
+        toSend = queue;
+        queue = new ArrayList<>(maxActions);
+      }
+      send(toSend);
+    }
+  }
+
+  private void flushQuietly() {
+    try {
+      flush();
+    } catch (IOException | RuntimeException e) {
+      log.warn("Failed to send bulk request to index {}", indexName, e);
+    }
+  }
+
+  private void send(List<BulkableAction<?>> actions) throws IOException {
+    if (actions.isEmpty()) {
+      return;
+    }
+    BulkResult result;
+    try (Timer1.Context timer = metrics.bulkLatency.start(indexName)) {
+      result = client.execute(new Bulk.Builder().addAction(actions).build());
+    } catch (IOException e) {
+      failed.addAndGet(actions.size());
+      metrics.bulkFailureCount.incrementBy(indexName, actions.size());
+      throw e;
+    }
+    List<BulkResultItem> failedItems = result.getFailedItems();
+    if (!failedItems.isEmpty()) {
+      failed.addAndGet(failedItems.size());
+      metrics.bulkFailureCount.incrementBy(indexName, failedItems.size());
+      for (BulkResultItem item : failedItems) {
+        log.warn(
+            "Failed to write {} {} to index {}: {}", item.type, item.id, indexName, item.error);
+      }
+    } else if (!result.isSucceeded()) {
+      failed.addAndGet(actions.size());
+      metrics.bulkFailureCount.incrementBy(indexName, actions.size());
+      throw new IOException(
+          String.format(
+              "Failed to send bulk request to index %s: %s", indexName, result.getErrorMessage()));
+    }
+  }
+
+  private void setRefreshInterval(String interval) throws IOException {
+    String settings = String.format("{\"index\":{\"refresh_interval\":\"%s\"}}", interval);
+    check(
+        client.execute(new UpdateSettings.Builder(settings).addIndex(indexName).build()),
+        "update refresh interval of");
+  }
+
+  private void check(JestResult result, String op) throws IOException {
+    if (!result.isSucceeded()) {
+      throw new IOException(
+          String.format("Failed to %s index %s: %s", op, indexName, result.getErrorMessage()));
+    }
+  }
+}
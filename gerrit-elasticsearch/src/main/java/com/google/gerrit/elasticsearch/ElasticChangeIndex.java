@@ -58,9 +58,8 @@ import com.google.gwtorm.server.ResultSet;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.assistedinject.Assisted;
+import io.searchbox.action.BulkableAction;
 import io.searchbox.client.JestResult;
-import io.searchbox.core.Bulk;
-import io.searchbox.core.Bulk.Builder;
 import io.searchbox.core.Search;
 import io.searchbox.core.search.sort.Sort;
 import io.searchbox.core.search.sort.Sort.Sorting;
@@ -107,8 +106,9 @@ class ElasticChangeIndex extends AbstractElasticIndex<Change.Id, ChangeData>
       ChangeData.Factory changeDataFactory,
       SitePaths sitePaths,
       JestClientBuilder clientBuilder,
+      ElasticBulkWriter.Factory bulkWriterFactory,
       @Assisted Schema<ChangeData> schema) {
-    super(cfg, sitePaths, schema, clientBuilder, CHANGES_PREFIX);
+    super(cfg, sitePaths, schema, clientBuilder, bulkWriterFactory, CHANGES_PREFIX);
     this.db = db;
     this.changeDataFactory = changeDataFactory;
     mapping = new ChangeMapping(schema);
@@ -131,21 +131,9 @@ class ElasticChangeIndex extends AbstractElasticIndex<Change.Id, ChangeData>
       throw new IOException(e);
     }
 
-    Bulk bulk =
-        new Bulk.Builder()
-            .defaultIndex(indexName)
-            .defaultType("changes")
-            .addAction(insert(insertIndex, cd))
-            .addAction(delete(deleteIndex, cd.getId()))
-            .refresh(true)
-            .build();
-    JestResult result = client.execute(bulk);
-    if (!result.isSucceeded()) {
-      throw new IOException(
-          String.format(
-              "Failed to replace change %s in index %s: %s",
-              cd.getId(), indexName, result.getErrorMessage()));
-    }
+    write(
+        "replace change " + cd.getId(),
+        ImmutableList.of(insert(insertIndex, cd), delete(deleteIndex, cd.getId())));
   }
 
   @Override
@@ -163,8 +151,8 @@ class ElasticChangeIndex extends AbstractElasticIndex<Change.Id, ChangeData>
   }
 
   @Override
-  protected Builder addActions(Builder builder, Id c) {
-    return builder.addAction(delete(OPEN_CHANGES, c)).addAction(delete(OPEN_CHANGES, c));
+  protected List<BulkableAction<?>> deleteActions(Id c) {
+    return ImmutableList.of(delete(OPEN_CHANGES, c), delete(OPEN_CHANGES, c));
   }
 
   @Override
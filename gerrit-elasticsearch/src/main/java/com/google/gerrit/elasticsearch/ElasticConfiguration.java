@@ -42,6 +42,8 @@ class ElasticConfiguration {
   final TimeUnit maxConnectionIdleUnit = TimeUnit.MILLISECONDS;
   final int maxTotalConnection;
   final int readTimeout;
+  final int bulkMaxActions;
+  final long bulkFlushInterval;
 
   @Inject
   ElasticConfiguration(@GerritServerConfig Config cfg) {
@@ -56,6 +58,9 @@ class ElasticConfiguration {
     this.maxTotalConnection = cfg.getInt("elasticsearch", null, "maxTotalConnection", 1);
     this.readTimeout =
         (int) cfg.getTimeUnit("elasticsearch", null, "readTimeout", 3000, TimeUnit.MICROSECONDS);
+    this.bulkMaxActions = cfg.getInt("elasticsearch", null, "bulkMaxActions", 500);
+    this.bulkFlushInterval =
+        cfg.getTimeUnit("elasticsearch", null, "bulkFlushInterval", 1000, TimeUnit.MILLISECONDS);
 
     Set<String> subsections = cfg.getSubsections("elasticsearch");
     if (subsections.isEmpty()) {
@@ -39,9 +39,8 @@ import com.google.gwtorm.server.ResultSet;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.assistedinject.Assisted;
+import io.searchbox.action.BulkableAction;
 import io.searchbox.client.JestResult;
-import io.searchbox.core.Bulk;
-import io.searchbox.core.Bulk.Builder;
 import io.searchbox.core.Search;
 import io.searchbox.core.search.sort.Sort;
 import io.searchbox.core.search.sort.Sort.Sorting;
@@ -81,28 +80,16 @@ public class ElasticGroupIndex extends AbstractElasticIndex<AccountGroup.UUID, I
       SitePaths sitePaths,
       Provider<GroupCache> groupCache,
       JestClientBuilder clientBuilder,
+      ElasticBulkWriter.Factory bulkWriterFactory,
       @Assisted Schema<InternalGroup> schema) {
-    super(cfg, sitePaths, schema, clientBuilder, GROUPS_PREFIX);
+    super(cfg, sitePaths, schema, clientBuilder, bulkWriterFactory, GROUPS_PREFIX);
     this.groupCache = groupCache;
     this.mapping = new GroupMapping(schema);
   }
 
   @Override
   public void replace(InternalGroup group) throws IOException {
-    Bulk bulk =
-        new Bulk.Builder()
-            .defaultIndex(indexName)
-            .defaultType(GROUPS)
-            .addAction(insert(GROUPS, group))
-            .refresh(true)
-            .build();
-    JestResult result = client.execute(bulk);
-    if (!result.isSucceeded()) {
-      throw new IOException(
-          String.format(
-              "Failed to replace group %s in index %s: %s",
-              group.getGroupUUID().get(), indexName, result.getErrorMessage()));
-    }
+    write("replace group " + group.getGroupUUID().get(), ImmutableList.of(insert(GROUPS, group)));
   }
 
   @Override
@@ -112,8 +99,8 @@ public class ElasticGroupIndex extends AbstractElasticIndex<AccountGroup.UUID, I
   }
 
   @Override
-  protected Builder addActions(Builder builder, AccountGroup.UUID c) {
-    return builder.addAction(delete(GROUPS, c));
+  protected List<BulkableAction<?>> deleteActions(AccountGroup.UUID c) {
+    return ImmutableList.of(delete(GROUPS, c));
   }
 
   @Override
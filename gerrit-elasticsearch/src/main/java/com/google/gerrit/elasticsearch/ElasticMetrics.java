@@ -0,0 +1,84 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.elasticsearch;
+
+import com.google.gerrit.metrics.CallbackMetric1;
+import com.google.gerrit.metrics.Counter1;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Description.Units;
+import com.google.gerrit.metrics.Field;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer1;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Singleton
+class ElasticMetrics {
+  /** Latency of bulk requests sent by an {@link ElasticBulkWriter}, by index. */
+  final Timer1<String> bulkLatency;
+
+  /** Count of documents rejected by Elasticsearch in bulk requests, by index. */
+  final Counter1<String> bulkFailureCount;
+
+  private final Set<ElasticBulkWriter> writers = ConcurrentHashMap.newKeySet();
+
+  @Inject
+  ElasticMetrics(MetricMaker metrics) {
+    Field<String> index = Field.ofString("index", "Elasticsearch index name");
+
+    bulkLatency =
+        metrics.newTimer(
+            "elasticsearch/bulk_latency",
+            new Description("Latency of bulk write requests by index")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS),
+            index);
+
+    bulkFailureCount =
+        metrics.newCounter(
+            "elasticsearch/bulk_failure_count",
+            new Description("Documents that failed to be written in bulk requests by index")
+                .setCumulative()
+                .setUnit("documents"),
+            index);
+
+    CallbackMetric1<String, Integer> queueDepth =
+        metrics.newCallbackMetric(
+            "elasticsearch/bulk_queue_depth",
+            Integer.class,
+            new Description("Documents waiting to be sent in a bulk write request by index")
+                .setGauge()
+                .setUnit("documents"),
+            index);
+    metrics.newTrigger(
+        queueDepth,
+        () -> {
+          for (ElasticBulkWriter w : writers) {
+            queueDepth.set(w.getIndexName(), w.getQueueDepth());
+          }
+          queueDepth.prune();
+        });
+  }
+
+  void register(ElasticBulkWriter writer) {
+    writers.add(writer);
+  }
+
+  void unregister(ElasticBulkWriter writer) {
+    writers.remove(writer);
+  }
+}
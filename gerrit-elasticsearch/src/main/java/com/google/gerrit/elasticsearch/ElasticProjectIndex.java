@@ -39,9 +39,8 @@ import com.google.gwtorm.server.ResultSet;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.assistedinject.Assisted;
+import io.searchbox.action.BulkableAction;
 import io.searchbox.client.JestResult;
-import io.searchbox.core.Bulk;
-import io.searchbox.core.Bulk.Builder;
 import io.searchbox.core.Search;
 import io.searchbox.core.search.sort.Sort;
 import io.searchbox.core.search.sort.Sort.Sorting;
@@ -80,28 +79,18 @@ public class ElasticProjectIndex extends AbstractElasticIndex<Project.NameKey, P
       SitePaths sitePaths,
       Provider<ProjectCache> projectCache,
       JestClientBuilder clientBuilder,
+      ElasticBulkWriter.Factory bulkWriterFactory,
       @Assisted Schema<ProjectData> schema) {
-    super(cfg, sitePaths, schema, clientBuilder, PROJECTS_PREFIX);
+    super(cfg, sitePaths, schema, clientBuilder, bulkWriterFactory, PROJECTS_PREFIX);
     this.projectCache = projectCache;
     this.mapping = new ProjectMapping(schema);
   }
 
   @Override
   public void replace(ProjectData projectState) throws IOException {
-    Bulk bulk =
-        new Bulk.Builder()
-            .defaultIndex(indexName)
-            .defaultType(PROJECTS)
-            .addAction(insert(PROJECTS, projectState))
-            .refresh(true)
-            .build();
-    JestResult result = client.execute(bulk);
-    if (!result.isSucceeded()) {
-      throw new IOException(
-          String.format(
-              "Failed to replace project %s in index %s: %s",
-              projectState.getProject().getName(), indexName, result.getErrorMessage()));
-    }
+    write(
+        "replace project " + projectState.getProject().getName(),
+        ImmutableList.of(insert(PROJECTS, projectState)));
   }
 
   @Override
@@ -111,8 +100,8 @@ public class ElasticProjectIndex extends AbstractElasticIndex<Project.NameKey, P
   }
 
   @Override
-  protected Builder addActions(Builder builder, Project.NameKey nameKey) {
-    return builder.addAction(delete(PROJECTS, nameKey));
+  protected List<BulkableAction<?>> deleteActions(Project.NameKey nameKey) {
+    return ImmutableList.of(delete(PROJECTS, nameKey));
   }
 
   @Override
@@ -0,0 +1,25 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.extensions.restapi;
+
+/**
+ * Optional interface for {@link RestReadView}.
+ *
+ * <p>Views that implement this interface have their JSON result serialized directly to the client
+ * instead of being buffered in memory first. This keeps memory usage of large responses bounded,
+ * but the response has no {@code Content-Length} and an error raised while rendering the result
+ * can no longer be reported to the client with an error status.
+ */
+public interface StreamingView {}
@@ -0,0 +1,87 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.httpd;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableSet;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.reviewdb.client.Account;
+import com.google.gerrit.reviewdb.client.AccountGroup;
+import com.google.gerrit.reviewdb.client.Project;
+import com.google.gerrit.server.CurrentUser;
+import com.google.gerrit.server.project.ProjectState;
+import java.security.MessageDigest;
+import java.util.Map;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+
+/**
+ * Identifies a filtered ref advertisement.
+ *
+ * <p>While NoteDb is the primary storage of changes, the advertisement only depends on the user,
+ * the groups the user is in, the access rights of the project and its parents and the refs in the
+ * repository. The last two are folded into a single digest of the {@code refs/meta/config}
+ * revisions of the project hierarchy and all ref names and values.
+ */
+@AutoValue
+abstract class AdvertisedRefsCacheKey {
+  static AdvertisedRefsCacheKey create(
+      ProjectState state, CurrentUser user, Map<String, Ref> refs) {
+    MessageDigest md = Constants.newMessageDigest();
+    byte[] id = new byte[Constants.OBJECT_ID_LENGTH];
+    for (ProjectState p : state.tree()) {
+      update(md, id, p.getConfig().getRevision());
+    }
+    for (Ref ref : refs.values()) {
+      md.update(ref.getName().getBytes(UTF_8));
+      md.update((byte) 0);
+      if (ref.isSymbolic()) {
+        md.update(ref.getTarget().getName().getBytes(UTF_8));
+        md.update((byte) 0);
+      } else {
+        update(md, id, ref.getObjectId());
+      }
+    }
+
+    return new AutoValue_AdvertisedRefsCacheKey(
+        state.getNameKey(),
+        user.isIdentifiedUser() ? user.getAccountId() : null,
+        ImmutableSet.copyOf(user.getEffectiveGroups().getKnownGroups()),
+        ObjectId.fromRaw(md.digest()));
+  }
+
+  private static void update(MessageDigest md, byte[] buf, @Nullable ObjectId id) {
+    if (id != null) {
+      id.copyRawTo(buf, 0);
+    } else {
+      ObjectId.zeroId().copyRawTo(buf, 0);
+    }
+    md.update(buf);
+  }
+
+  public abstract Project.NameKey project();
+
+  /** Account of the user, {@code null} for anonymous users. */
+  @Nullable
+  public abstract Account.Id account();
+
+  public abstract ImmutableSet<AccountGroup.UUID> groups();
+
+  /** Digest of the access rights of the project and of all its refs. */
+  public abstract ObjectId state();
+}
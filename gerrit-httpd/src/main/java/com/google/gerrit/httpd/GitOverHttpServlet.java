@@ -15,6 +15,7 @@
 package com.google.gerrit.httpd;
 
 import com.google.common.cache.Cache;
+import com.google.common.cache.Weigher;
 import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.collect.Lists;
 import com.google.gerrit.common.data.Capable;
@@ -31,6 +32,8 @@ import com.google.gerrit.server.git.UploadPackInitializer;
 import com.google.gerrit.server.git.VisibleRefFilter;
 import com.google.gerrit.server.git.receive.AsyncReceiveCommits;
 import com.google.gerrit.server.git.validators.UploadValidators;
+import com.google.gerrit.server.notedb.NoteDbChangeState.PrimaryStorage;
+import com.google.gerrit.server.notedb.NotesMigration;
 import com.google.gerrit.server.permissions.PermissionBackend;
 import com.google.gerrit.server.permissions.PermissionBackendException;
 import com.google.gerrit.server.permissions.ProjectPermission;
@@ -44,7 +47,9 @@ import com.google.inject.TypeLiteral;
 import com.google.inject.name.Named;
 import java.io.IOException;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import javax.servlet.Filter;
@@ -61,7 +66,11 @@ import org.eclipse.jgit.http.server.GitSmartHttpTools;
 import org.eclipse.jgit.http.server.ServletUtils;
 import org.eclipse.jgit.http.server.resolver.AsIsFileService;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefDatabase;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.AbstractAdvertiseRefsHook;
 import org.eclipse.jgit.transport.PostUploadHook;
 import org.eclipse.jgit.transport.PostUploadHookChain;
 import org.eclipse.jgit.transport.PreUploadHook;
@@ -83,6 +92,7 @@ public class GitOverHttpServlet extends GitServlet {
   private static final String ATT_STATE = ProjectState.class.getName();
   private static final String ATT_ARC = AsyncReceiveCommits.class.getName();
   private static final String ID_CACHE = "adv_bases";
+  private static final String REFS_CACHE = "adv_refs";
 
   public static final String URL_REGEX;
 
@@ -119,6 +129,13 @@ public class GitOverHttpServlet extends GitServlet {
               cache(ID_CACHE, AdvertisedObjectsCacheKey.class, new TypeLiteral<Set<ObjectId>>() {})
                   .maximumWeight(4096)
                   .expireAfterWrite(10, TimeUnit.MINUTES);
+              cache(
+                      REFS_CACHE,
+                      AdvertisedRefsCacheKey.class,
+                      new TypeLiteral<Map<String, Ref>>() {})
+                  .maximumWeight(1 << 18)
+                  .expireAfterWrite(10, TimeUnit.MINUTES)
+                  .weigher(AdvertisedRefsWeigher.class);
             }
           });
     }
@@ -238,21 +255,27 @@ public class GitOverHttpServlet extends GitServlet {
   }
 
   static class UploadFilter implements Filter {
+    private final Cache<AdvertisedRefsCacheKey, Map<String, Ref>> cache;
     private final VisibleRefFilter.Factory refFilterFactory;
     private final UploadValidators.Factory uploadValidatorsFactory;
     private final PermissionBackend permissionBackend;
     private final Provider<CurrentUser> userProvider;
+    private final NotesMigration notesMigration;
 
     @Inject
     UploadFilter(
+        @Named(REFS_CACHE) Cache<AdvertisedRefsCacheKey, Map<String, Ref>> cache,
         VisibleRefFilter.Factory refFilterFactory,
         UploadValidators.Factory uploadValidatorsFactory,
         PermissionBackend permissionBackend,
-        Provider<CurrentUser> userProvider) {
+        Provider<CurrentUser> userProvider,
+        NotesMigration notesMigration) {
+      this.cache = cache;
       this.refFilterFactory = refFilterFactory;
       this.uploadValidatorsFactory = uploadValidatorsFactory;
       this.permissionBackend = permissionBackend;
       this.userProvider = userProvider;
+      this.notesMigration = notesMigration;
     }
 
     @Override
@@ -284,7 +307,15 @@ public class GitOverHttpServlet extends GitServlet {
           uploadValidatorsFactory.create(state.getProject(), repo, request.getRemoteHost());
       up.setPreUploadHook(
           PreUploadHookChain.newChain(Lists.newArrayList(up.getPreUploadHook(), uploadValidators)));
-      up.setAdvertiseRefsHook(refFilterFactory.create(state, repo));
+      VisibleRefFilter refFilter = refFilterFactory.create(state, repo);
+      if (notesMigration.readChanges()
+          && notesMigration.changePrimaryStorage() == PrimaryStorage.NOTE_DB) {
+        up.setAdvertiseRefsHook(new CachedRefFilter(cache, refFilter, state, userProvider.get()));
+      } else {
+        // Private state and reviewers of changes stored in ReviewDb affect visibility without
+        // moving a ref, so the refs cannot tell whether a cached advertisement is still valid.
+        up.setAdvertiseRefsHook(refFilter);
+      }
 
       next.doFilter(request, response);
     }
@@ -296,6 +327,70 @@ public class GitOverHttpServlet extends GitServlet {
     public void destroy() {}
   }
 
+  /**
+   * Reuses the advertisement computed for an earlier request of the same user on the same refs.
+   *
+   * <p>A stateless fetch filters the refs on the {@code info/refs} request and again on every
+   * {@code git-upload-pack} request that follows it, and automated clients poll the same projects
+   * over and over.
+   *
+   * <p>Only used while NoteDb is the primary storage of changes, so that every change update that
+   * can affect visibility also moves a ref.
+   */
+  static class CachedRefFilter extends AbstractAdvertiseRefsHook {
+    private final Cache<AdvertisedRefsCacheKey, Map<String, Ref>> cache;
+    private final VisibleRefFilter refFilter;
+    private final ProjectState state;
+    private final CurrentUser user;
+
+    CachedRefFilter(
+        Cache<AdvertisedRefsCacheKey, Map<String, Ref>> cache,
+        VisibleRefFilter refFilter,
+        ProjectState state,
+        CurrentUser user) {
+      this.cache = cache;
+      this.refFilter = refFilter;
+      this.state = state;
+      this.user = user;
+    }
+
+    @Override
+    protected Map<String, Ref> getAdvertisedRefs(Repository repo, RevWalk revWalk)
+        throws ServiceMayNotContinueException {
+      Map<String, Ref> refs;
+      try {
+        refs = repo.getRefDatabase().getRefs(RefDatabase.ALL);
+      } catch (IOException e) {
+        ServiceMayNotContinueException ex = new ServiceMayNotContinueException();
+        ex.initCause(e);
+        throw ex;
+      }
+
+      AdvertisedRefsCacheKey key = AdvertisedRefsCacheKey.create(state, user, refs);
+      Map<String, Ref> visible = cache.getIfPresent(key);
+      if (visible == null) {
+        visible = refFilter.filter(refs, false);
+        if (refFilter.hasErrors()) {
+          // Refs hidden because of an error must not stay hidden on the next request.
+          return visible;
+        }
+        if (visible != refs) {
+          // Users who can read everything get the refs unfiltered, there is nothing to save.
+          visible = Collections.unmodifiableMap(new HashMap<>(visible));
+          cache.put(key, visible);
+        }
+      }
+      return visible;
+    }
+  }
+
+  static class AdvertisedRefsWeigher implements Weigher<AdvertisedRefsCacheKey, Map<String, Ref>> {
+    @Override
+    public int weigh(AdvertisedRefsCacheKey key, Map<String, Ref> refs) {
+      return 1 + refs.size();
+    }
+  }
+
   static class ReceiveFactory implements ReceivePackFactory<HttpServletRequest> {
     private final AsyncReceiveCommits.Factory factory;
     private final Provider<CurrentUser> userProvider;
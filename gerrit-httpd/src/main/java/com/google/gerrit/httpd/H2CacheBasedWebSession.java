@@ -23,6 +23,7 @@ import com.google.gerrit.httpd.WebSessionManager.Val;
 import com.google.gerrit.server.AnonymousUser;
 import com.google.gerrit.server.IdentifiedUser.RequestFactory;
 import com.google.gerrit.server.cache.CacheModule;
+import com.google.gerrit.server.cache.StringCacheSerializer;
 import com.google.gerrit.server.config.AuthConfig;
 import com.google.inject.Inject;
 import com.google.inject.Module;
@@ -40,6 +41,9 @@ public class H2CacheBasedWebSession extends CacheBasedWebSession {
       @Override
       protected void configure() {
         persist(WebSessionManager.CACHE_NAME, String.class, Val.class)
+            .version(1)
+            .keySerializer(StringCacheSerializer.INSTANCE)
+            .valueSerializer(Val.Serializer.INSTANCE)
             .maximumWeight(1024) // reasonable default for many sites
             .expireAfterWrite(
                 CacheBasedWebSession.MAX_AGE_MINUTES,
@@ -31,14 +31,17 @@ import static java.util.concurrent.TimeUnit.SECONDS;
 import com.google.common.cache.Cache;
 import com.google.gerrit.reviewdb.client.Account;
 import com.google.gerrit.server.account.externalids.ExternalId;
+import com.google.gerrit.server.cache.CompactCacheSerializer;
 import com.google.gerrit.server.config.ConfigUtil;
 import com.google.gerrit.server.config.GerritServerConfig;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.security.SecureRandom;
 import java.util.concurrent.TimeUnit;
@@ -213,6 +216,8 @@ public class WebSessionManager {
       this.auth = auth;
     }
 
+    private Val() {}
+
     public long getExpiresAt() {
       return expiresAt;
     }
@@ -242,6 +247,14 @@ public class WebSessionManager {
     }
 
     private void writeObject(ObjectOutputStream out) throws IOException {
+      writeTo(out);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException {
+      readFrom(in);
+    }
+
+    private void writeTo(OutputStream out) throws IOException {
       writeVarInt32(out, 1);
       writeVarInt32(out, accountId.get());
 
@@ -272,7 +285,7 @@ public class WebSessionManager {
       writeVarInt32(out, 0);
     }
 
-    private void readObject(ObjectInputStream in) throws IOException {
+    private void readFrom(InputStream in) throws IOException {
       PARSE:
       for (; ; ) {
         final int tag = readVarInt32(in);
@@ -308,5 +321,21 @@ public class WebSessionManager {
         expiresAt = refreshCookieAt + TimeUnit.HOURS.toMillis(2);
       }
     }
+
+    static class Serializer extends CompactCacheSerializer<Val> {
+      static final Serializer INSTANCE = new Serializer();
+
+      @Override
+      protected void write(OutputStream out, Val val) throws IOException {
+        val.writeTo(out);
+      }
+
+      @Override
+      protected Val read(InputStream in) throws IOException {
+        Val val = new Val();
+        val.readFrom(in);
+        return val;
+      }
+    }
   }
 }
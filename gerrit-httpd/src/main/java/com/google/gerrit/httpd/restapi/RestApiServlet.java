@@ -91,6 +91,7 @@ import com.google.gerrit.extensions.restapi.RestModifyView;
 import com.google.gerrit.extensions.restapi.RestReadView;
 import com.google.gerrit.extensions.restapi.RestResource;
 import com.google.gerrit.extensions.restapi.RestView;
+import com.google.gerrit.extensions.restapi.StreamingView;
 import com.google.gerrit.extensions.restapi.TopLevelResource;
 import com.google.gerrit.extensions.restapi.UnprocessableEntityException;
 import com.google.gerrit.httpd.WebSession;
@@ -431,6 +432,8 @@ public class RestApiServlet extends HttpServlet {
         result = Response.unwrap(result);
         if (result instanceof BinaryResult) {
           responseBytes = replyBinaryResult(req, res, (BinaryResult) result);
+        } else if (viewData.view instanceof StreamingView) {
+          responseBytes = replyJsonStreaming(req, res, qp.config(), result);
         } else {
           responseBytes = replyJson(req, res, qp.config(), result);
         }
@@ -862,9 +865,39 @@ public class RestApiServlet extends HttpServlet {
       Object result)
       throws IOException {
     TemporaryBuffer.Heap buf = heap(HEAP_EST_SIZE, Integer.MAX_VALUE);
-    buf.write(JSON_MAGIC);
-    Writer w = new BufferedWriter(new OutputStreamWriter(buf, UTF_8));
+    writeJson(buf, newGson(config, req), result);
+    return replyBinaryResult(
+        req, res, asBinaryResult(buf).setContentType(JSON_TYPE).setCharacterEncoding(UTF_8));
+  }
+
+  /**
+   * Renders the JSON result while it is being sent to the client.
+   *
+   * <p>Unlike {@link #replyJson(HttpServletRequest, HttpServletResponse, ListMultimap, Object)} the
+   * result is never held in memory as a whole, so the response has no {@code Content-Length} and
+   * is compressed on the fly if the client accepts gzip.
+   */
+  private static long replyJsonStreaming(
+      HttpServletRequest req,
+      HttpServletResponse res,
+      ListMultimap<String, String> config,
+      Object result)
+      throws IOException {
     Gson gson = newGson(config, req);
+    return replyBinaryResult(
+        req,
+        res,
+        new BinaryResult() {
+          @Override
+          public void writeTo(OutputStream os) throws IOException {
+            writeJson(os, gson, result);
+          }
+        }.setContentType(JSON_TYPE).setCharacterEncoding(UTF_8));
+  }
+
+  private static void writeJson(OutputStream os, Gson gson, Object result) throws IOException {
+    os.write(JSON_MAGIC);
+    Writer w = new BufferedWriter(new OutputStreamWriter(os, UTF_8));
     if (result instanceof JsonElement) {
       gson.toJson((JsonElement) result, w);
     } else {
@@ -872,8 +905,6 @@ public class RestApiServlet extends HttpServlet {
     }
     w.write('\n');
     w.flush();
-    return replyBinaryResult(
-        req, res, asBinaryResult(buf).setContentType(JSON_TYPE).setCharacterEncoding(UTF_8));
   }
 
   private static Gson newGson(
@@ -1030,9 +1061,9 @@ public class RestApiServlet extends HttpServlet {
       throws IOException {
     BinaryResult gz;
     long len = src.getContentLength();
-    if (len < 256) {
+    if (0 <= len && len < 256) {
       return src; // Do not compress very small payloads.
-    } else if (len <= (10 << 20)) {
+    } else if (0 <= len && len <= (10 << 20)) {
       gz = compress(src);
       if (len <= gz.getContentLength()) {
         return src;
@@ -123,6 +123,27 @@ public interface Index<K, V> {
    */
   Predicate<V> keyPredicate(K key);
 
+  /**
+   * Prepare for writing a large number of documents, e.g. when reindexing all documents.
+   *
+   * <p>Until {@link #finishBulkWrite()} is called or the index is next marked ready with {@link
+   * #markReady(boolean)}, implementations may batch writes and defer making them visible to
+   * searchers in exchange for higher throughput.
+   *
+   * @throws IOException if the index could not be prepared for bulk writes.
+   */
+  default void startBulkWrite() throws IOException {}
+
+  /**
+   * Finish writing documents after {@link #startBulkWrite()}, whether or not writing succeeded.
+   *
+   * <p>Pending writes are flushed and made visible to searchers. Does nothing if bulk writes were
+   * not started.
+   *
+   * @throws IOException if pending writes could not be flushed, or some documents were rejected.
+   */
+  default void finishBulkWrite() throws IOException {}
+
   /**
    * Mark whether this index is up-to-date and ready to serve reads.
    *
@@ -21,6 +21,7 @@ import com.google.gerrit.index.query.IndexPredicate;
 import com.google.gerrit.index.query.Paginated;
 import com.google.gerrit.index.query.Predicate;
 import com.google.gerrit.index.query.QueryParseException;
+import com.google.gerrit.index.query.SearchAfter;
 import com.google.gwtorm.server.OrmException;
 import com.google.gwtorm.server.ResultSet;
 import java.util.Collection;
@@ -88,6 +89,14 @@ public class IndexedQuery<I, T> extends Predicate<T> implements DataSource<T>, P
   @Override
   public ResultSet<T> restart(int start) throws OrmException {
     opts = opts.withStart(start);
+    if (source instanceof SearchAfter.Source) {
+      // Let the backend continue after the last result already read, rather
+      // than collecting and skipping all results before start again.
+      SearchAfter searchAfter = ((SearchAfter.Source) source).getSearchAfter();
+      if (searchAfter != null && searchAfter.position() <= start) {
+        opts = opts.withSearchAfter(searchAfter);
+      }
+    }
     try {
       source = index.getSource(pred, opts);
     } catch (QueryParseException e) {
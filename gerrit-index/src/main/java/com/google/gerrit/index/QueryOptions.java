@@ -19,14 +19,31 @@ import static com.google.common.base.Preconditions.checkArgument;
 import com.google.auto.value.AutoValue;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.primitives.Ints;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.index.query.SearchAfter;
 import java.util.Set;
 
 @AutoValue
 public abstract class QueryOptions {
   public static QueryOptions create(IndexConfig config, int start, int limit, Set<String> fields) {
+    return create(config, start, limit, fields, null);
+  }
+
+  private static QueryOptions create(
+      IndexConfig config,
+      int start,
+      int limit,
+      Set<String> fields,
+      @Nullable SearchAfter searchAfter) {
     checkArgument(start >= 0, "start must be nonnegative: %s", start);
     checkArgument(limit > 0, "limit must be positive: %s", limit);
-    return new AutoValue_QueryOptions(config, start, limit, ImmutableSet.copyOf(fields));
+    checkArgument(
+        searchAfter == null || searchAfter.position() <= start,
+        "search after %s is beyond start %s",
+        searchAfter,
+        start);
+    return new AutoValue_QueryOptions(
+        config, start, limit, ImmutableSet.copyOf(fields), searchAfter);
   }
 
   public QueryOptions convertForBackend() {
@@ -46,11 +63,25 @@ public abstract class QueryOptions {
 
   public abstract ImmutableSet<String> fields();
 
+  /**
+   * Cursor the backend may resume reading at instead of skipping the first {@link #start()}
+   * results. Backends that do not support cursors ignore it; its position is never beyond {@link
+   * #start()}, so the remaining results to skip are {@code start() - searchAfter().position()}.
+   */
+  @Nullable
+  public abstract SearchAfter searchAfter();
+
   public QueryOptions withLimit(int newLimit) {
-    return create(config(), start(), newLimit, fields());
+    return create(config(), start(), newLimit, fields(), searchAfter());
   }
 
   public QueryOptions withStart(int newStart) {
-    return create(config(), newStart, limit(), fields());
+    SearchAfter s = searchAfter();
+    return create(
+        config(), newStart, limit(), fields(), s != null && s.position() <= newStart ? s : null);
+  }
+
+  public QueryOptions withSearchAfter(@Nullable SearchAfter searchAfter) {
+    return create(config(), start(), limit(), fields(), searchAfter);
   }
 }
@@ -0,0 +1,48 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.index.query;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.auto.value.AutoValue;
+import com.google.gerrit.common.Nullable;
+
+/**
+ * Backend specific cursor to continue reading the results of a query after a known position.
+ *
+ * <p>Restarting a query with a larger start normally makes the backend collect and skip all results
+ * before the start again. A source that returns a cursor after its last result allows the next
+ * read to resume there instead.
+ */
+@AutoValue
+public abstract class SearchAfter {
+  /** {@link DataSource} that can tell where its last read ended. */
+  public interface Source {
+    /** @return cursor after the last result read from this source, or null if not known. */
+    @Nullable
+    SearchAfter getSearchAfter();
+  }
+
+  public static SearchAfter create(int position, Object cursor) {
+    checkArgument(position >= 0, "position must be nonnegative: %s", position);
+    return new AutoValue_SearchAfter(position, cursor);
+  }
+
+  /** @return number of results of the query that precede the cursor. */
+  public abstract int position();
+
+  /** @return backend specific cursor, only meaningful to the backend that created it. */
+  public abstract Object cursor();
+}
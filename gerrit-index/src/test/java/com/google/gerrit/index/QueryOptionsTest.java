@@ -0,0 +1,48 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.index;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.gerrit.index.query.SearchAfter;
+import org.junit.Test;
+
+public class QueryOptionsTest {
+  private static final SearchAfter CURSOR = SearchAfter.create(10, "cursor");
+
+  @Test
+  public void searchAfterIsKeptUpToItsPosition() {
+    QueryOptions opts = newOptions(10).withSearchAfter(CURSOR);
+    assertThat(opts.withStart(10).searchAfter()).isEqualTo(CURSOR);
+    assertThat(opts.withStart(25).searchAfter()).isEqualTo(CURSOR);
+    assertThat(opts.withLimit(5).searchAfter()).isEqualTo(CURSOR);
+  }
+
+  @Test
+  public void searchAfterIsDroppedBeforeItsPosition() {
+    QueryOptions opts = newOptions(10).withSearchAfter(CURSOR);
+    assertThat(opts.withStart(9).searchAfter()).isNull();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void searchAfterBeyondStartIsRejected() {
+    newOptions(5).withSearchAfter(CURSOR);
+  }
+
+  private static QueryOptions newOptions(int start) {
+    return QueryOptions.create(IndexConfig.createDefault(), start, 10, ImmutableSet.of("_id"));
+  }
+}
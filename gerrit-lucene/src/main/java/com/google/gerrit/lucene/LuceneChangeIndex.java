@@ -36,10 +36,14 @@ import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.gerrit.common.Nullable;
 import com.google.gerrit.index.QueryOptions;
 import com.google.gerrit.index.Schema;
 import com.google.gerrit.index.query.Predicate;
 import com.google.gerrit.index.query.QueryParseException;
+import com.google.gerrit.index.query.SearchAfter;
+import com.google.gerrit.metrics.Timer1;
 import com.google.gerrit.reviewdb.client.Account;
 import com.google.gerrit.reviewdb.client.Change;
 import com.google.gerrit.reviewdb.client.PatchSet;
@@ -66,19 +70,24 @@ import com.google.inject.assistedinject.Assisted;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
@@ -148,6 +157,7 @@ public class LuceneChangeIndex implements ChangeIndex {
   private final QueryBuilder<ChangeData> queryBuilder;
   private final ChangeSubIndex openIndex;
   private final ChangeSubIndex closedIndex;
+  private final LuceneMetrics metrics;
 
   @Inject
   LuceneChangeIndex(
@@ -156,9 +166,11 @@ public class LuceneChangeIndex implements ChangeIndex {
       @IndexExecutor(INTERACTIVE) ListeningExecutorService executor,
       Provider<ReviewDb> db,
       ChangeData.Factory changeDataFactory,
+      LuceneMetrics metrics,
       @Assisted Schema<ChangeData> schema)
       throws IOException {
     this.executor = executor;
+    this.metrics = metrics;
     this.db = db;
     this.changeDataFactory = changeDataFactory;
     this.schema = schema;
@@ -270,12 +282,13 @@ public class LuceneChangeIndex implements ChangeIndex {
     return closedIndex;
   }
 
-  private class QuerySource implements ChangeDataSource {
+  private class QuerySource implements ChangeDataSource, SearchAfter.Source {
     private final List<ChangeSubIndex> indexes;
     private final Predicate<ChangeData> predicate;
     private final Query query;
     private final QueryOptions opts;
     private final Sort sort;
+    private volatile SearchAfter searchAfter;
 
     private QuerySource(
         List<ChangeSubIndex> indexes, Predicate<ChangeData> predicate, QueryOptions opts, Sort sort)
@@ -302,6 +315,11 @@ public class LuceneChangeIndex implements ChangeIndex {
       return predicate.toString();
     }
 
+    @Override
+    public SearchAfter getSearchAfter() {
+      return searchAfter;
+    }
+
     @Override
     public ResultSet<ChangeData> read() throws OrmException {
       if (Thread.interrupted()) {
@@ -329,23 +347,44 @@ public class LuceneChangeIndex implements ChangeIndex {
     private List<Document> doRead(Set<String> fields) throws IOException {
       IndexSearcher[] searchers = new IndexSearcher[indexes.size()];
       try {
-        int realLimit = opts.start() + opts.limit();
-        if (Integer.MAX_VALUE - opts.limit() < opts.start()) {
+        // Resume after the last document of a previous read if possible. The
+        // sort is unique per change, so the same cursor applies to all
+        // sub-indexes.
+        int position = 0;
+        FieldDoc after = null;
+        if (opts.searchAfter() != null && opts.searchAfter().cursor() instanceof FieldDoc) {
+          position = opts.searchAfter().position();
+          after = (FieldDoc) opts.searchAfter().cursor();
+        }
+        int start = opts.start() - position;
+        int realLimit = start + opts.limit();
+        if (Integer.MAX_VALUE - opts.limit() < start) {
           realLimit = Integer.MAX_VALUE;
         }
-        TopFieldDocs[] hits = new TopFieldDocs[indexes.size()];
         for (int i = 0; i < indexes.size(); i++) {
           searchers[i] = indexes.get(i).acquire();
-          hits[i] = searchers[i].search(query, realLimit, sort);
         }
-        TopDocs docs = TopDocs.merge(sort, realLimit, hits);
-
-        List<Document> result = new ArrayList<>(docs.scoreDocs.length);
-        for (int i = opts.start(); i < docs.scoreDocs.length; i++) {
-          ScoreDoc sd = docs.scoreDocs[i];
-          result.add(searchers[sd.shardIndex].doc(sd.doc, fields));
+        TopDocs docs = TopDocs.merge(sort, realLimit, search(searchers, after, realLimit));
+
+        // Load stored fields in index order, which reads each segment's
+        // stored fields sequentially, then return them in sort order.
+        ScoreDoc[] sds = docs.scoreDocs;
+        Integer[] order = new Integer[Math.max(sds.length - start, 0)];
+        for (int i = 0; i < order.length; i++) {
+          order[i] = start + i;
         }
-        return result;
+        Arrays.sort(
+            order,
+            Comparator.comparingInt((Integer i) -> sds[i].shardIndex)
+                .thenComparingInt(i -> sds[i].doc));
+        Document[] result = new Document[order.length];
+        for (int i : order) {
+          result[i - start] = searchers[sds[i].shardIndex].doc(sds[i].doc, fields);
+        }
+        if (sds.length > 0) {
+          searchAfter = SearchAfter.create(position + sds.length, sds[sds.length - 1]);
+        }
+        return Arrays.asList(result);
       } finally {
         for (int i = 0; i < indexes.size(); i++) {
           if (searchers[i] != null) {
@@ -358,6 +397,58 @@ public class LuceneChangeIndex implements ChangeIndex {
         }
       }
     }
+
+    /**
+     * Search all sub-indexes concurrently. The calling thread searches the first sub-index and any
+     * other whose search did not start on the executor yet, so it never waits on queued work.
+     */
+    private TopFieldDocs[] search(IndexSearcher[] searchers, @Nullable FieldDoc after, int limit)
+        throws IOException {
+      List<FutureTask<TopFieldDocs>> tasks = new ArrayList<>(searchers.length);
+      for (int i = 0; i < searchers.length; i++) {
+        IndexSearcher searcher = searchers[i];
+        String name = indexes.get(i) == openIndex ? "open" : "closed";
+        FutureTask<TopFieldDocs> task =
+            new FutureTask<>(
+                () -> {
+                  try (Timer1.Context ctx = metrics.changeSearchLatency.start(name)) {
+                    return after != null
+                        ? searcher.searchAfter(after, query, limit, sort)
+                        : searcher.search(query, limit, sort);
+                  }
+                });
+        tasks.add(task);
+        if (i > 0) {
+          try {
+            executor.execute(task);
+          } catch (RejectedExecutionException e) {
+            // Run below by the calling thread.
+          }
+        }
+      }
+
+      TopFieldDocs[] hits = new TopFieldDocs[searchers.length];
+      Throwable err = null;
+      for (int i = 0; i < tasks.size(); i++) {
+        FutureTask<TopFieldDocs> task = tasks.get(i);
+        task.run();
+        try {
+          hits[i] = Uninterruptibles.getUninterruptibly(task);
+        } catch (ExecutionException e) {
+          // Keep waiting for the other searches; their searchers are released
+          // by the caller.
+          if (err == null) {
+            err = e.getCause();
+          }
+        }
+      }
+      if (err != null) {
+        Throwables.throwIfInstanceOf(err, IOException.class);
+        Throwables.throwIfUnchecked(err);
+        throw new IOException(err);
+      }
+      return hits;
+    }
   }
 
   private class ChangeDataResults implements ResultSet<ChangeData> {
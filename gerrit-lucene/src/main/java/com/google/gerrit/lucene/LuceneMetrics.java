@@ -0,0 +1,40 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.lucene;
+
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Description.Units;
+import com.google.gerrit.metrics.Field;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer1;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+@Singleton
+class LuceneMetrics {
+  /** Latency of searching a single sub-index of the change index, by sub-index. */
+  final Timer1<String> changeSearchLatency;
+
+  @Inject
+  LuceneMetrics(MetricMaker metrics) {
+    changeSearchLatency =
+        metrics.newTimer(
+            "lucene/change_search_latency",
+            new Description("Latency of searching the open or closed changes sub-index")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS),
+            Field.ofString("sub_index", "Change sub-index, open or closed"));
+  }
+}
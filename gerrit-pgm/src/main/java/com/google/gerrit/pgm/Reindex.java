@@ -198,11 +198,17 @@ public class Reindex extends SiteProgram {
     checkNotNull(index, "no active search index configured for %s", def.getName());
     index.markReady(false);
     index.deleteAll();
+    index.startBulkWrite();
 
     SiteIndexer<K, V, I> siteIndexer = def.getSiteIndexer();
     siteIndexer.setProgressOut(System.err);
     siteIndexer.setVerboseOut(verbose ? System.out : NullOutputStream.INSTANCE);
-    SiteIndexer.Result result = siteIndexer.indexAll(index);
+    SiteIndexer.Result result;
+    try {
+      result = siteIndexer.indexAll(index);
+    } finally {
+      index.finishBulkWrite();
+    }
     int n = result.doneCount() + result.failedCount();
     double t = result.elapsed(TimeUnit.MILLISECONDS) / 1000d;
     System.out.format(
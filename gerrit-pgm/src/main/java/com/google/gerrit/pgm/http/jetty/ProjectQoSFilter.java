@@ -19,9 +19,14 @@ import static com.google.inject.Scopes.SINGLETON;
 import static java.util.concurrent.TimeUnit.MINUTES;
 import static javax.servlet.http.HttpServletResponse.SC_SERVICE_UNAVAILABLE;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.common.ProjectUtil;
+import com.google.gerrit.reviewdb.client.Project;
 import com.google.gerrit.server.CurrentUser;
 import com.google.gerrit.server.account.AccountLimits;
 import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.gerrit.server.git.GitOperationScheduler;
 import com.google.gerrit.server.git.QueueProvider;
 import com.google.gerrit.server.git.WorkQueue.CancelableRunnable;
 import com.google.gerrit.sshd.CommandExecutorQueueProvider;
@@ -46,6 +51,7 @@ import javax.servlet.http.HttpServletResponse;
 import org.eclipse.jetty.continuation.Continuation;
 import org.eclipse.jetty.continuation.ContinuationListener;
 import org.eclipse.jetty.continuation.ContinuationSupport;
+import org.eclipse.jgit.http.server.GitSmartHttpTools;
 import org.eclipse.jgit.lib.Config;
 
 /**
@@ -66,8 +72,12 @@ public class ProjectQoSFilter implements Filter {
   private static final String ATT_SPACE = ProjectQoSFilter.class.getName();
   private static final String TASK = ATT_SPACE + "/TASK";
   private static final String CANCEL = ATT_SPACE + "/CANCEL";
+  private static final String REJECTED = ATT_SPACE + "/REJECTED";
 
-  private static final String FILTER_RE = "^/(.*)/(git-upload-pack|git-receive-pack)$";
+  // Accepts the optional "/a" and "/p/" prefixes of GitOverHttpServlet.URL_REGEX, so that all URLs
+  // of a project count towards the same project limit.
+  private static final String FILTER_RE =
+      "^(?:/a)?(?:/p/|/)(.*)/(git-upload-pack|git-receive-pack)$";
   private static final Pattern URI_PATTERN = Pattern.compile(FILTER_RE);
 
   public static class Module extends ServletModule {
@@ -81,6 +91,7 @@ public class ProjectQoSFilter implements Filter {
   private final AccountLimits.Factory limitsFactory;
   private final Provider<CurrentUser> user;
   private final QueueProvider queue;
+  private final GitOperationScheduler scheduler;
   private final ServletContext context;
   private final long maxWait;
 
@@ -89,11 +100,13 @@ public class ProjectQoSFilter implements Filter {
       AccountLimits.Factory limitsFactory,
       Provider<CurrentUser> user,
       QueueProvider queue,
+      GitOperationScheduler scheduler,
       ServletContext context,
       @GerritServerConfig Config cfg) {
     this.limitsFactory = limitsFactory;
     this.user = user;
     this.queue = queue;
+    this.scheduler = scheduler;
     this.context = context;
     this.maxWait = MINUTES.toMillis(getTimeUnit(cfg, "httpd", null, "maxwait", 5, MINUTES));
   }
@@ -112,12 +125,33 @@ public class ProjectQoSFilter implements Filter {
       }
       cont.suspend(rsp);
       cont.setAttribute(TASK, task);
-
-      Future<?> f = getExecutor().submit(task);
-      cont.addContinuationListener(new Listener(f));
+      cont.addContinuationListener(new Listener(task));
+
+      ScheduledThreadPoolExecutor executor = getExecutor();
+      task.ticket =
+          scheduler.schedule(
+              user.get(),
+              task.project,
+              task.operation,
+              new GitOperationScheduler.Callback() {
+                @Override
+                public void admitted(GitOperationScheduler.Ticket ticket) {
+                  task.submit(ticket, executor);
+                }
+
+                @Override
+                public void rejected(String message) {
+                  cont.setAttribute(REJECTED, message);
+                  cont.resume();
+                }
+              });
     } else if (cont.isExpired()) {
       rsp.sendError(SC_SERVICE_UNAVAILABLE);
 
+    } else if (cont.isResumed() && cont.getAttribute(REJECTED) != null) {
+      GitSmartHttpTools.sendError(
+          req, rsp, SC_SERVICE_UNAVAILABLE, (String) cont.getAttribute(REJECTED));
+
     } else if (cont.isResumed() && cont.getAttribute(CANCEL) == Boolean.TRUE) {
       rsp.sendError(SC_SERVICE_UNAVAILABLE);
 
@@ -137,6 +171,19 @@ public class ProjectQoSFilter implements Filter {
     }
   }
 
+  /**
+   * Returns the name of the project a Git request is for.
+   *
+   * @param servletPath path of the request.
+   * @return project name, or null if the path is not a Git request.
+   */
+  @VisibleForTesting
+  @Nullable
+  static String projectName(String servletPath) {
+    Matcher m = URI_PATTERN.matcher(servletPath);
+    return m.matches() ? ProjectUtil.stripGitSuffix(m.group(1)) : null;
+  }
+
   private ScheduledThreadPoolExecutor getExecutor() {
     QueueProvider.QueueType qt = limitsFactory.create(user.get()).getQueueType();
     return queue.getQueue(qt);
@@ -149,10 +196,10 @@ public class ProjectQoSFilter implements Filter {
   public void destroy() {}
 
   private final class Listener implements ContinuationListener {
-    final Future<?> future;
+    final TaskThunk task;
 
-    Listener(Future<?> future) {
-      this.future = future;
+    Listener(TaskThunk task) {
+      this.task = task;
     }
 
     @Override
@@ -160,20 +207,67 @@ public class ProjectQoSFilter implements Filter {
 
     @Override
     public void onTimeout(Continuation self) {
-      future.cancel(true);
+      task.abort();
     }
   }
 
   private final class TaskThunk implements CancelableRunnable {
     private final Continuation cont;
     private final String name;
+    private final Project.NameKey project;
+    private final GitOperationScheduler.Operation operation;
     private final Object lock = new Object();
     private boolean done;
     private Thread worker;
+    private Future<?> future;
+    private volatile GitOperationScheduler.Ticket ticket;
 
     TaskThunk(Continuation cont, HttpServletRequest req) {
       this.cont = cont;
       this.name = generateName(req);
+
+      Matcher m = URI_PATTERN.matcher(req.getServletPath());
+      if (m.matches()) {
+        project = new Project.NameKey(projectName(req.getServletPath()));
+        operation =
+            "git-receive-pack".equals(m.group(2))
+                ? GitOperationScheduler.Operation.RECEIVE_PACK
+                : GitOperationScheduler.Operation.UPLOAD_PACK;
+      } else {
+        project = null;
+        operation = GitOperationScheduler.Operation.UPLOAD_PACK;
+      }
+    }
+
+    void submit(GitOperationScheduler.Ticket ticket, ScheduledThreadPoolExecutor executor) {
+      synchronized (lock) {
+        this.ticket = ticket;
+        if (!done) {
+          future = executor.submit(this);
+          return;
+        }
+      }
+      // Aborted while waiting for admission.
+      ticket.release();
+    }
+
+    void abort() {
+      Future<?> f;
+      synchronized (lock) {
+        done = true;
+        f = future;
+      }
+      if (f != null) {
+        f.cancel(true);
+      }
+      release();
+    }
+
+    private void release() {
+      GitOperationScheduler.Ticket t = ticket;
+      if (t != null) {
+        t.release();
+      }
     }
 
     @Override
@@ -207,10 +301,12 @@ public class ProjectQoSFilter implements Filter {
         done = true;
         lock.notifyAll();
       }
+      release();
     }
 
     @Override
     public void cancel() {
+      release();
       cont.setAttribute(CANCEL, Boolean.TRUE);
       cont.resume();
     }
@@ -0,0 +1,41 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.pgm.http.jetty;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+
+public class ProjectQoSFilterTest {
+  @Test
+  public void projectName() {
+    assertThat(ProjectQoSFilter.projectName("/project/git-upload-pack")).isEqualTo("project");
+    assertThat(ProjectQoSFilter.projectName("/project.git/git-receive-pack")).isEqualTo("project");
+    assertThat(ProjectQoSFilter.projectName("/parent/project/git-upload-pack"))
+        .isEqualTo("parent/project");
+    assertThat(ProjectQoSFilter.projectName("/project/info/refs")).isNull();
+  }
+
+  @Test
+  public void projectNameOfAuthenticatedAndPrefixedUrls() {
+    assertThat(ProjectQoSFilter.projectName("/a/project/git-upload-pack")).isEqualTo("project");
+    assertThat(ProjectQoSFilter.projectName("/p/project/git-upload-pack")).isEqualTo("project");
+    assertThat(ProjectQoSFilter.projectName("/a/p/project.git/git-upload-pack"))
+        .isEqualTo("project");
+    assertThat(ProjectQoSFilter.projectName("/a/parent/project/git-receive-pack"))
+        .isEqualTo("parent/project");
+    assertThat(ProjectQoSFilter.projectName("/another/git-upload-pack")).isEqualTo("another");
+  }
+}
@@ -0,0 +1,340 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.gerrit.extensions.events.ChangeIndexedListener;
+import com.google.gerrit.reviewdb.client.Account;
+import com.google.gerrit.reviewdb.client.Change;
+import com.google.gerrit.reviewdb.client.ChangeMessage;
+import com.google.gerrit.reviewdb.client.PatchSetApproval;
+import com.google.gerrit.reviewdb.client.Project;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.gerrit.server.query.change.ChangeData;
+import com.google.gerrit.server.query.change.InternalChangeQuery;
+import com.google.gerrit.server.util.ManualRequestContext;
+import com.google.gerrit.server.util.OneOffRequestContext;
+import com.google.gwtorm.server.OrmException;
+import com.google.inject.Inject;
+import com.google.inject.Module;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.eclipse.jgit.lib.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-memory index of the recent review activity in each project.
+ *
+ * <p>Serves the base ranking of {@link ReviewerRecommender} without querying the change index for
+ * every suggested account. The activity of a project is loaded from its most recently updated
+ * changes on first use. Afterwards changes reported by {@link ChangeIndexedListener} are
+ * remembered and folded into the loaded projects by a background task, so neither writes nor
+ * lookups pay for it.
+ */
+@Singleton
+public class ReviewerAffinity implements ChangeIndexedListener {
+  private static final Logger log = LoggerFactory.getLogger(ReviewerAffinity.class);
+  private static final String CACHE_NAME = "reviewer_affinity";
+  private static final int BATCH_SIZE = 100;
+
+  public static Module module() {
+    return new CacheModule() {
+      @Override
+      protected void configure() {
+        cache(CACHE_NAME, Project.NameKey.class, ProjectActivity.class);
+        bind(ReviewerAffinity.class);
+      }
+    };
+  }
+
+  private final Cache<Project.NameKey, ProjectActivity> projects;
+  private final Provider<InternalChangeQuery> queryProvider;
+  private final OneOffRequestContext requestContext;
+  private final WorkQueue workQueue;
+  private final int maxChanges;
+  private final Set<Change.Id> pending = ConcurrentHashMap.newKeySet();
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+
+  @Inject
+  ReviewerAffinity(
+      @Named(CACHE_NAME) Cache<Project.NameKey, ProjectActivity> projects,
+      Provider<InternalChangeQuery> queryProvider,
+      OneOffRequestContext requestContext,
+      WorkQueue workQueue,
+      @GerritServerConfig Config cfg) {
+    this.projects = projects;
+    this.queryProvider = queryProvider;
+    this.requestContext = requestContext;
+    this.workQueue = workQueue;
+    this.maxChanges = Math.max(cfg.getInt("addReviewer", "affinityChanges", 250), 1);
+  }
+
+  @Override
+  public void onChangeIndexed(int id) {
+    markPending(new Change.Id(id));
+  }
+
+  @Override
+  public void onChangeDeleted(int id) {
+    markPending(new Change.Id(id));
+  }
+
+  private void markPending(Change.Id id) {
+    // Also recorded while no project is loaded yet, a load may be running that did not see it.
+    pending.add(id);
+    if (scheduled.compareAndSet(false, true)) {
+      try {
+        workQueue.getDefaultQueue().execute(this::applyPendingUpdates);
+      } catch (RejectedExecutionException e) {
+        scheduled.set(false);
+      }
+    }
+  }
+
+  /** Returns the recent review activity in a project. */
+  ProjectActivity get(Project.NameKey project) throws OrmException {
+    ProjectActivity activity;
+    try {
+      activity = projects.get(project, () -> new ProjectActivity(maxChanges));
+    } catch (ExecutionException e) {
+      throw new OrmException(e);
+    }
+    // Updates applied meanwhile wait for the load, and are applied on top of it.
+    synchronized (activity) {
+      if (!activity.loaded) {
+        load(project, activity);
+        activity.loaded = true;
+      }
+    }
+    return activity;
+  }
+
+  private void load(Project.NameKey project, ProjectActivity activity) throws OrmException {
+    for (ChangeData cd : queryProvider.get().setLimit(maxChanges).byProject(project)) {
+      update(activity, cd);
+    }
+  }
+
+  /**
+   * Folds the changes reported since the last call into the loaded projects.
+   *
+   * <p>Called on the default work queue after changes were indexed. Each change only updates the
+   * project it belongs to.
+   */
+  @VisibleForTesting
+  public synchronized void applyPendingUpdates() {
+    scheduled.set(false);
+    if (pending.isEmpty()) {
+      return;
+    }
+    List<Change.Id> ids = new ArrayList<>(pending);
+    pending.removeAll(ids);
+    try (ManualRequestContext ctx = requestContext.open()) {
+      apply(ids);
+    } catch (OrmException | RuntimeException e) {
+      log.warn("Cannot apply review activity of changes " + ids + ", reloading all projects", e);
+      projects.invalidateAll();
+    }
+  }
+
+  private void apply(List<Change.Id> ids) throws OrmException {
+    Set<Change.Id> found = new HashSet<>();
+    for (List<Change.Id> batch : Lists.partition(ids, BATCH_SIZE)) {
+      for (ChangeData cd : queryProvider.get().byLegacyChangeIds(batch)) {
+        found.add(cd.getId());
+        ProjectActivity activity = projects.getIfPresent(cd.project());
+        if (activity != null) {
+          update(activity, cd);
+        }
+      }
+    }
+    for (Change.Id id : ids) {
+      if (!found.contains(id)) {
+        for (ProjectActivity activity : projects.asMap().values()) {
+          activity.remove(id);
+        }
+      }
+    }
+  }
+
+  private static void update(ProjectActivity activity, ChangeData cd) {
+    try {
+      activity.put(Contribution.create(cd));
+    } catch (OrmException e) {
+      log.warn("Cannot load review activity of change " + cd.getId(), e);
+      activity.remove(cd.getId());
+    }
+  }
+
+  /** The accounts that took part in one change. */
+  @AutoValue
+  abstract static class Contribution {
+    static Contribution create(ChangeData cd) throws OrmException {
+      ImmutableList<Account.Id> voters =
+          cd.currentApprovals()
+              .stream()
+              .filter(a -> a.getValue() != 0)
+              .map(PatchSetApproval::getAccountId)
+              .collect(toImmutableList());
+      ImmutableSet<Account.Id> commenters =
+          cd.messages()
+              .stream()
+              .map(ChangeMessage::getAuthor)
+              .filter(Objects::nonNull)
+              .collect(toImmutableSet());
+      Change change = cd.change();
+      return new AutoValue_ReviewerAffinity_Contribution(
+          change.getId(),
+          change.getLastUpdatedOn().getTime(),
+          change.getOwner(),
+          voters,
+          commenters);
+    }
+
+    abstract Change.Id changeId();
+
+    /** Last update of the change, in milliseconds since the epoch. */
+    abstract long lastUpdated();
+
+    abstract Account.Id owner();
+
+    /** Accounts of the votes on the current patch set, once per vote. */
+    abstract ImmutableList<Account.Id> voters();
+
+    abstract ImmutableSet<Account.Id> commenters();
+  }
+
+  /** Per-account activity on the most recently updated changes of a project. */
+  static class ProjectActivity {
+    private static final int REVIEWED = 0;
+    private static final int OWNED = 1;
+    private static final int COMMENTED = 2;
+    private static final Comparator<Contribution> BY_UPDATE =
+        Comparator.comparingLong(Contribution::lastUpdated)
+            .thenComparingInt(c -> c.changeId().get());
+
+    private final int maxChanges;
+    private final Map<Change.Id, Contribution> changes = new HashMap<>();
+    private final NavigableSet<Contribution> byUpdate = new TreeSet<>(BY_UPDATE);
+    private final Map<Account.Id, int[]> counts = new HashMap<>();
+    private boolean loaded;
+
+    ProjectActivity(int maxChanges) {
+      this.maxChanges = maxChanges;
+    }
+
+    /**
+     * Adds or replaces the contribution of a change. The window is ordered by the last update of
+     * the changes, so a late update of a change that is older than all others is dropped.
+     */
+    synchronized void put(Contribution c) {
+      remove(c.changeId());
+      changes.put(c.changeId(), c);
+      byUpdate.add(c);
+      count(c, 1);
+      while (changes.size() > maxChanges) {
+        Contribution oldest = byUpdate.pollFirst();
+        changes.remove(oldest.changeId());
+        count(oldest, -1);
+      }
+    }
+
+    synchronized void remove(Change.Id id) {
+      Contribution c = changes.remove(id);
+      if (c != null) {
+        byUpdate.remove(c);
+        count(c, -1);
+      }
+    }
+
+    /** Number of recent changes the account voted on. */
+    synchronized int reviewed(Account.Id id) {
+      return get(id, REVIEWED);
+    }
+
+    /** Number of recent changes owned by the account. */
+    synchronized int owned(Account.Id id) {
+      return get(id, OWNED);
+    }
+
+    /** Number of recent changes the account commented on. */
+    synchronized int commented(Account.Id id) {
+      return get(id, COMMENTED);
+    }
+
+    /** Returns the most recently updated changes owned by the account, newest first. */
+    synchronized List<Contribution> ownedBy(Account.Id owner, int limit) {
+      List<Contribution> result = new ArrayList<>();
+      for (Contribution c : byUpdate.descendingSet()) {
+        if (result.size() >= limit) {
+          break;
+        }
+        if (c.owner().equals(owner)) {
+          result.add(c);
+        }
+      }
+      return result;
+    }
+
+    private int get(Account.Id id, int kind) {
+      int[] n = counts.get(id);
+      return n != null ? n[kind] : 0;
+    }
+
+    private void count(Contribution c, int delta) {
+      add(c.owner(), OWNED, delta);
+      for (Account.Id id : ImmutableSet.copyOf(c.voters())) {
+        add(id, REVIEWED, delta);
+      }
+      for (Account.Id id : c.commenters()) {
+        add(id, COMMENTED, delta);
+      }
+    }
+
+    private void add(Account.Id id, int kind, int delta) {
+      int[] n = counts.computeIfAbsent(id, k -> new int[3]);
+      n[kind] += delta;
+      if (n[REVIEWED] == 0 && n[OWNED] == 0 && n[COMMENTED] == 0) {
+        counts.remove(id);
+      }
+    }
+  }
+}
@@ -25,6 +25,9 @@ public interface GroupIncludeCache {
   /** @return any groups the passed group belongs to. */
   Collection<AccountGroup.UUID> parentGroupsOf(AccountGroup.UUID groupId);
 
+  /** @return all groups the passed group belongs to, directly or through other groups. */
+  Collection<AccountGroup.UUID> allParentGroupsOf(AccountGroup.UUID groupId);
+
   /** @return set of any UUIDs that are not internal groups. */
   Collection<AccountGroup.UUID> allExternalMembers();
 
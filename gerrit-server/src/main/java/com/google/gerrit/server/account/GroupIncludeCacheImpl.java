@@ -19,6 +19,7 @@ import static com.google.common.collect.ImmutableList.toImmutableList;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Streams;
 import com.google.gerrit.common.errors.NoSuchGroupException;
 import com.google.gerrit.reviewdb.client.AccountGroup;
@@ -38,8 +39,13 @@ import com.google.inject.Provider;
 import com.google.inject.Singleton;
 import com.google.inject.TypeLiteral;
 import com.google.inject.name.Named;
+import java.util.ArrayDeque;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.stream.Stream;
 import org.slf4j.Logger;
@@ -50,6 +56,7 @@ import org.slf4j.LoggerFactory;
 public class GroupIncludeCacheImpl implements GroupIncludeCache {
   private static final Logger log = LoggerFactory.getLogger(GroupIncludeCacheImpl.class);
   private static final String PARENT_GROUPS_NAME = "groups_byinclude";
+  private static final String ALL_PARENT_GROUPS_NAME = "groups_byinclude_all";
   private static final String SUBGROUPS_NAME = "groups_members";
   private static final String EXTERNAL_NAME = "groups_external";
 
@@ -63,6 +70,12 @@ public class GroupIncludeCacheImpl implements GroupIncludeCache {
                 new TypeLiteral<ImmutableList<AccountGroup.UUID>>() {})
             .loader(ParentGroupsLoader.class);
 
+        cache(
+                ALL_PARENT_GROUPS_NAME,
+                AccountGroup.UUID.class,
+                new TypeLiteral<ImmutableSet<AccountGroup.UUID>>() {})
+            .loader(AllParentGroupsLoader.class);
+
         cache(
                 SUBGROUPS_NAME,
                 AccountGroup.UUID.class,
@@ -80,6 +93,7 @@ public class GroupIncludeCacheImpl implements GroupIncludeCache {
 
   private final LoadingCache<AccountGroup.UUID, ImmutableList<AccountGroup.UUID>> subgroups;
   private final LoadingCache<AccountGroup.UUID, ImmutableList<AccountGroup.UUID>> parentGroups;
+  private final LoadingCache<AccountGroup.UUID, ImmutableSet<AccountGroup.UUID>> allParentGroups;
   private final LoadingCache<String, ImmutableList<AccountGroup.UUID>> external;
 
   @Inject
@@ -88,9 +102,12 @@ public class GroupIncludeCacheImpl implements GroupIncludeCache {
           LoadingCache<AccountGroup.UUID, ImmutableList<AccountGroup.UUID>> subgroups,
       @Named(PARENT_GROUPS_NAME)
           LoadingCache<AccountGroup.UUID, ImmutableList<AccountGroup.UUID>> parentGroups,
+      @Named(ALL_PARENT_GROUPS_NAME)
+          LoadingCache<AccountGroup.UUID, ImmutableSet<AccountGroup.UUID>> allParentGroups,
       @Named(EXTERNAL_NAME) LoadingCache<String, ImmutableList<AccountGroup.UUID>> external) {
     this.subgroups = subgroups;
     this.parentGroups = parentGroups;
+    this.allParentGroups = allParentGroups;
     this.external = external;
   }
 
@@ -114,6 +131,16 @@ public class GroupIncludeCacheImpl implements GroupIncludeCache {
     }
   }
 
+  @Override
+  public Collection<AccountGroup.UUID> allParentGroupsOf(AccountGroup.UUID groupId) {
+    try {
+      return allParentGroups.get(groupId);
+    } catch (ExecutionException e) {
+      log.warn("Cannot load transitively included groups", e);
+      return Collections.emptySet();
+    }
+  }
+
   @Override
   public void evictSubgroupsOf(AccountGroup.UUID groupId) {
     if (groupId != null) {
@@ -125,6 +152,7 @@ public class GroupIncludeCacheImpl implements GroupIncludeCache {
   public void evictParentGroupsOf(AccountGroup.UUID groupId) {
     if (groupId != null) {
       parentGroups.invalidate(groupId);
+      evictAllParentGroupsOf(groupId);
 
       if (!AccountGroup.isInternalGroup(groupId)) {
         external.invalidate(EXTERNAL_NAME);
@@ -132,6 +160,25 @@ public class GroupIncludeCacheImpl implements GroupIncludeCache {
     }
   }
 
+  /**
+   * Evicts the transitive parent groups of a group and of everything it includes, as the parents
+   * of the group are also parents of all its subgroups.
+   */
+  private void evictAllParentGroupsOf(AccountGroup.UUID groupId) {
+    Set<AccountGroup.UUID> seen = new HashSet<>();
+    Deque<AccountGroup.UUID> q = new ArrayDeque<>();
+    q.add(groupId);
+    while (!q.isEmpty()) {
+      AccountGroup.UUID id = q.remove();
+      if (seen.add(id)) {
+        allParentGroups.invalidate(id);
+        if (AccountGroup.isInternalGroup(id)) {
+          q.addAll(subgroupsOf(id));
+        }
+      }
+    }
+  }
+
   @Override
   public Collection<AccountGroup.UUID> allExternalMembers() {
     try {
@@ -198,6 +245,33 @@ public class GroupIncludeCacheImpl implements GroupIncludeCache {
     }
   }
 
+  static class AllParentGroupsLoader
+      extends CacheLoader<AccountGroup.UUID, ImmutableSet<AccountGroup.UUID>> {
+    private final LoadingCache<AccountGroup.UUID, ImmutableList<AccountGroup.UUID>> parentGroups;
+
+    @Inject
+    AllParentGroupsLoader(
+        @Named(PARENT_GROUPS_NAME)
+            LoadingCache<AccountGroup.UUID, ImmutableList<AccountGroup.UUID>> parentGroups) {
+      this.parentGroups = parentGroups;
+    }
+
+    @Override
+    public ImmutableSet<AccountGroup.UUID> load(AccountGroup.UUID key) throws ExecutionException {
+      Set<AccountGroup.UUID> r = new LinkedHashSet<>();
+      Deque<AccountGroup.UUID> q = new ArrayDeque<>();
+      q.add(key);
+      while (!q.isEmpty()) {
+        for (AccountGroup.UUID g : parentGroups.get(q.remove())) {
+          if (g != null && r.add(g)) {
+            q.add(g);
+          }
+        }
+      }
+      return ImmutableSet.copyOf(r);
+    }
+  }
+
   static class AllExternalLoader extends CacheLoader<String, ImmutableList<AccountGroup.UUID>> {
     private final SchemaFactory<ReviewDb> schema;
     private final Groups groups;
@@ -15,51 +15,40 @@
 package com.google.gerrit.server.account;
 
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Lists;
-import com.google.common.collect.Sets;
 import com.google.gerrit.reviewdb.client.AccountGroup;
 import com.google.gerrit.server.IdentifiedUser;
-import com.google.gerrit.server.group.InternalGroup;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Group membership checker for the internal group system.
  *
  * <p>Groups the user is directly a member of are pulled from the in-memory AccountCache by way of
- * the IdentifiedUser. Transitive group memberhips are resolved on demand starting from the
- * requested group and looking for a path to a group the user is a member of. Other group backends
- * are supported by recursively invoking the universal GroupMembership.
+ * the IdentifiedUser. Transitive group memberships are resolved once per user, by combining the
+ * direct groups and the non-internal groups the user is a member of with their transitive parent
+ * groups from the server-wide GroupIncludeCache. Membership checks are then set lookups. Other
+ * group backends are supported by invoking the universal GroupMembership for the non-internal
+ * groups that are included in internal groups.
  */
 public class IncludingGroupMembership implements GroupMembership {
   public interface Factory {
     IncludingGroupMembership create(IdentifiedUser user);
   }
 
-  private final GroupCache groupCache;
   private final GroupIncludeCache includeCache;
   private final IdentifiedUser user;
-  private final Map<AccountGroup.UUID, Boolean> memberOf;
-  private Set<AccountGroup.UUID> knownGroups;
+  private final Set<AccountGroup.UUID> direct;
+  private volatile ImmutableSet<AccountGroup.UUID> knownGroups;
 
   @Inject
-  IncludingGroupMembership(
-      GroupCache groupCache, GroupIncludeCache includeCache, @Assisted IdentifiedUser user) {
-    this.groupCache = groupCache;
+  IncludingGroupMembership(GroupIncludeCache includeCache, @Assisted IdentifiedUser user) {
     this.includeCache = includeCache;
     this.user = user;
-
-    Set<AccountGroup.UUID> groups = user.state().getInternalGroups();
-    memberOf = new ConcurrentHashMap<>(groups.size());
-    for (AccountGroup.UUID g : groups) {
-      memberOf.put(g, true);
-    }
+    direct = user.state().getInternalGroups();
   }
 
   @Override
@@ -67,43 +56,16 @@ public class IncludingGroupMembership implements GroupMembership {
     if (id == null) {
       return false;
     }
-
-    Boolean b = memberOf.get(id);
-    return b != null ? b : containsAnyOf(ImmutableSet.of(id));
+    return direct.contains(id) || getKnownGroups().contains(id);
   }
 
   @Override
   public boolean containsAnyOf(Iterable<AccountGroup.UUID> queryIds) {
-    // Prefer lookup of a cached result over expanding includes.
-    boolean tryExpanding = false;
     for (AccountGroup.UUID id : queryIds) {
-      Boolean b = memberOf.get(id);
-      if (b == null) {
-        tryExpanding = true;
-      } else if (b) {
+      if (contains(id)) {
         return true;
       }
     }
-
-    if (tryExpanding) {
-      for (AccountGroup.UUID id : queryIds) {
-        if (memberOf.containsKey(id)) {
-          // Membership was earlier proven to be false.
-          continue;
-        }
-
-        memberOf.put(id, false);
-        Optional<InternalGroup> group = groupCache.get(id);
-        if (!group.isPresent()) {
-          continue;
-        }
-        if (search(group.get().getSubgroups())) {
-          memberOf.put(id, true);
-          return true;
-        }
-      }
-    }
-
     return false;
   }
 
@@ -118,29 +80,22 @@ public class IncludingGroupMembership implements GroupMembership {
     return r;
   }
 
-  private boolean search(Iterable<AccountGroup.UUID> ids) {
-    return user.getEffectiveGroups().containsAnyOf(ids);
-  }
-
   private ImmutableSet<AccountGroup.UUID> computeKnownGroups() {
     GroupMembership membership = user.getEffectiveGroups();
-    Set<AccountGroup.UUID> direct = user.state().getInternalGroups();
-    Set<AccountGroup.UUID> r = Sets.newHashSet(direct);
+    Set<AccountGroup.UUID> r = new HashSet<>(direct);
     r.remove(null);
 
-    List<AccountGroup.UUID> q = Lists.newArrayList(r);
+    List<AccountGroup.UUID> memberOf = new ArrayList<>(r);
     for (AccountGroup.UUID g : membership.intersection(includeCache.allExternalMembers())) {
       if (g != null && r.add(g)) {
-        q.add(g);
+        memberOf.add(g);
       }
     }
 
-    while (!q.isEmpty()) {
-      AccountGroup.UUID id = q.remove(q.size() - 1);
-      for (AccountGroup.UUID g : includeCache.parentGroupsOf(id)) {
-        if (g != null && r.add(g)) {
-          q.add(g);
-          memberOf.put(g, true);
+    for (AccountGroup.UUID id : memberOf) {
+      for (AccountGroup.UUID g : includeCache.allParentGroupsOf(id)) {
+        if (g != null) {
+          r.add(g);
         }
       }
     }
@@ -149,9 +104,11 @@ public class IncludingGroupMembership implements GroupMembership {
 
   @Override
   public Set<AccountGroup.UUID> getKnownGroups() {
-    if (knownGroups == null) {
-      knownGroups = computeKnownGroups();
+    ImmutableSet<AccountGroup.UUID> groups = knownGroups;
+    if (groups == null) {
+      groups = computeKnownGroups();
+      knownGroups = groups;
     }
-    return knownGroups;
+    return groups;
   }
 }
@@ -29,12 +29,15 @@ import com.google.common.collect.Iterables;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.MultimapBuilder;
+import com.google.gerrit.common.Nullable;
 import com.google.gerrit.reviewdb.client.Account;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Optional;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
@@ -49,10 +52,12 @@ class ExternalIdCacheImpl implements ExternalIdCache {
 
   private final LoadingCache<ObjectId, AllExternalIds> extIdsByAccount;
   private final ExternalIdReader externalIdReader;
+  private final AtomicReference<Snapshot> latest;
   private final Lock lock;
 
   @Inject
   ExternalIdCacheImpl(ExternalIdReader externalIdReader) {
+    this.latest = new AtomicReference<>();
     this.extIdsByAccount =
         CacheBuilder.newBuilder()
             // The cached data is potentially pretty large and we are always only interested
@@ -71,7 +76,7 @@ class ExternalIdCacheImpl implements ExternalIdCache {
             // it's rare that this race happens. Therefore it's not worth to double the memory
             // usage of this cache, just to avoid this.
             .maximumSize(1)
-            .build(new Loader(externalIdReader));
+            .build(new Loader(externalIdReader, latest));
     this.externalIdReader = externalIdReader;
     this.lock = new ReentrantLock(true /* fair */);
   }
@@ -213,7 +218,9 @@ class ExternalIdCacheImpl implements ExternalIdCache {
         m = MultimapBuilder.hashKeys().arrayListValues().build();
       }
       update.accept(m);
-      extIdsByAccount.put(newNotesRev, AllExternalIds.create(m));
+      AllExternalIds all = AllExternalIds.create(m);
+      extIdsByAccount.put(newNotesRev, all);
+      latest.set(Snapshot.create(newNotesRev, all));
     } catch (ExecutionException e) {
       log.warn("Cannot update external IDs", e);
     } finally {
@@ -225,23 +232,74 @@ class ExternalIdCacheImpl implements ExternalIdCache {
     Collections2.transform(ids, e -> e.key()).removeAll(toRemove);
   }
 
+  /**
+   * Loads the external IDs of a revision.
+   *
+   * <p>If external IDs of a related revision were loaded before, only the notes which differ
+   * between both revisions are read and applied to the previous state. All notes are read only if
+   * nothing was loaded yet or if the previous revision is not an ancestor of the requested one.
+   */
   private static class Loader extends CacheLoader<ObjectId, AllExternalIds> {
     private final ExternalIdReader externalIdReader;
+    private final AtomicReference<Snapshot> latest;
 
-    Loader(ExternalIdReader externalIdReader) {
+    Loader(ExternalIdReader externalIdReader, AtomicReference<Snapshot> latest) {
       this.externalIdReader = externalIdReader;
+      this.latest = latest;
     }
 
     @Override
     public AllExternalIds load(ObjectId notesRev) throws Exception {
-      Multimap<Account.Id, ExternalId> extIdsByAccount =
-          MultimapBuilder.hashKeys().arrayListValues().build();
-      for (ExternalId extId : externalIdReader.all(notesRev)) {
-        extId.checkThatBlobIdIsSet();
-        extIdsByAccount.put(extId.accountId(), extId);
+      AllExternalIds all = loadIncrementally(notesRev);
+      if (all == null) {
+        Multimap<Account.Id, ExternalId> extIdsByAccount =
+            MultimapBuilder.hashKeys().arrayListValues().build();
+        for (ExternalId extId : externalIdReader.all(notesRev)) {
+          extId.checkThatBlobIdIsSet();
+          extIdsByAccount.put(extId.accountId(), extId);
+        }
+        all = AllExternalIds.create(extIdsByAccount);
       }
-      return AllExternalIds.create(extIdsByAccount);
+      latest.set(Snapshot.create(notesRev, all));
+      return all;
     }
+
+    @Nullable
+    private AllExternalIds loadIncrementally(ObjectId notesRev) throws IOException {
+      Snapshot prev = latest.get();
+      if (prev == null) {
+        return null;
+      }
+      if (prev.notesRev().equals(notesRev)) {
+        return prev.all();
+      }
+
+      Optional<ExternalIdReader.Delta> delta = externalIdReader.delta(prev.notesRev(), notesRev);
+      if (!delta.isPresent()) {
+        return null;
+      }
+      ListMultimap<Account.Id, ExternalId> m =
+          MultimapBuilder.hashKeys().arrayListValues().build(prev.all().byAccount());
+      for (ExternalId extId : delta.get().removed()) {
+        m.remove(extId.accountId(), extId);
+      }
+      for (ExternalId extId : delta.get().added()) {
+        m.put(extId.accountId(), extId);
+      }
+      return AllExternalIds.create(m);
+    }
+  }
+
+  /** External IDs of the most recently loaded or updated revision. */
+  @AutoValue
+  abstract static class Snapshot {
+    static Snapshot create(ObjectId notesRev, AllExternalIds all) {
+      return new AutoValue_ExternalIdCacheImpl_Snapshot(notesRev.copy(), all);
+    }
+
+    abstract ObjectId notesRev();
+
+    abstract AllExternalIds all();
   }
 
   @AutoValue
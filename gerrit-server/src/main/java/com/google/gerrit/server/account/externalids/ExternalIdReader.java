@@ -16,7 +16,9 @@ package com.google.gerrit.server.account.externalids;
 
 import static org.eclipse.jgit.lib.Constants.OBJ_BLOB;
 
+import com.google.auto.value.AutoValue;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.gerrit.common.Nullable;
 import com.google.gerrit.metrics.Description;
@@ -29,15 +31,23 @@ import com.google.gerrit.server.git.GitRepositoryManager;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import org.eclipse.jgit.errors.ConfigInvalidException;
+import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.notes.Note;
 import org.eclipse.jgit.notes.NoteMap;
+import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -78,6 +88,7 @@ public class ExternalIdReader {
   private final AllUsersName allUsersName;
   private boolean failOnLoad = false;
   private final Timer0 readAllLatency;
+  private final Timer0 readDeltaLatency;
 
   @Inject
   ExternalIdReader(
@@ -90,6 +101,12 @@ public class ExternalIdReader {
             new Description("Latency for reading all external IDs from NoteDb.")
                 .setCumulative()
                 .setUnit(Units.MILLISECONDS));
+    this.readDeltaLatency =
+        metricMaker.newTimer(
+            "notedb/read_external_ids_delta_latency",
+            new Description("Latency for reading changed external IDs between two revisions.")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS));
   }
 
   @VisibleForTesting
@@ -135,18 +152,98 @@ public class ExternalIdReader {
       NoteMap noteMap = readNoteMap(rw, rev);
       Set<ExternalId> extIds = new HashSet<>();
       for (Note note : noteMap) {
-        byte[] raw =
-            rw.getObjectReader().open(note.getData(), OBJ_BLOB).getCachedBytes(MAX_NOTE_SZ);
-        try {
-          extIds.add(ExternalId.parse(note.getName(), raw, note.getData()));
-        } catch (Exception e) {
-          log.error(String.format("Ignoring invalid external ID note %s", note.getName()), e);
+        ExternalId extId = parse(rw.getObjectReader(), note.getName(), note.getData());
+        if (extId != null) {
+          extIds.add(extId);
         }
       }
       return extIds;
     }
   }
 
+  /**
+   * Reads the external IDs that were removed and added between two revisions of the
+   * refs/meta/external-ids branch, by diffing the note trees of both revisions.
+   *
+   * <p>An external ID that was modified is contained in both, with its old value in {@link
+   * Delta#removed()} and its new value in {@link Delta#added()}.
+   *
+   * @return the delta, or empty if the old revision is not an ancestor of the new revision (e.g.
+   *     because the branch was rewritten) and all external IDs should be read instead.
+   */
+  Optional<Delta> delta(ObjectId oldRev, ObjectId newRev) throws IOException {
+    checkReadEnabled();
+
+    if (oldRev.equals(ObjectId.zeroId()) || newRev.equals(ObjectId.zeroId())) {
+      return Optional.empty();
+    }
+
+    try (Timer0.Context ctx = readDeltaLatency.start();
+        Repository repo = repoManager.openRepository(allUsersName);
+        RevWalk rw = new RevWalk(repo)) {
+      RevCommit oldCommit = rw.parseCommit(oldRev);
+      RevCommit newCommit = rw.parseCommit(newRev);
+      if (!rw.isMergedInto(oldCommit, newCommit)) {
+        return Optional.empty();
+      }
+
+      Map<String, ObjectId> oldNotes = new HashMap<>();
+      Map<String, ObjectId> newNotes = new HashMap<>();
+      try (TreeWalk tw = new TreeWalk(rw.getObjectReader())) {
+        tw.setRecursive(true);
+        tw.setFilter(TreeFilter.ANY_DIFF);
+        tw.addTree(oldCommit.getTree());
+        tw.addTree(newCommit.getTree());
+        while (tw.next()) {
+          // Notes may be stored in fan-out directories, e.g. "ab/cdef...".
+          String noteName = tw.getPathString().replace("/", "");
+          if (!ObjectId.isId(noteName)) {
+            continue;
+          }
+          if (!FileMode.MISSING.equals(tw.getRawMode(0))) {
+            oldNotes.put(noteName, tw.getObjectId(0));
+          }
+          if (!FileMode.MISSING.equals(tw.getRawMode(1))) {
+            newNotes.put(noteName, tw.getObjectId(1));
+          }
+        }
+      }
+
+      ImmutableList.Builder<ExternalId> removed = ImmutableList.builder();
+      ImmutableList.Builder<ExternalId> added = ImmutableList.builder();
+      for (Map.Entry<String, ObjectId> e : oldNotes.entrySet()) {
+        if (e.getValue().equals(newNotes.get(e.getKey()))) {
+          // Changing the fan-out of the notes tree moves notes without modifying them.
+          newNotes.remove(e.getKey());
+          continue;
+        }
+        ExternalId extId = parse(rw.getObjectReader(), e.getKey(), e.getValue());
+        if (extId != null) {
+          removed.add(extId);
+        }
+      }
+      for (Map.Entry<String, ObjectId> e : newNotes.entrySet()) {
+        ExternalId extId = parse(rw.getObjectReader(), e.getKey(), e.getValue());
+        if (extId != null) {
+          added.add(extId);
+        }
+      }
+      return Optional.of(Delta.create(removed.build(), added.build()));
+    }
+  }
+
+  @Nullable
+  private static ExternalId parse(ObjectReader reader, String noteName, ObjectId blobId)
+      throws IOException {
+    byte[] raw = reader.open(blobId, OBJ_BLOB).getCachedBytes(MAX_NOTE_SZ);
+    try {
+      return ExternalId.parse(noteName, raw, blobId);
+    } catch (Exception e) {
+      log.error(String.format("Ignoring invalid external ID note %s", noteName), e);
+      return null;
+    }
+  }
+
   /** Reads and returns the specified external ID. */
   @Nullable
   ExternalId get(ExternalId.Key key) throws IOException, ConfigInvalidException {
@@ -196,4 +293,16 @@ public class ExternalIdReader {
       throw new IOException("Reading from external IDs is disabled");
     }
   }
+
+  /** External IDs removed and added between two revisions of refs/meta/external-ids. */
+  @AutoValue
+  abstract static class Delta {
+    static Delta create(ImmutableList<ExternalId> removed, ImmutableList<ExternalId> added) {
+      return new AutoValue_ExternalIdReader_Delta(removed, added);
+    }
+
+    abstract ImmutableList<ExternalId> removed();
+
+    abstract ImmutableList<ExternalId> added();
+  }
 }
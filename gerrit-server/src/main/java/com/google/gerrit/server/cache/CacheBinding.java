@@ -37,6 +37,20 @@ public interface CacheBinding<K, V> {
   /** Algorithm to weigh an object with a method other than the unit weight 1. */
   CacheBinding<K, V> weigher(Class<? extends Weigher<K, V>> clazz);
 
+  /**
+   * Set the version of the on-disk format of a persistent cache.
+   *
+   * <p>Entries stored with a different version are ignored and pruned from disk. Bump the version
+   * whenever the bytes produced by the key or value serializer change incompatibly.
+   */
+  CacheBinding<K, V> version(int version);
+
+  /** Serializer used to store keys of a persistent cache on disk. */
+  CacheBinding<K, V> keySerializer(CacheSerializer<K> keySerializer);
+
+  /** Serializer used to store values of a persistent cache on disk. */
+  CacheBinding<K, V> valueSerializer(CacheSerializer<V> valueSerializer);
+
   String name();
 
   TypeLiteral<K> keyType();
@@ -47,6 +61,12 @@ public interface CacheBinding<K, V> {
 
   long diskLimit();
 
+  int version();
+
+  CacheSerializer<K> keySerializer();
+
+  CacheSerializer<V> valueSerializer();
+
   @Nullable
   Long expireAfterWrite(TimeUnit unit);
 
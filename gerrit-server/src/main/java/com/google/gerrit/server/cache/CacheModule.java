@@ -119,11 +119,15 @@ public abstract class CacheModule extends FactoryModule {
   /**
    * Declare a named in-memory/on-disk cache.
    *
+   * <p>Key and value types that are not {@link Serializable} must be given a {@link
+   * CacheSerializer} through {@link CacheBinding#keySerializer(CacheSerializer)} and {@link
+   * CacheBinding#valueSerializer(CacheSerializer)}.
+   *
    * @param <K> type of key used to lookup entries.
    * @param <V> type of value stored by the cache.
    * @return binding to describe the cache.
    */
-  protected <K extends Serializable, V extends Serializable> CacheBinding<K, V> persist(
+  protected <K, V> CacheBinding<K, V> persist(
       String name, Class<K> keyType, Class<V> valType) {
     return persist(name, TypeLiteral.get(keyType), TypeLiteral.get(valType));
   }
@@ -131,11 +135,15 @@ public abstract class CacheModule extends FactoryModule {
   /**
    * Declare a named in-memory/on-disk cache.
    *
+   * <p>Key and value types that are not {@link Serializable} must be given a {@link
+   * CacheSerializer} through {@link CacheBinding#keySerializer(CacheSerializer)} and {@link
+   * CacheBinding#valueSerializer(CacheSerializer)}.
+   *
    * @param <K> type of key used to lookup entries.
    * @param <V> type of value stored by the cache.
    * @return binding to describe the cache.
    */
-  protected <K extends Serializable, V extends Serializable> CacheBinding<K, V> persist(
+  protected <K, V> CacheBinding<K, V> persist(
       String name, Class<K> keyType, TypeLiteral<V> valType) {
     return persist(name, TypeLiteral.get(keyType), valType);
   }
@@ -143,11 +151,15 @@ public abstract class CacheModule extends FactoryModule {
   /**
    * Declare a named in-memory/on-disk cache.
    *
+   * <p>Key and value types that are not {@link Serializable} must be given a {@link
+   * CacheSerializer} through {@link CacheBinding#keySerializer(CacheSerializer)} and {@link
+   * CacheBinding#valueSerializer(CacheSerializer)}.
+   *
    * @param <K> type of key used to lookup entries.
    * @param <V> type of value stored by the cache.
    * @return binding to describe the cache.
    */
-  protected <K extends Serializable, V extends Serializable> CacheBinding<K, V> persist(
+  protected <K, V> CacheBinding<K, V> persist(
       String name, TypeLiteral<K> keyType, TypeLiteral<V> valType) {
     return ((CacheProvider<K, V>) cache(name, keyType, valType)).persist(true);
   }
@@ -26,6 +26,7 @@ import com.google.gerrit.extensions.annotations.PluginName;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.TypeLiteral;
+import java.io.Serializable;
 import java.util.concurrent.TimeUnit;
 
 class CacheProvider<K, V> implements Provider<Cache<K, V>>, CacheBinding<K, V> {
@@ -36,6 +37,9 @@ class CacheProvider<K, V> implements Provider<Cache<K, V>>, CacheBinding<K, V> {
   private boolean persist;
   private long maximumWeight;
   private long diskLimit;
+  private int version;
+  private CacheSerializer<K> keySerializer;
+  private CacheSerializer<V> valueSerializer;
   private Long expireAfterWrite;
   private Provider<CacheLoader<K, V>> loader;
   private Provider<Weigher<K, V>> weigher;
@@ -88,6 +92,30 @@ class CacheProvider<K, V> implements Provider<Cache<K, V>>, CacheBinding<K, V> {
     return this;
   }
 
+  @Override
+  public CacheBinding<K, V> version(int version) {
+    Preconditions.checkState(!frozen, "binding frozen, cannot be modified");
+    Preconditions.checkState(persist, "version supported for persistent caches only");
+    this.version = version;
+    return this;
+  }
+
+  @Override
+  public CacheBinding<K, V> keySerializer(CacheSerializer<K> keySerializer) {
+    Preconditions.checkState(!frozen, "binding frozen, cannot be modified");
+    Preconditions.checkState(persist, "keySerializer supported for persistent caches only");
+    this.keySerializer = Preconditions.checkNotNull(keySerializer);
+    return this;
+  }
+
+  @Override
+  public CacheBinding<K, V> valueSerializer(CacheSerializer<V> valueSerializer) {
+    Preconditions.checkState(!frozen, "binding frozen, cannot be modified");
+    Preconditions.checkState(persist, "valueSerializer supported for persistent caches only");
+    this.valueSerializer = Preconditions.checkNotNull(valueSerializer);
+    return this;
+  }
+
   @Override
   public CacheBinding<K, V> expireAfterWrite(long duration, TimeUnit unit) {
     Preconditions.checkState(!frozen, "binding frozen, cannot be modified");
@@ -140,12 +168,35 @@ class CacheProvider<K, V> implements Provider<Cache<K, V>>, CacheBinding<K, V> {
     return 128 << 20;
   }
 
+  @Override
+  public int version() {
+    return version;
+  }
+
+  @Override
+  public CacheSerializer<K> keySerializer() {
+    return keySerializer != null ? keySerializer : new JavaCacheSerializer<>();
+  }
+
+  @Override
+  public CacheSerializer<V> valueSerializer() {
+    return valueSerializer != null ? valueSerializer : new JavaCacheSerializer<>();
+  }
+
   @Override
   @Nullable
   public Long expireAfterWrite(TimeUnit unit) {
     return expireAfterWrite != null ? unit.convert(expireAfterWrite, SECONDS) : null;
   }
 
+  private void checkSerializable(CacheSerializer<?> serializer, TypeLiteral<?> type) {
+    Preconditions.checkState(
+        serializer != null || Serializable.class.isAssignableFrom(type.getRawType()),
+        "persistent cache %s requires a serializer for %s",
+        name,
+        type);
+  }
+
   @Override
   @Nullable
   public Weigher<K, V> weigher() {
@@ -161,6 +212,10 @@ class CacheProvider<K, V> implements Provider<Cache<K, V>>, CacheBinding<K, V> {
   @Override
   public Cache<K, V> get() {
     frozen = true;
+    if (persist) {
+      checkSerializable(keySerializer, keyType);
+      checkSerializable(valueSerializer, valType);
+    }
 
     if (loader != null) {
       CacheLoader<K, V> ldr = loader.get();
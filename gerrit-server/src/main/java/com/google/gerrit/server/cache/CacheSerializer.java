@@ -0,0 +1,42 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.cache;
+
+/**
+ * Converts keys and values of a persistent cache to and from the bytes stored on disk.
+ *
+ * <p>Implementations must be thread-safe and deterministic: equal objects must serialize to equal
+ * byte arrays, as the serialized form of a key is used to look up entries in the disk store.
+ *
+ * @param <T> type of object being serialized.
+ */
+public interface CacheSerializer<T> {
+  /**
+   * Serializes the object to a new byte array.
+   *
+   * @param object object to serialize.
+   * @return serialized representation of {@code object}.
+   */
+  byte[] serialize(T object);
+
+  /**
+   * Deserializes a single object from the given byte array.
+   *
+   * @param in serialized representation, as produced by {@link #serialize(Object)}.
+   * @return deserialized object.
+   * @throws IllegalStateException if the bytes cannot be read back as an object of this type.
+   */
+  T deserialize(byte[] in);
+}
@@ -0,0 +1,63 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Base class for hand-written compact serializers.
+ *
+ * <p>Subclasses only implement reading and writing against a stream, typically using the varint
+ * helpers in {@link com.google.gerrit.server.ioutil.BasicSerialization}. Allocation of the backing
+ * array and wrapping of {@link IOException} is handled here. Trailing bytes left over after {@link
+ * #read(InputStream)} are treated as a format error.
+ *
+ * @param <T> type of object being serialized.
+ */
+public abstract class CompactCacheSerializer<T> implements CacheSerializer<T> {
+  protected abstract void write(OutputStream out, T object) throws IOException;
+
+  protected abstract T read(InputStream in) throws IOException;
+
+  @Override
+  public final byte[] serialize(T object) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try {
+      write(out, object);
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to serialize " + object, e);
+    }
+    return out.toByteArray();
+  }
+
+  @Override
+  public final T deserialize(byte[] in) {
+    try {
+      ByteArrayInputStream bin = new ByteArrayInputStream(in);
+      T object = read(bin);
+      if (bin.available() > 0) {
+        throw new EOFException(bin.available() + " trailing bytes");
+      }
+      return object;
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to deserialize object", e);
+    }
+  }
+}
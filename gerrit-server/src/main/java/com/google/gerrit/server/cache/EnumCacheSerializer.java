@@ -0,0 +1,48 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.cache;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Enums;
+
+/**
+ * Serializes an enum constant by its {@link Enum#name() name}.
+ *
+ * <p>Names are used rather than ordinals so that reordering or inserting constants does not change
+ * the meaning of entries already stored on disk.
+ *
+ * @param <E> enum type.
+ */
+public class EnumCacheSerializer<E extends Enum<E>> implements CacheSerializer<E> {
+  private final Class<E> clazz;
+
+  public EnumCacheSerializer(Class<E> clazz) {
+    this.clazz = checkNotNull(clazz);
+  }
+
+  @Override
+  public byte[] serialize(E object) {
+    return StringCacheSerializer.INSTANCE.serialize(object.name());
+  }
+
+  @Override
+  public E deserialize(byte[] in) {
+    String name = StringCacheSerializer.INSTANCE.deserialize(in);
+    return Enums.getIfPresent(clazz, name)
+        .toJavaUtil()
+        .orElseThrow(() -> new IllegalStateException("Invalid " + clazz.getName() + ": " + name));
+  }
+}
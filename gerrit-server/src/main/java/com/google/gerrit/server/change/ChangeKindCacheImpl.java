@@ -16,6 +16,8 @@ package com.google.gerrit.server.change;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.gerrit.server.ioutil.BasicSerialization.readString;
+import static com.google.gerrit.server.ioutil.BasicSerialization.writeString;
 import static org.eclipse.jgit.lib.ObjectIdSerialization.readNotNull;
 import static org.eclipse.jgit.lib.ObjectIdSerialization.writeNotNull;
 
@@ -30,6 +32,8 @@ import com.google.gerrit.reviewdb.client.PatchSet;
 import com.google.gerrit.reviewdb.client.Project;
 import com.google.gerrit.reviewdb.server.ReviewDb;
 import com.google.gerrit.server.cache.CacheModule;
+import com.google.gerrit.server.cache.CompactCacheSerializer;
+import com.google.gerrit.server.cache.EnumCacheSerializer;
 import com.google.gerrit.server.config.GerritServerConfig;
 import com.google.gerrit.server.git.GitRepositoryManager;
 import com.google.gerrit.server.git.InMemoryInserter;
@@ -40,8 +44,10 @@ import com.google.inject.Inject;
 import com.google.inject.Module;
 import com.google.inject.name.Named;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.util.Arrays;
 import java.util.Collection;
@@ -71,6 +77,9 @@ public class ChangeKindCacheImpl implements ChangeKindCache {
       protected void configure() {
         bind(ChangeKindCache.class).to(ChangeKindCacheImpl.class);
         persist(ID_CACHE, Key.class, ChangeKind.class)
+            .version(1)
+            .keySerializer(Key.Serializer.INSTANCE)
+            .valueSerializer(new EnumCacheSerializer<>(ChangeKind.class))
             .maximumWeight(2 << 20)
             .weigher(ChangeKindWeigher.class);
       }
@@ -182,6 +191,24 @@ public class ChangeKindCacheImpl implements ChangeKindCache {
       next = readNotNull(in);
       strategyName = in.readUTF();
     }
+
+    static class Serializer extends CompactCacheSerializer<Key> {
+      static final Serializer INSTANCE = new Serializer();
+
+      @Override
+      protected void write(OutputStream out, Key k) throws IOException {
+        writeNotNull(out, k.prior);
+        writeNotNull(out, k.next);
+        writeString(out, k.strategyName);
+      }
+
+      @Override
+      protected Key read(InputStream in) throws IOException {
+        ObjectId prior = readNotNull(in);
+        ObjectId next = readNotNull(in);
+        return new Key(prior, next, readString(in));
+      }
+    }
   }
 
   private static class Loader implements Callable<ChangeKind> {
@@ -17,7 +17,9 @@ package com.google.gerrit.server.change;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.gerrit.server.ioutil.BasicSerialization.readString;
+import static com.google.gerrit.server.ioutil.BasicSerialization.readVarInt32;
 import static com.google.gerrit.server.ioutil.BasicSerialization.writeString;
+import static com.google.gerrit.server.ioutil.BasicSerialization.writeVarInt32;
 import static org.eclipse.jgit.lib.ObjectIdSerialization.readNotNull;
 import static org.eclipse.jgit.lib.ObjectIdSerialization.writeNotNull;
 
@@ -28,7 +30,9 @@ import com.google.common.collect.ImmutableBiMap;
 import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.gerrit.extensions.client.SubmitType;
 import com.google.gerrit.reviewdb.client.Branch;
+import com.google.gerrit.server.cache.BooleanCacheSerializer;
 import com.google.gerrit.server.cache.CacheModule;
+import com.google.gerrit.server.cache.CompactCacheSerializer;
 import com.google.gerrit.server.git.CodeReviewCommit;
 import com.google.gerrit.server.git.CodeReviewCommit.CodeReviewRevWalk;
 import com.google.gerrit.server.git.strategy.SubmitDryRun;
@@ -37,8 +41,10 @@ import com.google.inject.Module;
 import com.google.inject.Singleton;
 import com.google.inject.name.Named;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.util.Arrays;
 import java.util.Objects;
@@ -78,6 +84,9 @@ public class MergeabilityCacheImpl implements MergeabilityCache {
       @Override
       protected void configure() {
         persist(CACHE_NAME, EntryKey.class, Boolean.class)
+            .version(1)
+            .keySerializer(EntryKey.Serializer.INSTANCE)
+            .valueSerializer(BooleanCacheSerializer.INSTANCE)
             .maximumWeight(1 << 20)
             .weigher(MergeabilityWeigher.class);
         bind(MergeabilityCache.class).to(MergeabilityCacheImpl.class);
@@ -168,6 +177,34 @@ public class MergeabilityCacheImpl implements MergeabilityCache {
       }
       mergeStrategy = readString(in);
     }
+
+    static class Serializer extends CompactCacheSerializer<EntryKey> {
+      static final Serializer INSTANCE = new Serializer();
+
+      @Override
+      protected void write(OutputStream out, EntryKey k) throws IOException {
+        writeNotNull(out, k.commit);
+        writeNotNull(out, k.into);
+        Character c = SUBMIT_TYPES.get(k.submitType);
+        if (c == null) {
+          throw new IOException("Invalid submit type: " + k.submitType);
+        }
+        writeVarInt32(out, c);
+        writeString(out, k.mergeStrategy);
+      }
+
+      @Override
+      protected EntryKey read(InputStream in) throws IOException {
+        ObjectId commit = readNotNull(in);
+        ObjectId into = readNotNull(in);
+        int t = readVarInt32(in);
+        SubmitType submitType = SUBMIT_TYPES.inverse().get((char) t);
+        if (submitType == null) {
+          throw new IOException("Invalid submit type code: " + t);
+        }
+        return new EntryKey(commit, into, submitType, readString(in));
+      }
+    }
   }
 
   public static class MergeabilityWeigher implements Weigher<EntryKey, Boolean> {
@@ -50,6 +50,7 @@ import com.google.gerrit.server.config.GerritServerConfig;
 import com.google.gerrit.server.git.ChangeSet;
 import com.google.gerrit.server.git.GitRepositoryManager;
 import com.google.gerrit.server.git.MergeOp;
+import com.google.gerrit.server.git.MergeQueue;
 import com.google.gerrit.server.git.MergeSuperSet;
 import com.google.gerrit.server.notedb.ChangeNotes;
 import com.google.gerrit.server.permissions.ChangePermission;
@@ -135,7 +136,7 @@ public class Submit
   private final ChangeData.Factory changeDataFactory;
   private final ChangeMessagesUtil cmUtil;
   private final ChangeNotes.Factory changeNotesFactory;
-  private final Provider<MergeOp> mergeOpProvider;
+  private final MergeQueue mergeQueue;
   private final Provider<MergeSuperSet> mergeSuperSet;
   private final AccountsCollection accounts;
   private final String label;
@@ -156,7 +157,7 @@ public class Submit
       ChangeData.Factory changeDataFactory,
       ChangeMessagesUtil cmUtil,
       ChangeNotes.Factory changeNotesFactory,
-      Provider<MergeOp> mergeOpProvider,
+      MergeQueue mergeQueue,
       Provider<MergeSuperSet> mergeSuperSet,
       AccountsCollection accounts,
       @GerritServerConfig Config cfg,
@@ -168,7 +169,7 @@ public class Submit
     this.changeDataFactory = changeDataFactory;
     this.cmUtil = cmUtil;
     this.changeNotesFactory = changeNotesFactory;
-    this.mergeOpProvider = mergeOpProvider;
+    this.mergeQueue = mergeQueue;
     this.mergeSuperSet = mergeSuperSet;
     this.accounts = accounts;
     this.label =
@@ -232,15 +233,13 @@ public class Submit
               "revision %s is not current revision", rsrc.getPatchSet().getRevision().get()));
     }
 
-    try (MergeOp op = mergeOpProvider.get()) {
-      ReviewDb db = dbProvider.get();
-      op.merge(db, change, submitter, true, input, false);
-      try {
-        change =
-            changeNotesFactory.createChecked(db, change.getProject(), change.getId()).getChange();
-      } catch (NoSuchChangeException e) {
-        throw new ResourceConflictException("change is deleted");
-      }
+    ReviewDb db = dbProvider.get();
+    mergeQueue.merge(db, change, submitter, input);
+    try {
+      change =
+          changeNotesFactory.createChecked(db, change.getProject(), change.getId()).getChange();
+    } catch (NoSuchChangeException e) {
+      throw new ResourceConflictException("change is deleted");
     }
 
     switch (change.getStatus()) {
@@ -0,0 +1,353 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.git;
+
+import static com.google.gerrit.server.config.ConfigUtil.getTimeUnit;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.metrics.Counter1;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Description.Units;
+import com.google.gerrit.metrics.Field;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer1;
+import com.google.gerrit.reviewdb.client.Account;
+import com.google.gerrit.reviewdb.client.Project;
+import com.google.gerrit.server.CurrentUser;
+import com.google.gerrit.server.account.AccountLimits;
+import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import org.eclipse.jgit.lib.Config;
+
+/**
+ * Admission control for Git upload-pack and receive-pack over SSH and HTTP.
+ *
+ * <p>Limits how many Git operations may run at once in total, per account and per project. Waiting
+ * operations are admitted in weighted fair order between accounts, so that one account queueing
+ * many operations cannot starve the others. Anonymous users share one place in this order and are
+ * not subject to the per-account limit. Operations that wait longer than {@code
+ * admission.maxWait} are rejected.
+ *
+ * <p>With the default configuration there are no limits and operations are admitted immediately.
+ */
+@Singleton
+public class GitOperationScheduler {
+  public enum Operation {
+    UPLOAD_PACK,
+    RECEIVE_PACK;
+  }
+
+  /** Receives the outcome of a scheduled operation. */
+  public interface Callback {
+    /**
+     * The operation may run now. {@link Ticket#release()} must be called once it is done.
+     *
+     * <p>May be invoked on the thread that released the previous operation.
+     */
+    void admitted(Ticket ticket);
+
+    /** The operation was not admitted in time and must not run. */
+    void rejected(String message);
+  }
+
+  private enum State {
+    QUEUED,
+    RUNNING,
+    DONE;
+  }
+
+  /** A scheduled operation. */
+  public final class Ticket {
+    private final Flow flow;
+    @Nullable private final Project.NameKey project;
+    private final Operation operation;
+    private final Callback callback;
+    private final long queued = System.nanoTime();
+    private State state = State.QUEUED;
+    private ScheduledFuture<?> timeout;
+
+    private Ticket(
+        Flow flow, @Nullable Project.NameKey project, Operation operation, Callback callback) {
+      this.flow = flow;
+      this.project = project;
+      this.operation = operation;
+      this.callback = callback;
+    }
+
+    /**
+     * Ends the operation, or withdraws it if it was not admitted yet.
+     *
+     * <p>Safe to call more than once.
+     */
+    public void release() {
+      List<Ticket> admitted;
+      synchronized (GitOperationScheduler.this) {
+        if (state == State.QUEUED) {
+          flow.queue.remove(this);
+          cancelTimeout();
+          state = State.DONE;
+          return;
+        } else if (state == State.DONE) {
+          return;
+        }
+        state = State.DONE;
+        running--;
+        decrement(runningByAccount, flow.account);
+        if (project != null) {
+          decrement(runningByProject, project);
+        }
+        admitted = dispatch();
+      }
+      notifyAdmitted(admitted);
+    }
+
+    private void cancelTimeout() {
+      if (timeout != null) {
+        timeout.cancel(false);
+        timeout = null;
+      }
+    }
+  }
+
+  /** The operations of one account, with its weighted fair queuing tag. */
+  private static class Flow {
+    @Nullable private final Account.Id account;
+    private final Deque<Ticket> queue = new ArrayDeque<>();
+    private double weight;
+    private double tag;
+
+    Flow(@Nullable Account.Id account) {
+      this.account = account;
+    }
+  }
+
+  private final AccountLimits.Factory limitsFactory;
+  private final WorkQueue workQueue;
+  private final int maxConcurrent;
+  private final int maxPerAccount;
+  private final int maxPerProject;
+  private final long maxWait;
+  private final int interactiveWeight;
+  private final int batchWeight;
+  private final Timer1<Operation> waitTime;
+  private final Counter1<Operation> rejected;
+
+  private final Map<Account.Id, Flow> flows = new HashMap<>();
+  private final Map<Account.Id, Integer> runningByAccount = new HashMap<>();
+  private final Map<Project.NameKey, Integer> runningByProject = new HashMap<>();
+  private int running;
+  private double virtualTime;
+
+  @Inject
+  GitOperationScheduler(
+      AccountLimits.Factory limitsFactory,
+      WorkQueue workQueue,
+      MetricMaker metricMaker,
+      @GerritServerConfig Config cfg) {
+    this.limitsFactory = limitsFactory;
+    this.workQueue = workQueue;
+    this.maxConcurrent = cfg.getInt("admission", "maxConcurrent", 0);
+    this.maxPerAccount = cfg.getInt("admission", "maxPerAccount", 0);
+    this.maxPerProject = cfg.getInt("admission", "maxPerProject", 0);
+    this.maxWait =
+        getTimeUnit(cfg, "admission", null, "maxWait", MINUTES.toMillis(5), MILLISECONDS);
+    this.interactiveWeight = Math.max(cfg.getInt("admission", "interactiveWeight", 1), 1);
+    this.batchWeight = Math.max(cfg.getInt("admission", "batchWeight", 1), 1);
+
+    Field<Operation> operation = Field.ofEnum(Operation.class, "operation");
+    waitTime =
+        metricMaker.newTimer(
+            "git/admission/wait_time",
+            new Description("Time Git operations waited to be admitted")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS),
+            operation);
+    rejected =
+        metricMaker.newCounter(
+            "git/admission/rejected_count",
+            new Description("Git operations rejected because they waited too long")
+                .setRate()
+                .setUnit("requests"),
+            operation);
+  }
+
+  /**
+   * Schedules a Git operation.
+   *
+   * <p>The callback is invoked exactly once, unless the returned ticket is released before the
+   * operation was admitted. If the operation can run immediately, the callback is invoked before
+   * this method returns.
+   *
+   * @param user user performing the operation.
+   * @param project project the operation is on, or {@code null} if not known.
+   * @param operation kind of the operation.
+   * @param callback notified when the operation is admitted or rejected.
+   * @return ticket of the operation.
+   */
+  public Ticket schedule(
+      CurrentUser user,
+      @Nullable Project.NameKey project,
+      Operation operation,
+      Callback callback) {
+    Account.Id account = user.isIdentifiedUser() ? user.getAccountId() : null;
+    QueueProvider.QueueType queueType = limitsFactory.create(user).getQueueType();
+    int weight = queueType == QueueProvider.QueueType.BATCH ? batchWeight : interactiveWeight;
+
+    Ticket ticket;
+    List<Ticket> admitted;
+    synchronized (this) {
+      Flow flow = flows.computeIfAbsent(account, Flow::new);
+      flow.weight = weight;
+      if (flow.queue.isEmpty()) {
+        flow.tag = Math.max(flow.tag, virtualTime);
+      }
+      ticket = new Ticket(flow, project, operation, callback);
+      flow.queue.add(ticket);
+      admitted = dispatch();
+      if (ticket.state == State.QUEUED && maxWait > 0) {
+        ticket.timeout =
+            workQueue.getDefaultQueue().schedule(() -> expire(ticket), maxWait, MILLISECONDS);
+      }
+    }
+    notifyAdmitted(admitted);
+    return ticket;
+  }
+
+  /** Admits queued operations as long as limits allow, lowest tag first. */
+  private List<Ticket> dispatch() {
+    List<Ticket> admitted = new ArrayList<>();
+    while (maxConcurrent <= 0 || running < maxConcurrent) {
+      Flow next = null;
+      Ticket candidate = null;
+      for (Flow flow : flows.values()) {
+        if (next != null && next.tag <= flow.tag) {
+          continue;
+        }
+        Ticket t = firstAdmissible(flow);
+        if (t != null) {
+          next = flow;
+          candidate = t;
+        }
+      }
+      if (candidate == null) {
+        break;
+      }
+
+      next.queue.remove(candidate);
+      virtualTime = Math.max(virtualTime, next.tag);
+      next.tag += 1.0 / next.weight;
+      candidate.cancelTimeout();
+      candidate.state = State.RUNNING;
+      running++;
+      increment(runningByAccount, next.account);
+      if (candidate.project != null) {
+        increment(runningByProject, candidate.project);
+      }
+      admitted.add(candidate);
+    }
+
+    // Forget idle accounts, they restart at the current virtual time.
+    flows
+        .values()
+        .removeIf(f -> f.queue.isEmpty() && !runningByAccount.containsKey(f.account));
+    return admitted;
+  }
+
+  @Nullable
+  private Ticket firstAdmissible(Flow flow) {
+    if (flow.queue.isEmpty() || atAccountLimit(flow)) {
+      return null;
+    }
+    for (Ticket t : flow.queue) {
+      if (t.project == null || !atLimit(runningByProject, t.project, maxPerProject)) {
+        return t;
+      }
+    }
+    return null;
+  }
+
+  private void expire(Ticket ticket) {
+    String message;
+    synchronized (this) {
+      if (ticket.state != State.QUEUED) {
+        return;
+      }
+      ticket.flow.queue.remove(ticket);
+      ticket.timeout = null;
+      ticket.state = State.DONE;
+      message = rejectionMessage(ticket);
+    }
+    rejected.increment(ticket.operation);
+    ticket.callback.rejected(message);
+  }
+
+  private String rejectionMessage(Ticket ticket) {
+    String limit;
+    if (atAccountLimit(ticket.flow)) {
+      limit = "limit of " + maxPerAccount + " concurrent operations per account";
+    } else if (ticket.project != null
+        && atLimit(runningByProject, ticket.project, maxPerProject)) {
+      limit = "limit of " + maxPerProject + " concurrent operations on " + ticket.project.get();
+    } else if (maxConcurrent > 0 && running >= maxConcurrent) {
+      limit = "limit of " + maxConcurrent + " concurrent operations";
+    } else {
+      limit = "other operations queued first";
+    }
+    String waited =
+        maxWait % 1000 == 0 ? MILLISECONDS.toSeconds(maxWait) + " seconds" : maxWait + " ms";
+    return String.format(
+        "server is busy: waited %s for a free slot (%s), try again later", waited, limit);
+  }
+
+  private void notifyAdmitted(List<Ticket> admitted) {
+    for (Ticket t : admitted) {
+      waitTime.record(t.operation, System.nanoTime() - t.queued, NANOSECONDS);
+      t.callback.admitted(t);
+    }
+  }
+
+  private boolean atAccountLimit(Flow flow) {
+    // Anonymous users share one flow, so a per-account limit would cap all of them together.
+    return flow.account != null && atLimit(runningByAccount, flow.account, maxPerAccount);
+  }
+
+  private static <K> boolean atLimit(Map<K, Integer> counts, K key, int limit) {
+    return limit > 0 && counts.getOrDefault(key, 0) >= limit;
+  }
+
+  private static <K> void increment(Map<K, Integer> counts, K key) {
+    counts.merge(key, 1, Integer::sum);
+  }
+
+  private static <K> void decrement(Map<K, Integer> counts, K key) {
+    Integer n = counts.get(key);
+    if (n == null || n <= 1) {
+      counts.remove(key);
+    } else {
+      counts.put(key, n - 1);
+    }
+  }
+}
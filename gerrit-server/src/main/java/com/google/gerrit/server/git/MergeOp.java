@@ -18,12 +18,14 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
 
 import com.github.rholder.retry.Attempt;
 import com.github.rholder.retry.RetryListener;
 import com.google.auto.value.AutoValue;
 import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
@@ -430,24 +432,48 @@ public class MergeOp implements AutoCloseable {
       boolean dryrun)
       throws OrmException, RestApiException, UpdateException, IOException, ConfigInvalidException,
           PermissionBackendException {
+    merge(db, ImmutableList.of(change), caller, checkSubmitRules, submitInput, dryrun);
+  }
+
+  /**
+   * Merges the given changes together in a single integration.
+   *
+   * <p>Each change is completed to its own set of changes to be submitted, as in {@link
+   * #merge(ReviewDb, Change, IdentifiedUser, boolean, SubmitInput, boolean)}, and the union of
+   * these sets is integrated at once. If any change cannot be submitted, none is.
+   *
+   * @param db the review database.
+   * @param changes the changes to be merged, must not be empty.
+   * @param caller the identity of the caller
+   * @param checkSubmitRules whether the prolog submit rules should be evaluated
+   * @param submitInput parameters regarding the merge
+   * @throws OrmException an error occurred reading or writing the database.
+   * @throws RestApiException if an error occurred.
+   * @throws PermissionBackendException if permissions can't be checked
+   * @throws IOException an error occurred reading from NoteDb.
+   */
+  public void merge(
+      ReviewDb db,
+      List<Change> changes,
+      IdentifiedUser caller,
+      boolean checkSubmitRules,
+      SubmitInput submitInput,
+      boolean dryrun)
+      throws OrmException, RestApiException, UpdateException, IOException, ConfigInvalidException,
+          PermissionBackendException {
+    checkArgument(!changes.isEmpty(), "no changes to merge");
     this.submitInput = submitInput;
     this.accountsToNotify = notifyUtil.resolveAccounts(submitInput.notifyDetails);
     this.dryrun = dryrun;
     this.caller = caller;
     this.ts = TimeUtil.nowTs();
-    submissionId = RequestId.forChange(change);
+    submissionId = RequestId.forChange(changes.get(0));
     this.db = db;
     openRepoManager();
 
-    logDebug("Beginning integration of {}", change);
+    logDebug("Beginning integration of {}", changes);
     try {
-      ChangeSet cs = mergeSuperSet.setMergeOpRepoManager(orm).completeChangeSet(db, change, caller);
-      checkState(
-          cs.ids().contains(change.getId()), "change %s missing from %s", change.getId(), cs);
-      if (cs.furtherHiddenChanges()) {
-        throw new AuthException(
-            "A change to be submitted with " + change.getId() + " is not visible");
-      }
+      ChangeSet cs = completeChangeSet(changes);
       logDebug("Calculated to merge {}", cs);
 
       // Count cross-project submissions outside of the retry loop. The chance of a single project
@@ -501,6 +527,27 @@ public class MergeOp implements AutoCloseable {
     }
   }
 
+  private ChangeSet completeChangeSet(List<Change> changes)
+      throws IOException, OrmException, PermissionBackendException, AuthException {
+    mergeSuperSet.setMergeOpRepoManager(orm);
+    List<ChangeSet> sets = new ArrayList<>(changes.size());
+    for (Change change : changes) {
+      ChangeSet cs = mergeSuperSet.completeChangeSet(db, change, caller);
+      checkState(
+          cs.ids().contains(change.getId()), "change %s missing from %s", change.getId(), cs);
+      if (cs.furtherHiddenChanges()) {
+        throw new AuthException(
+            "A change to be submitted with " + change.getId() + " is not visible");
+      }
+      sets.add(cs);
+    }
+    if (sets.size() == 1) {
+      return sets.get(0);
+    }
+    return new ChangeSet(
+        sets.stream().flatMap(cs -> cs.changes().stream()).collect(toList()), ImmutableList.of());
+  }
+
   private void openRepoManager() {
     if (orm != null) {
       orm.close();
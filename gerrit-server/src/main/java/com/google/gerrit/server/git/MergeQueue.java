@@ -0,0 +1,268 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.git;
+
+import static com.google.gerrit.server.config.ConfigUtil.getTimeUnit;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.gerrit.extensions.api.changes.NotifyHandling;
+import com.google.gerrit.extensions.api.changes.SubmitInput;
+import com.google.gerrit.extensions.restapi.RestApiException;
+import com.google.gerrit.reviewdb.client.Account;
+import com.google.gerrit.reviewdb.client.Branch;
+import com.google.gerrit.reviewdb.client.Change;
+import com.google.gerrit.reviewdb.server.ReviewDb;
+import com.google.gerrit.server.IdentifiedUser;
+import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.gerrit.server.notedb.ChangeNotes;
+import com.google.gerrit.server.permissions.PermissionBackendException;
+import com.google.gerrit.server.update.UpdateException;
+import com.google.gwtorm.server.OrmException;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+import org.eclipse.jgit.errors.ConfigInvalidException;
+import org.eclipse.jgit.lib.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Batches submits to the same branch into a single integration.
+ *
+ * <p>Enabled by {@code change.mergeQueueWindow}. The first submit to a branch waits for the window
+ * to collect further submits of the same user to the same branch, then integrates all of them
+ * through one {@link MergeOp}. If that fails, the changes that are not merged yet are integrated
+ * one by one, so that each submit gets its own outcome. Integrations of a branch never run
+ * concurrently, later submits queue up behind the running integration and form the next batch.
+ *
+ * <p>Only submits of the same user with the same notification settings are batched, as a {@link
+ * MergeOp} records a single submitter.
+ */
+@Singleton
+public class MergeQueue {
+  private static final Logger log = LoggerFactory.getLogger(MergeQueue.class);
+
+  @AutoValue
+  abstract static class BatchKey {
+    abstract Branch.NameKey branch();
+
+    abstract Account.Id caller();
+
+    abstract NotifyHandling notify();
+  }
+
+  private static class Batch {
+    final List<Request> requests = new ArrayList<>();
+  }
+
+  private static class Request {
+    final Change change;
+    final SettableFuture<Void> result = SettableFuture.create();
+
+    Request(Change change) {
+      this.change = change;
+    }
+  }
+
+  /** Serializes the integrations of a branch. Dropped once no submit holds or waits for it. */
+  private static class BranchLock {
+    final ReentrantLock lock = new ReentrantLock();
+    int users;
+  }
+
+  private final Provider<MergeOp> mergeOpProvider;
+  private final ChangeNotes.Factory notesFactory;
+  private final long window;
+  private final Map<BatchKey, Batch> pending = new HashMap<>();
+  private final Map<Branch.NameKey, BranchLock> branchLocks = new HashMap<>();
+
+  @Inject
+  MergeQueue(
+      Provider<MergeOp> mergeOpProvider,
+      ChangeNotes.Factory notesFactory,
+      @GerritServerConfig Config cfg) {
+    this.mergeOpProvider = mergeOpProvider;
+    this.notesFactory = notesFactory;
+    this.window = getTimeUnit(cfg, "change", null, "mergeQueueWindow", 0, MILLISECONDS);
+  }
+
+  /**
+   * Merges a change, possibly together with other changes submitted to the same branch.
+   *
+   * <p>Returns once the change was integrated, or throws what integrating it threw. The caller
+   * should reload the change to find out whether it was merged.
+   */
+  public void merge(ReviewDb db, Change change, IdentifiedUser caller, SubmitInput input)
+      throws OrmException, RestApiException, UpdateException, IOException, ConfigInvalidException,
+          PermissionBackendException {
+    if (window <= 0 || input.notifyDetails != null) {
+      try (MergeOp op = mergeOpProvider.get()) {
+        op.merge(db, change, caller, true, input, false);
+      }
+      return;
+    }
+
+    BatchKey key =
+        new AutoValue_MergeQueue_BatchKey(change.getDest(), caller.getAccountId(), input.notify);
+    Request request = new Request(change);
+    boolean leader;
+    Batch batch;
+    synchronized (pending) {
+      batch = pending.get(key);
+      leader = batch == null;
+      if (leader) {
+        batch = new Batch();
+        pending.put(key, batch);
+      }
+      batch.requests.add(request);
+    }
+
+    if (leader) {
+      runBatch(db, key, batch, caller, input);
+    }
+    await(request);
+  }
+
+  private void runBatch(
+      ReviewDb db, BatchKey key, Batch batch, IdentifiedUser caller, SubmitInput input) {
+    List<Request> requests = null;
+    try {
+      try {
+        MILLISECONDS.sleep(window);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      BranchLock lock = lockBranch(key.branch());
+      try {
+        // Submits arriving until the branch is free join this batch.
+        synchronized (pending) {
+          pending.remove(key);
+          requests = new ArrayList<>(batch.requests);
+        }
+        integrate(db, requests, caller, input);
+      } finally {
+        unlockBranch(key.branch(), lock);
+      }
+    } catch (Throwable t) {
+      if (requests == null) {
+        synchronized (pending) {
+          pending.remove(key, batch);
+          requests = new ArrayList<>(batch.requests);
+        }
+      }
+      for (Request r : requests) {
+        r.result.setException(t);
+      }
+    }
+  }
+
+  private BranchLock lockBranch(Branch.NameKey branch) {
+    BranchLock lock;
+    synchronized (branchLocks) {
+      lock = branchLocks.computeIfAbsent(branch, b -> new BranchLock());
+      lock.users++;
+    }
+    lock.lock.lock();
+    return lock;
+  }
+
+  private void unlockBranch(Branch.NameKey branch, BranchLock lock) {
+    lock.lock.unlock();
+    synchronized (branchLocks) {
+      if (--lock.users == 0) {
+        branchLocks.remove(branch);
+      }
+    }
+  }
+
+  private void integrate(
+      ReviewDb db, List<Request> requests, IdentifiedUser caller, SubmitInput input) {
+    if (requests.size() > 1) {
+      List<Change> changes = new ArrayList<>(requests.size());
+      for (Request r : requests) {
+        changes.add(r.change);
+      }
+      try (MergeOp op = mergeOpProvider.get()) {
+        op.merge(db, changes, caller, true, input, false);
+        for (Request r : requests) {
+          r.result.set(null);
+        }
+        return;
+      } catch (Exception e) {
+        log.warn(
+            "Integrating "
+                + changes.size()
+                + " changes into "
+                + changes.get(0).getDest()
+                + " together failed, integrating them one by one",
+            e);
+      }
+    }
+
+    for (Request r : requests) {
+      if (isMerged(db, r.change)) {
+        // Merged by the failed batch before it failed, or by a concurrent submit.
+        r.result.set(null);
+        continue;
+      }
+      try (MergeOp op = mergeOpProvider.get()) {
+        op.merge(db, r.change, caller, true, input, false);
+        r.result.set(null);
+      } catch (Exception e) {
+        r.result.setException(e);
+      }
+    }
+  }
+
+  private boolean isMerged(ReviewDb db, Change change) {
+    try {
+      return notesFactory.createChecked(db, change).getChange().getStatus() == Change.Status.MERGED;
+    } catch (OrmException e) {
+      log.warn("Cannot check status of change " + change.getId() + ", submitting it again", e);
+      return false;
+    }
+  }
+
+  private static void await(Request request)
+      throws OrmException, RestApiException, UpdateException, IOException, ConfigInvalidException,
+          PermissionBackendException {
+    try {
+      request.result.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new OrmException("interrupted while waiting for submit", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      Throwables.throwIfInstanceOf(cause, OrmException.class);
+      Throwables.throwIfInstanceOf(cause, RestApiException.class);
+      Throwables.throwIfInstanceOf(cause, UpdateException.class);
+      Throwables.throwIfInstanceOf(cause, IOException.class);
+      Throwables.throwIfInstanceOf(cause, ConfigInvalidException.class);
+      Throwables.throwIfInstanceOf(cause, PermissionBackendException.class);
+      Throwables.throwIfUnchecked(cause);
+      throw new OrmException(cause);
+    }
+  }
+}
@@ -15,23 +15,28 @@
 package com.google.gerrit.server.git;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.RefDatabase;
 import org.eclipse.jgit.lib.Repository;
 
-/** {@link RefCache} backed directly by a repository. */
+/**
+ * {@link RefCache} backed directly by a repository.
+ *
+ * <p>Safe for concurrent use by multiple threads reading from the same repository.
+ */
 public class RepoRefCache implements RefCache {
   private final RefDatabase refdb;
   private final Map<String, Optional<ObjectId>> ids;
 
   public RepoRefCache(Repository repo) {
     this.refdb = repo.getRefDatabase();
-    this.ids = new HashMap<>();
+    this.ids = new ConcurrentHashMap<>();
   }
 
   @Override
@@ -46,6 +51,25 @@ public class RepoRefCache implements RefCache {
     return id;
   }
 
+  /**
+   * Read a batch of refs with a single lookup in the underlying ref database.
+   *
+   * <p>Useful before reading many entities from the same repository, as subsequent calls to {@link
+   * #get(String)} for these names are served from memory.
+   *
+   * @param refNames names of refs to read; refs that do not exist are cached as absent.
+   * @throws IOException an error occurred reading refs.
+   */
+  public void prefetch(Collection<String> refNames) throws IOException {
+    if (refNames.isEmpty()) {
+      return;
+    }
+    Map<String, Ref> refs = refdb.exactRef(refNames.toArray(new String[refNames.size()]));
+    for (String name : refNames) {
+      ids.put(name, Optional.ofNullable(refs.get(name)).map(Ref::getObjectId));
+    }
+  }
+
   /** @return an unmodifiable view of the refs that have been cached by this instance. */
   public Map<String, Optional<ObjectId>> getCachedRefs() {
     return Collections.unmodifiableMap(ids);
@@ -17,6 +17,7 @@ package com.google.gerrit.server.git;
 import com.google.auto.value.AutoValue;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.gerrit.common.Nullable;
 import com.google.gerrit.extensions.events.GitReferenceUpdatedListener;
@@ -32,6 +33,7 @@ import com.google.gerrit.server.query.change.ChangeData;
 import com.google.gerrit.server.query.change.InternalChangeQuery;
 import com.google.gerrit.server.util.ManualRequestContext;
 import com.google.gerrit.server.util.OneOffRequestContext;
+import com.google.gwtorm.server.OrmException;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.Singleton;
@@ -39,8 +41,16 @@ import com.google.inject.TypeLiteral;
 import com.google.inject.name.Named;
 import com.google.inject.util.Providers;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -67,7 +77,10 @@ public class SearchingChangeCacheImpl implements GitReferenceUpdatedListener {
         bind(SearchingChangeCacheImpl.class)
             .toProvider(Providers.<SearchingChangeCacheImpl>of(null));
       } else {
-        cache(ID_CACHE, Project.NameKey.class, new TypeLiteral<List<CachedChange>>() {})
+        cache(
+                ID_CACHE,
+                Project.NameKey.class,
+                new TypeLiteral<ImmutableMap<Change.Id, CachedChange>>() {})
             .maximumWeight(0)
             .loader(Loader.class);
 
@@ -89,15 +102,24 @@ public class SearchingChangeCacheImpl implements GitReferenceUpdatedListener {
     abstract ReviewerSet reviewers();
   }
 
-  private final LoadingCache<Project.NameKey, List<CachedChange>> cache;
+  private final LoadingCache<Project.NameKey, ImmutableMap<Change.Id, CachedChange>> cache;
   private final ChangeData.Factory changeDataFactory;
+  private final OneOffRequestContext requestContext;
+  private final Provider<InternalChangeQuery> queryProvider;
+
+  /** Changes updated since they were cached, by project. */
+  private final ConcurrentMap<Project.NameKey, Set<Change.Id>> stale = new ConcurrentHashMap<>();
 
   @Inject
   SearchingChangeCacheImpl(
-      @Named(ID_CACHE) LoadingCache<Project.NameKey, List<CachedChange>> cache,
-      ChangeData.Factory changeDataFactory) {
+      @Named(ID_CACHE) LoadingCache<Project.NameKey, ImmutableMap<Change.Id, CachedChange>> cache,
+      ChangeData.Factory changeDataFactory,
+      OneOffRequestContext requestContext,
+      Provider<InternalChangeQuery> queryProvider) {
     this.cache = cache;
     this.changeDataFactory = changeDataFactory;
+    this.requestContext = requestContext;
+    this.queryProvider = queryProvider;
   }
 
   /**
@@ -112,7 +134,7 @@ public class SearchingChangeCacheImpl implements GitReferenceUpdatedListener {
    */
   public List<ChangeData> getChangeData(ReviewDb db, Project.NameKey project) {
     try {
-      List<CachedChange> cached = cache.get(project);
+      Collection<CachedChange> cached = get(project).values();
       List<ChangeData> cds = new ArrayList<>(cached.size());
       for (CachedChange cc : cached) {
         ChangeData cd = changeDataFactory.create(db, cc.change());
@@ -128,12 +150,108 @@ public class SearchingChangeCacheImpl implements GitReferenceUpdatedListener {
 
   @Override
   public void onGitReferenceUpdated(GitReferenceUpdatedListener.Event event) {
-    if (event.getRefName().startsWith(RefNames.REFS_CHANGES)) {
-      cache.invalidate(new Project.NameKey(event.getProjectName()));
+    if (!event.getRefName().startsWith(RefNames.REFS_CHANGES)) {
+      return;
+    }
+    Project.NameKey project = new Project.NameKey(event.getProjectName());
+    if (cache.getIfPresent(project) == null) {
+      return;
+    }
+
+    Change.Id id = Change.Id.fromRef(event.getRefName());
+    if (id == null) {
+      cache.invalidate(project);
+      return;
+    }
+    // Only remember the change here; it is reloaded by the next reader of the project, so that
+    // ref updates don't wait for an index query.
+    stale.compute(
+        project,
+        (p, ids) -> {
+          Set<Change.Id> result = ids != null ? ids : new HashSet<>();
+          result.add(id);
+          return result;
+        });
+  }
+
+  /** Returns the cached changes of {@code project}, after reloading changes updated since. */
+  private ImmutableMap<Change.Id, CachedChange> get(Project.NameKey project)
+      throws ExecutionException {
+    ImmutableMap<Change.Id, CachedChange> changes = cache.get(project);
+    Set<Change.Id> ids = stale.remove(project);
+    if (ids == null) {
+      return changes;
+    }
+
+    // Ref update events are fired after the change was reindexed, so the
+    // index already reflects the updates of these changes.
+    Map<Change.Id, CachedChange> updated;
+    try {
+      updated = load(project, ids);
+    } catch (OrmException e) {
+      log.warn("Cannot reload changes " + ids + " of " + project + ", invalidating", e);
+      cache.invalidate(project);
+      return cache.get(project);
+    }
+    while (true) {
+      ImmutableMap<Change.Id, CachedChange> old = cache.getIfPresent(project);
+      if (old == null) {
+        return cache.get(project);
+      }
+      ImmutableMap<Change.Id, CachedChange> next = apply(old, ids, updated);
+      if (cache.asMap().replace(project, old, next)) {
+        return next;
+      }
+    }
+  }
+
+  private Map<Change.Id, CachedChange> load(Project.NameKey project, Set<Change.Id> ids)
+      throws OrmException {
+    try (ManualRequestContext ctx = requestContext.open()) {
+      Map<Change.Id, CachedChange> result = new HashMap<>();
+      for (ChangeData cd : newQuery(queryProvider).byLegacyChangeIds(ids)) {
+        if (cd.project().equals(project)) {
+          result.put(cd.getId(), toCachedChange(cd));
+        }
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Returns a copy of {@code old} with the changes {@code ids} replaced by their {@code updated}
+   * version, or removed if there is none. Changes already cached in a newer version are kept.
+   */
+  private static ImmutableMap<Change.Id, CachedChange> apply(
+      ImmutableMap<Change.Id, CachedChange> old,
+      Set<Change.Id> ids,
+      Map<Change.Id, CachedChange> updated) {
+    Map<Change.Id, CachedChange> result = new LinkedHashMap<>(old);
+    for (Change.Id id : ids) {
+      CachedChange current = old.get(id);
+      CachedChange u = updated.get(id);
+      if (u == null) {
+        result.remove(id);
+      } else if (current == null
+          || !current.change().getLastUpdatedOn().after(u.change().getLastUpdatedOn())) {
+        result.put(id, u);
+      }
     }
+    return ImmutableMap.copyOf(result);
+  }
+
+  private static InternalChangeQuery newQuery(Provider<InternalChangeQuery> queryProvider) {
+    return queryProvider
+        .get()
+        .setRequestedFields(
+            ImmutableSet.of(ChangeField.CHANGE.getName(), ChangeField.REVIEWER.getName()));
+  }
+
+  private static CachedChange toCachedChange(ChangeData cd) {
+    return new AutoValue_SearchingChangeCacheImpl_CachedChange(cd.change(), cd.getReviewers());
   }
 
-  static class Loader extends CacheLoader<Project.NameKey, List<CachedChange>> {
+  static class Loader extends CacheLoader<Project.NameKey, ImmutableMap<Change.Id, CachedChange>> {
     private final OneOffRequestContext requestContext;
     private final Provider<InternalChangeQuery> queryProvider;
 
@@ -144,20 +262,14 @@ public class SearchingChangeCacheImpl implements GitReferenceUpdatedListener {
     }
 
     @Override
-    public List<CachedChange> load(Project.NameKey key) throws Exception {
+    public ImmutableMap<Change.Id, CachedChange> load(Project.NameKey key) throws Exception {
       try (ManualRequestContext ctx = requestContext.open()) {
-        List<ChangeData> cds =
-            queryProvider
-                .get()
-                .setRequestedFields(
-                    ImmutableSet.of(ChangeField.CHANGE.getName(), ChangeField.REVIEWER.getName()))
-                .byProject(key);
-        List<CachedChange> result = new ArrayList<>(cds.size());
+        List<ChangeData> cds = newQuery(queryProvider).byProject(key);
+        Map<Change.Id, CachedChange> result = new LinkedHashMap<>();
         for (ChangeData cd : cds) {
-          result.add(
-              new AutoValue_SearchingChangeCacheImpl_CachedChange(cd.change(), cd.getReviewers()));
+          result.put(cd.getId(), toCachedChange(cd));
         }
-        return Collections.unmodifiableList(result);
+        return ImmutableMap.copyOf(result);
       }
     }
   }
@@ -19,6 +19,7 @@ import static com.google.gerrit.reviewdb.client.RefNames.REFS_CHANGES;
 import static com.google.gerrit.reviewdb.client.RefNames.REFS_CONFIG;
 import static com.google.gerrit.reviewdb.client.RefNames.REFS_USERS_SELF;
 import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
 
 import com.google.gerrit.common.Nullable;
 import com.google.gerrit.extensions.restapi.AuthException;
@@ -51,6 +52,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Stream;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.Ref;
@@ -82,6 +84,7 @@ public class VisibleRefFilter extends AbstractAdvertiseRefsHook {
   private boolean showMetadata = true;
   private String userEditPrefix;
   private Map<Change.Id, Branch.NameKey> visibleChanges;
+  private boolean failed;
 
   @Inject
   VisibleRefFilter(
@@ -111,6 +114,14 @@ public class VisibleRefFilter extends AbstractAdvertiseRefsHook {
     return this;
   }
 
+  /**
+   * Returns whether refs were hidden because changes could not be loaded or permissions could not
+   * be checked. Such a result must not be reused for later requests.
+   */
+  public boolean hasErrors() {
+    return failed;
+  }
+
   public Map<String, Ref> filter(Map<String, Ref> refs, boolean filterTagsSeparately) {
     if (projectState.isAllUsers()) {
       refs = addUsersSelfSymref(refs);
@@ -138,6 +149,7 @@ public class VisibleRefFilter extends AbstractAdvertiseRefsHook {
 
     Map<String, Ref> result = new HashMap<>();
     List<Ref> deferredTags = new ArrayList<>();
+    List<Ref> deferredRefs = new ArrayList<>();
 
     for (Ref ref : refs.values()) {
       String name = ref.getName();
@@ -175,11 +187,23 @@ public class VisibleRefFilter extends AbstractAdvertiseRefsHook {
         if (viewMetadata) {
           result.put(name, ref);
         }
-      } else if (canReadRef(ref.getLeaf().getName())) {
-        // Use the leaf to lookup the control data. If the reference is
-        // symbolic we want the control around the final target. If its
-        // not symbolic then getLeaf() is a no-op returning ref itself.
-        result.put(name, ref);
+      } else {
+        // Consider it later, together with all other references that
+        // depend only on READ.
+        deferredRefs.add(ref);
+      }
+    }
+
+    // Use the leaf to lookup the control data. If the reference is
+    // symbolic we want the control around the final target. If its
+    // not symbolic then getLeaf() is a no-op returning ref itself.
+    //
+    if (!deferredRefs.isEmpty()) {
+      Set<String> readable = canReadRefs(deferredRefs.stream().map(r -> r.getLeaf().getName()));
+      for (Ref ref : deferredRefs) {
+        if (readable.contains(ref.getLeaf().getName())) {
+          result.put(ref.getName(), ref);
+        }
       }
     }
 
@@ -271,7 +295,10 @@ public class VisibleRefFilter extends AbstractAdvertiseRefsHook {
         // Default to READ_PRIVATE_CHANGES as there is no special permission for reading edits.
         perm.ref(visibleChanges.get(id).get()).check(RefPermission.READ_PRIVATE_CHANGES);
         return true;
-      } catch (PermissionBackendException | AuthException e) {
+      } catch (AuthException e) {
+        return false;
+      } catch (PermissionBackendException e) {
+        failed = true;
         return false;
       }
     }
@@ -292,6 +319,7 @@ public class VisibleRefFilter extends AbstractAdvertiseRefsHook {
     } catch (OrmException | PermissionBackendException e) {
       log.error(
           "Cannot load changes for project " + project + ", assuming no changes are visible", e);
+      failed = true;
       return Collections.emptyMap();
     }
   }
@@ -303,6 +331,7 @@ public class VisibleRefFilter extends AbstractAdvertiseRefsHook {
       s = changeNotesFactory.scan(git, db.get(), p);
     } catch (IOException e) {
       log.error("Cannot load changes for project " + p + ", assuming no changes are visible", e);
+      failed = true;
       return Collections.emptyMap();
     }
     return s.map(r -> toNotes(p, r))
@@ -314,6 +343,7 @@ public class VisibleRefFilter extends AbstractAdvertiseRefsHook {
   private ChangeNotes toNotes(Project.NameKey p, ChangeNotesResult r) {
     if (r.error().isPresent()) {
       log.warn("Failed to load change " + r.id() + " in " + p, r.error().get());
+      failed = true;
       return null;
     }
     try {
@@ -322,6 +352,7 @@ public class VisibleRefFilter extends AbstractAdvertiseRefsHook {
       }
     } catch (PermissionBackendException e) {
       log.warn("Failed to check permission for " + r.id() + " in " + p, e);
+      failed = true;
     }
     return null;
   }
@@ -344,10 +375,21 @@ public class VisibleRefFilter extends AbstractAdvertiseRefsHook {
       return false;
     } catch (PermissionBackendException e) {
       log.error("unable to check permissions", e);
+      failed = true;
       return false;
     }
   }
 
+  private Set<String> canReadRefs(Stream<String> refs) {
+    try {
+      return perm.filterReadable(refs.collect(toSet()));
+    } catch (PermissionBackendException e) {
+      log.error("unable to check permissions", e);
+      failed = true;
+      return Collections.emptySet();
+    }
+  }
+
   private boolean checkProjectPermission(
       PermissionBackend.ForProject forProject, ProjectPermission perm) {
     try {
@@ -360,6 +402,7 @@ public class VisibleRefFilter extends AbstractAdvertiseRefsHook {
               "Can't check permission for user %s on project %s",
               user.get(), projectState.getName()),
           e);
+      failed = true;
       return false;
     }
     return true;
@@ -323,7 +323,6 @@ class ReceiveCommits {
   private final CreateRefControl createRefControl;
 
   // Assisted injected fields.
-  private final AllRefsWatcher allRefsWatcher;
   private final ImmutableSetMultimap<ReviewerStateInternal, Account.Id> extraReviewers;
   private final ProjectState projectState;
   private final IdentifiedUser user;
@@ -336,6 +335,7 @@ class ReceiveCommits {
   private final Project project;
   private final Repository repo;
   private final RequestId receiveId;
+  private final ReceivePackRefCache refCache;
 
   // Collections populated during processing.
   private final List<UpdateGroupsRequest> updateGroups;
@@ -356,8 +356,6 @@ class ReceiveCommits {
 
   // Collections lazily populated during processing.
   private List<CreateRequest> newChanges;
-  private ListMultimap<Change.Id, Ref> refsByChange;
-  private ListMultimap<ObjectId, Ref> refsById;
 
   // Other settings populated during processing.
   private MagicBranchInput magicBranch;
@@ -449,7 +447,6 @@ class ReceiveCommits {
     this.createRefControl = createRefControl;
 
     // Assisted injected fields.
-    this.allRefsWatcher = allRefsWatcher;
     this.extraReviewers = ImmutableSetMultimap.copyOf(extraReviewers);
     this.projectState = projectState;
     this.user = user;
@@ -461,6 +458,7 @@ class ReceiveCommits {
     labelTypes = projectState.getLabelTypes();
     permissions = permissionBackend.user(user).project(project.getNameKey());
     receiveId = RequestId.forProject(project.getNameKey());
+    refCache = new ReceivePackRefCache(repo.getRefDatabase(), allRefsWatcher);
     rejectCommits = BanCommit.loadRejectCommitsMap(rp.getRepository(), rp.getRevWalk());
 
     // Collections populated during processing.
@@ -1669,11 +1667,17 @@ class ReceiveCommits {
     }
 
     logDebug("Replacing change {}", changeEnt.getId());
-    requestReplace(cmd, true, changeEnt, newCommit);
+    try {
+      requestReplace(cmd, true, changeEnt, newCommit);
+    } catch (IOException e) {
+      logError("Cannot read refs of change " + changeId, e);
+      reject(cmd, "internal server error");
+    }
   }
 
   private boolean requestReplace(
-      ReceiveCommand cmd, boolean checkMergedInto, Change change, RevCommit newCommit) {
+      ReceiveCommand cmd, boolean checkMergedInto, Change change, RevCommit newCommit)
+      throws IOException {
     if (change.getStatus().isClosed()) {
       reject(
           cmd,
@@ -1695,9 +1699,9 @@ class ReceiveCommits {
     logDebug("Finding new and replaced changes");
     newChanges = new ArrayList<>();
 
-    ListMultimap<ObjectId, Ref> existing = changeRefsById();
+    ListMultimap<ObjectId, Ref> existing = refCache.patchSetRefsByCommit();
     GroupCollector groupCollector =
-        GroupCollector.create(changeRefsById(), db, psUtil, notesFactory, project.getNameKey());
+        GroupCollector.create(existing, db, psUtil, notesFactory, project.getNameKey());
 
     try {
       RevCommit start = setUpWalkForSelectingChanges();
@@ -2046,11 +2050,17 @@ class ReceiveCommits {
     }
   }
 
-  private void markHeadsAsUninteresting(RevWalk rw, @Nullable String forRef) {
+  private void markHeadsAsUninteresting(RevWalk rw, @Nullable String forRef) throws IOException {
     int i = 0;
-    for (Ref ref : allRefs().values()) {
-      if ((ref.getName().startsWith(R_HEADS) || ref.getName().equals(forRef))
-          && ref.getObjectId() != null) {
+    List<Ref> refs = new ArrayList<>(refCache.byPrefix(R_HEADS));
+    if (forRef != null && !forRef.startsWith(R_HEADS)) {
+      Ref ref = refCache.exactRef(forRef);
+      if (ref != null) {
+        refs.add(ref);
+      }
+    }
+    for (Ref ref : refs) {
+      if (ref.getObjectId() != null) {
         try {
           rw.markUninteresting(rw.parseCommit(ref.getObjectId()));
           i++;
@@ -2287,14 +2297,15 @@ class ReceiveCommits {
     private ReplaceOp replaceOp;
 
     ReplaceRequest(
-        Change.Id toChange, RevCommit newCommit, ReceiveCommand cmd, boolean checkMergedInto) {
+        Change.Id toChange, RevCommit newCommit, ReceiveCommand cmd, boolean checkMergedInto)
+        throws IOException {
       this.ontoChange = toChange;
       this.newCommitId = newCommit.copy();
       this.inputCommand = checkNotNull(cmd);
       this.checkMergedInto = checkMergedInto;
 
       revisions = HashBiMap.create();
-      for (Ref ref : refs(toChange)) {
+      for (Ref ref : refCache.patchSetRefs(toChange)) {
         try {
           revisions.forcePut(
               rp.getRevWalk().parseCommit(ref.getObjectId()), PatchSet.Id.fromRef(ref.getName()));
@@ -2599,41 +2610,6 @@ class ReceiveCommits {
     }
   }
 
-  private List<Ref> refs(Change.Id changeId) {
-    return refsByChange().get(changeId);
-  }
-
-  private void initChangeRefMaps() {
-    if (refsByChange == null) {
-      int estRefsPerChange = 4;
-      refsById = MultimapBuilder.hashKeys().arrayListValues().build();
-      refsByChange =
-          MultimapBuilder.hashKeys(allRefs().size() / estRefsPerChange)
-              .arrayListValues(estRefsPerChange)
-              .build();
-      for (Ref ref : allRefs().values()) {
-        ObjectId obj = ref.getObjectId();
-        if (obj != null) {
-          PatchSet.Id psId = PatchSet.Id.fromRef(ref.getName());
-          if (psId != null) {
-            refsById.put(obj, ref);
-            refsByChange.put(psId.getParentKey(), ref);
-          }
-        }
-      }
-    }
-  }
-
-  private ListMultimap<Change.Id, Ref> refsByChange() {
-    initChangeRefMaps();
-    return refsByChange;
-  }
-
-  private ListMultimap<ObjectId, Ref> changeRefsById() {
-    initChangeRefMaps();
-    return refsById;
-  }
-
   static boolean parentsEqual(RevCommit a, RevCommit b) {
     if (a.getParentCount() != b.getParentCount()) {
       return false;
@@ -2712,7 +2688,7 @@ class ReceiveCommits {
       if (!(parsedObject instanceof RevCommit)) {
         return;
       }
-      ListMultimap<ObjectId, Ref> existing = changeRefsById();
+      ListMultimap<ObjectId, Ref> existing = refCache.patchSetRefsByCommit();
       walk.markStart((RevCommit) parsedObject);
       markHeadsAsUninteresting(walk, cmd.getRefName());
       int limit = receiveConfig.maxBatchCommits;
@@ -2731,7 +2707,7 @@ class ReceiveCommits {
           reject(cmd, "too many commits");
           return;
         }
-        if (existing.keySet().contains(c)) {
+        if (existing.containsKey(c)) {
           continue;
         } else if (!validCommit(walk, perm, branch, cmd, c)) {
           break;
@@ -2814,7 +2790,7 @@ class ReceiveCommits {
         rw.markUninteresting(rw.parseCommit(cmd.getOldId()));
       }
 
-      ListMultimap<ObjectId, Ref> byCommit = changeRefsById();
+      ListMultimap<ObjectId, Ref> byCommit = refCache.patchSetRefsByCommit();
       Map<Change.Key, ChangeNotes> byKey = null;
       List<ReplaceRequest> replaceAndClose = new ArrayList<>();
 
@@ -2918,7 +2894,7 @@ class ReceiveCommits {
   }
 
   private Map<String, Ref> allRefs() {
-    return allRefsWatcher.getAllRefs();
+    return refCache.all();
   }
 
   private void reject(@Nullable ReceiveCommand cmd, String why) {
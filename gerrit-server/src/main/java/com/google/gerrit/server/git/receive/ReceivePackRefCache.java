@@ -0,0 +1,104 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.git.receive;
+
+import static com.google.gerrit.reviewdb.client.RefNames.REFS_CHANGES;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.reviewdb.client.Change;
+import com.google.gerrit.reviewdb.client.PatchSet;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefDatabase;
+
+/**
+ * Ref lookups needed while processing a single push.
+ *
+ * <p>Repositories hosting many changes have far more refs below {@code refs/changes/} than
+ * anywhere else, yet most pushes only look at a handful of them. Instead of indexing every ref of
+ * the repository up front, lookups by namespace and by change go to the {@link RefDatabase}, which
+ * can answer prefix queries without scanning the other namespaces, and the index of patch set refs
+ * by commit is only built the first time a caller needs it.
+ *
+ * <p>Lookups by name and the commit index are answered from the refs advertised to the client, so
+ * that they are consistent with what the client based its push on.
+ */
+class ReceivePackRefCache {
+  private final RefDatabase refDb;
+  private final AllRefsWatcher allRefsWatcher;
+
+  private final Supplier<ImmutableListMultimap<ObjectId, Ref>> patchSetRefsByCommit;
+
+  ReceivePackRefCache(RefDatabase refDb, AllRefsWatcher allRefsWatcher) {
+    this.refDb = refDb;
+    this.allRefsWatcher = allRefsWatcher;
+    this.patchSetRefsByCommit = Suppliers.memoize(this::indexPatchSetRefsByCommit);
+  }
+
+  /** @return all refs advertised to the client. */
+  Map<String, Ref> all() {
+    return allRefsWatcher.getAllRefs();
+  }
+
+  /** @return the advertised ref with the given name, or null if there is none. */
+  @Nullable
+  Ref exactRef(String name) {
+    return all().get(name);
+  }
+
+  /** @return refs whose name starts with {@code prefix}. */
+  Collection<Ref> byPrefix(String prefix) throws IOException {
+    return refDb.getRefs(prefix).values();
+  }
+
+  /** @return patch set refs of a change; other refs below the change's prefix are skipped. */
+  ImmutableList<Ref> patchSetRefs(Change.Id changeId) throws IOException {
+    ImmutableList.Builder<Ref> refs = ImmutableList.builder();
+    for (Ref ref : byPrefix(changeId.toRefPrefix())) {
+      if (ref.getObjectId() != null && PatchSet.Id.fromRef(ref.getName()) != null) {
+        refs.add(ref);
+      }
+    }
+    return refs.build();
+  }
+
+  /**
+   * @return advertised patch set refs keyed by the commit they point to. The index is built on the
+   *     first call and shared by all later callers of the same push.
+   */
+  ImmutableListMultimap<ObjectId, Ref> patchSetRefsByCommit() {
+    return patchSetRefsByCommit.get();
+  }
+
+  private ImmutableListMultimap<ObjectId, Ref> indexPatchSetRefsByCommit() {
+    ImmutableListMultimap.Builder<ObjectId, Ref> b = ImmutableListMultimap.builder();
+    for (Ref ref : all().values()) {
+      ObjectId obj = ref.getObjectId();
+      if (obj != null
+          && ref.getName().startsWith(REFS_CHANGES)
+          && PatchSet.Id.fromRef(ref.getName()) != null) {
+        b.put(obj, ref);
+      }
+    }
+    return b.build();
+  }
+}
@@ -106,7 +106,29 @@ public class OnlineReindexer<K, V, I extends Index<K, V>> {
         name,
         version(indexes.getSearchIndex()),
         version(index));
-    SiteIndexer.Result result = batchIndexer.indexAll(index);
+    try {
+      index.startBulkWrite();
+    } catch (IOException e) {
+      log.warn("Error starting bulk write to {} schema version {}", name, version(index), e);
+    }
+    SiteIndexer.Result result;
+    boolean flushed = false;
+    try {
+      result = batchIndexer.indexAll(index);
+    } finally {
+      try {
+        index.finishBulkWrite();
+        flushed = true;
+      } catch (IOException e) {
+        log.error("Error finishing bulk write to {} schema version {}", name, version(index), e);
+      }
+    }
+    if (!flushed) {
+      // Documents may be missing from the new index, e.g. because they were rejected in a bulk
+      // request, so it must not replace the old one.
+      log.error("Online reindex of {} schema version {} failed", name, version(index));
+      return;
+    }
     if (!result.success()) {
       log.error(
           "Online reindex of {} schema version {} failed. Successfully"
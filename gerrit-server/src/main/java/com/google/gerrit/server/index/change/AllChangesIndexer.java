@@ -24,17 +24,19 @@ import com.google.common.base.Stopwatch;
 import com.google.common.collect.ComparisonChain;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.gerrit.common.Nullable;
 import com.google.gerrit.index.SiteIndexer;
 import com.google.gerrit.reviewdb.client.Change;
 import com.google.gerrit.reviewdb.client.Project;
-import com.google.gerrit.reviewdb.client.RefNames;
 import com.google.gerrit.reviewdb.server.ReviewDb;
+import com.google.gerrit.server.config.GerritServerConfig;
 import com.google.gerrit.server.git.GitRepositoryManager;
 import com.google.gerrit.server.git.MultiProgressMonitor;
 import com.google.gerrit.server.git.MultiProgressMonitor.Task;
 import com.google.gerrit.server.index.IndexExecutor;
 import com.google.gerrit.server.notedb.ChangeNotes;
 import com.google.gerrit.server.notedb.ChangeNotes.Factory.ChangeNotesResult;
+import com.google.gerrit.server.notedb.ChangeNotes.Factory.ScanResult;
 import com.google.gerrit.server.project.ProjectCache;
 import com.google.gerrit.server.query.change.ChangeData;
 import com.google.gwtorm.server.SchemaFactory;
@@ -42,7 +44,6 @@ import com.google.inject.Inject;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.concurrent.Callable;
@@ -50,6 +51,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.eclipse.jgit.errors.RepositoryNotFoundException;
+import org.eclipse.jgit.lib.Config;
 import org.eclipse.jgit.lib.ProgressMonitor;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.lib.TextProgressMonitor;
@@ -66,9 +68,11 @@ public class AllChangesIndexer extends SiteIndexer<Change.Id, ChangeData, Change
   private final ChangeIndexer.Factory indexerFactory;
   private final ChangeNotes.Factory notesFactory;
   private final ProjectCache projectCache;
+  private final int sliceSize;
 
   @Inject
   AllChangesIndexer(
+      @GerritServerConfig Config cfg,
       SchemaFactory<ReviewDb> schemaFactory,
       ChangeData.Factory changeDataFactory,
       GitRepositoryManager repoManager,
@@ -83,39 +87,64 @@ public class AllChangesIndexer extends SiteIndexer<Change.Id, ChangeData, Change
     this.indexerFactory = indexerFactory;
     this.notesFactory = notesFactory;
     this.projectCache = projectCache;
+    this.sliceSize = cfg.getInt("index", null, "batchSliceSize", 1000);
   }
 
-  private static class ProjectHolder implements Comparable<ProjectHolder> {
+  /**
+   * Part of the changes of a project, indexed by a single task.
+   *
+   * <p>Changes are assigned to one of {@code slices} slices by their numeric ID, so that the
+   * changes of a large project can be indexed by multiple threads in parallel. Each slice only
+   * holds the IDs of its own changes.
+   */
+  private static class ProjectSlice implements Comparable<ProjectSlice> {
     final Project.NameKey name;
+    final int slice;
+    final int slices;
+    @Nullable final ScanResult scanResult;
     private final long size;
 
-    ProjectHolder(Project.NameKey name, long size) {
+    ProjectSlice(
+        Project.NameKey name, int slice, int slices, @Nullable ScanResult scanResult, long size) {
       this.name = name;
+      this.slice = slice;
+      this.slices = slices;
+      this.scanResult = scanResult;
       this.size = size;
     }
 
     @Override
-    public int compareTo(ProjectHolder other) {
-      // Sort projects based on size first to maximize utilization of threads early on.
+    public int compareTo(ProjectSlice other) {
+      // Sort slices based on size first to maximize utilization of threads early on.
       return ComparisonChain.start()
           .compare(other.size, size)
           .compare(other.name.get(), name.get())
+          .compare(slice, other.slice)
           .result();
     }
+
+    @Override
+    public String toString() {
+      return slices > 1 ? name.get() + " (slice " + (slice + 1) + "/" + slices + ")" : name.get();
+    }
   }
 
   @Override
   public Result indexAll(ChangeIndex index) {
     ProgressMonitor pm = new TextProgressMonitor();
     pm.beginTask("Collecting projects", ProgressMonitor.UNKNOWN);
-    SortedSet<ProjectHolder> projects = new TreeSet<>();
+    SortedSet<ProjectSlice> slices = new TreeSet<>();
     int changeCount = 0;
     Stopwatch sw = Stopwatch.createStarted();
     for (Project.NameKey name : projectCache.all()) {
       try (Repository repo = repoManager.openRepository(name)) {
-        long size = estimateSize(repo);
+        // Estimate size based on IDs that show up in ref names. This is not perfect, since patch
+        // set refs may exist for changes whose metadata was never successfully stored. But that's
+        // ok, as the estimate is just used as a heuristic for sorting and slicing projects.
+        ScanResult sr = ChangeNotes.Factory.scanChangeIds(repo);
+        int size = sr.all().size();
         changeCount += size;
-        projects.add(new ProjectHolder(name, size));
+        addSlices(slices, name, sr, size);
       } catch (IOException e) {
         log.error("Error collecting projects", e);
         return new Result(sw, false, 0, 0);
@@ -125,27 +154,27 @@ public class AllChangesIndexer extends SiteIndexer<Change.Id, ChangeData, Change
     pm.endTask();
     setTotalWork(changeCount);
 
-    return indexAll(index, projects);
+    return indexAll(index, slices);
   }
 
-  private long estimateSize(Repository repo) throws IOException {
-    // Estimate size based on IDs that show up in ref names. This is not perfect, since patch set
-    // refs may exist for changes whose metadata was never successfully stored. But that's ok, as
-    // the estimate is just used as a heuristic for sorting projects.
-    return repo.getRefDatabase()
-        .getRefs(RefNames.REFS_CHANGES)
-        .values()
-        .stream()
-        .map(r -> Change.Id.fromRef(r.getName()))
-        .filter(Objects::nonNull)
-        .distinct()
-        .count();
+  private void addSlices(
+      SortedSet<ProjectSlice> slices, Project.NameKey name, ScanResult sr, int size) {
+    if (sliceSize <= 0 || size <= sliceSize) {
+      // Rescan when indexing rather than holding on to the IDs of every project on the site.
+      slices.add(new ProjectSlice(name, 0, 1, null, size));
+      return;
+    }
+    int n = (size + sliceSize - 1) / sliceSize;
+    List<ScanResult> parts = sr.partition(n);
+    for (int i = 0; i < n; i++) {
+      slices.add(new ProjectSlice(name, i, n, parts.get(i), parts.get(i).all().size()));
+    }
   }
 
-  private SiteIndexer.Result indexAll(ChangeIndex index, SortedSet<ProjectHolder> projects) {
+  private SiteIndexer.Result indexAll(ChangeIndex index, SortedSet<ProjectSlice> slices) {
     Stopwatch sw = Stopwatch.createStarted();
     MultiProgressMonitor mpm = new MultiProgressMonitor(progressOut, "Reindexing changes");
-    Task projTask = mpm.beginSubTask("projects", projects.size());
+    Task projTask = mpm.beginSubTask("project-slices", slices.size());
     checkState(totalWork >= 0);
     Task doneTask = mpm.beginSubTask(null, totalWork);
     Task failedTask = mpm.beginSubTask("failed", MultiProgressMonitor.UNKNOWN);
@@ -153,12 +182,12 @@ public class AllChangesIndexer extends SiteIndexer<Change.Id, ChangeData, Change
     List<ListenableFuture<?>> futures = new ArrayList<>();
     AtomicBoolean ok = new AtomicBoolean(true);
 
-    for (ProjectHolder project : projects) {
+    for (ProjectSlice slice : slices) {
       ListenableFuture<?> future =
           executor.submit(
-              reindexProject(
-                  indexerFactory.create(executor, index), project.name, doneTask, failedTask));
-      addErrorListener(future, "project " + project.name, projTask, ok);
+              new ProjectIndexer(
+                  indexerFactory.create(executor, index), slice, doneTask, failedTask));
+      addErrorListener(future, "project " + slice, projTask, ok);
       futures.add(future);
     }
 
@@ -193,36 +222,37 @@ public class AllChangesIndexer extends SiteIndexer<Change.Id, ChangeData, Change
 
   public Callable<Void> reindexProject(
       ChangeIndexer indexer, Project.NameKey project, Task done, Task failed) {
-    return new ProjectIndexer(indexer, project, done, failed);
+    return new ProjectIndexer(indexer, new ProjectSlice(project, 0, 1, null, 0), done, failed);
   }
 
   private class ProjectIndexer implements Callable<Void> {
     private final ChangeIndexer indexer;
-    private final Project.NameKey project;
+    private final ProjectSlice slice;
     private final ProgressMonitor done;
     private final ProgressMonitor failed;
 
     private ProjectIndexer(
-        ChangeIndexer indexer,
-        Project.NameKey project,
-        ProgressMonitor done,
-        ProgressMonitor failed) {
+        ChangeIndexer indexer, ProjectSlice slice, ProgressMonitor done, ProgressMonitor failed) {
       this.indexer = indexer;
-      this.project = project;
+      this.slice = slice;
       this.done = done;
       this.failed = failed;
     }
 
     @Override
     public Void call() throws Exception {
-      try (Repository repo = repoManager.openRepository(project);
+      // Slices of the same project share the cached Repository instance, which is safe for
+      // concurrent use; each change is read with its own RevWalk and ObjectReader.
+      try (Repository repo = repoManager.openRepository(slice.name);
           ReviewDb db = schemaFactory.open()) {
+        ScanResult sr =
+            slice.scanResult != null ? slice.scanResult : ChangeNotes.Factory.scanChangeIds(repo);
         // Order of scanning changes is undefined. This is ok if we assume that packfile locality is
         // not important for indexing, since sites should have a fully populated DiffSummary cache.
         // It does mean that reindexing after invalidating the DiffSummary cache will be expensive,
         // but the goal is to invalidate that cache as infrequently as we possibly can. And besides,
         // we don't have concrete proof that improving packfile locality would help.
-        notesFactory.scan(repo, db, project).forEach(r -> index(db, r));
+        notesFactory.scan(sr, db, slice.name).forEach(r -> index(db, r));
       } catch (RepositoryNotFoundException rnfe) {
         log.error(rnfe.getMessage());
       }
@@ -266,7 +296,7 @@ public class AllChangesIndexer extends SiteIndexer<Change.Id, ChangeData, Change
 
     @Override
     public String toString() {
-      return "Index all changes of project " + project.get();
+      return "Index all changes of project " + slice;
     }
   }
 }
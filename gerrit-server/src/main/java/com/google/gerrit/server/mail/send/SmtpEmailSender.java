@@ -16,17 +16,24 @@ package com.google.gerrit.server.mail.send;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.io.BaseEncoding;
 import com.google.common.primitives.Ints;
 import com.google.gerrit.common.Nullable;
 import com.google.gerrit.common.TimeUtil;
 import com.google.gerrit.common.Version;
 import com.google.gerrit.common.errors.EmailException;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.lifecycle.LifecycleModule;
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Description.Units;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer0;
 import com.google.gerrit.server.config.ConfigUtil;
 import com.google.gerrit.server.config.GerritServerConfig;
 import com.google.gerrit.server.mail.Address;
 import com.google.gerrit.server.mail.Encryption;
-import com.google.inject.AbstractModule;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import java.io.BufferedWriter;
@@ -34,36 +41,72 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.Writer;
 import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.commons.net.smtp.AuthSMTPClient;
 import org.apache.commons.net.smtp.SMTPClient;
 import org.apache.commons.net.smtp.SMTPReply;
 import org.apache.james.mime4j.codec.QuotedPrintableOutputStream;
 import org.eclipse.jgit.lib.Config;
-
-/** Sends email via a nearby SMTP server. */
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends email via a nearby SMTP server.
+ *
+ * <p>Connections are kept open after a message was delivered and are reused for the next message,
+ * until {@code sendemail.maxMessagesPerConnection} messages were sent over them or they were idle
+ * for longer than {@code sendemail.connectionIdleTimeout}.
+ */
 @Singleton
-public class SmtpEmailSender implements EmailSender {
+public class SmtpEmailSender implements EmailSender, LifecycleListener {
+  private static final Logger log = LoggerFactory.getLogger(SmtpEmailSender.class);
+
   /** The socket's connect timeout (0 = infinite timeout) */
   private static final int DEFAULT_CONNECT_TIMEOUT = 0;
 
-  public static class Module extends AbstractModule {
+  private static final long DEFAULT_IDLE_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+  public static class Module extends LifecycleModule {
     @Override
     protected void configure() {
       bind(EmailSender.class).to(SmtpEmailSender.class);
+      listener().to(SmtpEmailSender.class);
+    }
+  }
+
+  /** An open SMTP connection together with its usage statistics. */
+  private static class Connection {
+    final SMTPClient client;
+    int messages;
+    long lastUsedMs;
+
+    Connection(SMTPClient client) {
+      this.client = client;
     }
   }
 
   private final boolean enabled;
   private final int connectTimeout;
+  private final int maxMessagesPerConnection;
+  private final long idleTimeoutMs;
+  private final Deque<Connection> idle = new ArrayDeque<>();
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final Timer0 sendLatency;
+  private final Counter0 sendFailures;
+  private final Counter0 connectionsOpened;
 
   private String smtpHost;
   private int smtpPort;
@@ -76,7 +119,7 @@ public class SmtpEmailSender implements EmailSender {
   private int expiryDays;
 
   @Inject
-  SmtpEmailSender(@GerritServerConfig Config cfg) {
+  SmtpEmailSender(@GerritServerConfig Config cfg, MetricMaker metrics) {
     enabled = cfg.getBoolean("sendemail", null, "enable", true);
     connectTimeout =
         Ints.checkedCast(
@@ -87,6 +130,18 @@ public class SmtpEmailSender implements EmailSender {
                 "connectTimeout",
                 DEFAULT_CONNECT_TIMEOUT,
                 TimeUnit.MILLISECONDS));
+    maxMessagesPerConnection =
+        Math.max(1, cfg.getInt("sendemail", null, "maxMessagesPerConnection", 1));
+    idleTimeoutMs =
+        Math.max(
+            0,
+            ConfigUtil.getTimeUnit(
+                cfg,
+                "sendemail",
+                null,
+                "connectionIdleTimeout",
+                DEFAULT_IDLE_TIMEOUT,
+                TimeUnit.MILLISECONDS));
 
     smtpHost = cfg.getString("sendemail", null, "smtpserver");
     if (smtpHost == null) {
@@ -120,6 +175,58 @@ public class SmtpEmailSender implements EmailSender {
     allowrcpt = Collections.unmodifiableSet(rcpt);
     importance = cfg.getString("sendemail", null, "importance");
     expiryDays = cfg.getInt("sendemail", null, "expiryDays", 0);
+
+    sendLatency =
+        metrics.newTimer(
+            "email/send_latency",
+            new Description("Latency of delivering an email to the SMTP server")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS));
+    sendFailures =
+        metrics.newCounter(
+            "email/send_failure_count",
+            new Description("Emails that could not be delivered to the SMTP server")
+                .setRate()
+                .setUnit("emails"));
+    connectionsOpened =
+        metrics.newCounter(
+            "email/smtp_connections_opened",
+            new Description("Connections opened to the SMTP server")
+                .setRate()
+                .setUnit("connections"));
+    metrics.newCallbackMetric(
+        "email/in_flight",
+        Integer.class,
+        new Description("Emails currently being delivered to the SMTP server")
+            .setGauge()
+            .setUnit("emails"),
+        inFlight::get);
+    metrics.newCallbackMetric(
+        "email/smtp_idle_connections",
+        Integer.class,
+        new Description("Open SMTP connections waiting to be reused")
+            .setGauge()
+            .setUnit("connections"),
+        () -> {
+          synchronized (idle) {
+            return idle.size();
+          }
+        });
+  }
+
+  @Override
+  public void start() {}
+
+  @Override
+  public void stop() {
+    List<Connection> open;
+    synchronized (idle) {
+      open = new ArrayList<>(idle);
+      idle.clear();
+    }
+    for (Connection c : open) {
+      close(c, true);
+    }
   }
 
   @Override
@@ -171,9 +278,29 @@ public class SmtpEmailSender implements EmailSender {
       throw new EmailException("Sending email is disabled");
     }
 
+    inFlight.incrementAndGet();
+    try (Timer0.Context ctx = sendLatency.start()) {
+      deliver(from, rcpt, callerHeaders, textBody, htmlBody);
+    } catch (EmailException e) {
+      sendFailures.increment();
+      throw e;
+    } finally {
+      inFlight.decrementAndGet();
+    }
+  }
+
+  private void deliver(
+      Address from,
+      Collection<Address> rcpt,
+      Map<String, EmailHeader> callerHeaders,
+      String textBody,
+      @Nullable String htmlBody)
+      throws EmailException {
     StringBuffer rejected = new StringBuffer();
     try {
-      final SMTPClient client = open();
+      Connection conn = acquire();
+      SMTPClient client = conn.client;
+      boolean reuse = false;
       try {
         if (!client.setSender(from.getEmail())) {
           throw new EmailException(
@@ -221,18 +348,87 @@ public class SmtpEmailSender implements EmailSender {
               "Server " + smtpHost + " rejected message body: " + client.getReplyString());
         }
 
-        client.logout();
+        reuse = ++conn.messages < maxMessagesPerConnection;
+        if (!reuse) {
+          client.logout();
+        }
         if (rejected.length() > 0) {
           throw new EmailException(rejected.toString());
         }
       } finally {
-        client.disconnect();
+        release(conn, reuse);
       }
     } catch (IOException e) {
       throw new EmailException("Cannot send outgoing email", e);
     }
   }
 
+  /**
+   * Returns an idle connection that is still usable after resetting its session, or opens a new
+   * connection if there is none.
+   */
+  private Connection acquire() throws EmailException {
+    Connection c;
+    while ((c = pollIdle()) != null) {
+      if (TimeUtil.nowMs() - c.lastUsedMs > idleTimeoutMs) {
+        close(c, true);
+        continue;
+      }
+      try {
+        if (c.client.reset()) {
+          return c;
+        }
+      } catch (IOException e) {
+        // The server closed the connection while it was idle.
+      }
+      close(c, false);
+    }
+    return new Connection(open());
+  }
+
+  private Connection pollIdle() {
+    synchronized (idle) {
+      return idle.pollFirst();
+    }
+  }
+
+  private void release(Connection c, boolean reuse) {
+    if (!reuse) {
+      close(c, false);
+      return;
+    }
+
+    // Most recently used connections are reused first, so connections left over from a burst of
+    // messages expire at the tail of the deque.
+    long now = TimeUtil.nowMs();
+    c.lastUsedMs = now;
+    List<Connection> expired = new ArrayList<>();
+    synchronized (idle) {
+      idle.addFirst(c);
+      while (!idle.isEmpty() && now - idle.getLast().lastUsedMs > idleTimeoutMs) {
+        expired.add(idle.removeLast());
+      }
+    }
+    for (Connection e : expired) {
+      close(e, true);
+    }
+  }
+
+  private void close(Connection c, boolean logout) {
+    try {
+      if (logout) {
+        c.client.logout();
+      }
+    } catch (IOException e) {
+      // Ignored, the connection is discarded anyway.
+    }
+    try {
+      c.client.disconnect();
+    } catch (IOException e) {
+      log.warn("Cannot disconnect from SMTP server " + smtpHost, e);
+    }
+  }
+
   private void render(
       Writer out,
       Map<String, EmailHeader> callerHeaders,
@@ -358,7 +554,8 @@ public class SmtpEmailSender implements EmailSender {
     }
   }
 
-  private SMTPClient open() throws EmailException {
+  @VisibleForTesting
+  SMTPClient open() throws EmailException {
     final AuthSMTPClient client = new AuthSMTPClient(UTF_8.name());
 
     if (smtpEncryption == Encryption.SSL) {
@@ -390,6 +587,7 @@ public class SmtpEmailSender implements EmailSender {
       if (smtpUser != null && !client.auth(smtpUser, smtpPass)) {
         throw new EmailException("SMTP server rejected auth: " + replyString);
       }
+      connectionsOpened.increment();
       return client;
     } catch (IOException | EmailException e) {
       if (client.isConnected()) {
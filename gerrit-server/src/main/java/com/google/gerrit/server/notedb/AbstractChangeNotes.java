@@ -139,6 +139,18 @@ public abstract class AbstractChangeNotes<T> {
   }
 
   public T load() throws OrmException {
+    return load(null);
+  }
+
+  /**
+   * Load this entity, optionally reusing a repository that the caller already has open.
+   *
+   * @param repo open repository for {@link #getProjectName()}, or null to open one just for this
+   *     load. The caller retains ownership of a non-null repository, which is not closed here.
+   * @return this instance.
+   * @throws OrmException an error occurred reading or parsing the entity.
+   */
+  T load(@Nullable Repository repo) throws OrmException {
     if (loaded) {
       return self();
     }
@@ -155,10 +167,10 @@ public abstract class AbstractChangeNotes<T> {
       throw new OrmException("Reading from NoteDb is disabled");
     }
     try (Timer1.Context timer = args.metrics.readLatency.start(CHANGES);
-        Repository repo = args.repoManager.openRepository(getProjectName());
+        Repository opened = repo == null ? args.repoManager.openRepository(getProjectName()) : null;
         // Call openHandle even if reading is disabled, to trigger
         // auto-rebuilding before this object may get passed to a ChangeUpdate.
-        LoadHandle handle = openHandle(repo)) {
+        LoadHandle handle = openHandle(repo != null ? repo : opened)) {
       if (read) {
         revision = handle.id();
         onLoad(handle);
@@ -17,9 +17,11 @@ package com.google.gerrit.server.notedb;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 import static com.google.gerrit.reviewdb.client.RefNames.changeMetaRef;
 import static com.google.gerrit.server.notedb.NoteDbTable.CHANGES;
 import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.toList;
 
 import com.google.auto.value.AutoValue;
 import com.google.common.annotations.VisibleForTesting;
@@ -30,14 +32,19 @@ import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Multimap;
 import com.google.common.collect.MultimapBuilder;
 import com.google.common.collect.Multimaps;
 import com.google.common.collect.Ordering;
 import com.google.common.collect.Sets;
 import com.google.common.collect.Sets.SetView;
 import com.google.common.collect.Streams;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.gerrit.common.Nullable;
 import com.google.gerrit.common.data.SubmitRecord;
+import com.google.gerrit.metrics.Timer0;
 import com.google.gerrit.metrics.Timer1;
 import com.google.gerrit.reviewdb.client.Account;
 import com.google.gerrit.reviewdb.client.Branch;
@@ -71,11 +78,13 @@ import java.io.IOException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
@@ -111,14 +120,19 @@ public class ChangeNotes extends AbstractChangeNotes<ChangeNotes> {
     private final Args args;
     private final Provider<InternalChangeQuery> queryProvider;
     private final ProjectCache projectCache;
+    private final ListeningExecutorService loadExecutor;
 
     @VisibleForTesting
     @Inject
     public Factory(
-        Args args, Provider<InternalChangeQuery> queryProvider, ProjectCache projectCache) {
+        Args args,
+        Provider<InternalChangeQuery> queryProvider,
+        ProjectCache projectCache,
+        @ChangeNotesLoadExecutor ListeningExecutorService loadExecutor) {
       this.args = args;
       this.queryProvider = queryProvider;
       this.projectCache = projectCache;
+      this.loadExecutor = loadExecutor;
     }
 
     public ChangeNotes createChecked(ReviewDb db, Change c) throws OrmException {
@@ -245,6 +259,103 @@ public class ChangeNotes extends AbstractChangeNotes<ChangeNotes> {
       return notes;
     }
 
+    /**
+     * Load notes for a batch of changes, such as the results of a query.
+     *
+     * <p>Each project's repository is opened only once, and all meta refs of the project are read
+     * with a single ref lookup. Changes that might need to be auto-rebuilt from ReviewDb are loaded
+     * in the calling thread, as rebuilding requires the caller's database handle; all others are
+     * parsed in parallel on the {@link ChangeNotesLoadExecutor}.
+     *
+     * <p>Changes that are missing or fail to load are omitted from the result, so that the caller
+     * can load them one by one and report any errors in the usual way.
+     *
+     * @param db review database.
+     * @param changeIds IDs of changes to load, keyed by project.
+     * @return notes for all changes that were loaded successfully, keyed by change ID.
+     * @throws OrmException an error occurred reading changes from ReviewDb.
+     */
+    public Map<Change.Id, ChangeNotes> createAll(
+        ReviewDb db, Multimap<Project.NameKey, Change.Id> changeIds) throws OrmException {
+      Map<Change.Id, ChangeNotes> result = new HashMap<>();
+      if (!args.migration.readChanges() || changeIds.isEmpty()) {
+        return result;
+      }
+      try (Timer0.Context timer = args.metrics.batchReadLatency.start()) {
+        Map<Change.Id, Change> fromReviewDb = new HashMap<>();
+        for (Change c : ReviewDbUtil.unwrapDb(db).changes().get(changeIds.values())) {
+          fromReviewDb.put(c.getId(), c);
+        }
+
+        List<Repository> repos = new ArrayList<>(changeIds.keySet().size());
+        List<ListenableFuture<ChangeNotes>> futures = new ArrayList<>(changeIds.size());
+        try {
+          for (Map.Entry<Project.NameKey, Collection<Change.Id>> e : changeIds.asMap().entrySet()) {
+            Repository repo;
+            try {
+              repo = args.repoManager.openRepository(e.getKey());
+            } catch (IOException err) {
+              log.warn("Cannot open repository {} to load changes", e.getKey(), err);
+              continue;
+            }
+            repos.add(repo);
+            loadAll(repo, e.getKey(), e.getValue(), fromReviewDb, result, futures);
+          }
+          for (ListenableFuture<ChangeNotes> f : futures) {
+            try {
+              ChangeNotes n = f.get();
+              result.put(n.getChangeId(), n);
+            } catch (ExecutionException e) {
+              // Leave it to the caller to load this change again and report the error.
+            }
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new OrmException("Interrupted while loading changes", e);
+        } finally {
+          // If interrupted, loads on the executor may still be using the repositories.
+          Futures.successfulAsList(futures)
+              .addListener(() -> repos.forEach(Repository::close), directExecutor());
+        }
+      }
+      return result;
+    }
+
+    private void loadAll(
+        Repository repo,
+        Project.NameKey project,
+        Collection<Change.Id> ids,
+        Map<Change.Id, Change> fromReviewDb,
+        Map<Change.Id, ChangeNotes> result,
+        List<ListenableFuture<ChangeNotes>> futures) {
+      RepoRefCache refs = new RepoRefCache(repo);
+      try {
+        refs.prefetch(ids.stream().map(RefNames::changeMetaRef).collect(toList()));
+      } catch (IOException e) {
+        log.warn("Cannot read refs of changes in {}", project, e);
+        return;
+      }
+      for (Change.Id id : ids) {
+        Change change = fromReviewDb.get(id);
+        if (change == null) {
+          change = newNoteDbOnlyChange(project, id);
+        } else if (!change.getProject().equals(project)) {
+          continue;
+        }
+        if (PrimaryStorage.of(change) == PrimaryStorage.REVIEW_DB
+            && !args.migration.disableChangeReviewDb()) {
+          try {
+            result.put(id, new ChangeNotes(args, change).load(repo));
+          } catch (OrmException e) {
+            // Leave it to the caller to load this change again and report the error.
+          }
+        } else {
+          ChangeNotes notes = new ChangeNotes(args, change, true, false, refs);
+          futures.add(loadExecutor.submit(() -> notes.load(repo)));
+        }
+      }
+    }
+
     public List<ChangeNotes> create(
         ReviewDb db,
         Project.NameKey project,
@@ -286,7 +397,7 @@ public class ChangeNotes extends AbstractChangeNotes<ChangeNotes> {
       if (args.migration.readChanges()) {
         for (Project.NameKey project : projectCache.all()) {
           try (Repository repo = args.repoManager.openRepository(project)) {
-            scanNoteDb(repo, db, project)
+            scanNoteDb(scanChangeIds(repo), db, project)
                 .filter(r -> !r.error().isPresent())
                 .map(ChangeNotesResult::notes)
                 .filter(predicate)
@@ -306,16 +417,33 @@ public class ChangeNotes extends AbstractChangeNotes<ChangeNotes> {
 
     public Stream<ChangeNotesResult> scan(Repository repo, ReviewDb db, Project.NameKey project)
         throws IOException {
-      return args.migration.readChanges() ? scanNoteDb(repo, db, project) : scanReviewDb(repo, db);
+      return scan(scanChangeIds(repo), db, project);
     }
 
-    private Stream<ChangeNotesResult> scanReviewDb(Repository repo, ReviewDb db)
-        throws IOException {
+    /**
+     * Scan the changes of a project whose IDs were already read from its refs.
+     *
+     * <p>Allows callers to split the changes of a single project into slices with {@link
+     * ScanResult#partition(int)} that are processed independently, e.g. by different threads,
+     * while reading the refs only once.
+     *
+     * @param sr change IDs to scan, as returned by {@link #scanChangeIds(Repository)}.
+     * @param db review database.
+     * @param project project name.
+     * @return stream of results for the scanned changes.
+     */
+    public Stream<ChangeNotesResult> scan(ScanResult sr, ReviewDb db, Project.NameKey project) {
+      return args.migration.readChanges()
+          ? scanNoteDb(sr, db, project)
+          : scanReviewDb(sr, db);
+    }
+
+    private Stream<ChangeNotesResult> scanReviewDb(ScanResult sr, ReviewDb db) {
       // Scan IDs that might exist in ReviewDb, assuming that each change has at least one patch set
       // ref. Not all changes might exist: some patch set refs might have been written where the
       // corresponding ReviewDb write failed. These will be silently filtered out by the batch get
       // call below, which is intended.
-      Set<Change.Id> ids = scanChangeIds(repo).fromPatchSetRefs();
+      Set<Change.Id> ids = sr.fromPatchSetRefs();
 
       // A batch size of N may overload get(Iterable), so use something smaller, but still >1.
       return Streams.stream(Iterators.partition(ids.iterator(), 30))
@@ -333,8 +461,7 @@ public class ChangeNotes extends AbstractChangeNotes<ChangeNotes> {
     }
 
     private Stream<ChangeNotesResult> scanNoteDb(
-        Repository repo, ReviewDb db, Project.NameKey project) throws IOException {
-      ScanResult sr = scanChangeIds(repo);
+        ScanResult sr, ReviewDb db, Project.NameKey project) {
       PrimaryStorage defaultStorage = args.migration.changePrimaryStorage();
 
       return sr.all()
@@ -427,18 +554,44 @@ public class ChangeNotes extends AbstractChangeNotes<ChangeNotes> {
       abstract ChangeNotes maybeNotes();
     }
 
+    /** IDs of changes found in the refs of a project; safe to share across threads. */
     @AutoValue
-    abstract static class ScanResult {
+    public abstract static class ScanResult {
       abstract ImmutableSet<Change.Id> fromPatchSetRefs();
 
       abstract ImmutableSet<Change.Id> fromMetaRefs();
 
-      SetView<Change.Id> all() {
+      public SetView<Change.Id> all() {
         return Sets.union(fromPatchSetRefs(), fromMetaRefs());
       }
+
+      /**
+       * Split the IDs into disjoint parts by change number.
+       *
+       * @param n number of parts.
+       * @return {@code n} results that together contain every ID of this result exactly once.
+       */
+      public ImmutableList<ScanResult> partition(int n) {
+        checkArgument(n > 0, "invalid number of parts: %s", n);
+        List<ImmutableSet.Builder<Change.Id>> fromPs = new ArrayList<>(n);
+        List<ImmutableSet.Builder<Change.Id>> fromMeta = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+          fromPs.add(ImmutableSet.builder());
+          fromMeta.add(ImmutableSet.builder());
+        }
+        fromPatchSetRefs().forEach(id -> fromPs.get(id.get() % n).add(id));
+        fromMetaRefs().forEach(id -> fromMeta.get(id.get() % n).add(id));
+        ImmutableList.Builder<ScanResult> parts = ImmutableList.builder();
+        for (int i = 0; i < n; i++) {
+          parts.add(
+              new AutoValue_ChangeNotes_Factory_ScanResult(
+                  fromPs.get(i).build(), fromMeta.get(i).build()));
+        }
+        return parts.build();
+      }
     }
 
-    private static ScanResult scanChangeIds(Repository repo) throws IOException {
+    public static ScanResult scanChangeIds(Repository repo) throws IOException {
       ImmutableSet.Builder<Change.Id> fromPs = ImmutableSet.builder();
       ImmutableSet.Builder<Change.Id> fromMeta = ImmutableSet.builder();
       for (Ref r : repo.getRefDatabase().getRefs(RefNames.REFS_CHANGES).values()) {
@@ -634,6 +787,11 @@ public class ChangeNotes extends AbstractChangeNotes<ChangeNotes> {
     return draftCommentNotes;
   }
 
+  @VisibleForTesting
+  ChangeNotesState getState() {
+    return state;
+  }
+
   public RobotCommentNotes getRobotCommentNotes() {
     return robotCommentNotes;
   }
@@ -14,6 +14,13 @@
 
 package com.google.gerrit.server.notedb;
 
+import static com.google.gerrit.server.ioutil.BasicSerialization.readString;
+import static com.google.gerrit.server.ioutil.BasicSerialization.readVarInt32;
+import static com.google.gerrit.server.ioutil.BasicSerialization.writeString;
+import static com.google.gerrit.server.ioutil.BasicSerialization.writeVarInt32;
+import static org.eclipse.jgit.lib.ObjectIdSerialization.readNotNull;
+import static org.eclipse.jgit.lib.ObjectIdSerialization.writeNotNull;
+
 import com.google.auto.value.AutoValue;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.cache.Cache;
@@ -25,6 +32,7 @@ import com.google.gerrit.reviewdb.client.RefNames;
 import com.google.gerrit.server.ReviewerByEmailSet;
 import com.google.gerrit.server.ReviewerSet;
 import com.google.gerrit.server.cache.CacheModule;
+import com.google.gerrit.server.cache.CompactCacheSerializer;
 import com.google.gerrit.server.notedb.AbstractChangeNotes.Args;
 import com.google.gerrit.server.notedb.ChangeNotesCommit.ChangeNotesRevWalk;
 import com.google.inject.Inject;
@@ -32,6 +40,8 @@ import com.google.inject.Module;
 import com.google.inject.Singleton;
 import com.google.inject.name.Named;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -49,7 +59,10 @@ public class ChangeNotesCache {
       @Override
       protected void configure() {
         bind(ChangeNotesCache.class);
-        cache(CACHE_NAME, Key.class, ChangeNotesState.class)
+        persist(CACHE_NAME, Key.class, ChangeNotesState.class)
+            .version(1)
+            .keySerializer(Key.Serializer.INSTANCE)
+            .valueSerializer(ChangeNotesState.Serializer.INSTANCE)
             .weigher(Weigher.class)
             .maximumWeight(10 << 20);
       }
@@ -63,6 +76,24 @@ public class ChangeNotesCache {
     abstract Change.Id changeId();
 
     abstract ObjectId id();
+
+    static class Serializer extends CompactCacheSerializer<Key> {
+      static final Serializer INSTANCE = new Serializer();
+
+      @Override
+      protected void write(OutputStream out, Key key) throws IOException {
+        writeString(out, key.project().get());
+        writeVarInt32(out, key.changeId().get());
+        writeNotNull(out, key.id());
+      }
+
+      @Override
+      protected Key read(InputStream in) throws IOException {
+        Project.NameKey project = new Project.NameKey(readString(in));
+        Change.Id changeId = new Change.Id(readVarInt32(in));
+        return new AutoValue_ChangeNotesCache_Key(project, changeId, readNotNull(in));
+      }
+    }
   }
 
   public static class Weigher implements com.google.common.cache.Weigher<Key, ChangeNotesState> {
@@ -313,12 +344,17 @@ public class ChangeNotesCache {
     public ChangeNotesState call() throws ConfigInvalidException, IOException {
       ChangeNotesParser parser =
           new ChangeNotesParser(key.changeId(), key.id(), rw, args.noteUtil, args.metrics);
-      ChangeNotesState result = parser.parseAll();
+      ChangeNotesState result = parser.parseAll(this::getCachedAncestor);
       // This assignment only happens if call() was actually called, which only
       // happens when Cache#get(K, Callable<V>) incurs a cache miss.
       revisionNoteMap = parser.getRevisionNoteMap();
       return result;
     }
+
+    private ChangeNotesState getCachedAncestor(ObjectId id) {
+      return cache.getIfPresent(
+          new AutoValue_ChangeNotesCache_Key(key.project(), key.changeId(), id.copy()));
+    }
   }
 
   private final Cache<Key, ChangeNotesState> cache;
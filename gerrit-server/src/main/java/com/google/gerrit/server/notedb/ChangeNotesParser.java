@@ -172,6 +172,11 @@ class ChangeNotesParser {
   private ReviewerByEmailSet pendingReviewersByEmail;
   private Change.Id revertOf;
 
+  // Set once a commit was parsed that cannot be applied on top of the cached
+  // state of an older commit, e.g. because it deletes a patch set. From then on
+  // the full history needs to be parsed.
+  private boolean incrementalUnsafe;
+
   ChangeNotesParser(
       Change.Id changeId,
       ObjectId tip,
@@ -202,26 +207,58 @@ class ChangeNotesParser {
   }
 
   ChangeNotesState parseAll() throws ConfigInvalidException, IOException {
+    return parseAll(id -> null);
+  }
+
+  /**
+   * Parse the change, reusing the state of an older meta commit if available.
+   *
+   * <p>Commits are walked starting at the tip. Once a commit is reached for which {@code
+   * cachedStates} returns a state, the rest of the history is skipped and only the newer commits
+   * are applied on top of that state. If no such commit is found, or if the newer commits contain
+   * updates that can't be applied incrementally, the full history is parsed.
+   *
+   * @param cachedStates returns the previously parsed state at the given meta commit, or null.
+   */
+  ChangeNotesState parseAll(Function<ObjectId, ChangeNotesState> cachedStates)
+      throws ConfigInvalidException, IOException {
     // Don't include initial parse in timer, as this might do more I/O to page
     // in the block containing most commits. Later reads are not guaranteed to
     // avoid I/O, but often should.
     walk.reset();
     walk.markStart(walk.parseCommit(tip));
 
+    ChangeNotesState base = null;
     try (Timer1.Context timer = metrics.parseLatency.start(CHANGES)) {
       ChangeNotesCommit commit;
       while ((commit = walk.next()) != null) {
+        if (!incrementalUnsafe && !commit.equals(tip)) {
+          base = cachedStates.apply(commit);
+          if (base != null) {
+            if (canApplyTo(base)) {
+              break;
+            }
+            // If the newer commits can't be applied to this state, they can't be
+            // applied to any older state either.
+            base = null;
+            incrementalUnsafe = true;
+          }
+        }
         parse(commit);
       }
-      if (hasReviewStarted == null) {
-        if (previousWorkInProgressFooter == null) {
-          hasReviewStarted = true;
-        } else {
-          hasReviewStarted = !previousWorkInProgressFooter;
+      if (base != null) {
+        applyTo(base);
+      } else {
+        if (hasReviewStarted == null) {
+          if (previousWorkInProgressFooter == null) {
+            hasReviewStarted = true;
+          } else {
+            hasReviewStarted = !previousWorkInProgressFooter;
+          }
         }
+        allPastReviewers.addAll(reviewers.rowKeySet());
       }
       parseNotes();
-      allPastReviewers.addAll(reviewers.rowKeySet());
       pruneReviewers();
       pruneReviewersByEmail();
 
@@ -229,6 +266,11 @@ class ChangeNotesParser {
       checkMandatoryFooters();
     }
 
+    if (base != null) {
+      metrics.incrementalParseCount.increment();
+    } else {
+      metrics.fullParseCount.increment();
+    }
     return buildState();
   }
 
@@ -325,6 +367,165 @@ class ChangeNotesParser {
     return changeMessagesByPatchSet;
   }
 
+  /**
+   * Checks whether the commits parsed so far can be applied on top of {@code base}, the state of
+   * their parent commit.
+   */
+  private boolean canApplyTo(ChangeNotesState base) {
+    ChangeNotesState.ChangeColumns c = base.columns();
+    if (c == null) {
+      return false;
+    }
+    if (status != null && c.status() == Change.Status.MERGED) {
+      // Approvals in base newer than the submit would no longer be post-submit.
+      return false;
+    }
+    int maxPatchSet = 0;
+    for (Map.Entry<PatchSet.Id, PatchSet> e : base.patchSets()) {
+      maxPatchSet = Math.max(maxPatchSet, e.getKey().get());
+    }
+    for (PatchSet ps : patchSets.values()) {
+      if (!ps.getRevision().equals(PARTIAL_PATCH_SET) && ps.getId().get() <= maxPatchSet) {
+        // Either an error or a reused number of a deleted patch set; let the
+        // full parse sort it out.
+        return false;
+      }
+    }
+    Set<Account.Id> removed = new HashSet<>(base.allPastReviewers());
+    removed.removeAll(base.reviewers().all());
+    for (Table.Cell<Account.Id, ReviewerStateInternal, Timestamp> e : reviewers.cellSet()) {
+      if (e.getColumnKey() != ReviewerStateInternal.REMOVED && removed.contains(e.getRowKey())) {
+        // Approvals of removed reviewers are not part of base, but would be
+        // visible again.
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Completes the state parsed from the commits newer than {@code base} with {@code base}.
+   *
+   * <p>The result is the same as if parsing had continued through the commits that produced {@code
+   * base}, before any of the post-processing done in {@link #parseAll(Function)}.
+   */
+  private void applyTo(ChangeNotesState base) {
+    ChangeNotesState.ChangeColumns c = base.columns();
+    createdOn = c.createdOn();
+    if (lastUpdatedOn == null || c.lastUpdatedOn().after(lastUpdatedOn)) {
+      lastUpdatedOn = c.lastUpdatedOn();
+    }
+    if (c.owner() != null) {
+      ownerId = c.owner();
+    }
+    if (branch == null) {
+      branch = c.branch();
+    }
+    if (changeId == null) {
+      changeId = c.changeKey().get();
+    }
+    if (subject == null) {
+      subject = c.subject();
+    }
+    if (c.originalSubject() != null) {
+      originalSubject = c.originalSubject();
+    }
+    if (topic == null) {
+      topic = c.topic();
+    }
+    if (submissionId == null) {
+      submissionId = c.submissionId();
+    }
+    if (assignee == null) {
+      assignee = Optional.ofNullable(c.assignee());
+    }
+    pastAssignees.addAll(base.pastAssignees().asList().reverse());
+    if (hashtags == null) {
+      hashtags = base.hashtags();
+    }
+    if (status == null) {
+      status = c.status();
+      flushBufferedApprovals(status);
+    }
+    if (readOnlyUntil == null) {
+      readOnlyUntil = base.readOnlyUntil();
+    }
+    if (isPrivate == null) {
+      isPrivate = base.isPrivate();
+    }
+    if (revertOf == null) {
+      revertOf = base.revertOf();
+    }
+    workInProgress = base.isWorkInProgress();
+    hasReviewStarted = base.hasReviewStarted();
+
+    for (Map.Entry<PatchSet.Id, PatchSet> e : base.patchSets()) {
+      // Copy, as push certificates are filled in from the notes later on.
+      PatchSet ps = new PatchSet(e.getValue());
+      PatchSet newer = patchSets.get(e.getKey());
+      if (newer != null) {
+        if (!newer.getGroups().isEmpty()) {
+          ps.setGroups(newer.getGroups());
+        }
+        if (newer.getDescription() != null) {
+          ps.setDescription(newer.getDescription());
+        }
+      }
+      patchSets.put(e.getKey(), ps);
+    }
+    if (c.currentPatchSetId() != null) {
+      currentPatchSets.add(c.currentPatchSetId());
+    }
+    for (Map.Entry<PatchSet.Id, PatchSetApproval> e : base.approvals()) {
+      PatchSetApproval a = e.getValue();
+      approvals.putIfAbsent(ApprovalKey.create(e.getKey(), a.getAccountId(), a.getLabel()), a);
+    }
+
+    allPastReviewers.addAll(reviewers.rowKeySet());
+    for (Account.Id accountId : base.allPastReviewers()) {
+      if (!reviewers.containsRow(accountId)) {
+        allPastReviewers.add(accountId);
+      }
+    }
+    if (Boolean.TRUE.equals(workInProgress)) {
+      // No work-in-progress footer was parsed, so all reviewers parsed so far
+      // are pending.
+      Table<Account.Id, ReviewerStateInternal, Timestamp> pending =
+          HashBasedTable.create(reviewers);
+      putOlderReviewers(pending, base.pendingReviewers().asTable());
+      pendingReviewers = ReviewerSet.fromTable(Tables.transpose(pending));
+      Table<Address, ReviewerStateInternal, Timestamp> pendingByEmail =
+          HashBasedTable.create(reviewersByEmail);
+      putOlderReviewers(pendingByEmail, base.pendingReviewersByEmail().asTable());
+      pendingReviewersByEmail = ReviewerByEmailSet.fromTable(Tables.transpose(pendingByEmail));
+    } else {
+      pendingReviewers = base.pendingReviewers();
+      pendingReviewersByEmail = base.pendingReviewersByEmail();
+    }
+    putOlderReviewers(reviewers, base.reviewers().asTable());
+    putOlderReviewers(reviewersByEmail, base.reviewersByEmail().asTable());
+    reviewerUpdates.addAll(base.reviewerUpdates().reverse());
+
+    if (submitRecords.isEmpty()) {
+      submitRecords.addAll(base.submitRecords());
+    }
+    allChangeMessages.addAll(base.allChangeMessages().reverse());
+    for (Map.Entry<PatchSet.Id, ChangeMessage> e :
+        base.changeMessagesByPatchSet().entries().asList().reverse()) {
+      changeMessagesByPatchSet.put(e.getKey(), e.getValue());
+    }
+  }
+
+  private static <R> void putOlderReviewers(
+      Table<R, ReviewerStateInternal, Timestamp> reviewers,
+      Table<ReviewerStateInternal, R, Timestamp> older) {
+    for (Table.Cell<ReviewerStateInternal, R, Timestamp> e : older.cellSet()) {
+      if (!reviewers.containsRow(e.getColumnKey())) {
+        reviewers.put(e.getColumnKey(), e.getRowKey(), e.getValue());
+      }
+    }
+  }
+
   private void parse(ChangeNotesCommit commit) throws ConfigInvalidException {
     Timestamp ts = new Timestamp(commit.getCommitterIdent().getWhen().getTime());
 
@@ -338,6 +539,8 @@ class ChangeNotesParser {
     PatchSet.Id psId = parsePatchSetId(commit);
     PatchSetState psState = parsePatchSetState(commit);
     if (psState != null) {
+      // Deleting a patch set affects entities parsed from older commits.
+      incrementalUnsafe = true;
       if (!patchSetStates.containsKey(psId)) {
         patchSetStates.put(psId, psState);
       }
@@ -424,6 +627,10 @@ class ChangeNotesParser {
 
     previousWorkInProgressFooter = null;
     parseWorkInProgress(commit);
+    if (previousWorkInProgressFooter != null) {
+      // Pending reviewers depend on the reviewers parsed from older commits.
+      incrementalUnsafe = true;
+    }
 
     if (lastUpdatedOn == null || ts.after(lastUpdatedOn)) {
       lastUpdatedOn = ts;
@@ -626,6 +833,11 @@ class ChangeNotesParser {
     if (status == null) {
       throw invalidFooter(FOOTER_STATUS, statusLines.get(0));
     }
+    flushBufferedApprovals(status);
+    return status;
+  }
+
+  private void flushBufferedApprovals(Change.Status status) {
     // All approvals after MERGED and before the next status change get the postSubmit
     // bit. (Currently the state can't change from MERGED to something else, but just in case.) The
     // exception is the legacy SUBM approval, which is never considered post-submit, but might end
@@ -638,7 +850,6 @@ class ChangeNotesParser {
       }
     }
     bufferedApprovals.clear();
-    return status;
   }
 
   private PatchSet.Id parsePatchSetId(ChangeNotesCommit commit) throws ConfigInvalidException {
@@ -16,13 +16,27 @@ package com.google.gerrit.server.notedb;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.gerrit.server.ioutil.BasicSerialization.readBytes;
+import static com.google.gerrit.server.ioutil.BasicSerialization.readFixInt64;
+import static com.google.gerrit.server.ioutil.BasicSerialization.readString;
+import static com.google.gerrit.server.ioutil.BasicSerialization.readVarInt32;
+import static com.google.gerrit.server.ioutil.BasicSerialization.writeBytes;
+import static com.google.gerrit.server.ioutil.BasicSerialization.writeFixInt64;
+import static com.google.gerrit.server.ioutil.BasicSerialization.writeString;
+import static com.google.gerrit.server.ioutil.BasicSerialization.writeVarInt32;
+import static org.eclipse.jgit.lib.ObjectIdSerialization.readCanBeNull;
+import static org.eclipse.jgit.lib.ObjectIdSerialization.writeCanBeNull;
 
 import com.google.auto.value.AutoValue;
+import com.google.common.base.Enums;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableTable;
 import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Table;
 import com.google.gerrit.common.Nullable;
 import com.google.gerrit.common.data.SubmitRecord;
 import com.google.gerrit.reviewdb.client.Account;
@@ -37,9 +51,20 @@ import com.google.gerrit.reviewdb.client.RevId;
 import com.google.gerrit.server.ReviewerByEmailSet;
 import com.google.gerrit.server.ReviewerSet;
 import com.google.gerrit.server.ReviewerStatusUpdate;
+import com.google.gerrit.server.cache.CompactCacheSerializer;
+import com.google.gerrit.server.mail.Address;
 import com.google.gerrit.server.notedb.NoteDbChangeState.PrimaryStorage;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gwtorm.protobuf.CodecFactory;
+import com.google.gwtorm.protobuf.ProtobufCodec;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -49,7 +74,8 @@ import org.eclipse.jgit.lib.ObjectId;
  * Immutable state associated with a change meta ref at a given commit.
  *
  * <p>One instance is the output of a single {@link ChangeNotesParser}, and contains types required
- * to support public methods on {@link ChangeNotes}. It is intended to be cached in-process.
+ * to support public methods on {@link ChangeNotes}. It is intended to be cached in-process, and
+ * may additionally be persisted using {@link Serializer}.
  *
  * <p>Note that {@link ChangeNotes} contains more than just a single {@code ChangeNoteState}, such
  * as per-draft information, so that class is not cached directly.
@@ -338,4 +364,439 @@ public abstract class ChangeNotesState {
       change.clearCurrentPatchSet();
     }
   }
+
+  /**
+   * Compact on-disk format of the {@code change_notes} cache.
+   *
+   * <p>ReviewDb entities are stored using their gwtorm protobuf encoding, which is also used to
+   * store them in the secondary index; comments are stored in the same JSON form used in NoteDb.
+   */
+  static class Serializer extends CompactCacheSerializer<ChangeNotesState> {
+    static final Serializer INSTANCE = new Serializer();
+
+    private static final ProtobufCodec<PatchSet> PATCH_SET_CODEC =
+        CodecFactory.encoder(PatchSet.class);
+    private static final ProtobufCodec<PatchSetApproval> APPROVAL_CODEC =
+        CodecFactory.encoder(PatchSetApproval.class);
+    private static final ProtobufCodec<ChangeMessage> MESSAGE_CODEC =
+        CodecFactory.encoder(ChangeMessage.class);
+    private static final Gson GSON =
+        new GsonBuilder()
+            .registerTypeAdapter(Timestamp.class, new CommentTimestampAdapter().nullSafe())
+            .create();
+
+    @Override
+    protected void write(OutputStream out, ChangeNotesState state) throws IOException {
+      writeCanBeNull(out, state.metaId());
+      writeVarInt32(out, state.changeId().get());
+      writeColumns(out, state.columns());
+      writeCollection(out, state.pastAssignees(), a -> writeVarInt32(out, a.get()));
+      writeCollection(out, state.hashtags(), h -> writeString(out, h));
+      writeCollection(out, state.patchSets(), e -> writeCodec(out, PATCH_SET_CODEC, e.getValue()));
+      writeCollection(out, state.approvals(), e -> writeCodec(out, APPROVAL_CODEC, e.getValue()));
+      writeReviewers(out, state.reviewers().asTable(), a -> writeVarInt32(out, a.get()));
+      writeReviewers(out, state.reviewersByEmail().asTable(), a -> writeAddress(out, a));
+      writeReviewers(out, state.pendingReviewers().asTable(), a -> writeVarInt32(out, a.get()));
+      writeReviewers(out, state.pendingReviewersByEmail().asTable(), a -> writeAddress(out, a));
+      writeCollection(out, state.allPastReviewers(), a -> writeVarInt32(out, a.get()));
+      writeCollection(out, state.reviewerUpdates(), u -> writeReviewerUpdate(out, u));
+      writeCollection(out, state.submitRecords(), r -> writeSubmitRecord(out, r));
+      writeCollection(out, state.allChangeMessages(), m -> writeCodec(out, MESSAGE_CODEC, m));
+      writeMessagesByPatchSet(out, state);
+      writeCollection(
+          out,
+          state.publishedComments().entries(),
+          e -> {
+            writeString(out, e.getKey().get());
+            writeString(out, GSON.toJson(e.getValue()));
+          });
+      writeTimestamp(out, state.readOnlyUntil());
+      writeBoolean(out, state.isPrivate());
+      writeBoolean(out, state.isWorkInProgress());
+      writeBoolean(out, state.hasReviewStarted());
+      writeChangeId(out, state.revertOf());
+    }
+
+    @Override
+    protected ChangeNotesState read(InputStream in) throws IOException {
+      ObjectId metaId = readCanBeNull(in);
+      Change.Id changeId = new Change.Id(readVarInt32(in));
+      ChangeColumns columns = readColumns(in, changeId);
+      ImmutableSet<Account.Id> pastAssignees =
+          ImmutableSet.copyOf(readList(in, () -> new Account.Id(readVarInt32(in))));
+      ImmutableSet<String> hashtags = ImmutableSet.copyOf(readList(in, () -> readString(in)));
+      ImmutableList<Map.Entry<PatchSet.Id, PatchSet>> patchSets =
+          readList(
+              in,
+              () -> {
+                PatchSet ps = readCodec(in, PATCH_SET_CODEC);
+                return Maps.immutableEntry(ps.getId(), ps);
+              });
+      ImmutableList<Map.Entry<PatchSet.Id, PatchSetApproval>> approvals =
+          readList(
+              in,
+              () -> {
+                PatchSetApproval psa = readCodec(in, APPROVAL_CODEC);
+                return Maps.immutableEntry(psa.getPatchSetId(), psa);
+              });
+      ReviewerSet reviewers =
+          ReviewerSet.fromTable(readReviewers(in, () -> new Account.Id(readVarInt32(in))));
+      ReviewerByEmailSet reviewersByEmail =
+          ReviewerByEmailSet.fromTable(readReviewers(in, () -> readAddress(in)));
+      ReviewerSet pendingReviewers =
+          ReviewerSet.fromTable(readReviewers(in, () -> new Account.Id(readVarInt32(in))));
+      ReviewerByEmailSet pendingReviewersByEmail =
+          ReviewerByEmailSet.fromTable(readReviewers(in, () -> readAddress(in)));
+      ImmutableList<Account.Id> allPastReviewers =
+          readList(in, () -> new Account.Id(readVarInt32(in)));
+      ImmutableList<ReviewerStatusUpdate> reviewerUpdates =
+          readList(in, () -> readReviewerUpdate(in));
+      ImmutableList<SubmitRecord> submitRecords = readList(in, () -> readSubmitRecord(in));
+      ImmutableList<ChangeMessage> allChangeMessages =
+          readList(in, () -> readCodec(in, MESSAGE_CODEC));
+      ImmutableListMultimap<PatchSet.Id, ChangeMessage> changeMessagesByPatchSet =
+          readMessagesByPatchSet(in, allChangeMessages);
+      ImmutableListMultimap.Builder<RevId, Comment> publishedComments =
+          ImmutableListMultimap.builder();
+      int commentCount = readVarInt32(in);
+      for (int i = 0; i < commentCount; i++) {
+        RevId revId = new RevId(readString(in));
+        publishedComments.put(revId, GSON.fromJson(readString(in), Comment.class));
+      }
+      return new AutoValue_ChangeNotesState(
+          metaId,
+          changeId,
+          columns,
+          pastAssignees,
+          hashtags,
+          patchSets,
+          approvals,
+          reviewers,
+          reviewersByEmail,
+          pendingReviewers,
+          pendingReviewersByEmail,
+          allPastReviewers,
+          reviewerUpdates,
+          submitRecords,
+          allChangeMessages,
+          changeMessagesByPatchSet,
+          publishedComments.build(),
+          readTimestamp(in),
+          readBoolean(in),
+          readBoolean(in),
+          readBoolean(in),
+          readChangeId(in));
+    }
+
+    private static void writeColumns(OutputStream out, @Nullable ChangeColumns c)
+        throws IOException {
+      writePresent(out, c != null);
+      if (c == null) {
+        return;
+      }
+      writeString(out, c.changeKey().get());
+      writeTimestamp(out, c.createdOn());
+      writeTimestamp(out, c.lastUpdatedOn());
+      writeVarInt32(out, c.owner().get());
+      writeString(out, c.branch());
+      writePresent(out, c.currentPatchSetId() != null);
+      if (c.currentPatchSetId() != null) {
+        writeVarInt32(out, c.currentPatchSetId().get());
+      }
+      writeString(out, c.subject());
+      writeString(out, c.topic());
+      writeString(out, c.originalSubject());
+      writeString(out, c.submissionId());
+      writeAccountId(out, c.assignee());
+      writeString(out, c.status() != null ? c.status().name() : null);
+      writeBoolean(out, c.isPrivate());
+      writeBoolean(out, c.isWorkInProgress());
+      writeBoolean(out, c.hasReviewStarted());
+      writeChangeId(out, c.revertOf());
+    }
+
+    @Nullable
+    private static ChangeColumns readColumns(InputStream in, Change.Id changeId)
+        throws IOException {
+      if (!readPresent(in)) {
+        return null;
+      }
+      Change.Key changeKey = new Change.Key(readString(in));
+      Timestamp createdOn = readTimestamp(in);
+      Timestamp lastUpdatedOn = readTimestamp(in);
+      Account.Id owner = new Account.Id(readVarInt32(in));
+      String branch = readString(in);
+      PatchSet.Id currentPatchSetId = null;
+      if (readPresent(in)) {
+        currentPatchSetId = new PatchSet.Id(changeId, readVarInt32(in));
+      }
+      String subject = readString(in);
+      String topic = readString(in);
+      String originalSubject = readString(in);
+      String submissionId = readString(in);
+      Account.Id assignee = readAccountId(in);
+      String status = readString(in);
+      return new AutoValue_ChangeNotesState_ChangeColumns(
+          changeKey,
+          createdOn,
+          lastUpdatedOn,
+          owner,
+          branch,
+          currentPatchSetId,
+          subject,
+          topic,
+          originalSubject,
+          submissionId,
+          assignee,
+          status != null ? readEnum(Change.Status.class, status) : null,
+          readBoolean(in),
+          readBoolean(in),
+          readBoolean(in),
+          readChangeId(in));
+    }
+
+    private static void writeMessagesByPatchSet(OutputStream out, ChangeNotesState state)
+        throws IOException {
+      // Messages are normally also present in allChangeMessages; store them as an index into that
+      // list, falling back to the full message otherwise.
+      Map<ChangeMessage, Integer> index = new IdentityHashMap<>();
+      for (ChangeMessage m : state.allChangeMessages()) {
+        index.put(m, index.size());
+      }
+      writeCollection(
+          out,
+          state.changeMessagesByPatchSet().entries(),
+          e -> {
+            writeVarInt32(out, e.getKey().get());
+            Integer i = index.get(e.getValue());
+            writeVarInt32(out, i != null ? i + 1 : 0);
+            if (i == null) {
+              writeCodec(out, MESSAGE_CODEC, e.getValue());
+            }
+          });
+    }
+
+    private static ImmutableListMultimap<PatchSet.Id, ChangeMessage> readMessagesByPatchSet(
+        InputStream in, List<ChangeMessage> allChangeMessages) throws IOException {
+      ImmutableListMultimap.Builder<PatchSet.Id, ChangeMessage> result =
+          ImmutableListMultimap.builder();
+      int n = readVarInt32(in);
+      for (int i = 0; i < n; i++) {
+        int psNum = readVarInt32(in);
+        int idx = readVarInt32(in);
+        ChangeMessage m;
+        if (idx == 0) {
+          m = readCodec(in, MESSAGE_CODEC);
+        } else if (idx <= allChangeMessages.size()) {
+          m = allChangeMessages.get(idx - 1);
+        } else {
+          throw new IOException("Invalid change message index: " + idx);
+        }
+        result.put(new PatchSet.Id(m.getKey().getParentKey(), psNum), m);
+      }
+      return result.build();
+    }
+
+    private static <T> void writeReviewers(
+        OutputStream out,
+        ImmutableTable<ReviewerStateInternal, T, Timestamp> table,
+        Writer<T> writer)
+        throws IOException {
+      writeCollection(
+          out,
+          table.cellSet(),
+          c -> {
+            writeString(out, c.getRowKey().name());
+            writer.write(c.getColumnKey());
+            writeTimestamp(out, c.getValue());
+          });
+    }
+
+    private static <T> Table<ReviewerStateInternal, T, Timestamp> readReviewers(
+        InputStream in, Reader<T> reader) throws IOException {
+      ImmutableTable.Builder<ReviewerStateInternal, T, Timestamp> result = ImmutableTable.builder();
+      int n = readVarInt32(in);
+      for (int i = 0; i < n; i++) {
+        ReviewerStateInternal state = readEnum(ReviewerStateInternal.class, readString(in));
+        T reviewer = reader.read();
+        result.put(state, reviewer, readTimestamp(in));
+      }
+      return result.build();
+    }
+
+    private static void writeReviewerUpdate(OutputStream out, ReviewerStatusUpdate u)
+        throws IOException {
+      writeTimestamp(out, u.date());
+      writeVarInt32(out, u.updatedBy().get());
+      writeVarInt32(out, u.reviewer().get());
+      writeString(out, u.state().name());
+    }
+
+    private static ReviewerStatusUpdate readReviewerUpdate(InputStream in) throws IOException {
+      Timestamp date = readTimestamp(in);
+      Account.Id updatedBy = new Account.Id(readVarInt32(in));
+      Account.Id reviewer = new Account.Id(readVarInt32(in));
+      ReviewerStateInternal state = readEnum(ReviewerStateInternal.class, readString(in));
+      return ReviewerStatusUpdate.create(date, updatedBy, reviewer, state);
+    }
+
+    private static void writeSubmitRecord(OutputStream out, SubmitRecord r) throws IOException {
+      writeString(out, r.status != null ? r.status.name() : null);
+      writeString(out, r.errorMessage);
+      writePresent(out, r.labels != null);
+      if (r.labels != null) {
+        writeCollection(
+            out,
+            r.labels,
+            l -> {
+              writeString(out, l.label);
+              writeString(out, l.status != null ? l.status.name() : null);
+              writeAccountId(out, l.appliedBy);
+            });
+      }
+    }
+
+    private static SubmitRecord readSubmitRecord(InputStream in) throws IOException {
+      SubmitRecord r = new SubmitRecord();
+      String status = readString(in);
+      r.status = status != null ? readEnum(SubmitRecord.Status.class, status) : null;
+      r.errorMessage = readString(in);
+      if (readPresent(in)) {
+        r.labels =
+            new ArrayList<>(
+                readList(
+                    in,
+                    () -> {
+                      SubmitRecord.Label l = new SubmitRecord.Label();
+                      l.label = readString(in);
+                      String labelStatus = readString(in);
+                      l.status =
+                          labelStatus != null
+                              ? readEnum(SubmitRecord.Label.Status.class, labelStatus)
+                              : null;
+                      l.appliedBy = readAccountId(in);
+                      return l;
+                    }));
+      }
+      return r;
+    }
+
+    private static void writeAddress(OutputStream out, Address a) throws IOException {
+      writeString(out, a.getName());
+      writeString(out, a.getEmail());
+    }
+
+    private static Address readAddress(InputStream in) throws IOException {
+      String name = readString(in);
+      return new Address(name, readString(in));
+    }
+
+    private static <T> void writeCodec(OutputStream out, ProtobufCodec<T> codec, T obj)
+        throws IOException {
+      writeBytes(out, codec.encodeToByteArray(obj));
+    }
+
+    private static <T> T readCodec(InputStream in, ProtobufCodec<T> codec) throws IOException {
+      return codec.decode(readBytes(in));
+    }
+
+    private static void writeTimestamp(OutputStream out, @Nullable Timestamp ts)
+        throws IOException {
+      writePresent(out, ts != null);
+      if (ts != null) {
+        writeFixInt64(out, ts.getTime());
+      }
+    }
+
+    @Nullable
+    private static Timestamp readTimestamp(InputStream in) throws IOException {
+      return readPresent(in) ? new Timestamp(readFixInt64(in)) : null;
+    }
+
+    private static void writeAccountId(OutputStream out, @Nullable Account.Id id)
+        throws IOException {
+      writeVarInt32(out, id != null ? id.get() : 0);
+    }
+
+    @Nullable
+    private static Account.Id readAccountId(InputStream in) throws IOException {
+      int id = readVarInt32(in);
+      return id != 0 ? new Account.Id(id) : null;
+    }
+
+    private static void writeChangeId(OutputStream out, @Nullable Change.Id id)
+        throws IOException {
+      writeVarInt32(out, id != null ? id.get() : 0);
+    }
+
+    @Nullable
+    private static Change.Id readChangeId(InputStream in) throws IOException {
+      int id = readVarInt32(in);
+      return id != 0 ? new Change.Id(id) : null;
+    }
+
+    private static void writeBoolean(OutputStream out, @Nullable Boolean b) throws IOException {
+      writeVarInt32(out, b == null ? 0 : b ? 2 : 1);
+    }
+
+    private static void writePresent(OutputStream out, boolean present) throws IOException {
+      writeVarInt32(out, present ? 1 : 0);
+    }
+
+    private static boolean readPresent(InputStream in) throws IOException {
+      return readVarInt32(in) != 0;
+    }
+
+    @Nullable
+    private static Boolean readBoolean(InputStream in) throws IOException {
+      int b = readVarInt32(in);
+      switch (b) {
+        case 0:
+          return null;
+        case 1:
+          return false;
+        case 2:
+          return true;
+        default:
+          throw new IOException("Invalid boolean: " + b);
+      }
+    }
+
+    private static <E extends Enum<E>> E readEnum(Class<E> clazz, String name)
+        throws IOException {
+      E value = Enums.getIfPresent(clazz, name).orNull();
+      if (value == null) {
+        throw new IOException("Invalid " + clazz.getSimpleName() + ": " + name);
+      }
+      return value;
+    }
+
+    private static <T> void writeCollection(
+        OutputStream out, Collection<T> items, Writer<T> writer) throws IOException {
+      writeVarInt32(out, items.size());
+      for (T item : items) {
+        writer.write(item);
+      }
+    }
+
+    private static <T> ImmutableList<T> readList(InputStream in, Reader<T> reader)
+        throws IOException {
+      int n = readVarInt32(in);
+      ImmutableList.Builder<T> result = ImmutableList.builder();
+      for (int i = 0; i < n; i++) {
+        result.add(reader.read());
+      }
+      return result.build();
+    }
+
+    @FunctionalInterface
+    private interface Writer<T> {
+      void write(T item) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface Reader<T> {
+      T read() throws IOException;
+    }
+  }
 }
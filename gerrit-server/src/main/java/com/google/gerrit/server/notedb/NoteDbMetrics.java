@@ -14,11 +14,13 @@
 
 package com.google.gerrit.server.notedb;
 
+import com.google.gerrit.metrics.Counter0;
 import com.google.gerrit.metrics.Counter1;
 import com.google.gerrit.metrics.Description;
 import com.google.gerrit.metrics.Description.Units;
 import com.google.gerrit.metrics.Field;
 import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer0;
 import com.google.gerrit.metrics.Timer1;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
@@ -38,12 +40,24 @@ class NoteDbMetrics {
   /** End-to-end latency for reading changes from NoteDb, including reading ref(s) and parsing. */
   final Timer1<NoteDbTable> readLatency;
 
+  /**
+   * End-to-end latency for reading a batch of changes, such as the results of a query, from
+   * NoteDb.
+   */
+  final Timer0 batchReadLatency;
+
   /**
    * The portion of {@link #readLatency} due to parsing commits, but excluding I/O (to a best
    * effort).
    */
   final Timer1<NoteDbTable> parseLatency;
 
+  /** Count of change parses that extended the cached state of an ancestor meta commit. */
+  final Counter0 incrementalParseCount;
+
+  /** Count of change parses that had to read the full meta history. */
+  final Counter0 fullParseCount;
+
   /**
    * Latency due to auto-rebuilding entities when out of date.
    *
@@ -82,6 +96,13 @@ class NoteDbMetrics {
                 .setUnit(Units.MILLISECONDS),
             view);
 
+    batchReadLatency =
+        metrics.newTimer(
+            "notedb/batch_read_latency",
+            new Description("NoteDb read latency for a batch of changes")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS));
+
     parseLatency =
         metrics.newTimer(
             "notedb/parse_latency",
@@ -90,6 +111,20 @@ class NoteDbMetrics {
                 .setUnit(Units.MICROSECONDS),
             view);
 
+    incrementalParseCount =
+        metrics.newCounter(
+            "notedb/incremental_parse_count",
+            new Description("Change parses that extended the cached state of an ancestor commit")
+                .setCumulative()
+                .setUnit("parses"));
+
+    fullParseCount =
+        metrics.newCounter(
+            "notedb/full_parse_count",
+            new Description("Change parses that read the full meta history")
+                .setCumulative()
+                .setUnit("parses"));
+
     autoRebuildLatency =
         metrics.newTimer(
             "notedb/auto_rebuild_latency",
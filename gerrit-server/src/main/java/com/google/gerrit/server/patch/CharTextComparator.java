@@ -19,6 +19,7 @@ import org.eclipse.jgit.diff.SequenceComparator;
 class CharTextComparator extends SequenceComparator<CharText> {
   @Override
   public boolean equals(CharText a, int ai, CharText b, int bi) {
+    InterruptibleRawTextComparator.checkInterrupted();
     return a.charAt(ai) == b.charAt(bi);
   }
 
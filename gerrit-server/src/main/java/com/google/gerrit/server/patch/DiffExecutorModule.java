@@ -14,12 +14,14 @@
 
 package com.google.gerrit.server.patch;
 
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.gerrit.server.git.WorkQueue;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
 import com.google.inject.Singleton;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import org.eclipse.jgit.lib.Config;
 
 /** Module providing the {@link DiffExecutor}. */
 public class DiffExecutorModule extends AbstractModule {
@@ -30,8 +32,15 @@ public class DiffExecutorModule extends AbstractModule {
   @Provides
   @Singleton
   @DiffExecutor
-  public ExecutorService createDiffExecutor() {
-    return Executors.newCachedThreadPool(
-        new ThreadFactoryBuilder().setNameFormat("Diff-%d").setDaemon(true).build());
+  public ExecutorService createDiffExecutor(
+      @GerritServerConfig Config cfg, WorkQueue queues, MetricMaker metrics) {
+    int threads =
+        cfg.getInt(
+            "cache",
+            PatchListCacheImpl.FILE_NAME,
+            "threads",
+            Runtime.getRuntime().availableProcessors());
+    int queueSize = cfg.getInt("cache", PatchListCacheImpl.FILE_NAME, "queueSize", 32 * threads);
+    return new DiffExecutorService(queues.createQueue(threads, "Diff"), queueSize, metrics);
   }
 }
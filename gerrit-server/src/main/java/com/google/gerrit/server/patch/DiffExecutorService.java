@@ -0,0 +1,151 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.patch;
+
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.server.git.WorkQueue;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor for diff computations on top of a {@link WorkQueue} queue, so that pending and running
+ * diffs are listed by {@code show-queue}.
+ *
+ * <p>The number of queued diffs is bounded. Once the limit is reached further diffs are rejected
+ * with {@link RejectedExecutionException}, and callers fall back to a cheaper result instead of
+ * piling up more work.
+ *
+ * <p>Callers cancel diffs they stopped waiting for with {@code Future#cancel(true)}. The diff
+ * algorithms notice the interrupt through {@link InterruptibleRawTextComparator} and {@link
+ * CharTextComparator}, so abandoned diffs release their thread early.
+ */
+class DiffExecutorService extends AbstractExecutorService {
+  private final ExecutorService queue;
+  private final int maxQueued;
+  private final AtomicInteger queued = new AtomicInteger();
+  private final AtomicInteger active = new AtomicInteger();
+  private final Counter0 abandonedCount;
+  private final Counter0 rejectedCount;
+
+  DiffExecutorService(ExecutorService queue, int maxQueued, MetricMaker metrics) {
+    this.queue = queue;
+    this.maxQueued = maxQueued;
+
+    metrics.newCallbackMetric(
+        "diff/executor/active_count",
+        Integer.class,
+        new Description("Diffs currently being computed").setGauge().setUnit("diffs"),
+        active::get);
+    metrics.newCallbackMetric(
+        "diff/executor/queued_count",
+        Integer.class,
+        new Description("Diffs waiting for a thread").setGauge().setUnit("diffs"),
+        queued::get);
+    abandonedCount =
+        metrics.newCounter(
+            "diff/executor/abandoned_count",
+            new Description("Diffs canceled while running because the caller stopped waiting")
+                .setRate()
+                .setUnit("diffs"));
+    rejectedCount =
+        metrics.newCounter(
+            "diff/executor/rejected_count",
+            new Description("Diffs rejected because too many diffs were queued")
+                .setRate()
+                .setUnit("diffs"));
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    if (queued.incrementAndGet() > maxQueued) {
+      queued.decrementAndGet();
+      rejectedCount.increment();
+      throw new RejectedExecutionException("More than " + maxQueued + " diffs are queued");
+    }
+    try {
+      queue.execute(new DiffTask(command));
+    } catch (RejectedExecutionException e) {
+      queued.decrementAndGet();
+      throw e;
+    }
+  }
+
+  @Override
+  public void shutdown() {
+    queue.shutdown();
+  }
+
+  @Override
+  public List<Runnable> shutdownNow() {
+    return queue.shutdownNow();
+  }
+
+  @Override
+  public boolean isShutdown() {
+    return queue.isShutdown();
+  }
+
+  @Override
+  public boolean isTerminated() {
+    return queue.isTerminated();
+  }
+
+  @Override
+  public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    return queue.awaitTermination(timeout, unit);
+  }
+
+  private class DiffTask implements Runnable {
+    private final Runnable command;
+
+    DiffTask(Runnable command) {
+      this.command = command;
+    }
+
+    @Override
+    public void run() {
+      queued.decrementAndGet();
+      if (isCanceled()) {
+        // The caller gave up before the diff started; there is nothing to compute.
+        return;
+      }
+      active.incrementAndGet();
+      try {
+        command.run();
+      } finally {
+        active.decrementAndGet();
+        if (isCanceled()) {
+          abandonedCount.increment();
+        }
+      }
+    }
+
+    private boolean isCanceled() {
+      return command instanceof Future && ((Future<?>) command).isCancelled();
+    }
+
+    @Override
+    public String toString() {
+      return "diff";
+    }
+  }
+}
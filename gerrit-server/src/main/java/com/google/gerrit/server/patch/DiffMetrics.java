@@ -0,0 +1,48 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.patch;
+
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Description.Units;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer0;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+@Singleton
+class DiffMetrics {
+  /** End-to-end latency for computing a patch list that was not found in the cache. */
+  final Timer0 patchListLatency;
+
+  /** Latency for computing the file header of a single file of a patch list. */
+  final Timer0 fileHeaderLatency;
+
+  @Inject
+  DiffMetrics(MetricMaker metrics) {
+    patchListLatency =
+        metrics.newTimer(
+            "diff/patch_list_latency",
+            new Description("Latency for computing a patch list")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS));
+
+    fileHeaderLatency =
+        metrics.newTimer(
+            "diff/file_header_latency",
+            new Description("Latency for computing the diff of a single file in a patch list")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS));
+  }
+}
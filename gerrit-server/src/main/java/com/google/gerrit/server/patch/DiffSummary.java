@@ -19,10 +19,13 @@ import static com.google.gerrit.server.ioutil.BasicSerialization.readVarInt32;
 import static com.google.gerrit.server.ioutil.BasicSerialization.writeString;
 import static com.google.gerrit.server.ioutil.BasicSerialization.writeVarInt32;
 
+import com.google.gerrit.server.cache.CompactCacheSerializer;
 import com.google.gerrit.server.query.change.ChangeData.ChangedLines;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.util.Arrays;
 import java.util.Collections;
@@ -43,6 +46,8 @@ public class DiffSummary implements Serializable {
     this.deletions = deletions;
   }
 
+  private DiffSummary() {}
+
   public List<String> getPaths() {
     return Collections.unmodifiableList(Arrays.asList(paths));
   }
@@ -52,6 +57,14 @@ public class DiffSummary implements Serializable {
   }
 
   private void writeObject(ObjectOutputStream output) throws IOException {
+    writeTo(output);
+  }
+
+  private void readObject(ObjectInputStream input) throws IOException {
+    readFrom(input);
+  }
+
+  private void writeTo(OutputStream output) throws IOException {
     writeVarInt32(output, insertions);
     writeVarInt32(output, deletions);
     writeVarInt32(output, paths.length);
@@ -62,7 +75,7 @@ public class DiffSummary implements Serializable {
     }
   }
 
-  private void readObject(ObjectInputStream input) throws IOException {
+  private void readFrom(InputStream input) throws IOException {
     insertions = readVarInt32(input);
     deletions = readVarInt32(input);
     paths = new String[readVarInt32(input)];
@@ -72,4 +85,21 @@ public class DiffSummary implements Serializable {
       }
     }
   }
+
+  /** Compact on-disk format of the {@code diff_summary} cache. */
+  static class Serializer extends CompactCacheSerializer<DiffSummary> {
+    static final Serializer INSTANCE = new Serializer();
+
+    @Override
+    protected void write(OutputStream out, DiffSummary s) throws IOException {
+      s.writeTo(out);
+    }
+
+    @Override
+    protected DiffSummary read(InputStream in) throws IOException {
+      DiffSummary s = new DiffSummary();
+      s.readFrom(in);
+      return s;
+    }
+  }
 }
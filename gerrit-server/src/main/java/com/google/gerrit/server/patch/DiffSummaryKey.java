@@ -14,6 +14,10 @@
 
 package com.google.gerrit.server.patch;
 
+import static com.google.gerrit.server.ioutil.BasicSerialization.readVarInt32;
+import static com.google.gerrit.server.ioutil.BasicSerialization.writeVarInt32;
+import static com.google.gerrit.server.patch.PatchListKey.readCode;
+import static com.google.gerrit.server.patch.PatchListKey.writeCode;
 import static org.eclipse.jgit.lib.ObjectIdSerialization.readCanBeNull;
 import static org.eclipse.jgit.lib.ObjectIdSerialization.readNotNull;
 import static org.eclipse.jgit.lib.ObjectIdSerialization.writeCanBeNull;
@@ -21,9 +25,12 @@ import static org.eclipse.jgit.lib.ObjectIdSerialization.writeNotNull;
 
 import com.google.common.base.Preconditions;
 import com.google.gerrit.extensions.client.DiffPreferencesInfo.Whitespace;
+import com.google.gerrit.server.cache.CompactCacheSerializer;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.util.Objects;
 import org.eclipse.jgit.lib.ObjectId;
@@ -114,4 +121,26 @@ public class DiffSummaryKey implements Serializable {
       throw new IOException("Invalid whitespace type code: " + t);
     }
   }
+
+  /** Compact on-disk format of the {@code diff_summary} cache key. */
+  static class Serializer extends CompactCacheSerializer<DiffSummaryKey> {
+    static final Serializer INSTANCE = new Serializer();
+
+    @Override
+    protected void write(OutputStream out, DiffSummaryKey k) throws IOException {
+      writeCanBeNull(out, k.oldId);
+      writeVarInt32(out, k.parentNum == null ? 0 : k.parentNum);
+      writeNotNull(out, k.newId);
+      writeCode(out, PatchListKey.WHITESPACE_TYPES, k.whitespace);
+    }
+
+    @Override
+    protected DiffSummaryKey read(InputStream in) throws IOException {
+      ObjectId oldId = readCanBeNull(in);
+      int n = readVarInt32(in);
+      ObjectId newId = readNotNull(in);
+      Whitespace ws = readCode(in, PatchListKey.WHITESPACE_TYPES);
+      return new DiffSummaryKey(oldId, n == 0 ? null : Integer.valueOf(n), newId, ws);
+    }
+  }
 }
@@ -0,0 +1,65 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.patch;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.diff.RawTextComparator;
+
+/**
+ * Comparator aborting the diff it is used in once the computing thread was interrupted.
+ *
+ * <p>The diff algorithms of JGit never check for interrupts, so without this a diff which was
+ * abandoned by its caller after a timeout keeps its thread busy until it completes.
+ */
+class InterruptibleRawTextComparator extends RawTextComparator {
+  static void checkInterrupted() {
+    if (Thread.currentThread().isInterrupted()) {
+      throw new CancellationException("diff was interrupted");
+    }
+  }
+
+  private final RawTextComparator delegate;
+
+  InterruptibleRawTextComparator(RawTextComparator delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public boolean equals(RawText a, int ai, RawText b, int bi) {
+    checkInterrupted();
+    return delegate.equals(a, ai, b, bi);
+  }
+
+  @Override
+  public int hash(RawText seq, int lno) {
+    return delegate.hash(seq, lno);
+  }
+
+  @Override
+  public Edit reduceCommonStartEnd(RawText a, RawText b, Edit e) {
+    return delegate.reduceCommonStartEnd(a, b, e);
+  }
+
+  @Override
+  protected int hashRegion(byte[] raw, int ptr, int end) {
+    // RawTextComparator#hash, the only caller in JGit, is delegated above. The delegate's own
+    // hashRegion is not accessible from here, so hash the region as a line of the delegate.
+    RawText line = new RawText(Arrays.copyOfRange(raw, ptr, end));
+    return line.size() > 0 ? delegate.hash(line, 0) : 0;
+  }
+}
@@ -21,6 +21,7 @@ import static com.google.gerrit.server.ioutil.BasicSerialization.writeVarInt32;
 
 import com.google.common.collect.ImmutableList;
 import com.google.gerrit.reviewdb.client.CodedEnum;
+import com.google.gerrit.server.cache.CompactCacheSerializer;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
@@ -68,6 +69,8 @@ public class IntraLineDiff implements Serializable {
     this.edits = ImmutableList.copyOf(edits);
   }
 
+  private IntraLineDiff() {}
+
   public Status getStatus() {
     return status;
   }
@@ -79,6 +82,14 @@ public class IntraLineDiff implements Serializable {
   }
 
   private void writeObject(ObjectOutputStream out) throws IOException {
+    writeTo(out);
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException {
+    readFrom(in);
+  }
+
+  private void writeTo(OutputStream out) throws IOException {
     writeEnum(out, status);
     writeVarInt32(out, edits.size());
     for (Edit e : edits) {
@@ -96,7 +107,7 @@ public class IntraLineDiff implements Serializable {
     }
   }
 
-  private void readObject(ObjectInputStream in) throws IOException {
+  private void readFrom(InputStream in) throws IOException {
     status = readEnum(in, Status.values());
     int editCount = readVarInt32(in);
     Edit[] editArray = new Edit[editCount];
@@ -151,4 +162,21 @@ public class IntraLineDiff implements Serializable {
   private static List<Edit> toList(Edit[] l) {
     return Collections.unmodifiableList(Arrays.asList(l));
   }
+
+  /** Compact on-disk format of the {@code diff_intraline} cache. */
+  static class Serializer extends CompactCacheSerializer<IntraLineDiff> {
+    static final Serializer INSTANCE = new Serializer();
+
+    @Override
+    protected void write(OutputStream out, IntraLineDiff d) throws IOException {
+      d.writeTo(out);
+    }
+
+    @Override
+    protected IntraLineDiff read(InputStream in) throws IOException {
+      IntraLineDiff d = new IntraLineDiff();
+      d.readFrom(in);
+      return d;
+    }
+  }
 }
@@ -14,8 +14,17 @@
 
 package com.google.gerrit.server.patch;
 
+import static com.google.gerrit.server.patch.PatchListKey.readCode;
+import static com.google.gerrit.server.patch.PatchListKey.writeCode;
+import static org.eclipse.jgit.lib.ObjectIdSerialization.readNotNull;
+import static org.eclipse.jgit.lib.ObjectIdSerialization.writeNotNull;
+
 import com.google.auto.value.AutoValue;
 import com.google.gerrit.extensions.client.DiffPreferencesInfo.Whitespace;
+import com.google.gerrit.server.cache.CompactCacheSerializer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import org.eclipse.jgit.lib.ObjectId;
 
@@ -32,4 +41,24 @@ public abstract class IntraLineDiffKey implements Serializable {
   public abstract ObjectId getBlobB();
 
   public abstract Whitespace getWhitespace();
+
+  /** Compact on-disk format of the {@code diff_intraline} cache key. */
+  static class Serializer extends CompactCacheSerializer<IntraLineDiffKey> {
+    static final Serializer INSTANCE = new Serializer();
+
+    @Override
+    protected void write(OutputStream out, IntraLineDiffKey k) throws IOException {
+      writeNotNull(out, k.getBlobA());
+      writeNotNull(out, k.getBlobB());
+      writeCode(out, PatchListKey.WHITESPACE_TYPES, k.getWhitespace());
+    }
+
+    @Override
+    protected IntraLineDiffKey read(InputStream in) throws IOException {
+      ObjectId a = readNotNull(in);
+      ObjectId b = readNotNull(in);
+      Whitespace ws = readCode(in, PatchListKey.WHITESPACE_TYPES);
+      return create(a, b, ws);
+    }
+  }
 }
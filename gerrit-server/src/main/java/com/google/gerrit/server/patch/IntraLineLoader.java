@@ -21,12 +21,14 @@ import com.google.gerrit.server.config.ConfigUtil;
 import com.google.gerrit.server.config.GerritServerConfig;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.regex.Pattern;
@@ -75,9 +77,16 @@ class IntraLineLoader implements Callable<IntraLineDiff> {
 
   @Override
   public IntraLineDiff call() throws Exception {
-    Future<IntraLineDiff> result =
-        diffExecutor.submit(
-            () -> IntraLineLoader.compute(args.aText(), args.bText(), args.edits()));
+    Future<IntraLineDiff> result;
+    try {
+      result =
+          diffExecutor.submit(
+              () -> IntraLineLoader.compute(args.aText(), args.bText(), args.edits()));
+    } catch (RejectedExecutionException e) {
+      // Fail without caching a result, so that the diff is computed again once the diff executor
+      // has caught up.
+      throw new IOException("Diff executor is overloaded", e);
+    }
     try {
       return result.get(timeoutMillis, TimeUnit.MILLISECONDS);
     } catch (InterruptedException | TimeoutException e) {
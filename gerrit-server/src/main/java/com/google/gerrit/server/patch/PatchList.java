@@ -27,11 +27,15 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.gerrit.common.Nullable;
 import com.google.gerrit.reviewdb.client.Patch;
 import com.google.gerrit.reviewdb.client.PatchSet;
+import com.google.gerrit.server.cache.CompactCacheSerializer;
+import com.google.gerrit.server.patch.PatchListCacheImpl.LargeObjectTombstone;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -105,6 +109,8 @@ public class PatchList implements Serializable {
     this.patches = patches;
   }
 
+  private PatchList() {}
+
   /** Old side tree or commit; null only if this is a combined diff. */
   @Nullable
   public ObjectId getOldId() {
@@ -171,6 +177,14 @@ public class PatchList implements Serializable {
   }
 
   private void writeObject(ObjectOutputStream output) throws IOException {
+    writeTo(output);
+  }
+
+  private void readObject(ObjectInputStream input) throws IOException {
+    readFrom(input);
+  }
+
+  private void writeTo(OutputStream output) throws IOException {
     final ByteArrayOutputStream buf = new ByteArrayOutputStream();
     try (DeflaterOutputStream out = new DeflaterOutputStream(buf)) {
       writeCanBeNull(out, oldId);
@@ -187,7 +201,7 @@ public class PatchList implements Serializable {
     writeBytes(output, buf.toByteArray());
   }
 
-  private void readObject(ObjectInputStream input) throws IOException {
+  private void readFrom(InputStream input) throws IOException {
     final ByteArrayInputStream buf = new ByteArrayInputStream(readBytes(input));
     try (InflaterInputStream in = new InflaterInputStream(buf)) {
       oldId = readCanBeNull(in);
@@ -204,4 +218,37 @@ public class PatchList implements Serializable {
       patches = all;
     }
   }
+
+  /** Compact on-disk format of the {@code diff} cache, including large object tombstones. */
+  static class Serializer extends CompactCacheSerializer<PatchList> {
+    static final Serializer INSTANCE = new Serializer();
+
+    private static final int PATCH_LIST = 0;
+    private static final int TOMBSTONE = 1;
+
+    @Override
+    protected void write(OutputStream out, PatchList pl) throws IOException {
+      if (pl instanceof LargeObjectTombstone) {
+        writeVarInt32(out, TOMBSTONE);
+        return;
+      }
+      writeVarInt32(out, PATCH_LIST);
+      pl.writeTo(out);
+    }
+
+    @Override
+    protected PatchList read(InputStream in) throws IOException {
+      int type = readVarInt32(in);
+      switch (type) {
+        case PATCH_LIST:
+          PatchList pl = new PatchList();
+          pl.readFrom(in);
+          return pl;
+        case TOMBSTONE:
+          return new LargeObjectTombstone();
+        default:
+          throw new IOException("Invalid patch list type: " + type);
+      }
+    }
+  }
 }
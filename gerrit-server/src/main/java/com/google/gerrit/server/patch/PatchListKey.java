@@ -15,6 +15,8 @@
 package com.google.gerrit.server.patch;
 
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.gerrit.server.ioutil.BasicSerialization.readVarInt32;
+import static com.google.gerrit.server.ioutil.BasicSerialization.writeVarInt32;
 import static org.eclipse.jgit.lib.ObjectIdSerialization.readCanBeNull;
 import static org.eclipse.jgit.lib.ObjectIdSerialization.readNotNull;
 import static org.eclipse.jgit.lib.ObjectIdSerialization.writeCanBeNull;
@@ -23,9 +25,12 @@ import static org.eclipse.jgit.lib.ObjectIdSerialization.writeNotNull;
 import com.google.common.collect.ImmutableBiMap;
 import com.google.gerrit.common.Nullable;
 import com.google.gerrit.extensions.client.DiffPreferencesInfo.Whitespace;
+import com.google.gerrit.server.cache.CompactCacheSerializer;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.util.Objects;
 import org.eclipse.jgit.lib.AnyObjectId;
@@ -210,4 +215,46 @@ public class PatchListKey implements Serializable {
     char algorithmCharacter = in.readChar();
     algorithm = ALGORITHM_TYPES.inverse().get(algorithmCharacter);
   }
+
+  static void writeCode(OutputStream out, ImmutableBiMap<?, Character> types, Object value)
+      throws IOException {
+    Character c = types.get(value);
+    if (c == null) {
+      throw new IOException("Invalid type: " + value);
+    }
+    writeVarInt32(out, c);
+  }
+
+  static <T> T readCode(InputStream in, ImmutableBiMap<T, Character> types) throws IOException {
+    int c = readVarInt32(in);
+    T value = types.inverse().get((char) c);
+    if (value == null) {
+      throw new IOException("Invalid type code: " + c);
+    }
+    return value;
+  }
+
+  /** Compact on-disk format of the {@code diff} cache key. */
+  static class Serializer extends CompactCacheSerializer<PatchListKey> {
+    static final Serializer INSTANCE = new Serializer();
+
+    @Override
+    protected void write(OutputStream out, PatchListKey k) throws IOException {
+      writeCanBeNull(out, k.oldId);
+      writeVarInt32(out, k.parentNum == null ? 0 : k.parentNum);
+      writeNotNull(out, k.newId);
+      writeCode(out, WHITESPACE_TYPES, k.whitespace);
+      writeCode(out, ALGORITHM_TYPES, k.algorithm);
+    }
+
+    @Override
+    protected PatchListKey read(InputStream in) throws IOException {
+      ObjectId oldId = readCanBeNull(in);
+      int n = readVarInt32(in);
+      ObjectId newId = readNotNull(in);
+      Whitespace ws = readCode(in, WHITESPACE_TYPES);
+      Algorithm algorithm = readCode(in, ALGORITHM_TYPES);
+      return new PatchListKey(oldId, n == 0 ? null : Integer.valueOf(n), newId, ws, algorithm);
+    }
+  }
 }
@@ -27,7 +27,10 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Multimap;
+import com.google.common.util.concurrent.Futures;
+import com.google.gerrit.common.Nullable;
 import com.google.gerrit.extensions.client.DiffPreferencesInfo.Whitespace;
+import com.google.gerrit.metrics.Timer0;
 import com.google.gerrit.reviewdb.client.Patch;
 import com.google.gerrit.reviewdb.client.Project;
 import com.google.gerrit.server.config.ConfigUtil;
@@ -48,8 +51,10 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import org.eclipse.jgit.diff.DiffAlgorithm;
 import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.diff.DiffEntry.ChangeType;
 import org.eclipse.jgit.diff.DiffFormatter;
@@ -89,9 +94,11 @@ public class PatchListLoader implements Callable<PatchList> {
   private final ThreeWayMergeStrategy mergeStrategy;
   private final ExecutorService diffExecutor;
   private final AutoMerger autoMerger;
+  private final DiffMetrics metrics;
   private final PatchListKey key;
   private final Project.NameKey project;
   private final long timeoutMillis;
+  private final int parallelism;
   private final boolean save;
 
   @Inject
@@ -101,6 +108,7 @@ public class PatchListLoader implements Callable<PatchList> {
       @GerritServerConfig Config cfg,
       @DiffExecutor ExecutorService de,
       AutoMerger am,
+      DiffMetrics dm,
       @Assisted PatchListKey k,
       @Assisted Project.NameKey p) {
     repoManager = mgr;
@@ -108,6 +116,7 @@ public class PatchListLoader implements Callable<PatchList> {
     mergeStrategy = MergeUtil.getMergeStrategy(cfg);
     diffExecutor = de;
     autoMerger = am;
+    metrics = dm;
     key = k;
     project = p;
     timeoutMillis =
@@ -118,12 +127,14 @@ public class PatchListLoader implements Callable<PatchList> {
             "timeout",
             TimeUnit.MILLISECONDS.convert(5, TimeUnit.SECONDS),
             TimeUnit.MILLISECONDS);
+    parallelism = Math.max(1, cfg.getInt("cache", PatchListCacheImpl.FILE_NAME, "parallelism", 4));
     save = AutoMerger.cacheAutomerge(cfg);
   }
 
   @Override
   public PatchList call() throws IOException, PatchListNotAvailableException {
-    try (Repository repo = repoManager.openRepository(project);
+    try (Timer0.Context ignored = metrics.patchListLatency.start();
+        Repository repo = repoManager.openRepository(project);
         ObjectInserter ins = newInserter(repo);
         ObjectReader reader = ins.newReader();
         RevWalk rw = new RevWalk(reader)) {
@@ -185,11 +196,12 @@ public class PatchListLoader implements Callable<PatchList> {
       df.setDiffComparator(cmp);
       df.setDetectRenames(true);
       List<DiffEntry> diffEntries = df.scan(aTree, bTree);
+      FileHeaderLoader fileHeaderLoader = new FileHeaderLoader(ins, repo.getConfig(), cmp);
 
       Multimap<String, ContextAwareEdit> editsDueToRebasePerFilePath = ImmutableMultimap.of();
       if (key.getAlgorithm() == PatchListKey.Algorithm.OPTIMIZED_DIFF) {
         EditsDueToRebaseResult editsDueToRebaseResult =
-            determineEditsDueToRebase(aCommit, b, diffEntries, df, rw);
+            determineEditsDueToRebase(aCommit, b, diffEntries, df, fileHeaderLoader, rw);
         diffEntries = editsDueToRebaseResult.getRelevantOriginalDiffEntries();
         editsDueToRebasePerFilePath = editsDueToRebaseResult.getEditsDueToRebasePerFilePath();
       }
@@ -208,11 +220,14 @@ public class PatchListLoader implements Callable<PatchList> {
                 b,
                 comparisonType));
       }
-      for (DiffEntry diffEntry : diffEntries) {
+      List<FileHeader> fileHeaders = toFileHeaders(key.getNewId(), fileHeaderLoader, diffEntries);
+      for (int i = 0; i < diffEntries.size(); i++) {
+        DiffEntry diffEntry = diffEntries.get(i);
         Set<ContextAwareEdit> editsDueToRebase =
             getEditsDueToRebase(editsDueToRebasePerFilePath, diffEntry);
         Optional<PatchListEntry> patchListEntry =
-            getPatchListEntry(reader, df, diffEntry, aTree, bTree, editsDueToRebase);
+            getPatchListEntry(
+                reader, fileHeaders.get(i), diffEntry, aTree, bTree, editsDueToRebase);
         patchListEntry.ifPresent(entries::add);
       }
       return new PatchList(
@@ -252,6 +267,7 @@ public class PatchListLoader implements Callable<PatchList> {
    * @param diffEntries the list of {@code DiffEntries} for the diff between {@code commitA} and
    *     {@code commitB}
    * @param df the {@code DiffFormatter}
+   * @param fileHeaderLoader the loader used to compute the diffs of individual files
    * @param rw the current {@code RevWalk}
    * @return an aggregated result of the computation
    * @throws PatchListNotAvailableException if the edits can't be identified
@@ -262,6 +278,7 @@ public class PatchListLoader implements Callable<PatchList> {
       RevCommit commitB,
       List<DiffEntry> diffEntries,
       DiffFormatter df,
+      FileHeaderLoader fileHeaderLoader,
       RevWalk rw)
       throws PatchListNotAvailableException, IOException {
     if (commitA == null
@@ -304,7 +321,7 @@ public class PatchListLoader implements Callable<PatchList> {
     // details and we don't fill all of them properly.
     List<PatchListEntry> parentPatchListEntries =
         getRelevantPatchListEntries(
-            parentDiffEntries, parentCommitA, parentCommitB, touchedFilePaths, df);
+            parentDiffEntries, parentCommitA, parentCommitB, touchedFilePaths, fileHeaderLoader);
 
     EditTransformer editTransformer = new EditTransformer(parentPatchListEntries);
     editTransformer.transformReferencesOfSideA(oldPatches);
@@ -348,14 +365,17 @@ public class PatchListLoader implements Callable<PatchList> {
       RevCommit parentCommitA,
       RevCommit parentCommitB,
       Set<String> touchedFilePaths,
-      DiffFormatter diffFormatter)
+      FileHeaderLoader fileHeaderLoader)
       throws IOException {
-    List<PatchListEntry> parentPatchListEntries = new ArrayList<>(parentDiffEntries.size());
-    for (DiffEntry parentDiffEntry : parentDiffEntries) {
-      if (!isTouched(touchedFilePaths, parentDiffEntry)) {
-        continue;
-      }
-      FileHeader fileHeader = toFileHeader(parentCommitB, diffFormatter, parentDiffEntry);
+    List<DiffEntry> relevantDiffEntries =
+        parentDiffEntries
+            .stream()
+            .filter(diffEntry -> isTouched(touchedFilePaths, diffEntry))
+            .collect(toImmutableList());
+    List<FileHeader> fileHeaders =
+        toFileHeaders(parentCommitB, fileHeaderLoader, relevantDiffEntries);
+    List<PatchListEntry> parentPatchListEntries = new ArrayList<>(fileHeaders.size());
+    for (FileHeader fileHeader : fileHeaders) {
       // The code which uses this PatchListEntry doesn't care about the last three parameters. As
       // they are expensive to compute, we use arbitrary values for them.
       PatchListEntry patchListEntry =
@@ -380,13 +400,12 @@ public class PatchListLoader implements Callable<PatchList> {
 
   private Optional<PatchListEntry> getPatchListEntry(
       ObjectReader objectReader,
-      DiffFormatter diffFormatter,
+      FileHeader fileHeader,
       DiffEntry diffEntry,
       RevTree treeA,
       RevTree treeB,
       Set<ContextAwareEdit> editsDueToRebase)
       throws IOException {
-    FileHeader fileHeader = toFileHeader(key.getNewId(), diffFormatter, diffEntry);
     long oldSize = getFileSize(objectReader, diffEntry.getOldMode(), diffEntry.getOldPath(), treeA);
     long newSize = getFileSize(objectReader, diffEntry.getNewMode(), diffEntry.getNewPath(), treeB);
     Set<Edit> contentEditsDueToRebase = getContentEdits(editsDueToRebase);
@@ -437,17 +456,54 @@ public class PatchListLoader implements Callable<PatchList> {
     return t == FileMode.TYPE_FILE || t == FileMode.TYPE_SYMLINK;
   }
 
-  private FileHeader toFileHeader(
-      ObjectId commitB, DiffFormatter diffFormatter, DiffEntry diffEntry) throws IOException {
+  /**
+   * Computes the file headers of {@code diffEntries} concurrently on the diff executor.
+   *
+   * <p>At most {@code cache.diff.parallelism} files of this patch list are diffed at the same
+   * time, so that a single large patch list cannot monopolize the executor. Each file is still
+   * subject to {@code cache.diff.timeout}, after which its diff is recomputed with {@link
+   * HistogramDiff} and no fallback algorithm.
+   *
+   * @return the file headers, in the same order as {@code diffEntries}
+   */
+  private List<FileHeader> toFileHeaders(
+      ObjectId commitB, FileHeaderLoader fileHeaderLoader, List<DiffEntry> diffEntries)
+      throws IOException {
+    int n = diffEntries.size();
+    List<Future<FileHeader>> results = new ArrayList<>(n);
+    List<FileHeader> fileHeaders = new ArrayList<>(n);
+    try {
+      for (int i = 0; i < n; i++) {
+        while (results.size() < n && results.size() < i + parallelism) {
+          DiffEntry diffEntry = diffEntries.get(results.size());
+          results.add(submit(fileHeaderLoader, diffEntry));
+        }
+        fileHeaders.add(
+            toFileHeader(commitB, fileHeaderLoader, diffEntries.get(i), results.get(i)));
+      }
+    } finally {
+      // No-op for completed diffs; only reached for pending ones if an earlier file failed.
+      for (Future<FileHeader> result : results) {
+        result.cancel(true);
+      }
+    }
+    return fileHeaders;
+  }
 
-    Future<FileHeader> result =
-        diffExecutor.submit(
-            () -> {
-              synchronized (diffEntry) {
-                return diffFormatter.toFileHeader(diffEntry);
-              }
-            });
+  private Future<FileHeader> submit(FileHeaderLoader fileHeaderLoader, DiffEntry diffEntry) {
+    try {
+      return diffExecutor.submit(() -> fileHeaderLoader.load(diffEntry, null, true));
+    } catch (RejectedExecutionException e) {
+      return Futures.immediateFailedFuture(e);
+    }
+  }
 
+  private FileHeader toFileHeader(
+      ObjectId commitB,
+      FileHeaderLoader fileHeaderLoader,
+      DiffEntry diffEntry,
+      Future<FileHeader> result)
+      throws IOException {
     try {
       return result.get(timeoutMillis, TimeUnit.MILLISECONDS);
     } catch (InterruptedException | TimeoutException e) {
@@ -465,10 +521,19 @@ public class PatchListLoader implements Callable<PatchList> {
               + ".."
               + diffEntry.getNewId().name());
       result.cancel(true);
-      synchronized (diffEntry) {
-        return toFileHeaderWithoutMyersDiff(diffFormatter, diffEntry);
-      }
+      return toFileHeaderWithoutMyersDiff(fileHeaderLoader, diffEntry);
     } catch (ExecutionException e) {
+      if (e.getCause() instanceof RejectedExecutionException) {
+        // The diff executor is overloaded; don't queue more work and use the cheaper algorithm.
+        log.warn(
+            "Diff executor rejected diff in project "
+                + project
+                + " on commit "
+                + commitB.name()
+                + " on path "
+                + diffEntry.getNewPath());
+        return toFileHeaderWithoutMyersDiff(fileHeaderLoader, diffEntry);
+      }
       // If there was an error computing the result, carry it
       // up to the caller so the cache knows this key is invalid.
       Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
@@ -476,12 +541,11 @@ public class PatchListLoader implements Callable<PatchList> {
     }
   }
 
-  private FileHeader toFileHeaderWithoutMyersDiff(DiffFormatter diffFormatter, DiffEntry diffEntry)
-      throws IOException {
+  private static FileHeader toFileHeaderWithoutMyersDiff(
+      FileHeaderLoader fileHeaderLoader, DiffEntry diffEntry) throws IOException {
     HistogramDiff histogramDiff = new HistogramDiff();
     histogramDiff.setFallbackAlgorithm(null);
-    diffFormatter.setDiffAlgorithm(histogramDiff);
-    return diffFormatter.toFileHeader(diffEntry);
+    return fileHeaderLoader.load(diffEntry, histogramDiff, false);
   }
 
   private PatchListEntry newCommitMessage(
@@ -588,6 +652,49 @@ public class PatchListLoader implements Callable<PatchList> {
     return id;
   }
 
+  /**
+   * Computes the file header of a single {@link DiffEntry}.
+   *
+   * <p>{@link DiffFormatter} and {@link ObjectReader} are not thread-safe, so every call uses its
+   * own instances. The readers are created from the inserter so that they can also see an
+   * auto-merge commit which was only created in memory.
+   */
+  private class FileHeaderLoader {
+    private final ObjectInserter ins;
+    private final Config repoConfig;
+    private final RawTextComparator cmp;
+
+    FileHeaderLoader(ObjectInserter ins, Config repoConfig, RawTextComparator cmp) {
+      this.ins = ins;
+      this.repoConfig = repoConfig;
+      this.cmp = cmp;
+    }
+
+    /**
+     * Computes the file header of {@code diffEntry}.
+     *
+     * @param diffEntry the file to diff
+     * @param diffAlgorithm the algorithm to use, or null for the configured one
+     * @param interruptible whether the diff is aborted with a {@link
+     *     java.util.concurrent.CancellationException} once the thread is interrupted; only set for
+     *     diffs on the diff executor, which may be cancelled after a timeout
+     */
+    FileHeader load(
+        DiffEntry diffEntry, @Nullable DiffAlgorithm diffAlgorithm, boolean interruptible)
+        throws IOException {
+      try (Timer0.Context ignored = metrics.fileHeaderLatency.start();
+          ObjectReader reader = ins.newReader();
+          DiffFormatter df = new DiffFormatter(DisabledOutputStream.INSTANCE)) {
+        df.setReader(reader, repoConfig);
+        df.setDiffComparator(interruptible ? new InterruptibleRawTextComparator(cmp) : cmp);
+        if (diffAlgorithm != null) {
+          df.setDiffAlgorithm(diffAlgorithm);
+        }
+        return df.toFileHeader(diffEntry);
+      }
+    }
+  }
+
   @AutoValue
   abstract static class EditsDueToRebaseResult {
     public static EditsDueToRebaseResult create(
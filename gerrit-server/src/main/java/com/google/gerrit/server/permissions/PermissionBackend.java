@@ -36,6 +36,7 @@ import com.google.inject.util.Providers;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
 import org.slf4j.Logger;
@@ -277,6 +278,27 @@ public abstract class PermissionBackend {
       return ref(notes.getChange().getDest().get()).indexedChange(cd, notes);
     }
 
+    /**
+     * Filter {@code refNames} to the references the scoped user can read.
+     *
+     * <p>Equivalent to testing {@link RefPermission#READ} on each reference. Backends may override
+     * this to classify many references at once, e.g. when advertising all references of a large
+     * repository.
+     *
+     * @param refNames names of references in this project.
+     * @return subset of {@code refNames} that are readable.
+     */
+    public Set<String> filterReadable(Collection<String> refNames)
+        throws PermissionBackendException {
+      Set<String> readable = new HashSet<>();
+      for (String refName : refNames) {
+        if (ref(refName).test(RefPermission.READ)) {
+          readable.add(refName);
+        }
+      }
+      return readable;
+    }
+
     /** Verify scoped user can {@code perm}, throwing if denied. */
     public abstract void check(ProjectPermission perm)
         throws AuthException, PermissionBackendException;
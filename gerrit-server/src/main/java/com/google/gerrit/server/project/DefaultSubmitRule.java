@@ -0,0 +1,200 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.project;
+
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.MultimapBuilder;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.common.data.LabelType;
+import com.google.gerrit.common.data.LabelTypes;
+import com.google.gerrit.common.data.SubmitRecord;
+import com.google.gerrit.extensions.restapi.AuthException;
+import com.google.gerrit.reviewdb.client.Account;
+import com.google.gerrit.reviewdb.client.PatchSetApproval;
+import com.google.gerrit.server.IdentifiedUser;
+import com.google.gerrit.server.permissions.LabelPermission;
+import com.google.gerrit.server.permissions.PermissionBackend;
+import com.google.gerrit.server.permissions.PermissionBackendException;
+import com.google.gerrit.server.query.change.ChangeData;
+import com.google.gwtorm.server.OrmException;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Java implementation of the {@code default_submit} rule of {@code gerrit_common.pl}.
+ *
+ * <p>Used by {@link SubmitRuleEvaluator} for projects where neither the project nor any of its
+ * parents has a rules.pl, saving the setup of a Prolog environment for every evaluation. The
+ * returned record is the same as the one produced by the Prolog rule.
+ */
+@Singleton
+class DefaultSubmitRule {
+  private final IdentifiedUser.GenericFactory userFactory;
+  private final PermissionBackend permissionBackend;
+
+  @Inject
+  DefaultSubmitRule(
+      IdentifiedUser.GenericFactory userFactory, PermissionBackend permissionBackend) {
+    this.userFactory = userFactory;
+    this.permissionBackend = permissionBackend;
+  }
+
+  /**
+   * Evaluates the label functions of all labels of the change.
+   *
+   * @param cd change to evaluate.
+   * @return submit record, or null if the labels of the change cannot be evaluated by this rule and
+   *     the Prolog rule must be used instead.
+   * @throws OrmException if the approvals or labels of the change cannot be loaded.
+   * @throws PermissionBackendException if the permissions of a voter cannot be checked.
+   */
+  @Nullable
+  SubmitRecord evaluate(ChangeData cd) throws OrmException, PermissionBackendException {
+    LabelTypes types = cd.getLabelTypes();
+    if (types.getLabelTypes().isEmpty()) {
+      return null;
+    }
+    for (LabelType t : types.getLabelTypes()) {
+      if (t.getMin() == null || t.getMax() == null) {
+        return null;
+      }
+    }
+
+    // Like commit_label/2, consider votes in the order of the current approvals.
+    ListMultimap<String, PatchSetApproval> votes =
+        MultimapBuilder.hashKeys().arrayListValues().build();
+    for (PatchSetApproval a : cd.currentApprovals()) {
+      LabelType t = types.byLabel(a.getLabelId());
+      if (t != null) {
+        votes.put(t.getName(), a);
+      }
+    }
+
+    Evaluation eval = new Evaluation(cd, types, votes);
+    SubmitRecord rec = new SubmitRecord();
+    rec.status = SubmitRecord.Status.OK;
+    rec.labels = new ArrayList<>(types.getLabelTypes().size());
+    for (LabelType t : types.getLabelTypes()) {
+      SubmitRecord.Label lbl = eval.label(t);
+      if (lbl.status != SubmitRecord.Label.Status.OK
+          && lbl.status != SubmitRecord.Label.Status.MAY) {
+        rec.status = SubmitRecord.Status.NOT_READY;
+      }
+      rec.labels.add(lbl);
+    }
+    return rec;
+  }
+
+  private class Evaluation {
+    private final ChangeData cd;
+    private final LabelTypes types;
+    private final ListMultimap<String, PatchSetApproval> votes;
+    private final Map<Account.Id, IdentifiedUser> users = new HashMap<>();
+
+    Evaluation(ChangeData cd, LabelTypes types, ListMultimap<String, PatchSetApproval> votes) {
+      this.cd = cd;
+      this.types = types;
+      this.votes = votes;
+    }
+
+    /** Mirrors legacy_submit_rule/5. */
+    SubmitRecord.Label label(LabelType type) throws PermissionBackendException {
+      short min = type.getMin().getValue();
+      short max = type.getMax().getValue();
+      Account.Id who;
+      switch (type.getFunctionName()) {
+        case "MaxWithBlock":
+          who = appliedBy(type, min);
+          if (who != null) {
+            return label(type, SubmitRecord.Label.Status.REJECT, who);
+          }
+          who = appliedBy(type, max);
+          if (who != null) {
+            return label(type, SubmitRecord.Label.Status.OK, who);
+          }
+          return label(type, SubmitRecord.Label.Status.NEED, null);
+
+        case "AnyWithBlock":
+          if (min < 0) {
+            who = appliedBy(type, min);
+            if (who != null) {
+              return label(type, SubmitRecord.Label.Status.REJECT, who);
+            }
+          }
+          return label(type, SubmitRecord.Label.Status.MAY, null);
+
+        case "MaxNoBlock":
+          who = appliedBy(type, max);
+          if (who != null) {
+            return label(type, SubmitRecord.Label.Status.OK, who);
+          }
+          return label(type, SubmitRecord.Label.Status.NEED, null);
+
+        case "NoBlock":
+        case "NoOp":
+        case "PatchSetLock":
+          return label(type, SubmitRecord.Label.Status.MAY, null);
+
+        default:
+          return label(type, SubmitRecord.Label.Status.IMPOSSIBLE, null);
+      }
+    }
+
+    /**
+     * Mirrors check_label_range_permission/3: the first voter who voted {@code value} on the label
+     * and is permitted to do so.
+     */
+    @Nullable
+    private Account.Id appliedBy(LabelType type, short value) throws PermissionBackendException {
+      for (PatchSetApproval a : votes.get(type.getName())) {
+        if (a.getValue() == value && canVote(a.getAccountId(), type.getName(), value)) {
+          return a.getAccountId();
+        }
+      }
+      return null;
+    }
+
+    /** Mirrors '_check_user_label'/3. */
+    private boolean canVote(Account.Id accountId, String label, short value)
+        throws PermissionBackendException {
+      LabelType type = types.byLabel(label);
+      if (type == null) {
+        return false;
+      }
+      IdentifiedUser user = users.computeIfAbsent(accountId, userFactory::create);
+      try {
+        permissionBackend
+            .user(user)
+            .change(cd)
+            .check(new LabelPermission.WithValue(type, value));
+        return true;
+      } catch (AuthException e) {
+        return false;
+      }
+    }
+
+    private SubmitRecord.Label label(
+        LabelType type, SubmitRecord.Label.Status status, @Nullable Account.Id appliedBy) {
+      SubmitRecord.Label lbl = new SubmitRecord.Label();
+      lbl.label = type.getName();
+      lbl.status = status;
+      lbl.appliedBy = appliedBy;
+      return lbl;
+    }
+  }
+}
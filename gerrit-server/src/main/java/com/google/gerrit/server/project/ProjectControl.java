@@ -173,6 +173,12 @@ class ProjectControl {
     return ctl;
   }
 
+  /** Can the user read a reference that is matched by exactly {@code sections}? */
+  boolean isVisible(String refName, List<SectionMatcher> sections) {
+    return new RefControl(this, refName, permissionFilter.filter(sections, refName, user))
+        .isVisible();
+  }
+
   CurrentUser getUser() {
     return user;
   }
@@ -416,6 +422,18 @@ class ProjectControl {
           change.getProject());
     }
 
+    @Override
+    public Set<String> filterReadable(Collection<String> refNames) {
+      SectionTrie.Visibility visibility = state.getSectionTrie().visibility(ProjectControl.this);
+      Set<String> readable = new HashSet<>();
+      for (String refName : refNames) {
+        if (visibility.isVisible(refName)) {
+          readable.add(refName);
+        }
+      }
+      return readable;
+    }
+
     @Override
     public void check(ProjectPermission perm) throws AuthException, PermissionBackendException {
       if (!can(perm)) {
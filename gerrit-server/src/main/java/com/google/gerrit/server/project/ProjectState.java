@@ -105,6 +105,9 @@ public class ProjectState {
   /** Local access sections, wrapped in SectionMatchers for faster evaluation. */
   private volatile List<SectionMatcher> localAccessSections;
 
+  /** All access sections, compiled for testing READ on many references. */
+  private volatile SectionTrie sectionTrie;
+
   /** Theme information loaded from site_path/themes. */
   private volatile ThemeInfo theme;
 
@@ -199,6 +202,22 @@ public class ProjectState {
     return capabilities;
   }
 
+  /**
+   * @return true if this project or any of its parents has a rules.pl that is used for evaluating
+   *     submit rules.
+   */
+  public boolean hasPrologRules() {
+    if (!rulesCache.isProjectRulesEnabled()) {
+      return false;
+    }
+    for (ProjectState p : tree()) {
+      if (p.getConfig().getRulesId() != null) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   /** @return Construct a new PrologEnvironment for the calling thread. */
   public PrologEnvironment newPrologEnvironment() throws CompileException {
     PrologMachineCopy pmc = rulesMachine;
@@ -302,6 +321,20 @@ public class ProjectState {
     return all;
   }
 
+  /**
+   * Obtain the compiled form of {@link #getAllSections()}. It is rebuilt whenever this project or
+   * one of its parents has been reloaded since it was last compiled.
+   */
+  SectionTrie getSectionTrie() {
+    List<SectionMatcher> all = getAllSections();
+    SectionTrie t = sectionTrie;
+    if (t == null || !t.isCompiledFrom(all)) {
+      t = new SectionTrie(all);
+      sectionTrie = t;
+    }
+    return t;
+  }
+
   /**
    * @return all {@link AccountGroup}'s to which the owner privilege for 'refs/*' is assigned for
    *     this project (the local owners), if there are no local owners the local owners of the
@@ -0,0 +1,240 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.project;
+
+import static com.google.gerrit.server.project.RefPattern.isRE;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.common.data.Permission;
+import com.google.gerrit.common.data.PermissionRule;
+import com.google.gerrit.reviewdb.client.AccountGroup;
+import dk.brics.automaton.Automaton;
+import dk.brics.automaton.RunAutomaton;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compiled form of all access sections of a project, used to test READ on many references at once.
+ *
+ * <p>Prefix sections (e.g. {@code refs/heads/*}) are arranged in a trie. A reference matched only
+ * by prefix sections is matched by exactly the sections on the path to the deepest trie node it
+ * reaches, and as a longer prefix always sorts as more specific, all references reaching that node
+ * share the same {@link PermissionCollection}. The READ decision is therefore computed once per
+ * node and per combination of memberships in the groups named by READ rules, and is reused by all
+ * later requests until the project or one of its parents is reloaded.
+ *
+ * <p>References that may also be matched by an exact, regular expression or parameterized section
+ * are evaluated on their own through {@link ProjectControl#controlForRef(String)}. All regular
+ * expression sections are combined into a single automaton to detect these in one pass.
+ */
+class SectionTrie {
+  private static final Logger log = LoggerFactory.getLogger(SectionTrie.class);
+
+  private static final int MAX_MEMBERSHIPS = 1024;
+
+  private final List<SectionMatcher> sections;
+  private final Node root;
+  private final List<Node> nodes;
+  private final Set<String> exact;
+  private final List<RefPatternMatcher.ExpandParameters> parameterized;
+  @Nullable private final RunAutomaton regex;
+  private final boolean classifiable;
+  private final ImmutableList<AccountGroup.UUID> readGroups;
+  private final Cache<BitSet, AtomicReferenceArray<Boolean>> decisions;
+
+  SectionTrie(List<SectionMatcher> sections) {
+    this.sections = sections;
+    root = new Node("");
+    root.id = 0;
+    root.sections = ImmutableList.of();
+    nodes = new ArrayList<>();
+    nodes.add(root);
+    exact = new HashSet<>();
+    parameterized = new ArrayList<>();
+
+    List<SectionMatcher> prefixSections = new ArrayList<>();
+    List<Automaton> regexps = new ArrayList<>();
+    Set<AccountGroup.UUID> groups = new LinkedHashSet<>();
+    boolean ok = true;
+    for (SectionMatcher sm : sections) {
+      String name = sm.section.getName();
+      if (sm.matcher instanceof RefPatternMatcher.ExpandParameters) {
+        parameterized.add((RefPatternMatcher.ExpandParameters) sm.matcher);
+      } else if (isRE(name)) {
+        try {
+          regexps.add(RefPattern.toRegExp(name).toAutomaton());
+        } catch (IllegalArgumentException e) {
+          log.warn("Cannot compile " + name + " in " + sm.project + " to an automaton", e);
+          ok = false;
+        }
+      } else if (name.endsWith("/*")) {
+        prefixSections.add(sm);
+        insert(prefix(name));
+      } else {
+        exact.add(name);
+      }
+
+      Permission read = sm.section.getPermission(Permission.READ);
+      if (read != null) {
+        for (PermissionRule rule : read.getRules()) {
+          groups.add(rule.getGroup().getUUID());
+        }
+      }
+    }
+
+    for (Node n : nodes) {
+      if (n != root) {
+        ImmutableList.Builder<SectionMatcher> b = ImmutableList.builder();
+        for (SectionMatcher sm : prefixSections) {
+          if (n.prefix.startsWith(prefix(sm.section.getName()))) {
+            b.add(sm);
+          }
+        }
+        n.sections = b.build();
+      }
+    }
+
+    regex = regexps.isEmpty() ? null : new RunAutomaton(Automaton.union(regexps));
+    classifiable = ok;
+    readGroups = ImmutableList.copyOf(groups);
+    decisions = CacheBuilder.newBuilder().maximumSize(MAX_MEMBERSHIPS).build();
+  }
+
+  /** Whether this trie was compiled from the same section instances as {@code other}. */
+  boolean isCompiledFrom(List<SectionMatcher> other) {
+    if (sections.size() != other.size()) {
+      return false;
+    }
+    for (int i = 0; i < sections.size(); i++) {
+      if (sections.get(i) != other.get(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** @return READ decisions for the user of {@code ctl}, shared with users of equal membership. */
+  Visibility visibility(ProjectControl ctl) {
+    if (ctl.getUser().isInternalUser()) {
+      // Internal users may read any reference without being a member of any group, so their
+      // decisions must not be shared with users who are not members of any READ group either.
+      return new Visibility(ctl, null);
+    }
+    BitSet key = new BitSet(readGroups.size());
+    for (int i = 0; i < readGroups.size(); i++) {
+      if (ctl.match(readGroups.get(i))) {
+        key.set(i);
+      }
+    }
+    return new Visibility(
+        ctl, decisions.asMap().computeIfAbsent(key, k -> new AtomicReferenceArray<>(nodes.size())));
+  }
+
+  /**
+   * @return deepest node reached by {@code ref} whose sections are the only ones matching it, or
+   *     null if {@code ref} may also be matched by a section that is not a prefix.
+   */
+  @Nullable
+  private Node lookup(String ref) {
+    if (!classifiable || exact.contains(ref) || (regex != null && regex.run(ref))) {
+      return null;
+    }
+    for (RefPatternMatcher.ExpandParameters p : parameterized) {
+      if (p.matchPrefix(ref)) {
+        return null;
+      }
+    }
+
+    Node match = root;
+    Node n = root;
+    for (int i = 0; i < ref.length(); i++) {
+      n = n.children.get(ref.charAt(i));
+      if (n == null) {
+        break;
+      } else if (n.sections != null) {
+        match = n;
+      }
+    }
+    return match;
+  }
+
+  private void insert(String prefix) {
+    Node n = root;
+    for (int i = 0; i < prefix.length(); i++) {
+      char c = prefix.charAt(i);
+      Node next = n.children.get(c);
+      if (next == null) {
+        next = new Node(prefix.substring(0, i + 1));
+        n.children.put(c, next);
+      }
+      n = next;
+    }
+    if (n.id < 0) {
+      n.id = nodes.size();
+      nodes.add(n);
+    }
+  }
+
+  private static String prefix(String pattern) {
+    return pattern.substring(0, pattern.length() - 1);
+  }
+
+  private static class Node {
+    final String prefix;
+    final Map<Character, Node> children = new HashMap<>();
+    int id = -1;
+    List<SectionMatcher> sections;
+
+    Node(String prefix) {
+      this.prefix = prefix;
+    }
+  }
+
+  /** READ decisions of a single user, backed by the decisions of all users of equal membership. */
+  class Visibility {
+    private final ProjectControl ctl;
+    @Nullable private final AtomicReferenceArray<Boolean> known;
+
+    private Visibility(ProjectControl ctl, @Nullable AtomicReferenceArray<Boolean> known) {
+      this.ctl = ctl;
+      this.known = known;
+    }
+
+    boolean isVisible(String ref) {
+      Node n = known != null ? lookup(ref) : null;
+      if (n == null) {
+        return ctl.controlForRef(ref).isVisible();
+      }
+      Boolean v = known.get(n.id);
+      if (v == null) {
+        v = ctl.isVisible(n.prefix, n.sections);
+        known.set(n.id, v);
+      }
+      return v;
+    }
+  }
+}
@@ -30,6 +30,7 @@ import com.google.gerrit.server.CurrentUser;
 import com.google.gerrit.server.account.AccountCache;
 import com.google.gerrit.server.account.Accounts;
 import com.google.gerrit.server.account.Emails;
+import com.google.gerrit.server.permissions.PermissionBackendException;
 import com.google.gerrit.server.query.change.ChangeData;
 import com.google.gwtorm.server.OrmException;
 import com.google.inject.Inject;
@@ -54,6 +55,9 @@ import org.slf4j.LoggerFactory;
 /**
  * Evaluates a submit-like Prolog rule found in the rules.pl file of the current project and filters
  * the results through rules found in the parent projects, all the way up to All-Projects.
+ *
+ * <p>If no project in the hierarchy has a rules.pl, the default rules are evaluated in Java by
+ * {@link DefaultSubmitRule} without setting up a Prolog environment.
  */
 public class SubmitRuleEvaluator {
   private static final Logger log = LoggerFactory.getLogger(SubmitRuleEvaluator.class);
@@ -95,6 +99,7 @@ public class SubmitRuleEvaluator {
   private final Accounts accounts;
   private final Emails emails;
   private final ProjectCache projectCache;
+  private final DefaultSubmitRule defaultSubmitRule;
   private final ChangeData cd;
 
   private SubmitRuleOptions.Builder optsBuilder = SubmitRuleOptions.defaults();
@@ -114,12 +119,14 @@ public class SubmitRuleEvaluator {
       Accounts accounts,
       Emails emails,
       ProjectCache projectCache,
+      DefaultSubmitRule defaultSubmitRule,
       @Assisted CurrentUser user,
       @Assisted ChangeData cd) {
     this.accountCache = accountCache;
     this.accounts = accounts;
     this.emails = emails;
     this.projectCache = projectCache;
+    this.defaultSubmitRule = defaultSubmitRule;
     this.user = user;
     this.cd = cd;
   }
@@ -237,6 +244,21 @@ public class SubmitRuleEvaluator {
       return Collections.singletonList(rec);
     }
 
+    if (useDefaultRules()) {
+      try {
+        SubmitRecord rec = defaultSubmitRule.evaluate(cd);
+        if (rec != null) {
+          return Collections.singletonList(rec);
+        }
+      } catch (OrmException | PermissionBackendException e) {
+        return ruleError(
+            String.format(
+                "Exception evaluating default submit rule on change %d of %s",
+                cd.getId().get(), getProjectName()),
+            e);
+      }
+    }
+
     List<Term> results;
     try {
       results =
@@ -396,6 +418,10 @@ public class SubmitRuleEvaluator {
       return typeError("Error looking up change " + cd.getId(), e);
     }
 
+    if (useDefaultRules() && projectState.getProject().getSubmitType() != null) {
+      return SubmitTypeRecord.OK(projectState.getProject().getSubmitType());
+    }
+
     List<Term> results;
     try {
       results =
@@ -667,6 +693,11 @@ public class SubmitRuleEvaluator {
     }
   }
 
+  /** @return true if the default rules apply, so that they can be evaluated without Prolog. */
+  private boolean useDefaultRules() {
+    return opts.rule() == null && !projectState.hasPrologRules();
+  }
+
   private String getProjectName() {
     return projectState.getName();
   }
@@ -44,12 +44,17 @@ public class AndChangeSource extends AndSource<ChangeData> implements ChangeData
 
   @Override
   protected List<ChangeData> transformBuffer(List<ChangeData> buffer) throws OrmRuntimeException {
-    if (!hasChange()) {
-      try {
+    try {
+      if (!hasChange()) {
         ChangeData.ensureChangeLoaded(buffer);
-      } catch (OrmException e) {
-        throw new OrmRuntimeException(e);
       }
+      for (Predicate<ChangeData> p : getChildren()) {
+        if (p instanceof BatchMatchable) {
+          ((BatchMatchable) p).prepare(buffer);
+        }
+      }
+    } catch (OrmException e) {
+      throw new OrmRuntimeException(e);
     }
     return super.transformBuffer(buffer);
   }
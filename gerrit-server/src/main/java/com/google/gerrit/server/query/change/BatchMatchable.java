@@ -0,0 +1,34 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.query.change;
+
+import com.google.gwtorm.server.OrmException;
+import java.util.List;
+
+/**
+ * Predicate that can evaluate many changes at once more efficiently than one change at a time.
+ *
+ * <p>{@link AndChangeSource} calls {@link #prepare(List)} with each buffer of changes read from its
+ * source, before {@code match} is called on the changes of the buffer.
+ */
+interface BatchMatchable {
+  /**
+   * Computes the results of {@code match} for the given changes ahead of time.
+   *
+   * @param changes candidates read from the data source; not all of them may reach {@code match}.
+   * @throws OrmException if the results cannot be computed.
+   */
+  void prepare(List<ChangeData> changes) throws OrmException;
+}
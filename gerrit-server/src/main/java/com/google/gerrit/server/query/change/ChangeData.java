@@ -31,6 +31,7 @@ import com.google.common.collect.Iterables;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.MultimapBuilder;
 import com.google.gerrit.common.Nullable;
 import com.google.gerrit.common.data.LabelTypes;
 import com.google.gerrit.common.data.SubmitRecord;
@@ -124,6 +125,7 @@ public class ChangeData {
     if (first == null) {
       return;
     } else if (first.notesMigration.readChanges()) {
+      ensureNotesLoaded(changes);
       for (ChangeData cd : changes) {
         cd.change();
       }
@@ -144,11 +146,35 @@ public class ChangeData {
     }
   }
 
+  private static void ensureNotesLoaded(Iterable<ChangeData> changes) throws OrmException {
+    ChangeData first = Iterables.getFirst(changes, null);
+    Map<Change.Id, ChangeData> missing = new HashMap<>();
+    ListMultimap<Project.NameKey, Change.Id> byProject =
+        MultimapBuilder.hashKeys().arrayListValues().build();
+    for (ChangeData cd : changes) {
+      if (cd.notes == null && cd.lazyLoad) {
+        missing.put(cd.getId(), cd);
+        byProject.put(cd.project(), cd.getId());
+      }
+    }
+    if (missing.size() < 2) {
+      return;
+    }
+    for (ChangeNotes notes : first.notesFactory.createAll(first.db, byProject).values()) {
+      ChangeData cd = missing.get(notes.getChangeId());
+      cd.notes = notes;
+      if (cd.change == null) {
+        cd.change = notes.getChange();
+      }
+    }
+  }
+
   public static void ensureAllPatchSetsLoaded(Iterable<ChangeData> changes) throws OrmException {
     ChangeData first = Iterables.getFirst(changes, null);
     if (first == null) {
       return;
     } else if (first.notesMigration.readChanges()) {
+      ensureNotesLoaded(changes);
       for (ChangeData cd : changes) {
         cd.patchSets();
       }
@@ -179,6 +205,7 @@ public class ChangeData {
     if (first == null) {
       return;
     } else if (first.notesMigration.readChanges()) {
+      ensureNotesLoaded(changes);
       for (ChangeData cd : changes) {
         cd.currentPatchSet();
       }
@@ -205,6 +232,7 @@ public class ChangeData {
     if (first == null) {
       return;
     } else if (first.notesMigration.readChanges()) {
+      ensureNotesLoaded(changes);
       for (ChangeData cd : changes) {
         cd.currentApprovals();
       }
@@ -236,6 +264,7 @@ public class ChangeData {
     if (first == null) {
       return;
     } else if (first.notesMigration.readChanges()) {
+      ensureNotesLoaded(changes);
       for (ChangeData cd : changes) {
         cd.messages();
       }
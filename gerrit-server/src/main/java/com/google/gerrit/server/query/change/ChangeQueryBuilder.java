@@ -25,6 +25,7 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.gerrit.common.data.GroupReference;
 import com.google.gerrit.common.data.SubmitRecord;
 import com.google.gerrit.common.errors.NotSignedInException;
@@ -201,6 +202,7 @@ public class ChangeQueryBuilder extends QueryBuilder<ChangeData> {
     final ChangeNotes.Factory notesFactory;
     final CommentsUtil commentsUtil;
     final ConflictsCache conflictsCache;
+    final ListeningExecutorService conflictsExecutor;
     final DynamicMap<ChangeHasOperandFactory> hasOperands;
     final DynamicMap<ChangeOperatorFactory> opFactories;
     final GitRepositoryManager repoManager;
@@ -245,6 +247,7 @@ public class ChangeQueryBuilder extends QueryBuilder<ChangeData> {
         ChangeIndexCollection indexes,
         SubmitDryRun submitDryRun,
         ConflictsCache conflictsCache,
+        @ConflictsExecutor ListeningExecutorService conflictsExecutor,
         IndexConfig indexConfig,
         Provider<ListMembers> listMembers,
         StarredChangesUtil starredChangesUtil,
@@ -273,6 +276,7 @@ public class ChangeQueryBuilder extends QueryBuilder<ChangeData> {
           listChildProjects,
           submitDryRun,
           conflictsCache,
+          conflictsExecutor,
           indexes != null ? indexes.getSearchIndex() : null,
           indexConfig,
           listMembers,
@@ -304,6 +308,7 @@ public class ChangeQueryBuilder extends QueryBuilder<ChangeData> {
         Provider<ListChildProjects> listChildProjects,
         SubmitDryRun submitDryRun,
         ConflictsCache conflictsCache,
+        ListeningExecutorService conflictsExecutor,
         ChangeIndex index,
         IndexConfig indexConfig,
         Provider<ListMembers> listMembers,
@@ -331,6 +336,7 @@ public class ChangeQueryBuilder extends QueryBuilder<ChangeData> {
       this.listChildProjects = listChildProjects;
       this.submitDryRun = submitDryRun;
       this.conflictsCache = conflictsCache;
+      this.conflictsExecutor = conflictsExecutor;
       this.index = index;
       this.indexConfig = indexConfig;
       this.listMembers = listMembers;
@@ -364,6 +370,7 @@ public class ChangeQueryBuilder extends QueryBuilder<ChangeData> {
           listChildProjects,
           submitDryRun,
           conflictsCache,
+          conflictsExecutor,
           index,
           indexConfig,
           listMembers,
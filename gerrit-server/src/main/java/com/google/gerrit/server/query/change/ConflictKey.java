@@ -14,7 +14,17 @@
 
 package com.google.gerrit.server.query.change;
 
+import static com.google.gerrit.server.change.MergeabilityCacheImpl.SUBMIT_TYPES;
+import static com.google.gerrit.server.ioutil.BasicSerialization.readVarInt32;
+import static com.google.gerrit.server.ioutil.BasicSerialization.writeVarInt32;
+import static org.eclipse.jgit.lib.ObjectIdSerialization.readNotNull;
+import static org.eclipse.jgit.lib.ObjectIdSerialization.writeNotNull;
+
 import com.google.gerrit.extensions.client.SubmitType;
+import com.google.gerrit.server.cache.CompactCacheSerializer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.util.Objects;
 import org.eclipse.jgit.lib.ObjectId;
@@ -72,4 +82,33 @@ public class ConflictKey implements Serializable {
   public int hashCode() {
     return Objects.hash(commit, otherCommit, submitType, contentMerge);
   }
+
+  static class Serializer extends CompactCacheSerializer<ConflictKey> {
+    static final Serializer INSTANCE = new Serializer();
+
+    @Override
+    protected void write(OutputStream out, ConflictKey k) throws IOException {
+      writeNotNull(out, k.commit);
+      writeNotNull(out, k.otherCommit);
+      Character c = SUBMIT_TYPES.get(k.submitType);
+      if (c == null) {
+        throw new IOException("Invalid submit type: " + k.submitType);
+      }
+      writeVarInt32(out, c);
+      writeVarInt32(out, k.contentMerge ? 1 : 0);
+    }
+
+    @Override
+    protected ConflictKey read(InputStream in) throws IOException {
+      ObjectId commit = readNotNull(in);
+      ObjectId otherCommit = readNotNull(in);
+      int t = readVarInt32(in);
+      SubmitType submitType = SUBMIT_TYPES.inverse().get((char) t);
+      if (submitType == null) {
+        throw new IOException("Invalid submit type code: " + t);
+      }
+      // Commits are already in canonical order, so the constructor will not swap them.
+      return new ConflictKey(commit, otherCommit, submitType, readVarInt32(in) != 0);
+    }
+  }
 }
@@ -14,6 +14,8 @@
 
 package com.google.gerrit.server.query.change;
 
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.gerrit.common.Nullable;
 import com.google.gerrit.common.data.SubmitTypeRecord;
 import com.google.gerrit.index.query.Predicate;
 import com.google.gerrit.index.query.QueryParseException;
@@ -31,8 +33,12 @@ import com.google.gwtorm.server.OrmException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
@@ -80,7 +86,8 @@ public class ConflictsPredicate {
     return Predicate.and(and);
   }
 
-  private static final class CheckConflict extends ChangeOperatorPredicate {
+  private static final class CheckConflict extends ChangeOperatorPredicate
+      implements BatchMatchable {
     private final Arguments args;
     private final Branch.NameKey dest;
     private final ChangeDataCache changeDataCache;
@@ -95,66 +102,127 @@ public class ConflictsPredicate {
 
     @Override
     public boolean match(ChangeData object) throws OrmException {
+      ConflictKey conflictsKey = conflictKey(object);
+      if (conflictsKey == null) {
+        return false;
+      }
+
+      Boolean conflicts = args.conflictsCache.getIfPresent(conflictsKey);
+      if (conflicts != null) {
+        return conflicts;
+      }
+
+      try (Repository repo = args.repoManager.openRepository(dest.getParentKey())) {
+        return checkConflict(repo, conflictsKey);
+      } catch (IntegrationException | NoSuchProjectException | IOException e) {
+        throw new OrmException(e);
+      }
+    }
+
+    /**
+     * Runs the dry-run merges of all candidates that are not cached yet concurrently, sharing one
+     * open repository.
+     *
+     * <p>The candidates were read from the index with the project, branch and file predicates of
+     * this query, so all of them need a dry-run merge. Failures are ignored here and reported
+     * when {@link #match(ChangeData)} retries the dry-run for that change.
+     */
+    @Override
+    public void prepare(List<ChangeData> changes) throws OrmException {
+      Set<ConflictKey> missing = new LinkedHashSet<>();
+      for (ChangeData cd : changes) {
+        ConflictKey k = conflictKey(cd);
+        if (k != null && args.conflictsCache.getIfPresent(k) == null) {
+          missing.add(k);
+        }
+      }
+      if (missing.size() < 2) {
+        return;
+      }
+
+      try (Repository repo = args.repoManager.openRepository(dest.getParentKey())) {
+        List<FutureTask<Boolean>> tasks = new ArrayList<>(missing.size());
+        for (ConflictKey k : missing) {
+          FutureTask<Boolean> task = new FutureTask<>(() -> checkConflict(repo, k));
+          tasks.add(task);
+          try {
+            args.conflictsExecutor.execute(task);
+          } catch (RejectedExecutionException e) {
+            // Run by the caller below.
+          }
+        }
+
+        // Run the tasks the executor did not start yet in this thread, so that a busy executor
+        // never makes the query wait longer than the serial evaluation would.
+        for (FutureTask<Boolean> task : tasks) {
+          task.run();
+        }
+        for (FutureTask<Boolean> task : tasks) {
+          try {
+            Uninterruptibles.getUninterruptibly(task);
+          } catch (ExecutionException e) {
+            // Retried by match.
+          }
+        }
+      } catch (IOException e) {
+        throw new OrmException(e);
+      }
+    }
+
+    @Override
+    public int getCost() {
+      return 5;
+    }
+
+    @Nullable
+    private ConflictKey conflictKey(ChangeData object) throws OrmException {
       Change otherChange = object.change();
       if (otherChange == null || !otherChange.getDest().equals(dest)) {
-        return false;
+        return null;
       }
 
       SubmitTypeRecord str = object.submitTypeRecord();
       if (!str.isOk()) {
-        return false;
+        return null;
       }
 
       ProjectState projectState;
       try {
         projectState = changeDataCache.getProjectState();
       } catch (NoSuchProjectException e) {
-        return false;
+        return null;
       }
 
       ObjectId other = ObjectId.fromString(object.currentPatchSet().getRevision().get());
-      ConflictKey conflictsKey =
-          new ConflictKey(
-              changeDataCache.getTestAgainst(), other, str.type, projectState.isUseContentMerge());
-      Boolean conflicts = args.conflictsCache.getIfPresent(conflictsKey);
-      if (conflicts != null) {
-        return conflicts;
-      }
+      return new ConflictKey(
+          changeDataCache.getTestAgainst(), other, str.type, projectState.isUseContentMerge());
+    }
 
-      try (Repository repo = args.repoManager.openRepository(otherChange.getProject());
-          CodeReviewRevWalk rw = CodeReviewCommit.newRevWalk(repo)) {
-        conflicts =
+    private boolean checkConflict(Repository repo, ConflictKey conflictsKey)
+        throws IntegrationException, NoSuchProjectException, IOException {
+      try (CodeReviewRevWalk rw = CodeReviewCommit.newRevWalk(repo)) {
+        boolean conflicts =
             !args.submitDryRun.run(
-                str.type,
+                conflictsKey.getSubmitType(),
                 repo,
                 rw,
-                otherChange.getDest(),
-                changeDataCache.getTestAgainst(),
-                other,
-                getAlreadyAccepted(repo, rw));
+                dest,
+                conflictsKey.getCommit(),
+                conflictsKey.getOtherCommit(),
+                getAlreadyAccepted(repo, rw, conflictsKey.getCommit()));
         args.conflictsCache.put(conflictsKey, conflicts);
         return conflicts;
-      } catch (IntegrationException | NoSuchProjectException | IOException e) {
-        throw new OrmException(e);
       }
     }
 
-    @Override
-    public int getCost() {
-      return 5;
-    }
-
-    private Set<RevCommit> getAlreadyAccepted(Repository repo, RevWalk rw)
+    private Set<RevCommit> getAlreadyAccepted(Repository repo, RevWalk rw, ObjectId tip)
         throws IntegrationException {
       try {
         Set<RevCommit> accepted = new HashSet<>();
         SubmitDryRun.addCommits(changeDataCache.getAlreadyAccepted(repo), rw, accepted);
-        ObjectId tip = changeDataCache.getTestAgainst();
-        if (tip != null) {
-          accepted.add(rw.parseCommit(tip));
-        }
+        accepted.add(rw.parseCommit(tip));
         return accepted;
-      } catch (OrmException | IOException e) {
+      } catch (IOException e) {
         throw new IntegrationException("Failed to determine already accepted commits.", e);
       }
     }
@@ -190,7 +258,7 @@ public class ConflictsPredicate {
       return projectState;
     }
 
-    Set<ObjectId> getAlreadyAccepted(Repository repo) throws IOException {
+    synchronized Set<ObjectId> getAlreadyAccepted(Repository repo) throws IOException {
       if (alreadyAccepted == null) {
         alreadyAccepted = SubmitDryRun.getAlreadyAccepted(repo);
       }
@@ -0,0 +1,150 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.account.externalids;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.reviewdb.client.Account;
+import com.google.gerrit.reviewdb.client.RefNames;
+import com.google.gerrit.server.config.AllUsersName;
+import com.google.gerrit.server.config.AllUsersNameProvider;
+import com.google.gerrit.server.git.GitRepositoryManager;
+import com.google.gerrit.testutil.InMemoryRepositoryManager;
+import java.io.IOException;
+import java.util.Optional;
+import java.util.Set;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ExternalIdCacheImplTest {
+  private static final Account.Id ACCOUNT = new Account.Id(1);
+
+  private final ExternalId a = ExternalId.create("foo", "a", ACCOUNT);
+  private final ExternalId a2 = ExternalId.createWithEmail("foo", "a", ACCOUNT, "a@example.com");
+  private final ExternalId b = ExternalId.create("foo", "b", ACCOUNT);
+  private final ExternalId c = ExternalId.create("foo", "c", ACCOUNT);
+
+  private TestRepository<InMemoryRepository> tr;
+  private CountingReader reader;
+  private ExternalIdCacheImpl cache;
+
+  @Before
+  public void setUp() throws Exception {
+    InMemoryRepositoryManager repoManager = new InMemoryRepositoryManager();
+    AllUsersName allUsers = new AllUsersName(AllUsersNameProvider.DEFAULT);
+    tr = new TestRepository<>(repoManager.createRepository(allUsers));
+    reader = new CountingReader(repoManager, allUsers);
+    cache = new ExternalIdCacheImpl(reader);
+  }
+
+  @Test
+  public void deltaContainsAddedRemovedAndModifiedExternalIds() throws Exception {
+    RevCommit rev1 = commit(null, false, a, b);
+    RevCommit rev2 = commit(rev1, false, a2, c);
+
+    ExternalIdReader.Delta delta = reader.delta(rev1, rev2).get();
+    assertThat(delta.removed()).containsExactly(a, b);
+    assertThat(delta.added()).containsExactly(a2, c);
+  }
+
+  @Test
+  public void deltaIgnoresNotesMovedByFanOut() throws Exception {
+    RevCommit rev1 = commit(null, false, a, b);
+    RevCommit rev2 = commit(rev1, true, a, b);
+
+    ExternalIdReader.Delta delta = reader.delta(rev1, rev2).get();
+    assertThat(delta.removed()).isEmpty();
+    assertThat(delta.added()).isEmpty();
+  }
+
+  @Test
+  public void noDeltaIfOldRevisionIsNotAnAncestor() throws Exception {
+    RevCommit rev1 = commit(null, false, a);
+    RevCommit rev2 = commit(rev1, false, a, b);
+    RevCommit unrelated = commit(null, false, c);
+
+    assertThat(reader.delta(rev2, rev1).isPresent()).isFalse();
+    assertThat(reader.delta(rev2, unrelated).isPresent()).isFalse();
+  }
+
+  @Test
+  public void cacheAppliesDeltaToPreviousRevision() throws Exception {
+    RevCommit rev1 = commit(null, false, a, b);
+    assertThat(cache.byAccount(ACCOUNT)).containsExactly(a, b);
+    assertThat(reader.allCount).isEqualTo(1);
+
+    commit(rev1, false, a2, c);
+    assertThat(cache.byAccount(ACCOUNT)).containsExactly(a2, c);
+    assertThat(reader.allCount).isEqualTo(1);
+    assertThat(reader.deltaCount).isEqualTo(1);
+  }
+
+  @Test
+  public void cacheReadsAllExternalIdsAfterRewrite() throws Exception {
+    commit(null, false, a, b);
+    assertThat(cache.byAccount(ACCOUNT)).containsExactly(a, b);
+
+    commit(null, false, c);
+    assertThat(cache.byAccount(ACCOUNT)).containsExactly(c);
+    assertThat(reader.allCount).isEqualTo(2);
+    assertThat(reader.deltaCount).isEqualTo(1);
+  }
+
+  /**
+   * Commits a notes tree with exactly the given external IDs and points refs/meta/external-ids to
+   * it.
+   */
+  private RevCommit commit(@Nullable RevCommit parent, boolean fanOut, ExternalId... extIds)
+      throws Exception {
+    TestRepository<InMemoryRepository>.CommitBuilder cb = tr.commit().noFiles();
+    if (parent != null) {
+      cb.parent(parent);
+    }
+    for (ExternalId extId : extIds) {
+      String note = extId.key().sha1().name();
+      cb.add(fanOut ? note.substring(0, 2) + "/" + note.substring(2) : note, extId.toString());
+    }
+    RevCommit rev = cb.create();
+    tr.update(RefNames.REFS_EXTERNAL_IDS, rev);
+    return rev;
+  }
+
+  private static class CountingReader extends ExternalIdReader {
+    int allCount;
+    int deltaCount;
+
+    CountingReader(GitRepositoryManager repoManager, AllUsersName allUsers) {
+      super(repoManager, allUsers, new DisabledMetricMaker());
+    }
+
+    @Override
+    Set<ExternalId> all(ObjectId rev) throws IOException {
+      allCount++;
+      return super.all(rev);
+    }
+
+    @Override
+    Optional<Delta> delta(ObjectId oldRev, ObjectId newRev) throws IOException {
+      deltaCount++;
+      return super.delta(oldRev, newRev);
+    }
+  }
+}
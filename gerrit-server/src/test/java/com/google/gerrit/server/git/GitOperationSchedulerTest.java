@@ -0,0 +1,248 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.git;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.reviewdb.client.Account;
+import com.google.gerrit.reviewdb.client.Project;
+import com.google.gerrit.server.AnonymousUser;
+import com.google.gerrit.server.CurrentUser;
+import com.google.gerrit.server.account.AccountLimits;
+import com.google.gerrit.server.account.GroupMembership;
+import com.google.gerrit.server.git.GitOperationScheduler.Callback;
+import com.google.gerrit.server.git.GitOperationScheduler.Operation;
+import com.google.gerrit.server.git.GitOperationScheduler.Ticket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.lib.Config;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GitOperationSchedulerTest {
+  private static final Project.NameKey P1 = new Project.NameKey("p1");
+  private static final Project.NameKey P2 = new Project.NameKey("p2");
+
+  private final CurrentUser alice = new TestUser(1);
+  private final CurrentUser bob = new TestUser(2);
+
+  private ScheduledExecutorService executor;
+  private WorkQueue workQueue;
+  private AccountLimits.Factory limitsFactory;
+  private List<Op> admitted;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newSingleThreadScheduledExecutor();
+    workQueue = createMock(WorkQueue.class);
+    expect(workQueue.getDefaultQueue()).andStubReturn(executor);
+    AccountLimits limits = createMock(AccountLimits.class);
+    expect(limits.getQueueType()).andStubReturn(QueueProvider.QueueType.INTERACTIVE);
+    limitsFactory = createMock(AccountLimits.Factory.class);
+    expect(limitsFactory.create(anyObject())).andStubReturn(limits);
+    replay(workQueue, limits, limitsFactory);
+    admitted = new ArrayList<>();
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void noLimitsAdmitImmediately() {
+    GitOperationScheduler scheduler = scheduler(new Config());
+    Op a1 = schedule(scheduler, alice, P1);
+    Op a2 = schedule(scheduler, alice, P1);
+    assertThat(admitted).containsExactly(a1, a2).inOrder();
+  }
+
+  @Test
+  public void freeSlotsAreSharedFairlyBetweenAccounts() {
+    Config cfg = new Config();
+    cfg.setInt("admission", null, "maxConcurrent", 1);
+    GitOperationScheduler scheduler = scheduler(cfg);
+
+    for (int i = 0; i < 4; i++) {
+      schedule(scheduler, alice, P1);
+    }
+    for (int i = 0; i < 3; i++) {
+      schedule(scheduler, bob, P1);
+    }
+    assertThat(admitted).hasSize(1);
+
+    // Releasing an operation admits the next one on the same thread.
+    for (int i = 0; i < admitted.size(); i++) {
+      admitted.get(i).ticket.release();
+    }
+    assertThat(admitted).hasSize(7);
+
+    // Alice queued all of hers first, yet Bob never falls behind by more than one operation.
+    int byAlice = 0;
+    int byBob = 0;
+    for (Op op : admitted) {
+      if (op.user == alice) {
+        byAlice++;
+      } else {
+        byBob++;
+      }
+      assertThat(Math.abs(byAlice - byBob)).isAtMost(1);
+    }
+  }
+
+  @Test
+  public void projectLimitOnlyHoldsBackOperationsOnThatProject() {
+    Config cfg = new Config();
+    cfg.setInt("admission", null, "maxPerProject", 1);
+    GitOperationScheduler scheduler = scheduler(cfg);
+
+    Op a1 = schedule(scheduler, alice, P1);
+    Op b1 = schedule(scheduler, bob, P1);
+    Op a2 = schedule(scheduler, alice, P2);
+    assertThat(admitted).containsExactly(a1, a2).inOrder();
+
+    a1.ticket.release();
+    assertThat(admitted).containsExactly(a1, a2, b1).inOrder();
+  }
+
+  @Test
+  public void accountLimitDoesNotApplyToAnonymousUsers() {
+    Config cfg = new Config();
+    cfg.setInt("admission", null, "maxPerAccount", 1);
+    GitOperationScheduler scheduler = scheduler(cfg);
+
+    CurrentUser anonymous = new AnonymousUser();
+    Op n1 = schedule(scheduler, anonymous, P1);
+    Op n2 = schedule(scheduler, anonymous, P1);
+    Op a1 = schedule(scheduler, alice, P1);
+    Op a2 = schedule(scheduler, alice, P1);
+    assertThat(admitted).containsExactly(n1, n2, a1).inOrder();
+
+    a1.ticket.release();
+    assertThat(admitted).containsExactly(n1, n2, a1, a2).inOrder();
+  }
+
+  @Test
+  public void operationIsRejectedAfterMaxWait() throws Exception {
+    Config cfg = new Config();
+    cfg.setInt("admission", null, "maxConcurrent", 1);
+    cfg.setString("admission", null, "maxWait", "100 ms");
+    GitOperationScheduler scheduler = scheduler(cfg);
+
+    Op a1 = schedule(scheduler, alice, P1);
+    Op b1 = schedule(scheduler, bob, P1);
+    assertThat(b1.rejected.await(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(b1.message)
+        .isEqualTo(
+            "server is busy: waited 100 ms for a free slot"
+                + " (limit of 1 concurrent operations), try again later");
+
+    // The rejected operation is not admitted once a slot frees up.
+    a1.ticket.release();
+    assertThat(admitted).containsExactly(a1);
+  }
+
+  @Test
+  public void releasingTwiceFreesOneSlot() {
+    Config cfg = new Config();
+    cfg.setInt("admission", null, "maxConcurrent", 1);
+    GitOperationScheduler scheduler = scheduler(cfg);
+
+    Op a1 = schedule(scheduler, alice, P1);
+    Op b1 = schedule(scheduler, bob, P1);
+    a1.ticket.release();
+    a1.ticket.release();
+    assertThat(admitted).containsExactly(a1, b1).inOrder();
+
+    Op a2 = schedule(scheduler, alice, P1);
+    assertThat(admitted).containsExactly(a1, b1).inOrder();
+
+    // Withdrawing a queued operation twice does not free a slot either.
+    a2.ticket.release();
+    a2.ticket.release();
+    Op b2 = schedule(scheduler, bob, P1);
+    assertThat(admitted).containsExactly(a1, b1).inOrder();
+
+    b1.ticket.release();
+    assertThat(admitted).containsExactly(a1, b1, b2).inOrder();
+  }
+
+  private GitOperationScheduler scheduler(Config cfg) {
+    return new GitOperationScheduler(limitsFactory, workQueue, new DisabledMetricMaker(), cfg);
+  }
+
+  private Op schedule(GitOperationScheduler scheduler, CurrentUser user, Project.NameKey project) {
+    Op op = new Op(user);
+    op.ticket = scheduler.schedule(user, project, Operation.UPLOAD_PACK, op);
+    return op;
+  }
+
+  private class Op implements Callback {
+    private final CurrentUser user;
+    private final CountDownLatch rejected = new CountDownLatch(1);
+    private Ticket ticket;
+    @Nullable private volatile String message;
+
+    Op(CurrentUser user) {
+      this.user = user;
+    }
+
+    @Override
+    public void admitted(Ticket ticket) {
+      this.ticket = ticket;
+      admitted.add(this);
+    }
+
+    @Override
+    public void rejected(String message) {
+      this.message = message;
+      rejected.countDown();
+    }
+  }
+
+  private static class TestUser extends CurrentUser {
+    private final Account.Id accountId;
+
+    TestUser(int id) {
+      accountId = new Account.Id(id);
+    }
+
+    @Override
+    public GroupMembership getEffectiveGroups() {
+      return GroupMembership.EMPTY;
+    }
+
+    @Override
+    public boolean isIdentifiedUser() {
+      return true;
+    }
+
+    @Override
+    public Account.Id getAccountId() {
+      return accountId;
+    }
+  }
+}
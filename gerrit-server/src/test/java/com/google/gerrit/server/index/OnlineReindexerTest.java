@@ -0,0 +1,125 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.index;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.extensions.registration.DynamicSet;
+import com.google.gerrit.index.FieldDef;
+import com.google.gerrit.index.IndexDefinition;
+import com.google.gerrit.index.Schema;
+import com.google.gerrit.index.SiteIndexer;
+import com.google.gerrit.reviewdb.client.Change;
+import com.google.gerrit.server.index.change.ChangeField;
+import com.google.gerrit.server.index.change.ChangeIndex;
+import com.google.gerrit.server.index.change.ChangeIndexCollection;
+import com.google.gerrit.server.index.change.ChangeSchemaDefinitions;
+import com.google.gerrit.server.query.change.ChangeData;
+import java.io.IOException;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OnlineReindexerTest {
+  private static final Schema<ChangeData> V1 =
+      new Schema<>(1, ImmutableList.<FieldDef<ChangeData, ?>>of(ChangeField.STATUS));
+
+  private static final Schema<ChangeData> V2 =
+      new Schema<>(2, ImmutableList.<FieldDef<ChangeData, ?>>of(ChangeField.STATUS));
+
+  private ChangeIndexCollection indexes;
+  private ChangeIndex oldIndex;
+
+  @Before
+  public void setUp() {
+    indexes = new ChangeIndexCollection();
+    oldIndex = newIndex(V1, false);
+    indexes.setSearchIndex(oldIndex);
+    indexes.addWriteIndex(oldIndex);
+  }
+
+  @Test
+  public void successfulReindexActivatesNewIndex() throws Exception {
+    ChangeIndex newIndex = newIndex(V2, false);
+    indexes.addWriteIndex(newIndex);
+
+    reindex(true);
+    assertThat(indexes.getSearchIndex()).isSameAs(newIndex);
+    assertThat(indexes.getWriteIndexes()).containsExactly(newIndex);
+  }
+
+  @Test
+  public void failedReindexDoesNotActivateNewIndex() throws Exception {
+    ChangeIndex newIndex = newIndex(V2, false);
+    indexes.addWriteIndex(newIndex);
+
+    reindex(false);
+    assertThat(indexes.getSearchIndex()).isSameAs(oldIndex);
+    assertThat(indexes.getWriteIndexes()).containsExactly(oldIndex, newIndex);
+  }
+
+  @Test
+  public void failedBulkFlushDoesNotActivateNewIndex() throws Exception {
+    ChangeIndex newIndex = newIndex(V2, true);
+    indexes.addWriteIndex(newIndex);
+
+    reindex(true);
+    assertThat(indexes.getSearchIndex()).isSameAs(oldIndex);
+    assertThat(indexes.getWriteIndexes()).containsExactly(oldIndex, newIndex);
+  }
+
+  private static ChangeIndex newIndex(Schema<ChangeData> schema, boolean failBulkWrite) {
+    ChangeIndex index = createNiceMock(ChangeIndex.class);
+    expect(index.getSchema()).andStubReturn(schema);
+    if (failBulkWrite) {
+      try {
+        index.finishBulkWrite();
+      } catch (IOException e) {
+        throw new AssertionError(e);
+      }
+      expectLastCall().andThrow(new IOException("Failed to write 1 documents in bulk"));
+    }
+    replay(index);
+    return index;
+  }
+
+  private void reindex(boolean success) throws Exception {
+    SiteIndexer<Change.Id, ChangeData, ChangeIndex> siteIndexer =
+        new SiteIndexer<Change.Id, ChangeData, ChangeIndex>() {
+          @Override
+          public Result indexAll(ChangeIndex index) {
+            return new Result(Stopwatch.createStarted(), success, success ? 1 : 0, success ? 0 : 1);
+          }
+        };
+    IndexDefinition<Change.Id, ChangeData, ChangeIndex> def =
+        new IndexDefinition<Change.Id, ChangeData, ChangeIndex>(
+            ChangeSchemaDefinitions.INSTANCE, indexes, null, siteIndexer) {};
+    OnlineReindexer<Change.Id, ChangeData, ChangeIndex> reindexer =
+        new OnlineReindexer<>(def, 1, 2, DynamicSet.emptySet());
+
+    reindexer.start();
+    Stopwatch sw = Stopwatch.createStarted();
+    while (reindexer.isRunning()) {
+      assertThat(sw.elapsed(SECONDS)).named("seconds waiting for reindex").isLessThan(10L);
+      Thread.sleep(10);
+    }
+  }
+}
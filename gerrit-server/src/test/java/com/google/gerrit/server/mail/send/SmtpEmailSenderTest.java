@@ -0,0 +1,202 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.mail.send;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.server.mail.Address;
+import com.google.gerrit.testutil.TestTimeUtil;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.net.smtp.SMTPClient;
+import org.eclipse.jgit.lib.Config;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SmtpEmailSenderTest {
+  private static class FakeSmtpClient extends SMTPClient {
+    boolean resetSucceeds = true;
+    int messages;
+    boolean loggedOut;
+    boolean disconnected;
+
+    @Override
+    public boolean setSender(String address) {
+      return true;
+    }
+
+    @Override
+    public boolean addRecipient(String address) {
+      return true;
+    }
+
+    @Override
+    public Writer sendMessageData() {
+      return new StringWriter();
+    }
+
+    @Override
+    public boolean completePendingCommand() {
+      messages++;
+      return true;
+    }
+
+    @Override
+    public boolean reset() {
+      return resetSucceeds;
+    }
+
+    @Override
+    public boolean logout() {
+      loggedOut = true;
+      return true;
+    }
+
+    @Override
+    public void disconnect() {
+      disconnected = true;
+    }
+  }
+
+  private Config cfg;
+  private List<FakeSmtpClient> clients;
+
+  @Before
+  public void setUp() {
+    TestTimeUtil.resetWithClockStep(0, MILLISECONDS);
+    cfg = new Config();
+    clients = new ArrayList<>();
+  }
+
+  @After
+  public void tearDown() {
+    TestTimeUtil.useSystemTime();
+  }
+
+  @Test
+  public void connectionIsReusedUpToMaxMessages() throws Exception {
+    cfg.setInt("sendemail", null, "maxMessagesPerConnection", 3);
+    SmtpEmailSender sender = newSender();
+    for (int i = 0; i < 4; i++) {
+      send(sender);
+    }
+
+    assertThat(clients).hasSize(2);
+    FakeSmtpClient first = clients.get(0);
+    assertThat(first.messages).isEqualTo(3);
+    assertThat(first.loggedOut).isTrue();
+    assertThat(first.disconnected).isTrue();
+    FakeSmtpClient second = clients.get(1);
+    assertThat(second.messages).isEqualTo(1);
+    assertThat(second.disconnected).isFalse();
+  }
+
+  @Test
+  public void connectionIsNotReusedByDefault() throws Exception {
+    SmtpEmailSender sender = newSender();
+    send(sender);
+    send(sender);
+
+    assertThat(clients).hasSize(2);
+    assertThat(clients.get(0).loggedOut).isTrue();
+    assertThat(clients.get(0).disconnected).isTrue();
+  }
+
+  @Test
+  public void connectionIsDiscardedIfResetFails() throws Exception {
+    cfg.setInt("sendemail", null, "maxMessagesPerConnection", 10);
+    SmtpEmailSender sender = newSender();
+    send(sender);
+    clients.get(0).resetSucceeds = false;
+    send(sender);
+
+    assertThat(clients).hasSize(2);
+    assertThat(clients.get(0).messages).isEqualTo(1);
+    assertThat(clients.get(0).disconnected).isTrue();
+    assertThat(clients.get(1).messages).isEqualTo(1);
+  }
+
+  @Test
+  public void connectionExpiresAfterIdleTimeout() throws Exception {
+    cfg.setInt("sendemail", null, "maxMessagesPerConnection", 10);
+    cfg.setString("sendemail", null, "connectionIdleTimeout", "10 s");
+    SmtpEmailSender sender = newSender();
+    send(sender);
+    TestTimeUtil.incrementClock(10, SECONDS);
+    send(sender);
+    assertThat(clients).hasSize(1);
+
+    TestTimeUtil.incrementClock(11, SECONDS);
+    send(sender);
+    assertThat(clients).hasSize(2);
+    assertThat(clients.get(0).messages).isEqualTo(2);
+    assertThat(clients.get(0).loggedOut).isTrue();
+    assertThat(clients.get(0).disconnected).isTrue();
+  }
+
+  @Test
+  public void zeroIdleTimeoutExpiresConnectionsOnceIdle() throws Exception {
+    cfg.setInt("sendemail", null, "maxMessagesPerConnection", 10);
+    cfg.setString("sendemail", null, "connectionIdleTimeout", "0");
+    SmtpEmailSender sender = newSender();
+    send(sender);
+    send(sender);
+    assertThat(clients).hasSize(1);
+
+    TestTimeUtil.incrementClock(1, MILLISECONDS);
+    send(sender);
+    assertThat(clients).hasSize(2);
+    assertThat(clients.get(0).disconnected).isTrue();
+  }
+
+  @Test
+  public void stopClosesIdleConnections() throws Exception {
+    cfg.setInt("sendemail", null, "maxMessagesPerConnection", 10);
+    SmtpEmailSender sender = newSender();
+    send(sender);
+    assertThat(clients.get(0).disconnected).isFalse();
+
+    sender.stop();
+    assertThat(clients.get(0).loggedOut).isTrue();
+    assertThat(clients.get(0).disconnected).isTrue();
+  }
+
+  private SmtpEmailSender newSender() {
+    return new SmtpEmailSender(cfg, new DisabledMetricMaker()) {
+      @Override
+      SMTPClient open() {
+        FakeSmtpClient client = new FakeSmtpClient();
+        clients.add(client);
+        return client;
+      }
+    };
+  }
+
+  private static void send(SmtpEmailSender sender) throws Exception {
+    sender.send(
+        new Address("Sender", "sender@example.com"),
+        ImmutableList.of(new Address("recipient@example.com")),
+        ImmutableMap.of("Subject", new EmailHeader.String("Test")),
+        "Body");
+  }
+}
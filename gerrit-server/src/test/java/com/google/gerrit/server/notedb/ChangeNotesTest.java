@@ -26,6 +26,7 @@ import static org.eclipse.jgit.lib.Constants.OBJ_BLOB;
 import static org.junit.Assert.fail;
 
 import com.google.common.base.Throwables;
+import com.google.common.collect.HashMultiset;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableSet;
@@ -33,8 +34,13 @@ import com.google.common.collect.ImmutableTable;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Multiset;
+import com.google.common.primitives.Ints;
 import com.google.gerrit.common.TimeUtil;
 import com.google.gerrit.common.data.SubmitRecord;
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.DisabledMetricMaker;
 import com.google.gerrit.reviewdb.client.Account;
 import com.google.gerrit.reviewdb.client.Branch;
 import com.google.gerrit.reviewdb.client.Change;
@@ -3526,10 +3532,230 @@ public class ChangeNotesTest extends AbstractChangeNotesTest {
     update.commit();
   }
 
+  @Test
+  public void serializeState() throws Exception {
+    Change c = newChange();
+    RequestId submissionId = RequestId.forChange(c);
+    ChangeUpdate update = newUpdate(c, changeOwner);
+    update.setTopic("topic");
+    update.setHashtags(ImmutableSet.of("tag1", "tag2"));
+    update.setAssignee(otherUser.getAccountId());
+    update.putReviewer(otherUser.getAccountId(), REVIEWER);
+    update.putReviewerByEmail(
+        new Address("Foo Bar", "foo.bar@gerritcodereview.com"), ReviewerStateInternal.CC);
+    update.putApproval("Code-Review", (short) 1);
+    update.setChangeMessage("Message on PS1");
+    update.commit();
+
+    RevCommit commit = incrementPatchSet(c);
+    update = newUpdate(c, changeOwner);
+    update.putComment(
+        Status.PUBLISHED,
+        newComment(
+            c.currentPatchSetId(),
+            "a.txt",
+            "uuid1",
+            new CommentRange(1, 2, 3, 4),
+            1,
+            changeOwner,
+            null,
+            TimeUtil.nowTs(),
+            "Comment",
+            (short) 1,
+            commit.name(),
+            true));
+    update.setChangeMessage("Message on PS2");
+    update.setPrivate(true);
+    update.commit();
+
+    update = newUpdate(c, changeOwner);
+    update.merge(
+        submissionId,
+        ImmutableList.of(
+            submitRecord("NOT_READY", null, submitLabel("Code-Review", "NEED", null))));
+    update.commit();
+
+    ChangeNotesState state = newNotes(c).getState();
+    byte[] bytes = ChangeNotesState.Serializer.INSTANCE.serialize(state);
+    ChangeNotesState copy = ChangeNotesState.Serializer.INSTANCE.deserialize(bytes);
+
+    assertThat(ChangeNotesState.Serializer.INSTANCE.serialize(copy)).isEqualTo(bytes);
+    assertThat(copy.metaId()).isEqualTo(state.metaId());
+    assertThat(copy.changeId()).isEqualTo(state.changeId());
+    assertThat(copy.columns()).isEqualTo(state.columns());
+    assertThat(copy.hashtags()).isEqualTo(state.hashtags());
+    assertThat(copy.reviewers()).isEqualTo(state.reviewers());
+    assertThat(copy.reviewersByEmail()).isEqualTo(state.reviewersByEmail());
+    assertThat(copy.reviewerUpdates()).isEqualTo(state.reviewerUpdates());
+    assertThat(copy.submitRecords()).isEqualTo(state.submitRecords());
+    assertThat(copy.publishedComments()).isEqualTo(state.publishedComments());
+    assertThat(copy.isPrivate()).isTrue();
+    assertThat(copy.allChangeMessages()).hasSize(2);
+    assertThat(copy.changeMessagesByPatchSet().keySet())
+        .isEqualTo(state.changeMessagesByPatchSet().keySet());
+  }
+
+  @Test
+  public void incrementalParse() throws Exception {
+    Change c = newChange();
+    ChangeUpdate update = newUpdate(c, changeOwner);
+    update.putReviewer(otherUser.getAccountId(), REVIEWER);
+    update.putApproval("Code-Review", (short) 1);
+    update.setAssignee(otherUser.getAccountId());
+    update.setChangeMessage("Looks good");
+    update.commit();
+    ObjectId baseId = newNotes(c).getRevision();
+
+    RevCommit commit = incrementPatchSet(c);
+    update = newUpdate(c, otherUser);
+    update.putApproval("Code-Review", (short) -1);
+    update.putComment(
+        Status.PUBLISHED,
+        newComment(
+            c.currentPatchSetId(),
+            "a.txt",
+            "uuid1",
+            new CommentRange(1, 2, 3, 4),
+            1,
+            otherUser,
+            null,
+            TimeUtil.nowTs(),
+            "Comment",
+            (short) 1,
+            commit.name(),
+            false));
+    update.setChangeMessage("Needs work");
+    update.commit();
+
+    update = newUpdate(c, changeOwner);
+    update.setTopic("topic");
+    update.setHashtags(ImmutableSet.of("tag"));
+    update.setAssignee(changeOwner.getAccountId());
+    update.putReviewerByEmail(
+        new Address("Foo Bar", "foo.bar@gerritcodereview.com"), ReviewerStateInternal.CC);
+    update.commit();
+
+    assertIncrementalParse(c, baseId, true);
+  }
+
+  @Test
+  public void incrementalParseAfterSubmit() throws Exception {
+    Change c = newChange();
+    ChangeUpdate update = newUpdate(c, changeOwner);
+    update.putApproval("Code-Review", (short) 1);
+    update.commit();
+
+    update = newUpdate(c, changeOwner);
+    update.merge(
+        RequestId.forChange(c),
+        ImmutableList.of(
+            submitRecord(
+                "OK", null, submitLabel("Code-Review", "OK", changeOwner.getAccountId()))));
+    update.commit();
+    ObjectId baseId = newNotes(c).getRevision();
+
+    update = newUpdate(c, changeOwner);
+    update.putApproval("Code-Review", (short) 2);
+    update.commit();
+
+    ChangeNotesState state = assertIncrementalParse(c, baseId, true);
+    assertThat(state.approvals()).hasSize(1);
+    assertThat(state.approvals().get(0).getValue().isPostSubmit()).isTrue();
+  }
+
+  @Test
+  public void incrementalParseWithSubmit() throws Exception {
+    Change c = newChange();
+    ChangeUpdate update = newUpdate(c, changeOwner);
+    update.putApproval("Code-Review", (short) 1);
+    update.commit();
+    ObjectId baseId = newNotes(c).getRevision();
+
+    update = newUpdate(c, changeOwner);
+    update.putApproval("Verified", (short) 1);
+    update.commit();
+
+    update = newUpdate(c, changeOwner);
+    update.merge(
+        RequestId.forChange(c),
+        ImmutableList.of(
+            submitRecord(
+                "OK", null, submitLabel("Code-Review", "OK", changeOwner.getAccountId()))));
+    update.commit();
+
+    update = newUpdate(c, changeOwner);
+    update.putApproval("Code-Review", (short) 2);
+    update.commit();
+
+    assertIncrementalParse(c, baseId, true);
+  }
+
+  @Test
+  public void incrementalParseWithWorkInProgress() throws Exception {
+    Change c = newChange();
+    ChangeUpdate update = newUpdate(c, changeOwner);
+    update.putReviewer(otherUser.getAccountId(), REVIEWER);
+    update.commit();
+    ObjectId baseId = newNotes(c).getRevision();
+
+    update = newUpdate(c, changeOwner);
+    update.setWorkInProgress(true);
+    update.commit();
+
+    update = newUpdate(c, changeOwner);
+    update.putReviewer(otherUser.getAccountId(), CC);
+    update.commit();
+
+    ChangeNotesState state = assertIncrementalParse(c, baseId, false);
+    assertThat(state.pendingReviewers().byState(CC)).containsExactly(otherUser.getAccountId());
+  }
+
+  @Test
+  public void incrementalParseWithReaddedReviewer() throws Exception {
+    Change c = newChange();
+    ChangeUpdate update = newUpdate(c, otherUser);
+    update.putReviewer(otherUser.getAccountId(), REVIEWER);
+    update.putApproval("Code-Review", (short) 1);
+    update.commit();
+
+    update = newUpdate(c, changeOwner);
+    update.removeReviewer(otherUser.getAccountId());
+    update.commit();
+    ObjectId baseId = newNotes(c).getRevision();
+
+    update = newUpdate(c, changeOwner);
+    update.putReviewer(otherUser.getAccountId(), REVIEWER);
+    update.commit();
+
+    ChangeNotesState state = assertIncrementalParse(c, baseId, false);
+    assertThat(state.approvals()).hasSize(1);
+  }
+
   private boolean testJson() {
     return noteUtil.getWriteJson();
   }
 
+  private ChangeNotesState assertIncrementalParse(
+      Change c, ObjectId baseId, boolean expectIncremental) throws Exception {
+    ObjectId tip = newNotes(c).getRevision();
+    try (ChangeNotesRevWalk rw = ChangeNotesCommit.newRevWalk(repo)) {
+      ChangeNotesState base =
+          new ChangeNotesParser(c.getId(), baseId, rw, noteUtil, args.metrics).parseAll();
+      ChangeNotesState full =
+          new ChangeNotesParser(c.getId(), tip, rw, noteUtil, args.metrics).parseAll();
+
+      CountingMetricMaker metricMaker = new CountingMetricMaker();
+      ChangeNotesState incremental =
+          new ChangeNotesParser(c.getId(), tip, rw, noteUtil, new NoteDbMetrics(metricMaker))
+              .parseAll(id -> id.equals(baseId) ? base : null);
+      assertThat(metricMaker.counts.count("notedb/incremental_parse_count"))
+          .isEqualTo(expectIncremental ? 1 : 0);
+      assertThat(ChangeNotesState.Serializer.INSTANCE.serialize(incremental))
+          .isEqualTo(ChangeNotesState.Serializer.INSTANCE.serialize(full));
+      return incremental;
+    }
+  }
+
   private String readNote(ChangeNotes notes, ObjectId noteId) throws Exception {
     ObjectId dataId = notes.revisionNoteMap.noteMap.getNote(noteId).getData();
     return new String(rw.getObjectReader().open(dataId, OBJ_BLOB).getCachedBytes(), UTF_8);
@@ -3576,4 +3802,22 @@ public class ChangeNotesTest extends AbstractChangeNotesTest {
     update.commit();
     return tr.parseBody(commit);
   }
+
+  /** Counts increments of {@link Counter0} metrics by name. */
+  private static class CountingMetricMaker extends DisabledMetricMaker {
+    private final Multiset<String> counts = HashMultiset.create();
+
+    @Override
+    public Counter0 newCounter(String name, Description desc) {
+      return new Counter0() {
+        @Override
+        public void incrementBy(long value) {
+          counts.add(name, Ints.checkedCast(value));
+        }
+
+        @Override
+        public void remove() {}
+      };
+    }
+  }
 }
@@ -0,0 +1,93 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.notedb;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.gerrit.reviewdb.client.Change;
+import com.google.gerrit.reviewdb.client.PatchSet;
+import com.google.gerrit.reviewdb.client.RefNames;
+import com.google.gerrit.server.notedb.ChangeNotes.Factory.ScanResult;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ScanResultTest {
+  private InMemoryRepository repo;
+  private ScanResult sr;
+
+  @Before
+  public void setUp() throws Exception {
+    repo = new InMemoryRepository(new DfsRepositoryDescription("repo"));
+    TestRepository<InMemoryRepository> tr = new TestRepository<>(repo);
+    RevCommit c = tr.commit().create();
+    // Change 20 has neither kind of ref, so it is not found.
+    for (int i = 1; i <= 20; i++) {
+      Change.Id id = new Change.Id(i);
+      if (i % 4 != 0) {
+        tr.update(new PatchSet.Id(id, 1).toRefName(), c);
+      }
+      if (i % 5 != 0) {
+        tr.update(RefNames.changeMetaRef(id), c);
+      }
+    }
+    sr = ChangeNotes.Factory.scanChangeIds(repo);
+  }
+
+  @Test
+  public void scanChangeIds() throws Exception {
+    assertThat(sr.all()).hasSize(19);
+    assertThat(sr.fromPatchSetRefs()).hasSize(15);
+    assertThat(sr.fromMetaRefs()).hasSize(16);
+  }
+
+  @Test
+  public void partitionContainsEachChangeExactlyOnce() throws Exception {
+    for (int n = 1; n <= 7; n++) {
+      List<ScanResult> parts = sr.partition(n);
+      assertThat(parts).hasSize(n);
+
+      Set<Change.Id> seen = new HashSet<>();
+      int fromPs = 0;
+      int fromMeta = 0;
+      for (int i = 0; i < n; i++) {
+        ScanResult part = parts.get(i);
+        for (Change.Id id : part.all()) {
+          assertThat(id.get() % n).named("slice of change " + id).isEqualTo(i);
+          assertThat(seen.add(id)).named("change " + id + " seen for the first time").isTrue();
+        }
+        fromPs += part.fromPatchSetRefs().size();
+        fromMeta += part.fromMetaRefs().size();
+      }
+      assertThat(seen).containsExactlyElementsIn(sr.all());
+      assertThat(fromPs).isEqualTo(sr.fromPatchSetRefs().size());
+      assertThat(fromMeta).isEqualTo(sr.fromMetaRefs().size());
+    }
+  }
+
+  @Test
+  public void partitionKeepsRefTypes() throws Exception {
+    for (ScanResult part : sr.partition(3)) {
+      assertThat(sr.fromPatchSetRefs()).containsAllIn(part.fromPatchSetRefs());
+      assertThat(sr.fromMetaRefs()).containsAllIn(part.fromMetaRefs());
+    }
+  }
+}
@@ -0,0 +1,110 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.patch;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assert_;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.diff.HistogramDiff;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DiffExecutorServiceTest {
+  private ExecutorService queue;
+  private DiffExecutorService executor;
+
+  @Before
+  public void setUp() {
+    queue = Executors.newSingleThreadExecutor();
+    executor = new DiffExecutorService(queue, 1, new DisabledMetricMaker());
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    executor.shutdownNow();
+    executor.awaitTermination(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void rejectsDiffsBeyondQueueSize() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Future<?> running =
+        executor.submit(
+            () -> {
+              started.countDown();
+              release.await();
+              return null;
+            });
+    started.await();
+
+    Future<String> queued = executor.submit(() -> "queued");
+    try {
+      executor.submit(() -> "rejected");
+      assert_().fail("expected RejectedExecutionException");
+    } catch (RejectedExecutionException e) {
+      // Expected.
+    }
+
+    release.countDown();
+    running.get();
+    assertThat(queued.get()).isEqualTo("queued");
+    assertThat(executor.submit(() -> "accepted").get()).isEqualTo("accepted");
+  }
+
+  @Test
+  public void interruptAbortsDiff() throws Exception {
+    RawText a = new RawText("a\nb\nc\nd\ne\n".getBytes(UTF_8));
+    RawText b = new RawText("a\nx\nc\ny\ne\n".getBytes(UTF_8));
+    InterruptibleRawTextComparator cmp =
+        new InterruptibleRawTextComparator(RawTextComparator.DEFAULT);
+    assertThat(new HistogramDiff().diff(cmp, a, b)).hasSize(2);
+
+    Thread.currentThread().interrupt();
+    try {
+      new HistogramDiff().diff(cmp, a, b);
+      assert_().fail("expected CancellationException");
+    } catch (CancellationException e) {
+      // Expected.
+    } finally {
+      Thread.interrupted();
+    }
+  }
+
+  @Test
+  public void hashRegionHashesLikeDelegate() throws Exception {
+    byte[] raw = "a\n  b \nc".getBytes(UTF_8);
+    RawText text = new RawText(raw);
+    for (RawTextComparator delegate :
+        new RawTextComparator[] {RawTextComparator.DEFAULT, RawTextComparator.WS_IGNORE_ALL}) {
+      InterruptibleRawTextComparator cmp = new InterruptibleRawTextComparator(delegate);
+      assertThat(cmp.hashRegion(raw, 2, 7)).isEqualTo(delegate.hash(text, 1));
+      assertThat(cmp.hashRegion(raw, 7, 8)).isEqualTo(delegate.hash(text, 2));
+      assertThat(cmp.hashRegion(raw, 2, 2)).isEqualTo(cmp.hashRegion(raw, 8, 8));
+    }
+  }
+}
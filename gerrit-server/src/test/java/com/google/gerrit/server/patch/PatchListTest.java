@@ -16,6 +16,7 @@ package com.google.gerrit.server.patch;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import com.google.gerrit.extensions.client.DiffPreferencesInfo.Whitespace;
 import com.google.gerrit.reviewdb.client.Patch;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -24,6 +25,7 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.Arrays;
 import java.util.Comparator;
+import org.eclipse.jgit.lib.ObjectId;
 import org.junit.Test;
 
 public class PatchListTest {
@@ -87,4 +89,44 @@ public class PatchListTest {
       assertThat(ois.readObject()).isInstanceOf(PatchListCacheImpl.LargeObjectTombstone.class);
     }
   }
+
+  @Test
+  public void largeObjectTombstoneCanBeSerializedWithCacheSerializer() {
+    byte[] serialized =
+        PatchList.Serializer.INSTANCE.serialize(new PatchListCacheImpl.LargeObjectTombstone());
+    assertThat(PatchList.Serializer.INSTANCE.deserialize(serialized))
+        .isInstanceOf(PatchListCacheImpl.LargeObjectTombstone.class);
+  }
+
+  @Test
+  public void patchListCanBeSerializedWithCacheSerializer() {
+    ObjectId oldId = ObjectId.fromString("0123456789012345678901234567890123456789");
+    ObjectId newId = ObjectId.fromString("abcdefabcdefabcdefabcdefabcdefabcdefabcd");
+    PatchList pl =
+        new PatchList(
+            oldId, newId, false, ComparisonType.againstOtherPatchSet(), new PatchListEntry[0]);
+
+    PatchList copy =
+        PatchList.Serializer.INSTANCE.deserialize(PatchList.Serializer.INSTANCE.serialize(pl));
+    assertThat(copy).isNotInstanceOf(PatchListCacheImpl.LargeObjectTombstone.class);
+    assertThat(copy.getOldId()).isEqualTo(oldId);
+    assertThat(copy.getNewId()).isEqualTo(newId);
+    assertThat(copy.getPatches()).isEmpty();
+  }
+
+  @Test
+  public void patchListKeyCanBeSerializedWithCacheSerializer() {
+    ObjectId newId = ObjectId.fromString("abcdefabcdefabcdefabcdefabcdefabcdefabcd");
+    PatchListKey key = PatchListKey.againstParentNum(2, newId, Whitespace.IGNORE_ALL);
+    assertThat(
+            PatchListKey.Serializer.INSTANCE.deserialize(
+                PatchListKey.Serializer.INSTANCE.serialize(key)))
+        .isEqualTo(key);
+
+    key = PatchListKey.againstDefaultBase(newId, Whitespace.IGNORE_NONE);
+    assertThat(
+            PatchListKey.Serializer.INSTANCE.deserialize(
+                PatchListKey.Serializer.INSTANCE.serialize(key)))
+        .isEqualTo(key);
+  }
 }
@@ -46,6 +46,7 @@ import com.google.gerrit.reviewdb.server.ReviewDb;
 import com.google.gerrit.rules.PrologEnvironment;
 import com.google.gerrit.rules.RulesCache;
 import com.google.gerrit.server.CurrentUser;
+import com.google.gerrit.server.InternalUser;
 import com.google.gerrit.server.account.CapabilityCollection;
 import com.google.gerrit.server.account.GroupMembership;
 import com.google.gerrit.server.account.ListGroupMembership;
@@ -72,8 +73,10 @@ import com.google.inject.Provider;
 import com.google.inject.util.Providers;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -550,6 +553,55 @@ public class RefControlTest {
     assertCanRead("refs/heads/foo-QA-bar", d);
   }
 
+  @Test
+  public void filterReadableMatchesPerRefDecision() throws Exception {
+    allow(parent, READ, REGISTERED_USERS, "refs/*");
+    deny(local, READ, REGISTERED_USERS, "refs/*");
+    allow(local, READ, REGISTERED_USERS, "refs/heads/*");
+    allow(local, READ, DEVS, "refs/heads/secret/*", true);
+    block(local, READ, ANONYMOUS_USERS, "refs/heads/blocked/*");
+    allow(local, READ, DEVS, "refs/meta/exact");
+    allow(local, READ, DEVS, "^refs/heads/.*-QA-.*");
+    allow(local, READ, DEVS, "refs/sb/${username}/*");
+
+    String[] refs = {
+      "refs/foobar",
+      "refs/heads/master",
+      "refs/heads/master2",
+      "refs/heads/secret/x",
+      "refs/heads/secret/y",
+      "refs/heads/blocked/z",
+      "refs/heads/foo-QA-bar",
+      "refs/meta/exact",
+      "refs/meta/other",
+      "refs/sb/d/foo",
+      "refs/sb/u/foo"
+    };
+    assertFilterReadable(user(local, "d", DEVS), refs);
+    assertFilterReadable(user(local, "u", REGISTERED_USERS), refs);
+    assertFilterReadable(user(local, "d", DEVS), refs);
+
+    // Neither user is a member of any group named by a READ rule, but the internal user may read
+    // all references. Whichever user comes first must not decide for the other.
+    ProjectState state = newProjectState(local);
+    assertFilterReadable(user(state, new NoGroupsUser()), refs);
+    assertFilterReadable(user(state, new InternalUser()), refs);
+    state = newProjectState(local);
+    assertFilterReadable(user(state, new InternalUser()), refs);
+    assertFilterReadable(user(state, new NoGroupsUser()), refs);
+  }
+
+  private void assertFilterReadable(ProjectControl u, String... refs) throws Exception {
+    Set<String> expected = new HashSet<>();
+    for (String ref : refs) {
+      if (u.controlForRef(ref).isVisible()) {
+        expected.add(ref);
+      }
+    }
+    assertThat(u.asForProject().filterReadable(Arrays.asList(refs)))
+        .containsExactlyElementsIn(expected);
+  }
+
   @Test
   public void blockRule_ParentBlocksChild() {
     allow(local, PUSH, DEVS, "refs/tags/*");
@@ -866,6 +918,10 @@ public class RefControlTest {
   }
 
   private ProjectControl user(ProjectConfig local, String name, AccountGroup.UUID... memberOf) {
+    return user(newProjectState(local), new MockUser(name, memberOf));
+  }
+
+  private ProjectControl user(ProjectState state, CurrentUser user) {
     return new ProjectControl(
         Collections.<AccountGroup.UUID>emptySet(),
         Collections.<AccountGroup.UUID>emptySet(),
@@ -873,8 +929,8 @@ public class RefControlTest {
         null, // commitsCollection
         changeControlFactory,
         permissionBackend,
-        new MockUser(name, memberOf),
-        newProjectState(local));
+        user,
+        state);
   }
 
   private ProjectState newProjectState(ProjectConfig local) {
@@ -904,4 +960,11 @@ public class RefControlTest {
       return username;
     }
   }
+
+  private static class NoGroupsUser extends CurrentUser {
+    @Override
+    public GroupMembership getEffectiveGroups() {
+      return GroupMembership.EMPTY;
+    }
+  }
 }
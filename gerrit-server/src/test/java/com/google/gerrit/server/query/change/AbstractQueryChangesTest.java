@@ -90,6 +90,7 @@ import com.google.gerrit.server.change.ChangeTriplet;
 import com.google.gerrit.server.change.PatchSetInserter;
 import com.google.gerrit.server.config.AllUsersName;
 import com.google.gerrit.server.git.MetaDataUpdate;
+import com.google.gerrit.server.git.WorkQueue;
 import com.google.gerrit.server.index.change.ChangeField;
 import com.google.gerrit.server.index.change.ChangeIndexCollection;
 import com.google.gerrit.server.index.change.ChangeIndexer;
@@ -1671,6 +1672,23 @@ public abstract class AbstractQueryChangesTest extends GerritServerTests {
 
   @Test
   public void conflicts() throws Exception {
+    assertConflicts();
+  }
+
+  @Test
+  public void conflictsWithThreadPool() throws Exception {
+    // Restart with a pool for the dry-run merges, so that the candidates of each conflicts query
+    // are checked concurrently instead of in the query thread.
+    tearDownInjector();
+    config = new Config(config);
+    config.setInt("change", null, "conflictsThreads", 2);
+    setUpInjector();
+    assertThat(injector.getInstance(WorkQueue.class).getExecutor("Conflicts")).isNotNull();
+
+    assertConflicts();
+  }
+
+  private void assertConflicts() throws Exception {
     TestRepository<Repo> repo = createProject("repo");
     RevCommit commit1 =
         repo.parseBody(
@@ -120,6 +120,9 @@ public class InMemoryModule extends FactoryModule {
     cfg.setString("index", null, "type", "lucene");
     cfg.setBoolean("index", "lucene", "testInmemory", true);
     cfg.setInt("sendemail", null, "threadPoolSize", 0);
+    if (cfg.getString("change", null, "conflictsThreads") == null) {
+      cfg.setInt("change", null, "conflictsThreads", 0);
+    }
     cfg.setBoolean("receive", null, "enableSignedPush", false);
     cfg.setString("receive", null, "certNonceSeed", "sekret");
   }
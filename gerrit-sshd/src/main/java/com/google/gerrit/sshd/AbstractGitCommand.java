@@ -14,9 +14,12 @@
 
 package com.google.gerrit.sshd;
 
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.common.ProjectUtil;
 import com.google.gerrit.reviewdb.client.Project;
 import com.google.gerrit.server.AccessPath;
 import com.google.gerrit.server.IdentifiedUser;
+import com.google.gerrit.server.git.GitOperationScheduler;
 import com.google.gerrit.server.git.GitRepositoryManager;
 import com.google.gerrit.server.permissions.PermissionBackendException;
 import com.google.gerrit.server.project.ProjectState;
@@ -42,13 +45,49 @@ public abstract class AbstractGitCommand extends BaseCommand {
 
   @Inject private IdentifiedUser.GenericFactory userFactory;
 
+  @Inject private GitOperationScheduler scheduler;
+
   protected Repository repo;
   protected Project.NameKey projectName;
   protected Project project;
 
+  private volatile GitOperationScheduler.Ticket ticket;
+
   @Override
   public void start(Environment env) {
     Context ctx = context.subContext(newSession(), context.getCommandLine());
+    GitOperationScheduler.Operation op = getOperation();
+    if (op == null) {
+      startService(ctx);
+      return;
+    }
+
+    ticket =
+        scheduler.schedule(
+            user,
+            getProjectNameFromArguments(),
+            op,
+            new GitOperationScheduler.Callback() {
+              @Override
+              public void admitted(GitOperationScheduler.Ticket t) {
+                ticket = t;
+                startService(ctx);
+              }
+
+              @Override
+              public void rejected(String message) {
+                writeError("fatal", message);
+                try {
+                  err.flush();
+                } catch (IOException e) {
+                  // Ignored
+                }
+                onExit(1);
+              }
+            });
+  }
+
+  private void startService(Context ctx) {
     final Context old = sshScope.set(ctx);
     try {
       startThread(
@@ -73,6 +112,56 @@ public abstract class AbstractGitCommand extends BaseCommand {
     }
   }
 
+  /**
+   * Kind of the operation for admission control, {@code null} if the command is not subject to
+   * it.
+   */
+  @Nullable
+  protected GitOperationScheduler.Operation getOperation() {
+    return null;
+  }
+
+  /**
+   * Returns the project named by the command line, as used for admission control.
+   *
+   * <p>Git clients pass the project as last argument. The command line is not parsed yet at this
+   * point, the project is only validated once the command runs.
+   */
+  @Nullable
+  private Project.NameKey getProjectNameFromArguments() {
+    String[] args = getArguments();
+    if (args == null || args.length == 0) {
+      return null;
+    }
+    String name = args[args.length - 1];
+    while (name.endsWith("/")) {
+      name = name.substring(0, name.length() - 1);
+    }
+    while (name.startsWith("/")) {
+      name = name.substring(1);
+    }
+    return new Project.NameKey(ProjectUtil.stripGitSuffix(name));
+  }
+
+  @Override
+  protected void onExit(int rc) {
+    releaseTicket();
+    super.onExit(rc);
+  }
+
+  @Override
+  public void destroy() {
+    releaseTicket();
+    super.destroy();
+  }
+
+  private void releaseTicket() {
+    GitOperationScheduler.Ticket t = ticket;
+    if (t != null) {
+      t.release();
+    }
+  }
+
   private SshSession newSession() {
     SshSession n =
         new SshSession(
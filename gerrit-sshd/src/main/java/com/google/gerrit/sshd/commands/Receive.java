@@ -20,6 +20,7 @@ import com.google.gerrit.common.data.Capable;
 import com.google.gerrit.extensions.restapi.AuthException;
 import com.google.gerrit.reviewdb.client.Account;
 import com.google.gerrit.server.IdentifiedUser;
+import com.google.gerrit.server.git.GitOperationScheduler;
 import com.google.gerrit.server.git.VisibleRefFilter;
 import com.google.gerrit.server.git.receive.AsyncReceiveCommits;
 import com.google.gerrit.server.notedb.ReviewerStateInternal;
@@ -80,6 +81,11 @@ final class Receive extends AbstractGitCommand {
     reviewers.put(ReviewerStateInternal.CC, id);
   }
 
+  @Override
+  protected GitOperationScheduler.Operation getOperation() {
+    return GitOperationScheduler.Operation.RECEIVE_PACK;
+  }
+
   @Override
   protected void runImpl() throws IOException, Failure {
     try {
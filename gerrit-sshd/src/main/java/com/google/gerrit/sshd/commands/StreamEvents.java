@@ -16,46 +16,34 @@ package com.google.gerrit.sshd.commands;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
-import com.google.common.base.Supplier;
 import com.google.gerrit.common.UserScopedEventListener;
 import com.google.gerrit.common.data.GlobalCapability;
 import com.google.gerrit.extensions.annotations.RequiresCapability;
 import com.google.gerrit.extensions.registration.DynamicSet;
 import com.google.gerrit.extensions.registration.RegistrationHandle;
-import com.google.gerrit.reviewdb.client.Project;
 import com.google.gerrit.server.CurrentUser;
 import com.google.gerrit.server.IdentifiedUser;
 import com.google.gerrit.server.events.Event;
 import com.google.gerrit.server.events.EventTypes;
-import com.google.gerrit.server.events.ProjectNameKeySerializer;
-import com.google.gerrit.server.events.SupplierSerializer;
 import com.google.gerrit.server.git.WorkQueue.CancelableRunnable;
 import com.google.gerrit.sshd.BaseCommand;
 import com.google.gerrit.sshd.CommandMetaData;
 import com.google.gerrit.sshd.StreamCommandExecutor;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.gerrit.sshd.commands.StreamEventsFanout.Subscriber;
 import com.google.inject.Inject;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import org.apache.sshd.server.Environment;
 import org.kohsuke.args4j.Option;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 @RequiresCapability(GlobalCapability.STREAM_EVENTS)
 @CommandMetaData(name = "stream-events", description = "Monitor events occurring in real time")
 final class StreamEvents extends BaseCommand {
-  private static final Logger log = LoggerFactory.getLogger(StreamEvents.class);
-
-  /** Maximum number of events that may be queued up for each connection. */
-  private static final int MAX_EVENTS = 128;
-
   /** Number of events to write before yielding off the thread. */
   private static final int BATCH_SIZE = 32;
 
@@ -73,10 +61,10 @@ final class StreamEvents extends BaseCommand {
 
   @Inject @StreamCommandExecutor private ScheduledThreadPoolExecutor pool;
 
-  /** Queue of events to stream to the connected user. */
-  private final LinkedBlockingQueue<Event> queue = new LinkedBlockingQueue<>(MAX_EVENTS);
+  @Inject private StreamEventsFanout fanout;
 
-  private Gson gson;
+  /** Buffer of events to stream to the connected user. */
+  private Subscriber queue;
 
   private RegistrationHandle eventListenerRegistration;
 
@@ -128,7 +116,7 @@ final class StreamEvents extends BaseCommand {
    */
   private Future<?> task;
 
-  private PrintWriter stdout;
+  private PrintStream stdout;
 
   @Override
   public void start(Environment env) throws IOException {
@@ -145,7 +133,8 @@ final class StreamEvents extends BaseCommand {
       return;
     }
 
-    stdout = toPrintWriter(out);
+    stdout = new PrintStream(new BufferedOutputStream(out));
+    queue = fanout.subscribe(currentUser.getAccount());
     eventListenerRegistration =
         eventListeners.add(
             new UserScopedEventListener() {
@@ -161,18 +150,15 @@ final class StreamEvents extends BaseCommand {
                 return currentUser;
               }
             });
-
-    gson =
-        new GsonBuilder()
-            .registerTypeAdapter(Supplier.class, new SupplierSerializer())
-            .registerTypeAdapter(Project.NameKey.class, new ProjectNameKeySerializer())
-            .create();
   }
 
   private void removeEventListenerRegistration() {
     if (eventListenerRegistration != null) {
       eventListenerRegistration.remove();
     }
+    if (queue != null) {
+      fanout.unsubscribe(queue);
+    }
   }
 
   @Override
@@ -270,15 +256,10 @@ final class StreamEvents extends BaseCommand {
   }
 
   private void write(Object message) {
-    String msg = null;
-    try {
-      msg = gson.toJson(message) + "\n";
-    } catch (Exception e) {
-      log.warn("Could not deserialize the msg: ", e);
-    }
+    byte[] msg = fanout.encode(message);
     if (msg != null) {
       synchronized (stdout) {
-        stdout.print(msg);
+        stdout.write(msg, 0, msg.length);
       }
     }
   }
@@ -0,0 +1,191 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.sshd.commands;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.Supplier;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.metrics.CallbackMetric1;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Field;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.reviewdb.client.Account;
+import com.google.gerrit.reviewdb.client.Project;
+import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.gerrit.server.events.Event;
+import com.google.gerrit.server.events.ProjectNameKeySerializer;
+import com.google.gerrit.server.events.SupplierSerializer;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.jgit.lib.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shared state of all {@code stream-events} sessions.
+ *
+ * <p>The same {@link Event} instance is delivered to every session allowed to see it. It is
+ * serialized to JSON only once, and all sessions write the same bytes.
+ */
+@Singleton
+class StreamEventsFanout {
+  private static final Logger log = LoggerFactory.getLogger(StreamEventsFanout.class);
+
+  private final Gson gson;
+  private final int bufferSize;
+  private final AtomicInteger nextId = new AtomicInteger(1);
+  private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Serialized events, keyed by identity of the event. Entries go away once no session holds the
+   * event in its buffer anymore.
+   */
+  private final Cache<Object, byte[]> encoded = CacheBuilder.newBuilder().weakKeys().build();
+
+  @Inject
+  StreamEventsFanout(@GerritServerConfig Config cfg, MetricMaker metrics) {
+    gson =
+        new GsonBuilder()
+            .registerTypeAdapter(Supplier.class, new SupplierSerializer())
+            .registerTypeAdapter(Project.NameKey.class, new ProjectNameKeySerializer())
+            .create();
+    bufferSize = Math.max(1, cfg.getInt("sshd", "streamEventsBufferSize", 128));
+
+    Field<String> subscriber =
+        Field.ofString(
+            "subscriber", "User name or account ID, and number of the stream-events session");
+    CallbackMetric1<String, Integer> lag =
+        metrics.newCallbackMetric(
+            "sshd/stream_events/lag",
+            Integer.class,
+            new Description("Events waiting to be written to a stream-events session")
+                .setGauge()
+                .setUnit("events"),
+            subscriber);
+    CallbackMetric1<String, Long> dropped =
+        metrics.newCallbackMetric(
+            "sshd/stream_events/dropped_count",
+            Long.class,
+            new Description("Events dropped because a stream-events session fell behind")
+                .setGauge()
+                .setUnit("events"),
+            subscriber);
+    metrics.newTrigger(
+        lag,
+        dropped,
+        () -> {
+          for (Subscriber s : subscribers) {
+            lag.set(s.name, s.getLag());
+            dropped.set(s.name, s.getDropped());
+          }
+          lag.prune();
+          dropped.prune();
+        });
+  }
+
+  Subscriber subscribe(Account account) {
+    String user = account.getUserName();
+    if (user == null) {
+      user = String.valueOf(account.getId().get());
+    }
+    Subscriber s = new Subscriber(user + "-" + nextId.getAndIncrement(), bufferSize);
+    subscribers.add(s);
+    return s;
+  }
+
+  void unsubscribe(Subscriber s) {
+    subscribers.remove(s);
+  }
+
+  /**
+   * Returns the JSON line for {@code event}.
+   *
+   * <p>The returned array is shared by all sessions and must not be modified.
+   *
+   * @return the serialized event, or null if it could not be serialized.
+   */
+  @Nullable
+  byte[] encode(Object event) {
+    try {
+      return encoded.get(event, () -> (gson.toJson(event) + "\n").getBytes(UTF_8));
+    } catch (ExecutionException | RuntimeException e) {
+      log.warn("Could not serialize the event: ", e);
+      return null;
+    }
+  }
+
+  /** Bounded ring buffer of the events still to be written to a single session. */
+  static class Subscriber {
+    private final String name;
+    private final Event[] buffer;
+    private int head;
+    private int size;
+    private long dropped;
+
+    private Subscriber(String name, int bufferSize) {
+      this.name = name;
+      this.buffer = new Event[bufferSize];
+    }
+
+    String getName() {
+      return name;
+    }
+
+    /** Returns false, and counts the event as dropped, if the buffer is full. */
+    synchronized boolean offer(Event event) {
+      if (size == buffer.length) {
+        dropped++;
+        return false;
+      }
+      buffer[(head + size) % buffer.length] = event;
+      size++;
+      return true;
+    }
+
+    @Nullable
+    synchronized Event poll() {
+      if (size == 0) {
+        return null;
+      }
+      Event event = buffer[head];
+      buffer[head] = null;
+      head = (head + 1) % buffer.length;
+      size--;
+      return event;
+    }
+
+    synchronized int getLag() {
+      return size;
+    }
+
+    synchronized long getDropped() {
+      return dropped;
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+}
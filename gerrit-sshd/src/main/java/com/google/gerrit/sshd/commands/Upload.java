@@ -17,6 +17,7 @@ package com.google.gerrit.sshd.commands;
 import com.google.common.collect.Lists;
 import com.google.gerrit.extensions.registration.DynamicSet;
 import com.google.gerrit.extensions.restapi.AuthException;
+import com.google.gerrit.server.git.GitOperationScheduler;
 import com.google.gerrit.server.git.TransferConfig;
 import com.google.gerrit.server.git.UploadPackInitializer;
 import com.google.gerrit.server.git.VisibleRefFilter;
@@ -47,6 +48,11 @@ final class Upload extends AbstractGitCommand {
   @Inject private SshSession session;
   @Inject private PermissionBackend permissionBackend;
 
+  @Override
+  protected GitOperationScheduler.Operation getOperation() {
+    return GitOperationScheduler.Operation.UPLOAD_PACK;
+  }
+
   @Override
   protected void runImpl() throws IOException, Failure {
     try {
@@ -0,0 +1,85 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.sshd.commands;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.gerrit.common.TimeUtil;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.reviewdb.client.Account;
+import com.google.gerrit.server.events.Event;
+import com.google.gerrit.sshd.commands.StreamEventsFanout.Subscriber;
+import org.eclipse.jgit.lib.Config;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StreamEventsFanoutTest {
+  private StreamEventsFanout fanout;
+
+  @Before
+  public void setUp() {
+    Config cfg = new Config();
+    cfg.setInt("sshd", null, "streamEventsBufferSize", 2);
+    fanout = new StreamEventsFanout(cfg, new DisabledMetricMaker());
+  }
+
+  @Test
+  public void eventIsEncodedOnce() {
+    Event event = new TestEvent();
+    byte[] first = fanout.encode(event);
+    assertThat(new String(first, UTF_8)).contains("\"type\":\"test-event\"");
+    assertThat(new String(first, UTF_8)).endsWith("\n");
+    assertThat(fanout.encode(event)).isSameAs(first);
+  }
+
+  @Test
+  public void fullBufferDropsNewEvents() {
+    Subscriber s = fanout.subscribe(account(1, "user"));
+    Event e1 = new TestEvent();
+    Event e2 = new TestEvent();
+    Event e3 = new TestEvent();
+    assertThat(s.offer(e1)).isTrue();
+    assertThat(s.offer(e2)).isTrue();
+    assertThat(s.offer(e3)).isFalse();
+    assertThat(s.getLag()).isEqualTo(2);
+    assertThat(s.getDropped()).isEqualTo(1);
+
+    assertThat(s.poll()).isSameAs(e1);
+    assertThat(s.offer(e3)).isTrue();
+    assertThat(s.poll()).isSameAs(e2);
+    assertThat(s.poll()).isSameAs(e3);
+    assertThat(s.poll()).isNull();
+    assertThat(s.getLag()).isEqualTo(0);
+  }
+
+  @Test
+  public void subscriberIsNamedByUserNameOrAccountId() {
+    assertThat(fanout.subscribe(account(1, "user")).getName()).isEqualTo("user-1");
+    assertThat(fanout.subscribe(account(2, null)).getName()).isEqualTo("2-2");
+  }
+
+  private static Account account(int id, String userName) {
+    Account a = new Account(new Account.Id(id), TimeUtil.nowTs());
+    a.setUserName(userName);
+    return a;
+  }
+
+  private static class TestEvent extends Event {
+    TestEvent() {
+      super("test-event");
+    }
+  }
+}